@@ -0,0 +1,148 @@
+package com.example.Program.service;
+
+import com.example.Program.Main;
+import com.example.Program.model.ProcessamentoDetalhadoResposta;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Aplicação carregada uma vez por JVM de benchmark: contexto Spring sem servidor web, com a
+ * ontologia (ontology_inferred_final.ttl) e os templates reais, os caches de perguntas e de
+ * resultados desligados (cada operação refaz o trabalho) e logs só a partir de WARN.
+ * <p>
+ * As entradas são as perguntas de nlp/Reference_questions.txt. As respostas de PLN são gravadas
+ * no início, pelo JavaNlpEngine, e servidas pelo CannedNlpEngine durante a medição; perguntas
+ * cuja consulta não chega a ser preparada ficam de fora (com aviso).
+ */
+final class BenchmarkContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkContext.class);
+
+    private static final String PERGUNTAS = "nlp/Reference_questions.txt";
+    private static final String TEMPLATES_PATTERN = "classpath*:Templates/Template_*.txt";
+
+    private static BenchmarkContext instancia;
+
+    /** Uma pergunta de referência já interpretada e preparada. */
+    record Entrada(String pergunta, String templateId, JsonNode entidades, String tipoMetrica, PreparedQuery preparedQuery) {
+    }
+
+    final ConfigurableApplicationContext spring;
+    final List<Entrada> entradas;
+    /** Texto bruto dos arquivos de template (antes da substituição dos placeholders), por templateId. */
+    final Map<String, String> templatesBrutos;
+
+    static synchronized BenchmarkContext get() throws Exception {
+        if (instancia == null) {
+            instancia = new BenchmarkContext();
+        }
+        return instancia;
+    }
+
+    static synchronized void fechar() {
+        if (instancia != null) {
+            instancia.spring.close();
+            instancia = null;
+        }
+    }
+
+    private BenchmarkContext() throws Exception {
+        CannedNlpEngine canned = new CannedNlpEngine();
+        this.spring = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("cannedNlpEngine", canned))
+                // Como argumentos de linha de comando, para valerem sobre o application.properties.
+                .run("--nlp.engine=" + CannedNlpEngine.NAME,
+                        "--nlp.question-cache.enabled=false",
+                        "--sparql.result-cache.enabled=false",
+                        "--ontology.reload.watch=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+
+        JavaNlpEngine javaNlp = spring.getBean(JavaNlpEngine.class);
+        SPARQLProcessor sparqlProcessor = spring.getBean(SPARQLProcessor.class);
+        List<Entrada> entradas = new ArrayList<>();
+        for (String pergunta : lerPerguntas()) {
+            canned.gravar(pergunta, javaNlp.processQuestion(pergunta));
+            ProcessamentoDetalhadoResposta interpretacao = sparqlProcessor.interpretar(pergunta);
+            if (interpretacao.getErro() != null) {
+                logger.warn("Pergunta fora do benchmark ({}): {}", interpretacao.getErro(), pergunta);
+                continue;
+            }
+            try {
+                PreparedQuery preparedQuery = sparqlProcessor.prepareQuery(interpretacao.getTemplateId(), interpretacao.getEntidades());
+                entradas.add(new Entrada(pergunta, interpretacao.getTemplateId(), interpretacao.getEntidades(),
+                        interpretacao.getTipoMetrica(), preparedQuery));
+            } catch (Exception e) {
+                logger.warn("Pergunta fora do benchmark ({}: {}): {}", interpretacao.getTemplateId(), e.getMessage(), pergunta);
+            }
+        }
+        if (entradas.isEmpty()) {
+            throw new IllegalStateException("Nenhuma pergunta de referência pôde ser preparada.");
+        }
+        this.entradas = Collections.unmodifiableList(entradas);
+        this.templatesBrutos = lerTemplates();
+        logger.warn("Benchmark com {} perguntas de referência: {}", entradas.size(),
+                entradas.stream().collect(Collectors.groupingBy(Entrada::templateId, TreeMap::new, Collectors.counting())));
+    }
+
+    <T> T bean(Class<T> tipo) {
+        return spring.getBean(tipo);
+    }
+
+    List<Entrada> entradas(String templateId) {
+        List<Entrada> doTemplate = entradas.stream().filter(e -> e.templateId().equals(templateId)).toList();
+        if (doTemplate.isEmpty()) {
+            throw new IllegalStateException("Nenhuma pergunta de referência preparada para " + templateId + ".");
+        }
+        return doTemplate;
+    }
+
+    private static List<String> lerPerguntas() throws IOException {
+        List<String> perguntas = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(PERGUNTAS).getInputStream(), StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                linha = linha.strip();
+                int separador = linha.indexOf(';');
+                if (!linha.isEmpty() && separador > 0 && !linha.startsWith("#")) {
+                    perguntas.add(linha.substring(separador + 1).strip());
+                }
+            }
+        }
+        return perguntas;
+    }
+
+    private static Map<String, String> lerTemplates() throws IOException {
+        Map<String, String> textos = new TreeMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(TEMPLATES_PATTERN)) {
+            String fileName = resource.getFilename();
+            if (fileName != null) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+                    textos.put(fileName.substring(0, fileName.length() - ".txt".length()),
+                            reader.lines().collect(Collectors.joining(System.lineSeparator())));
+                }
+            }
+        }
+        return textos;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.Program.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Motor de PLN dos benchmarks: devolve respostas gravadas (mesmo contrato de /process_question),
+ * sem chamar o serviço Python, para que o tempo medido seja só o do caminho Java.
+ */
+final class CannedNlpEngine implements NlpEngine {
+
+    static final String NAME = "canned";
+
+    private final Map<String, JsonNode> respostas = new ConcurrentHashMap<>();
+
+    void gravar(String pergunta, JsonNode resposta) {
+        respostas.put(pergunta, resposta);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public JsonNode processQuestion(String question) throws Exception {
+        JsonNode resposta = respostas.get(question);
+        if (resposta == null) {
+            throw new IOException("Pergunta sem resposta gravada: " + question);
+        }
+        return resposta;
+    }
+}
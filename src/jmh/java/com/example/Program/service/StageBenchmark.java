@@ -0,0 +1,99 @@
+package com.example.Program.service;
+
+import com.example.Program.model.PerguntaResposta;
+import com.example.Program.service.BenchmarkContext.Entrada;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Etapas da geração da consulta, cada uma isolada, percorrendo as perguntas de referência em
+ * rodízio (uma pergunta por operação). "perguntar" é o caminho completo de /api/perguntar
+ * (PLN gravado, render, parse, execução e formatação), sem caches.
+ * <p>
+ * Throughput dá operações/µs; SampleTime dá a distribuição da latência (p0.50, p0.99, ...).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+    private List<Entrada> entradas;
+    private Map<String, String> templatesBrutos;
+    private SPARQLProcessor sparqlProcessor;
+    private PlaceholderService placeholderService;
+    private AskService askService;
+    private int proxima;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws Exception {
+        BenchmarkContext contexto = BenchmarkContext.get();
+        entradas = contexto.entradas;
+        templatesBrutos = contexto.templatesBrutos;
+        sparqlProcessor = contexto.bean(SPARQLProcessor.class);
+        placeholderService = contexto.bean(PlaceholderService.class);
+        askService = contexto.bean(AskService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        BenchmarkContext.fechar();
+    }
+
+    private Entrada proxima() {
+        Entrada entrada = entradas.get(proxima);
+        proxima = (proxima + 1) % entradas.size();
+        return entrada;
+    }
+
+    /** Texto final da consulta, com os valores no texto (SPARQLProcessor.buildQuery). */
+    @Benchmark
+    public String renderTexto() {
+        Entrada e = proxima();
+        return sparqlProcessor.renderQuery(e.templateId(), e.entidades());
+    }
+
+    /** Texto parametrizado e os nós vinculados, como em /api/perguntar. */
+    @Benchmark
+    public ParametrosConsulta renderParametrizado() {
+        Entrada e = proxima();
+        ParametrosConsulta parametros = new ParametrosConsulta();
+        sparqlProcessor.renderParametrizada(e.templateId(), e.entidades(), parametros);
+        return parametros;
+    }
+
+    /** Substituição dos placeholders genéricos (P1, S1, ...) sobre o arquivo de template inteiro. */
+    @Benchmark
+    public String substituirPlaceholders() {
+        return placeholderService.replaceGenericPlaceholders(templatesBrutos.get(proxima().templateId()));
+    }
+
+    /** Análise da consulta parametrizada pelo Jena, sem o PreparedQueryCache. */
+    @Benchmark
+    public Query analisar() {
+        return QueryFactory.create(proxima().preparedQuery().getTextoParametrizado());
+    }
+
+    @Benchmark
+    public PerguntaResposta perguntar() {
+        return askService.perguntar(proxima().pergunta(), false);
+    }
+}
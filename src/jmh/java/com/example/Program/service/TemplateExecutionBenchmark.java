@@ -0,0 +1,98 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.ResultTable;
+import com.example.Program.service.BenchmarkContext.Entrada;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execução e formatação por template, com as perguntas de referência de cada um em rodízio:
+ * <ul>
+ *   <li>executarJena: Ontology.executeTable com a consulta preparada;</li>
+ *   <li>executar: o caminho de produção (índice colunar quando suportado, senão o Jena);</li>
+ *   <li>formatar: conversão das linhas em SPARQL-JSON (QueryExecutionService.formatResults).</li>
+ * </ul>
+ * Throughput dá operações/ms; SampleTime dá a distribuição da latência (p0.50, p0.99, ...).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateExecutionBenchmark {
+
+    @Param({"Template_1A", "Template_1B", "Template_1C", "Template_1D", "Template_2A", "Template_2B",
+            "Template_3A", "Template_3B", "Template_4", "Template_5A", "Template_5B", "Template_6A", "Template_6B"})
+    public String templateId;
+
+    private List<Entrada> entradas;
+    private List<ResultTable> linhas;
+    private Ontology ontology;
+    private IndexedQueryExecutor indexedQueryExecutor;
+    private QueryExecutionService queryExecutionService;
+    private int proxima;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws Exception {
+        BenchmarkContext contexto = BenchmarkContext.get();
+        entradas = contexto.entradas(templateId);
+        ontology = contexto.bean(Ontology.class);
+        indexedQueryExecutor = contexto.bean(IndexedQueryExecutor.class);
+        queryExecutionService = contexto.bean(QueryExecutionService.class);
+        // Linhas de entrada de "formatar", obtidas uma vez pelo caminho de produção.
+        linhas = new ArrayList<>();
+        for (Entrada e : entradas) {
+            linhas.add(executar(e));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        BenchmarkContext.fechar();
+    }
+
+    private int proxima() {
+        int i = proxima;
+        proxima = (proxima + 1) % entradas.size();
+        return i;
+    }
+
+    private ResultTable executar(Entrada e) {
+        return indexedQueryExecutor.execute(e.templateId(), e.entidades())
+                .orElseGet(() -> ontology.executeTable(e.preparedQuery().getQuery(), e.preparedQuery().getParametros()));
+    }
+
+    @Benchmark
+    public ResultTable executarJena() {
+        PreparedQuery pq = entradas.get(proxima()).preparedQuery();
+        return ontology.executeTable(pq.getQuery(), pq.getParametros());
+    }
+
+    @Benchmark
+    public ResultTable executar() {
+        return executar(entradas.get(proxima()));
+    }
+
+    @Benchmark
+    public String formatar() {
+        int i = proxima();
+        return queryExecutionService.formatResults(linhas.get(i), entradas.get(i).tipoMetrica());
+    }
+}
@@ -1,32 +1,47 @@
 package com.example.Program;
 
 import com.example.Program.model.ExecuteQueryRequest;
+import com.example.Program.model.LoteRequest;
+import com.example.Program.model.LoteResposta;
 import com.example.Program.model.PerguntaRequest;
+import com.example.Program.model.PerguntaResposta;
 import com.example.Program.model.ProcessamentoDetalhadoResposta;
 import com.example.Program.ontology.Ontology;
+import com.example.Program.service.AskService;
+import com.example.Program.service.BatchQueryService;
+import com.example.Program.service.ConsultaRecusadaException;
+import com.example.Program.service.QueryAdmission;
+import com.example.Program.service.QueryExecutionService;
+import com.example.Program.service.QueryResultCache;
+import com.example.Program.service.QuestionCache;
+import com.example.Program.service.RemoteNlpEngine;
 import com.example.Program.service.SPARQLProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.jena.rdf.model.Model;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.riot.RiotException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.StringWriter;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @SpringBootApplication
 @RestController
@@ -44,110 +59,329 @@ public class Main {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QuestionCache questionCache;
+
+    @Autowired
+    private QueryExecutionService queryExecutionService;
+
+    @Autowired
+    private BatchQueryService batchQueryService;
+
+    @Autowired
+    private AskService askService;
+
+    @Autowired
+    private RemoteNlpEngine remoteNlpEngine;
+
+    @Autowired
+    private QueryAdmission queryAdmission;
+
+    // Token exigido no cabeçalho X-Admin-Token pelos endpoints /admin; vazio desativa os endpoints.
+    @Value("${ontology.reload.admin-token:}")
+    private String adminToken;
+
     public static void main(String[] args) {
         SpringApplication.run(Main.class, args);
     }
     
+    /**
+     * Pergunta -> consulta. A resposta é completada de forma assíncrona: a thread do Tomcat volta
+     * ao pool enquanto o serviço NLP remoto responde (ver RemoteNlpEngine.processQuestionAsync).
+     */
     @PostMapping("/processar")
-    public ResponseEntity<ProcessamentoDetalhadoResposta> gerarConsulta(@RequestBody PerguntaRequest request) {
+    public CompletableFuture<ResponseEntity<ProcessamentoDetalhadoResposta>> gerarConsulta(@RequestBody PerguntaRequest request) {
         String pergunta = request.getPergunta();
         if (pergunta == null || pergunta.trim().isEmpty()) {
             ProcessamentoDetalhadoResposta erro = new ProcessamentoDetalhadoResposta();
             erro.setErro("A pergunta não pode estar vazia.");
-            return ResponseEntity.badRequest().body(erro);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(erro));
         }
         logger.info("Recebida requisição para GERAR consulta para: '{}'", pergunta);
-        try {
-            ProcessamentoDetalhadoResposta resposta = sparqlProcessor.generateSparqlQuery(pergunta);
-            if (resposta.getErro() != null) {
-                return ResponseEntity.status(500).body(resposta);
+        return sparqlProcessor.generateSparqlQueryAsync(pergunta).handle((resposta, e) -> {
+            if (e != null) {
+                logger.error("Erro no endpoint /processar: {}", e.getMessage(), e);
+                ProcessamentoDetalhadoResposta erro = new ProcessamentoDetalhadoResposta();
+                erro.setErro("Erro interno ao gerar a consulta: " + e.getMessage());
+                return ResponseEntity.status(500).body(erro);
             }
-            return ResponseEntity.ok(resposta);
-        } catch (Exception e) {
-            logger.error("Erro no endpoint /processar: {}", e.getMessage(), e);
-            ProcessamentoDetalhadoResposta erro = new ProcessamentoDetalhadoResposta();
-            erro.setErro("Erro interno ao gerar a consulta: " + e.getMessage());
-            return ResponseEntity.status(500).body(erro);
-        }
+            return resposta.getErro() != null ? ResponseEntity.status(500).body(resposta) : ResponseEntity.ok(resposta);
+        });
     }
 
+    /**
+     * Executa a consulta (preparada, com templateId e entidades, ou em texto). Com ?stream=true,
+     * ou com ?offset/?limit, o resultado é escrito na resposta à medida que é lido, sem passar
+     * pelo cache; a página traz o bloco "paginacao" com o offset da próxima.
+     * Consultas inválidas (SPARQL, template ou entidades) voltam com 400 e a mensagem do erro,
+     * com ou sem streaming. Consultas recusadas pela governança da execução voltam com 422 (custo, linhas), 503 com
+     * Retry-After (fila cheia) ou 504 (prazo esgotado).
+     */
     @PostMapping("/executar")
-    public ResponseEntity<String> executarQuery(@RequestBody ExecuteQueryRequest request) {
+    public ResponseEntity<?> executarQuery(@RequestBody ExecuteQueryRequest request,
+                                           @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+                                           @RequestParam(value = "offset", defaultValue = "0") long offset,
+                                           @RequestParam(value = "limit", defaultValue = "0") long limit,
+                                           HttpServletResponse response) throws IOException {
         String sparqlQuery = request.getQuery();
         String tipoMetrica = request.getTipoMetrica();
+        // Com templateId e entidades (devolvidos por /processar) a consulta preparada é usada e o texto é ignorado.
+        boolean preparada = request.getTemplateId() != null && request.getEntidades() != null && request.getEntidades().isObject();
 
-        if (sparqlQuery == null || sparqlQuery.trim().isEmpty()) {
+        if (!preparada && (sparqlQuery == null || sparqlQuery.trim().isEmpty())) {
             return ResponseEntity.badRequest().body("{\"error\": \"A consulta SPARQL não pode estar vazia.\"}");
         }
-        logger.info("Executando query. Tipo de métrica recebido: {}", tipoMetrica);
+        if (stream || offset != 0 || limit != 0) {
+            return executarStream(request, preparada, offset, limit, response);
+        }
+        logger.info("Executando query{}. Tipo de métrica recebido: {}", preparada ? " preparada (" + request.getTemplateId() + ")" : "", tipoMetrica);
         try {
-            List<Map<String, String>> bindings = ontology.executeQuery(sparqlQuery);
-            Map<String, Object> head = new HashMap<>();
-            List<String> vars = bindings.isEmpty() ? Collections.emptyList() : new ArrayList<>(bindings.get(0).keySet());
-            head.put("vars", vars);
-
-            Map<String, Object> results = new HashMap<>();
-            
-            Locale brLocale = new Locale("pt", "BR");
-            NumberFormat currencyFormatter = DecimalFormat.getCurrencyInstance(brLocale);
-            DecimalFormat percentageFormatter = new DecimalFormat("#,##0.00'%'", new DecimalFormatSymbols(brLocale));
-            DecimalFormat largeNumberFormatter = new DecimalFormat("#,##0", new DecimalFormatSymbols(brLocale));
-
-            List<Map<String, Object>> formattedBindings = new ArrayList<>();
-            for(Map<String, String> row : bindings) {
-                Map<String, Object> newRow = new HashMap<>();
-                for(Map.Entry<String, String> entry : row.entrySet()) {
-                    Map<String, String> valueMap = new HashMap<>();
-                    valueMap.put("type", "literal");
-
-                    String currentValue = entry.getValue();
-                    String varName = entry.getKey();
-                    String formattedValue = currentValue; 
-
-                    if (tipoMetrica != null && !varName.equalsIgnoreCase("ticker")) {
-                        try {
-                            double numericValue = Double.parseDouble(currentValue);
-                            
-                            if (tipoMetrica.contains("perc")) {
-                                formattedValue = percentageFormatter.format(numericValue);
-                            } else if (tipoMetrica.contains("volume") || tipoMetrica.contains("preco") || tipoMetrica.contains("abs") || tipoMetrica.contains("intervalo")) {
-                                formattedValue = currencyFormatter.format(numericValue);
-                            } else if (tipoMetrica.contains("quantidade")) {
-                                formattedValue = largeNumberFormatter.format(numericValue);
-                            }
-                        } catch (NumberFormatException e) {
-                            // Mantém o valor original se não for um número (ex: "TOTAL", "N/A")
-                        }
-                    }
-                    
-                    valueMap.put("value", formattedValue);
-                    newRow.put(entry.getKey(), valueMap);
-                }
-                formattedBindings.add(newRow);
-            }
-            results.put("bindings", formattedBindings);
-            Map<String, Object> finalJsonResponse = new HashMap<>();
-            finalJsonResponse.put("head", head);
-            finalJsonResponse.put("results", results);
-            String resultadoJson = objectMapper.writeValueAsString(finalJsonResponse);
+            String resultadoJson = preparada
+                    ? queryExecutionService.executarPreparada(request.getTemplateId(), request.getEntidades(), tipoMetrica)
+                    : queryExecutionService.executarTexto(sparqlQuery, tipoMetrica);
             return ResponseEntity.ok(resultadoJson);
+        } catch (QueryParseException | IllegalArgumentException e) {
+            // SPARQL inválido (o texto ou o template preenchido), template desconhecido ou entidade
+            // com valor inválido (ex: LIMITE, ORDEM, LISTA_TICKERS).
+            return erroExecucao(400, "Consulta inválida: ", e);
+        } catch (ConsultaRecusadaException e) {
+            return recusada(e);
         } catch (Exception e) {
             logger.error("Erro no endpoint /executar: {}", e.getMessage(), e);
-            return ResponseEntity.status(500).body("{\"error\": \"Erro interno ao executar a consulta: " + e.getMessage() + "\"}");
+            return erroExecucao(500, "Erro interno ao executar a consulta: ", e);
+        }
+    }
+
+    private ResponseEntity<?> executarStream(ExecuteQueryRequest request, boolean preparada, long offset, long limit,
+                                             HttpServletResponse response) throws IOException {
+        logger.info("Executando query{} em streaming (offset {}, limit {}). Tipo de métrica recebido: {}",
+                preparada ? " preparada (" + request.getTemplateId() + ")" : "", offset, limit, request.getTipoMetrica());
+        QueryExecutionService.Escrita escrita;
+        try {
+            escrita = preparada
+                    ? queryExecutionService.streamPreparada(request.getTemplateId(), request.getEntidades(), request.getTipoMetrica(), offset, limit)
+                    : queryExecutionService.streamTexto(request.getQuery(), request.getTipoMetrica(), offset, limit);
+        } catch (QueryParseException | IllegalArgumentException e) {
+            return erroExecucao(400, "Consulta inválida: ", e);
+        } catch (ConsultaRecusadaException e) {
+            return recusada(e);
+        } catch (Exception e) {
+            logger.error("Erro no endpoint /executar: {}", e.getMessage(), e);
+            return erroExecucao(500, "Erro interno ao executar a consulta: ", e);
+        }
+        // Escrita direta na resposta, nesta thread, com uma vaga no pool de execução. Depois do
+        // primeiro flush o status já foi enviado: o prazo esgotado no meio fecha o JSON com um bloco
+        // "erro"; outras falhas interrompem a resposta.
+        response.setStatus(200);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        try {
+            escrita.escrever(response.getOutputStream());
+        } catch (ConsultaRecusadaException e) {
+            if (!response.isCommitted()) {
+                // Recusada antes do primeiro byte (ex: fila cheia): ainda dá para responder com o erro.
+                response.reset();
+                return recusada(e);
+            }
+            logger.warn("Streaming de /executar interrompido: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Consulta recusada pela governança da execução (também em /perguntar): o status da recusa e,
+     * na sobrecarga, o cabeçalho Retry-After em segundos.
+     */
+    @ExceptionHandler(ConsultaRecusadaException.class)
+    public ResponseEntity<String> recusada(ConsultaRecusadaException e) {
+        logger.warn("Consulta recusada ({}): {}", e.getMotivo(), e.getMessage());
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.status(e.getStatus()).contentType(MediaType.APPLICATION_JSON);
+        if (e.getRetryAfter() != null) {
+            resposta.header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter().toSeconds()));
+        }
+        return resposta.body(objectMapper.createObjectNode().put("error", e.getMessage()).toString());
+    }
+
+    private ResponseEntity<String> erroExecucao(int status, String prefixo, Exception e) {
+        // A mensagem pode conter aspas (ex: erros de análise do Jena), por isso o JSON é montado pelo ObjectMapper.
+        return ResponseEntity.status(status).body(objectMapper.createObjectNode()
+                .put("error", prefixo + e.getMessage()).toString());
+    }
+
+    /**
+     * Pergunta -> resultado formatado em uma única chamada, sem devolver a consulta ao cliente
+     * para ser reenviada e reanalisada. Com ?sparql=true a resposta inclui também o texto da consulta.
+     */
+    @PostMapping("/perguntar")
+    public ResponseEntity<PerguntaResposta> perguntar(@RequestBody PerguntaRequest request,
+                                                      @RequestParam(value = "sparql", defaultValue = "false") boolean incluirSparql) {
+        String pergunta = request.getPergunta();
+        if (pergunta == null || pergunta.trim().isEmpty()) {
+            PerguntaResposta erro = new PerguntaResposta();
+            erro.setErro("A pergunta não pode estar vazia.");
+            return ResponseEntity.badRequest().body(erro);
+        }
+        logger.info("Recebida requisição para RESPONDER: '{}'", pergunta);
+        PerguntaResposta resposta = askService.perguntar(pergunta, incluirSparql);
+        return resposta.getErro() != null ? ResponseEntity.status(500).body(resposta) : ResponseEntity.ok(resposta);
+    }
+
+    /**
+     * Gera e executa uma lista de perguntas em uma única chamada (equivale a /processar seguido
+     * de /executar para cada uma). A resposta traz um item por pergunta, com o resultado ou o erro.
+     */
+    @PostMapping("/lote")
+    public ResponseEntity<?> processarLote(@RequestBody LoteRequest request) {
+        try {
+            LoteResposta resposta = batchQueryService.processar(request.getPerguntas());
+            return ResponseEntity.ok(resposta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("erro", e.getMessage()));
+        }
+    }
+
+    /**
+     * Recarrega a ontologia a partir do Turtle. As consultas em andamento terminam no modelo
+     * anterior; as novas passam a usar o recarregado assim que ele é publicado.
+     */
+    @PostMapping("/admin/reload")
+    public ResponseEntity<Map<String, Object>> recarregarOntologia(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        ResponseEntity<Map<String, Object>> recusa = verificarTokenAdmin(token);
+        if (recusa != null) {
+            return recusa;
+        }
+        logger.info("Recebida requisição para recarregar a ontologia.");
+        try {
+            Ontology.Recarga recarga = ontology.recarregar();
+            Map<String, Object> resposta = new LinkedHashMap<>();
+            resposta.put("geracao", recarga.geracao());
+            resposta.put("triplas", recarga.triplas());
+            resposta.put("millis", recarga.millis());
+            return ResponseEntity.ok(resposta);
+        } catch (Exception e) {
+            logger.error("Erro no endpoint /admin/reload: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("erro", "Falha ao recarregar a ontologia; o modelo atual foi mantido: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Acrescenta pregões ao modelo carregado sem recarregar o Turtle (ver Ontology.acrescentar):
+     * uma planilha de cotações no campo "arquivo" (multipart/form-data), com o mesmo cabeçalho das
+     * planilhas de datasets/.
+     */
+    @PostMapping(value = "/admin/acrescentar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> acrescentarPlanilha(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                                                   @RequestParam("arquivo") MultipartFile arquivo) {
+        ResponseEntity<Map<String, Object>> recusa = verificarTokenAdmin(token);
+        if (recusa != null) {
+            return recusa;
+        }
+        logger.info("Recebida requisição para acrescentar a planilha '{}'.", arquivo.getOriginalFilename());
+        Path temporario = null;
+        try {
+            // O leitor de planilhas trabalha sobre um arquivo.
+            temporario = Files.createTempFile("acrescimo-", ".xlsx");
+            arquivo.transferTo(temporario);
+            return ResponseEntity.ok(resposta(ontology.acrescentarPlanilha(temporario)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("erro", "Planilha inválida: " + e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Erro no endpoint /admin/acrescentar: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("erro", "Falha ao acrescentar a planilha; o modelo atual foi mantido: " + e.getMessage()));
+        } finally {
+            if (temporario != null) {
+                try {
+                    Files.deleteIfExists(temporario);
+                } catch (IOException e) {
+                    logger.warn("Não foi possível apagar o arquivo temporário '{}': {}", temporario, e.getMessage());
+                }
+            }
         }
     }
 
+    /**
+     * Como acima, com as triplas em Turtle no corpo (text/turtle). Tipos e vínculos com a empresa
+     * que faltarem são inferidos (TargetedInference).
+     */
+    @PostMapping(value = "/admin/acrescentar", consumes = "text/turtle")
+    public ResponseEntity<Map<String, Object>> acrescentarTurtle(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                                                 @RequestBody byte[] turtle) {
+        ResponseEntity<Map<String, Object>> recusa = verificarTokenAdmin(token);
+        if (recusa != null) {
+            return recusa;
+        }
+        logger.info("Recebida requisição para acrescentar {} bytes de Turtle.", turtle.length);
+        try {
+            return ResponseEntity.ok(resposta(ontology.acrescentarTurtle(new ByteArrayInputStream(turtle))));
+        } catch (RiotException e) {
+            return ResponseEntity.badRequest().body(Map.of("erro", "Turtle inválido: " + e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Erro no endpoint /admin/acrescentar: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("erro", "Falha ao acrescentar as triplas; o modelo atual foi mantido: " + e.getMessage()));
+        }
+    }
+
+    private static Map<String, Object> resposta(Ontology.Acrescimo acrescimo) {
+        Map<String, Object> resposta = new LinkedHashMap<>();
+        resposta.put("triplasRecebidas", acrescimo.triplasRecebidas());
+        resposta.put("triplasInferidas", acrescimo.triplasInferidas());
+        resposta.put("triplasNovas", acrescimo.triplasNovas());
+        resposta.put("totalTriplas", acrescimo.totalTriplas());
+        resposta.put("millis", acrescimo.millis());
+        return resposta;
+    }
+
+    /**
+     * 403 se nenhum token estiver configurado (endpoints /admin desativados) ou se o recebido não
+     * for o configurado; null se a requisição pode seguir. A comparação não depende de onde os
+     * tokens diferem.
+     */
+    private ResponseEntity<Map<String, Object>> verificarTokenAdmin(String token) {
+        if (adminToken.isEmpty()) {
+            return ResponseEntity.status(403).body(Map.of("erro", "Endpoints de administração desativados: defina ontology.reload.admin-token."));
+        }
+        if (token == null || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(403).body(Map.of("erro", "Token de administração inválido."));
+        }
+        return null;
+    }
+
+    @GetMapping("/debug/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("perguntas", questionCache.stats());
+        stats.put("resultados", queryResultCache.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/debug/nlp-stats")
+    public ResponseEntity<Map<String, Object>> getNlpStats() {
+        return ResponseEntity.ok(remoteNlpEngine.stats());
+    }
+
+    @GetMapping("/debug/execution-stats")
+    public ResponseEntity<Map<String, Object>> getExecutionStats() {
+        return ResponseEntity.ok(queryAdmission.stats());
+    }
+
     @GetMapping("/debug/get-inferred-ontology")
     public ResponseEntity<String> getInferredOntology() {
         logger.info("Recebida requisição de DEBUG para obter a ontologia inferida.");
-        Model inferredModel = ontology.getInferredModel();
-        if (inferredModel == null) {
+        String ontologyAsString;
+        try {
+            // A serialização roda dentro da transação de leitura (necessário no modo TDB2).
+            ontologyAsString = ontology.readModel(inferredModel -> {
+                StringWriter out = new StringWriter();
+                inferredModel.write(out, "TURTLE");
+                return out.toString();
+            });
+        } catch (IllegalStateException e) {
             logger.warn("Tentativa de acessar modelo inferido, mas ele é nulo.");
             return ResponseEntity.status(500).body("Erro: O modelo inferido ainda não foi gerado ou está nulo.");
         }
-        StringWriter out = new StringWriter();
-        inferredModel.write(out, "TURTLE");
-        String ontologyAsString = out.toString();
         HttpHeaders headers = new HttpHeaders();
         headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=ontology_inferred_from_render.ttl");
         headers.add(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE);
@@ -1,6 +1,7 @@
 package com.example.Program.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ExecuteQueryRequest {
@@ -8,6 +9,10 @@ public class ExecuteQueryRequest {
     private String query;
     private String tipoMetrica;
 
+    // Opcionais: quando presentes, a consulta preparada do template é executada com as entidades vinculadas
+    private String templateId;
+    private JsonNode entidades;
+
     // Getters e Setters
     
     public String getQuery() {
@@ -25,4 +30,20 @@ public class ExecuteQueryRequest {
     public void setTipoMetrica(String tipoMetrica) {
         this.tipoMetrica = tipoMetrica;
     }
-}
\ No newline at end of file
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public JsonNode getEntidades() {
+        return entidades;
+    }
+
+    public void setEntidades(JsonNode entidades) {
+        this.entidades = entidades;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.Program.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * Resultado de uma pergunta de /api/lote: a consulta gerada e o resultado já executado,
+ * ou o erro da geração/execução daquele item (os demais itens não são afetados).
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LoteItemResposta {
+
+    private String pergunta;
+    private String templateId;
+    private String tipoMetrica;
+    private String sparqlQuery;
+
+    // JSON já serializado (o mesmo corpo de /executar), incluído sem nova análise
+    @JsonRawValue
+    private String resultado;
+    private String erro;
+
+    public String getPergunta() {
+        return pergunta;
+    }
+
+    public void setPergunta(String pergunta) {
+        this.pergunta = pergunta;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public String getTipoMetrica() {
+        return tipoMetrica;
+    }
+
+    public void setTipoMetrica(String tipoMetrica) {
+        this.tipoMetrica = tipoMetrica;
+    }
+
+    public String getSparqlQuery() {
+        return sparqlQuery;
+    }
+
+    public void setSparqlQuery(String sparqlQuery) {
+        this.sparqlQuery = sparqlQuery;
+    }
+
+    public String getResultado() {
+        return resultado;
+    }
+
+    public void setResultado(String resultado) {
+        this.resultado = resultado;
+    }
+
+    public String getErro() {
+        return erro;
+    }
+
+    public void setErro(String erro) {
+        this.erro = erro;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.Program.model;
+
+import java.util.List;
+
+public class LoteRequest {
+
+    private List<String> perguntas;
+
+    public List<String> getPerguntas() {
+        return perguntas;
+    }
+
+    public void setPerguntas(List<String> perguntas) {
+        this.perguntas = perguntas;
+    }
+}
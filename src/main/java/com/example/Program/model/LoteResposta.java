@@ -0,0 +1,37 @@
+package com.example.Program.model;
+
+import java.util.List;
+
+public class LoteResposta {
+
+    // Na mesma ordem das perguntas recebidas
+    private List<LoteItemResposta> itens;
+
+    // Consultas efetivamente executadas depois da deduplicação
+    private int consultasExecutadas;
+    private long millis;
+
+    public List<LoteItemResposta> getItens() {
+        return itens;
+    }
+
+    public void setItens(List<LoteItemResposta> itens) {
+        this.itens = itens;
+    }
+
+    public int getConsultasExecutadas() {
+        return consultasExecutadas;
+    }
+
+    public void setConsultasExecutadas(int consultasExecutadas) {
+        this.consultasExecutadas = consultasExecutadas;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.Program.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.util.Map;
+
+/**
+ * Resposta de /api/perguntar: pergunta -> resultado formatado em uma chamada, com o tempo de
+ * cada etapa (nlp, render, parse, execute, format) em milissegundos.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PerguntaResposta {
+
+    private String pergunta;
+    private String templateId;
+    private String tipoMetrica;
+
+    // Só quando pedido (?sparql=true); a execução não depende do texto
+    private String sparqlQuery;
+
+    // Mesmo corpo de /executar, incluído sem nova análise
+    @JsonRawValue
+    private String resultado;
+    private String erro;
+
+    // true quando o resultado veio do QueryResultCache (sem as etapas execute/format)
+    private Boolean cache;
+    private Map<String, Double> tempos;
+
+    public String getPergunta() {
+        return pergunta;
+    }
+
+    public void setPergunta(String pergunta) {
+        this.pergunta = pergunta;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public String getTipoMetrica() {
+        return tipoMetrica;
+    }
+
+    public void setTipoMetrica(String tipoMetrica) {
+        this.tipoMetrica = tipoMetrica;
+    }
+
+    public String getSparqlQuery() {
+        return sparqlQuery;
+    }
+
+    public void setSparqlQuery(String sparqlQuery) {
+        this.sparqlQuery = sparqlQuery;
+    }
+
+    public String getResultado() {
+        return resultado;
+    }
+
+    public void setResultado(String resultado) {
+        this.resultado = resultado;
+    }
+
+    public String getErro() {
+        return erro;
+    }
+
+    public void setErro(String erro) {
+        this.erro = erro;
+    }
+
+    public Boolean getCache() {
+        return cache;
+    }
+
+    public void setCache(Boolean cache) {
+        this.cache = cache;
+    }
+
+    public Map<String, Double> getTempos() {
+        return tempos;
+    }
+
+    public void setTempos(Map<String, Double> tempos) {
+        this.tempos = tempos;
+    }
+}
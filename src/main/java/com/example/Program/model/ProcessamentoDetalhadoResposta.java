@@ -1,6 +1,7 @@
 package com.example.Program.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ProcessamentoDetalhadoResposta {
@@ -14,6 +15,9 @@ public class ProcessamentoDetalhadoResposta {
     // NOVO CAMPO ADICIONADO PARA IDENTIFICAR O TIPO DE CONSULTA (SELECT ou ASK)
     private String queryType; 
 
+    // Entidades extraídas pelo PLN; permitem executar a consulta preparada em /executar
+    private JsonNode entidades;
+
     // Getters e Setters existentes
     public String getSparqlQuery() {
         return sparqlQuery;
@@ -63,4 +67,12 @@ public class ProcessamentoDetalhadoResposta {
     public void setQueryType(String queryType) {
         this.queryType = queryType;
     }
-}
\ No newline at end of file
+
+    public JsonNode getEntidades() {
+        return entidades;
+    }
+
+    public void setEntidades(JsonNode entidades) {
+        this.entidades = entidades;
+    }
+}
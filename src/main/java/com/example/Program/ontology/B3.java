@@ -0,0 +1,39 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+
+/**
+ * Vocabulário da ontologia do mercado de ações usado pelos índices em memória e pela ingestão
+ * das planilhas.
+ * Os templates SPARQL continuam usando os nomes de placeholders.properties.
+ */
+public final class B3 {
+
+    public static final String NS = "https://dcm.ffclrp.usp.br/lssb/stock-market-ontology#";
+
+    public static final Property negociado = property("negociado");
+    public static final Property negociadoDurante = property("negociadoDurante");
+    public static final Property ocorreEmData = property("ocorreEmData");
+    public static final Property ticker = property("ticker");
+    public static final Property temValorMobiliarioNegociado = property("temValorMobiliarioNegociado");
+    public static final Property atuaEm = property("atuaEm");
+
+    public static final Resource Pregao = resource("Pregao");
+    public static final Resource Negociado_Em_Pregao = resource("Negociado_Em_Pregao");
+    public static final Resource Valor_Mobiliario = resource("Valor_Mobiliario");
+    public static final Resource Empresa_Capital_Aberto = resource("Empresa_Capital_Aberto");
+    public static final Resource Setor_Atuacao = resource("Setor_Atuacao");
+
+    private B3() {
+    }
+
+    private static Property property(String localName) {
+        return ResourceFactory.createProperty(NS + localName);
+    }
+
+    private static Resource resource(String localName) {
+        return ResourceFactory.createResource(NS + localName);
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.Program.ontology;
+
+import com.example.Program.ontology.TimeSeriesIndex.Coluna;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Ingestão das planilhas da B3 para triplas da ontologia, no mesmo formato do
+ * ontology_inferred_final.ttl:
+ * <ul>
+ *   <li>cotações (datasets/*.xlsx): b3:Pregao_AAAAMMDD, b3:TICKER e b3:TICKER_Negociado_AAAAMMDD
+ *       com os preços, o volume e a quantidade negociada;</li>
+ *   <li>empresas (Templates/Company_Information.xlsx ou Informacoes_Empresas.xlsx, mesmo
+ *       cabeçalho): empresa, setores de atuação e o b3:ticker dos valores mobiliários.</li>
+ * </ul>
+ * Só as triplas de instâncias são geradas; o esquema (classes e propriedades) continua vindo
+ * da ontologia.
+ * As planilhas são lidas em streaming (XlsxStreamReader) e as triplas são entregues ao destino
+ * em lotes de tamanho fixo, então a memória não cresce com o número de linhas: só ficam
+ * guardados os pregões, tickers e setores já emitidos, para não repetir as triplas de tipo.
+ * <p>
+ * Também pode ser usada no build: {@code ExcelIngestion <saida.rt|.nt|.ttl> [--empresas <arquivo.xlsx>] <cotacoes.xlsx>...}.
+ */
+public final class ExcelIngestion {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExcelIngestion.class);
+
+    public static final int TAMANHO_LOTE_PADRAO = 10_000;
+    private static final int LOG_A_CADA_LINHAS = 100_000;
+
+    private static final Pattern NAO_PERMITIDO_IRI = Pattern.compile("[^A-Za-z0-9 _-]");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+    private static final Pattern MARCAS_COMBINANTES = Pattern.compile("\\p{M}+");
+
+    // Colunas da planilha de cotações (cabeçalho da primeira linha) e os predicados correspondentes.
+    private static final String COL_DATA = "data_pregao";
+    private static final String COL_TICKER = "cod_negociacao";
+    private static final Map<String, Coluna> COLUNAS_VALOR = Map.of(
+            "preco_abertura", Coluna.ABERTURA,
+            "preco_ultimo_negocio", Coluna.FECHAMENTO,
+            "preco_maximo", Coluna.MAXIMO,
+            "preco_minimo", Coluna.MINIMO,
+            "preco_medio", Coluna.MEDIO,
+            "volume_total_negociado", Coluna.VOLUME,
+            "quantidade_papeis_negociados", Coluna.NEGOCIOS);
+
+    // Colunas da planilha de empresas. "Setor_Atuacao" aparece duas vezes: a primeira é uma
+    // fórmula que concatena as outras, por isso vale a última ocorrência do cabeçalho.
+    private static final String COL_EMPRESA = "Empresa Capital Aberto";
+    private static final String COL_CODIGO = "Codigo Negociacao";
+    private static final List<String> COLS_SETOR = List.of("Setor_Atuacao", "Setor_Atuacao2", "Setor_Atuacao3");
+
+    private static final Node TIPO = RDF.type.asNode();
+    private static final Node LABEL = RDFS.label.asNode();
+
+    /** Resultado de uma planilha ingerida. */
+    public record Estatisticas(String planilha, long linhas, long linhasIgnoradas, long triplas, long millis) {
+
+        public double linhasPorSegundo() {
+            return millis > 0 ? linhas * 1000.0 / millis : linhas;
+        }
+    }
+
+    private final int tamanhoLote;
+    private final Consumer<List<Triple>> destino;
+    private final List<Triple> lote;
+    private final Set<String> pregoesEmitidos = new HashSet<>();
+    private final Set<String> tickersEmitidos = new HashSet<>();
+    private final Set<String> setoresEmitidos = new HashSet<>();
+    private final Map<Coluna, Node> predicados = new EnumMap<>(Coluna.class);
+    private long triplasEmitidas;
+
+    /**
+     * @param tamanhoLote Número de triplas por lote entregue ao destino.
+     * @param destino Recebe cada lote; a lista é reaproveitada e não deve ser guardada.
+     */
+    public ExcelIngestion(int tamanhoLote, Consumer<List<Triple>> destino) {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("O tamanho do lote deve ser positivo: " + tamanhoLote);
+        }
+        this.tamanhoLote = tamanhoLote;
+        this.destino = destino;
+        this.lote = new ArrayList<>(tamanhoLote);
+        for (Coluna coluna : Coluna.values()) {
+            predicados.put(coluna, NodeFactory.createURI(coluna.getPredicado()));
+        }
+    }
+
+    /** Destino que grava cada lote no grafo padrão do dataset, um lote por transação de escrita. */
+    public static Consumer<List<Triple>> paraDataset(Dataset dataset) {
+        return triplas -> Txn.executeWrite(dataset, () -> {
+            Graph grafo = dataset.asDatasetGraph().getDefaultGraph();
+            triplas.forEach(grafo::add);
+        });
+    }
+
+    /** Destino que grava cada lote diretamente em um grafo sem transações (ex: o modelo de um delta). */
+    public static Consumer<List<Triple>> paraGrafo(Graph grafo) {
+        return triplas -> triplas.forEach(grafo::add);
+    }
+
+    /** Destino que repassa as triplas para um StreamRDF (ex: escritor de arquivo). */
+    public static Consumer<List<Triple>> paraStream(StreamRDF stream) {
+        return triplas -> triplas.forEach(stream::triple);
+    }
+
+    /** Ingere uma planilha de cotações diárias (uma linha por ticker e pregão). */
+    public Estatisticas ingerirCotacoes(Path xlsx) throws Exception {
+        return ingerir(xlsx, new Cotacoes());
+    }
+
+    /** Ingere a planilha de empresas (empresa, código de negociação e setores de atuação). */
+    public Estatisticas ingerirEmpresas(Path xlsx) throws Exception {
+        return ingerir(xlsx, new Empresas());
+    }
+
+    /** Entrega ao destino as triplas ainda pendentes no lote atual. */
+    public void flush() {
+        if (!lote.isEmpty()) {
+            destino.accept(lote);
+            lote.clear();
+        }
+    }
+
+    private Estatisticas ingerir(Path xlsx, ConversorLinhas conversor) throws Exception {
+        long inicio = System.nanoTime();
+        long triplasAntes = triplasEmitidas;
+        XlsxStreamReader.read(xlsx, (numero, celulas) -> {
+            if (!conversor.temCabecalho()) {
+                conversor.cabecalho(celulas);
+                return;
+            }
+            if (!conversor.converter(celulas)) {
+                conversor.ignoradas++;
+            }
+            conversor.linhas++;
+            if (conversor.linhas % LOG_A_CADA_LINHAS == 0) {
+                logger.info("Ingestão de '{}': {} linhas ({} linhas/s).", xlsx.getFileName(), conversor.linhas,
+                        String.format(Locale.ROOT, "%.0f", conversor.linhas * 1e9 / (System.nanoTime() - inicio)));
+            }
+        });
+        flush();
+        Estatisticas estatisticas = new Estatisticas(xlsx.getFileName().toString(), conversor.linhas,
+                conversor.ignoradas, triplasEmitidas - triplasAntes, (System.nanoTime() - inicio) / 1_000_000);
+        logger.info("Ingestão de '{}' concluída: {} linhas ({} ignoradas), {} triplas em {} ms ({} linhas/s).",
+                estatisticas.planilha(), estatisticas.linhas(), estatisticas.linhasIgnoradas(), estatisticas.triplas(),
+                estatisticas.millis(), String.format(Locale.ROOT, "%.0f", estatisticas.linhasPorSegundo()));
+        return estatisticas;
+    }
+
+    private void emitir(Node sujeito, Node predicado, Node objeto) {
+        lote.add(Triple.create(sujeito, predicado, objeto));
+        triplasEmitidas++;
+        if (lote.size() >= tamanhoLote) {
+            flush();
+        }
+    }
+
+    private abstract static class ConversorLinhas {
+        Map<String, Integer> colunas;
+        long linhas;
+        long ignoradas;
+
+        boolean temCabecalho() {
+            return colunas != null;
+        }
+
+        // Em cabeçalhos repetidos vale a última coluna.
+        void cabecalho(List<String> celulas) {
+            colunas = new HashMap<>();
+            for (int i = 0; i < celulas.size(); i++) {
+                if (celulas.get(i) != null) {
+                    colunas.put(celulas.get(i).trim(), i);
+                }
+            }
+            for (String obrigatoria : obrigatorias()) {
+                if (!colunas.containsKey(obrigatoria)) {
+                    throw new IllegalArgumentException("Coluna obrigatória '" + obrigatoria + "' não encontrada no cabeçalho.");
+                }
+            }
+        }
+
+        String celula(List<String> celulas, String nome) {
+            Integer i = colunas.get(nome);
+            if (i == null || i >= celulas.size() || celulas.get(i) == null) {
+                return null;
+            }
+            String valor = celulas.get(i).trim();
+            return valor.isEmpty() ? null : valor;
+        }
+
+        abstract List<String> obrigatorias();
+
+        /** Converte a linha em triplas; false se a linha não tem os dados mínimos e foi ignorada. */
+        abstract boolean converter(List<String> celulas);
+    }
+
+    private final class Cotacoes extends ConversorLinhas {
+
+        @Override
+        List<String> obrigatorias() {
+            return List.of(COL_DATA, COL_TICKER);
+        }
+
+        @Override
+        boolean converter(List<String> celulas) {
+            String ticker = celula(celulas, COL_TICKER);
+            String data = dataCompacta(celula(celulas, COL_DATA));
+            if (ticker == null || data == null) {
+                return false;
+            }
+            ticker = ticker.toUpperCase(Locale.ROOT);
+            Node pregao = iri("Pregao_" + data);
+            if (pregoesEmitidos.add(data)) {
+                emitir(pregao, TIPO, B3.Pregao.asNode());
+                String iso = data.substring(0, 4) + "-" + data.substring(4, 6) + "-" + data.substring(6, 8);
+                emitir(pregao, B3.ocorreEmData.asNode(), NodeFactory.createLiteral(iso, XSDDatatype.XSDdate));
+            }
+            Node valorMobiliario = iri(ticker);
+            if (tickersEmitidos.add(ticker)) {
+                emitir(valorMobiliario, TIPO, B3.Valor_Mobiliario.asNode());
+                emitir(valorMobiliario, LABEL, NodeFactory.createLiteral(ticker));
+            }
+            Node negociacao = iri(ticker + "_Negociado_" + data);
+            emitir(valorMobiliario, B3.negociado.asNode(), negociacao);
+            emitir(negociacao, TIPO, B3.Negociado_Em_Pregao.asNode());
+            emitir(negociacao, B3.negociadoDurante.asNode(), pregao);
+            for (Map.Entry<String, Coluna> coluna : COLUNAS_VALOR.entrySet()) {
+                Double valor = numero(celula(celulas, coluna.getKey()));
+                if (valor != null) {
+                    emitir(negociacao, predicados.get(coluna.getValue()),
+                            NodeFactory.createLiteral(Double.toString(valor), XSDDatatype.XSDdouble));
+                }
+            }
+            return true;
+        }
+    }
+
+    private final class Empresas extends ConversorLinhas {
+
+        @Override
+        List<String> obrigatorias() {
+            return List.of(COL_EMPRESA, COL_CODIGO);
+        }
+
+        @Override
+        boolean converter(List<String> celulas) {
+            String nome = celula(celulas, COL_EMPRESA);
+            String ticker = celula(celulas, COL_CODIGO);
+            if (nome == null || ticker == null) {
+                return false;
+            }
+            ticker = ticker.toUpperCase(Locale.ROOT);
+            Node empresa = iri(localName(nome));
+            Node valorMobiliario = iri(ticker);
+            emitir(empresa, TIPO, B3.Empresa_Capital_Aberto.asNode());
+            emitir(empresa, LABEL, NodeFactory.createLiteral(nome, "pt"));
+            emitir(empresa, B3.temValorMobiliarioNegociado.asNode(), valorMobiliario);
+            emitir(valorMobiliario, B3.ticker.asNode(), NodeFactory.createLiteral(ticker));
+            for (String colunaSetor : COLS_SETOR) {
+                String setor = celula(celulas, colunaSetor);
+                if (setor == null) {
+                    continue;
+                }
+                Node noSetor = iri(localName(setor));
+                emitir(empresa, B3.atuaEm.asNode(), noSetor);
+                if (setoresEmitidos.add(setor)) {
+                    emitir(noSetor, TIPO, B3.Setor_Atuacao.asNode());
+                    emitir(noSetor, LABEL, NodeFactory.createLiteral(setor, "pt"));
+                }
+            }
+            return true;
+        }
+    }
+
+    private static Node iri(String localName) {
+        return NodeFactory.createURI(B3.NS + localName);
+    }
+
+    /**
+     * Nome local de um IRI a partir de um rótulo, com a mesma regra usada na ontologia:
+     * sem acentos, só letras, dígitos, '_' e '-', espaços trocados por '_'
+     * (ex: "BCO SANTANDER (BRASIL) S.A." -> "BCO_SANTANDER_BRASIL_SA").
+     */
+    static String localName(String rotulo) {
+        String semAcentos = MARCAS_COMBINANTES.matcher(Normalizer.normalize(rotulo, Normalizer.Form.NFKD)).replaceAll("");
+        String limpo = NAO_PERMITIDO_IRI.matcher(semAcentos).replaceAll("").trim();
+        return ESPACOS.matcher(limpo).replaceAll("_");
+    }
+
+    /** Data do pregão como AAAAMMDD (aceita "20250602", "20250602.0" e "2025-06-02"); null se inválida. */
+    static String dataCompacta(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String digitos = valor.endsWith(".0") ? valor.substring(0, valor.length() - 2) : valor.replace("-", "");
+        return digitos.length() == 8 && digitos.chars().allMatch(Character::isDigit) ? digitos : null;
+    }
+
+    /** Valor numérico de uma célula (número cru ou texto com '.' ou ',' decimal); null se vazio ou inválido. */
+    static Double numero(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String normalizado = valor.indexOf('.') < 0 ? valor.replace(',', '.') : valor;
+        try {
+            return Double.parseDouble(normalizado);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gera um arquivo RDF a partir das planilhas, em streaming (o formato vem da extensão; RDF Thrift
+     * por padrão): {@code ExcelIngestion <saida> [--empresas <arquivo.xlsx>] <cotacoes.xlsx>...}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: ExcelIngestion <saida.rt|.nt|.ttl> [--empresas <arquivo.xlsx>] <cotacoes.xlsx>...");
+            System.exit(2);
+        }
+        Path saida = Paths.get(args[0]);
+        Path empresas = null;
+        List<Path> cotacoes = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if ("--empresas".equals(args[i]) && i + 1 < args.length) {
+                empresas = Paths.get(args[++i]);
+            } else {
+                cotacoes.add(Paths.get(args[i]));
+            }
+        }
+        Lang lang = RDFLanguages.filenameToLang(saida.toString(), Lang.RDFTHRIFT);
+        if (saida.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(saida.toAbsolutePath().getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(saida))) {
+            StreamRDF stream = StreamRDFWriter.getWriterStream(out, lang);
+            stream.start();
+            stream.prefix("b3", B3.NS);
+            stream.prefix("rdf", RDF.getURI());
+            stream.prefix("rdfs", RDFS.getURI());
+            ExcelIngestion ingestao = new ExcelIngestion(TAMANHO_LOTE_PADRAO, paraStream(stream));
+            if (empresas != null) {
+                ingestao.ingerirEmpresas(empresas);
+            }
+            for (Path planilha : cotacoes) {
+                ingestao.ingerirCotacoes(planilha);
+            }
+            stream.finish();
+            System.out.printf("Arquivo '%s' gerado com %d triplas.%n", saida, ingestao.triplasEmitidas);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grafo somente leitura publicado pelos acréscimos no modo "memory": o grafo carregado do Turtle
+ * mais as partes acrescentadas depois dele.
+ * <p>
+ * As partes são disjuntas entre si e do grafo carregado (Ontology.acrescentar só entrega triplas
+ * que o modelo ainda não tem), então find() apenas encadeia os iteradores, sem a verificação de
+ * duplicatas que o Union faz a cada resultado, e o tamanho é a soma mantida a cada acréscimo.
+ * <p>
+ * Cada acréscimo gera um grafo novo e nenhuma parte publicada é alterada (os leitores do estado
+ * anterior seguem nela). Para o número de partes não crescer com o número de acréscimos, uma
+ * parte nova absorve as anteriores que não sejam maiores que o dobro dela, como num LSM: cada
+ * tripla acrescentada é copiada O(log n) vezes, e o grafo carregado nunca.
+ */
+final class GrafoAcrescido extends GraphBase {
+
+    private final Graph base;
+    private final List<Graph> partes;
+    private final long tamanho;
+
+    private GrafoAcrescido(Graph base, List<Graph> partes, long tamanho) {
+        this.base = base;
+        this.partes = partes;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Grafo com 'novas' acrescentadas a 'anterior' (ou a 'base', no primeiro acréscimo).
+     *
+     * @param tamanhoBase número de triplas de 'base'
+     * @param novas       triplas que nem 'base' nem as partes de 'anterior' contêm
+     */
+    static GrafoAcrescido acrescentar(Graph base, long tamanhoBase, GrafoAcrescido anterior, Graph novas) {
+        List<Graph> partes = new ArrayList<>(anterior != null ? anterior.partes : List.of());
+        long tamanho = (anterior != null ? anterior.tamanho : tamanhoBase) + novas.size();
+        Graph parte = novas;
+        while (!partes.isEmpty() && partes.get(partes.size() - 1).size() <= 2L * parte.size()) {
+            Graph fundida = GraphFactory.createDefaultGraph();
+            GraphUtil.addInto(fundida, partes.remove(partes.size() - 1));
+            GraphUtil.addInto(fundida, parte);
+            parte = fundida;
+        }
+        partes.add(parte);
+        return new GrafoAcrescido(base, List.copyOf(partes), tamanho);
+    }
+
+    int numeroDePartes() {
+        return partes.size();
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(Triple padrao) {
+        ExtendedIterator<Triple> it = base.find(padrao);
+        for (Graph parte : partes) {
+            it = it.andThen(parte.find(padrao));
+        }
+        return it;
+    }
+
+    @Override
+    protected boolean graphBaseContains(Triple t) {
+        if (base.contains(t)) {
+            return true;
+        }
+        for (Graph parte : partes) {
+            if (parte.contains(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        return (int) Math.min(Integer.MAX_VALUE, tamanho);
+    }
+
+    @Override
+    protected PrefixMapping createPrefixMapping() {
+        return base.getPrefixMapping();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.Program.ontology;
+
+import com.example.Program.ontology.TimeSeriesIndex.Coluna;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agregados por (grupo de tickers, pregão) materializados a partir do TimeSeriesIndex:
+ * soma do volume financeiro e da quantidade de negócios. Um grupo é um setor ou uma lista
+ * de tickers de um índice (ex: IBOV). Somente leitura.
+ */
+public final class GroupAggregates {
+
+    /** Somas de um grupo, indexadas pelo id da data no TimeSeriesIndex de origem. */
+    public record Agregado(double[] volume, long[] negocios, int[] linhasVolume, int[] linhasNegocios) {
+
+        /** Soma do volume na data, ou null se nenhuma linha do grupo tem volume nessa data. */
+        public Double volume(int dateId) {
+            return linhasVolume[dateId] > 0 ? volume[dateId] : null;
+        }
+
+        /** Soma da quantidade de negócios na data, ou null se nenhuma linha do grupo tem o valor. */
+        public Long negocios(int dateId) {
+            return linhasNegocios[dateId] > 0 ? negocios[dateId] : null;
+        }
+    }
+
+    private final TimeSeriesIndex index;
+    // Máscara de cada grupo (ids de ticker deste índice), para comparar com a do próximo acréscimo.
+    private final Map<String, BitSet> mascaras;
+    private final Map<String, Agregado> grupos;
+
+    private GroupAggregates(TimeSeriesIndex index, Map<String, BitSet> mascaras, Map<String, Agregado> grupos) {
+        this.index = index;
+        this.mascaras = mascaras;
+        this.grupos = grupos;
+    }
+
+    /**
+     * Materializa os agregados de cada grupo (nome -> máscara de ids de ticker) em uma passada
+     * por pregão sobre as linhas do índice.
+     */
+    public static GroupAggregates build(TimeSeriesIndex index, Map<String, BitSet> mascaras) {
+        Map<String, Agregado> grupos = new HashMap<>(mascaras.size() * 2);
+        mascaras.forEach((nome, mascara) -> grupos.put(nome, agregar(index, mascara)));
+        return new GroupAggregates(index, Map.copyOf(mascaras), Collections.unmodifiableMap(grupos));
+    }
+
+    /**
+     * Agregados para 'novo', acrescido (TimeSeriesIndex.comAcrescimo) do índice destes: nos grupos
+     * cujos tickers já existentes não mudaram, os pregões preservados são copiados e só os novos
+     * são somados; os demais grupos (e todos, se 'novo' não preservou pregões deste índice) são
+     * recalculados inteiros.
+     */
+    public GroupAggregates comAcrescimo(TimeSeriesIndex novo, Map<String, BitSet> mascaras) {
+        int preservadas = novo.datasPreservadas() == index.dateCount() ? index.dateCount() : 0;
+        Map<String, Agregado> novosGrupos = new HashMap<>(mascaras.size() * 2);
+        mascaras.forEach((nome, mascara) -> {
+            Agregado anterior = grupos.get(nome);
+            novosGrupos.put(nome, preservadas > 0 && anterior != null && mesmosTickers(this.mascaras.get(nome), mascara, novo)
+                    ? agregar(novo, mascara, preservadas, anterior) : agregar(novo, mascara));
+        });
+        return new GroupAggregates(novo, Map.copyOf(mascaras), Collections.unmodifiableMap(novosGrupos));
+    }
+
+    /** true se, entre os tickers deste índice, 'mascara' (ids de 'novo') seleciona os mesmos que 'anterior'. */
+    private boolean mesmosTickers(BitSet anterior, BitSet mascara, TimeSeriesIndex novo) {
+        for (int t = 0; t < index.tickerCount(); t++) {
+            if (anterior.get(t) != mascara.get(novo.tickerId(index.ticker(t)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Soma as colunas VOLUME e NEGOCIOS, por pregão, das linhas cujos tickers estão na máscara. */
+    public static Agregado agregar(TimeSeriesIndex index, BitSet mascara) {
+        return agregar(index, mascara, 0, null);
+    }
+
+    /** Como agregar, copiando de 'anterior' as somas dos 'desde' primeiros pregões. */
+    private static Agregado agregar(TimeSeriesIndex index, BitSet mascara, int desde, Agregado anterior) {
+        int datas = index.dateCount();
+        double[] volume = anterior != null ? Arrays.copyOf(anterior.volume(), datas) : new double[datas];
+        long[] negocios = anterior != null ? Arrays.copyOf(anterior.negocios(), datas) : new long[datas];
+        int[] linhasVolume = anterior != null ? Arrays.copyOf(anterior.linhasVolume(), datas) : new int[datas];
+        int[] linhasNegocios = anterior != null ? Arrays.copyOf(anterior.linhasNegocios(), datas) : new int[datas];
+        double[] colunaVolume = index.column(Coluna.VOLUME);
+        long[] colunaNegocios = index.negocios();
+        for (int d = desde; d < datas; d++) {
+            for (int r = index.dateStart(d), fim = index.dateEnd(d); r < fim; r++) {
+                if (!mascara.get(index.rowTicker(r))) {
+                    continue;
+                }
+                if (!Double.isNaN(colunaVolume[r])) {
+                    volume[d] += colunaVolume[r];
+                    linhasVolume[d]++;
+                }
+                if (colunaNegocios[r] != TimeSeriesIndex.MISSING) {
+                    negocios[d] += colunaNegocios[r];
+                    linhasNegocios[d]++;
+                }
+            }
+        }
+        return new Agregado(volume, negocios, linhasVolume, linhasNegocios);
+    }
+
+    /** Índice a partir do qual os agregados foram calculados (os ids de data se referem a ele). */
+    public TimeSeriesIndex getIndex() {
+        return index;
+    }
+
+    /** Agregado do grupo, ou null se o grupo não foi materializado. */
+    public Agregado get(String grupo) {
+        return grupos.get(grupo);
+    }
+
+    public int size() {
+        return grupos.size();
+    }
+}
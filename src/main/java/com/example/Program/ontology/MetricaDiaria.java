@@ -0,0 +1,82 @@
+package com.example.Program.ontology;
+
+import com.example.Program.ontology.TimeSeriesIndex.Coluna;
+
+/**
+ * Métricas de um pregão calculáveis a partir do TimeSeriesIndex, com as mesmas fórmulas de
+ * SPARQLProcessor.getFormulaCalculo.
+ */
+public enum MetricaDiaria {
+    VARIACAO_ABS(true),
+    VARIACAO_PERC(true),
+    INTERVALO_ABS(true),
+    INTERVALO_PERC(true),
+    VOLUME(false),
+    NEGOCIOS(false),
+    PRECO_MEDIO(false),
+    PRECO_MAXIMO(false),
+    PRECO_MINIMO(false),
+    PRECO_FECHAMENTO(false),
+    PRECO_ABERTURA(false);
+
+    private final boolean calculada;
+
+    MetricaDiaria(boolean calculada) {
+        this.calculada = calculada;
+    }
+
+    /**
+     * true se o valor é o resultado de uma expressão (o Jena gera uma nova forma léxica),
+     * false se é um valor lido diretamente do grafo.
+     */
+    public boolean isCalculada() {
+        return calculada;
+    }
+
+    /** Métrica para uma chave de cálculo (ex: "variacao_perc", "volume"), ou null se não houver fórmula. */
+    public static MetricaDiaria fromCalculo(String calculoKey) {
+        if (calculoKey == null) {
+            return null;
+        }
+        return switch (calculoKey) {
+            case "variacao_abs", "variacao_abs_abs" -> VARIACAO_ABS;
+            case "variacao_perc" -> VARIACAO_PERC;
+            case "intervalo_abs" -> INTERVALO_ABS;
+            case "intervalo_perc" -> INTERVALO_PERC;
+            case "volume_financeiro", "volume" -> VOLUME;
+            case "quantidade_negocios", "quantidade" -> NEGOCIOS;
+            case "preco_medio" -> PRECO_MEDIO;
+            case "preco_maximo" -> PRECO_MAXIMO;
+            case "preco_minimo" -> PRECO_MINIMO;
+            case "preco_fechamento" -> PRECO_FECHAMENTO;
+            case "preco_abertura" -> PRECO_ABERTURA;
+            default -> null;
+        };
+    }
+
+    /**
+     * Valor da métrica na linha do índice (NaN se algum dado necessário estiver ausente).
+     * Métricas calculadas vêm dos valores materializados na construção do índice.
+     */
+    public double valor(TimeSeriesIndex index, int row) {
+        return calculada ? index.derivada(this)[row] : calcular(index, row);
+    }
+
+    double calcular(TimeSeriesIndex index, int row) {
+        return switch (this) {
+            case VARIACAO_ABS -> Math.abs(index.value(Coluna.FECHAMENTO, row) - index.value(Coluna.ABERTURA, row));
+            case VARIACAO_PERC -> ((index.value(Coluna.FECHAMENTO, row) - index.value(Coluna.ABERTURA, row))
+                    / index.value(Coluna.ABERTURA, row)) * 100;
+            case INTERVALO_ABS -> Math.abs(index.value(Coluna.MAXIMO, row) - index.value(Coluna.MINIMO, row));
+            case INTERVALO_PERC -> ((index.value(Coluna.MAXIMO, row) - index.value(Coluna.MINIMO, row))
+                    / index.value(Coluna.ABERTURA, row)) * 100;
+            case VOLUME -> index.value(Coluna.VOLUME, row);
+            case NEGOCIOS -> index.value(Coluna.NEGOCIOS, row);
+            case PRECO_MEDIO -> index.value(Coluna.MEDIO, row);
+            case PRECO_MAXIMO -> index.value(Coluna.MAXIMO, row);
+            case PRECO_MINIMO -> index.value(Coluna.MINIMO, row);
+            case PRECO_FECHAMENTO -> index.value(Coluna.FECHAMENTO, row);
+            case PRECO_ABERTURA -> index.value(Coluna.ABERTURA, row);
+        };
+    }
+}
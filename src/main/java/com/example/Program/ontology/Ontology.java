@@ -1,130 +1,636 @@
 package com.example.Program.ontology;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Componente responsável por carregar e gerenciar a ontologia da aplicação.
  * ESTA VERSÃO É OTIMIZADA PARA PRODUÇÃO: ela carrega um modelo pré-inferido
  * de um arquivo .ttl no classpath, evitando o custo de processamento de
  * arquivos Excel e inferência durante a inicialização.
+ * <p>
+ * O armazenamento é escolhido por 'ontology.storage': "memory" (padrão, grafo em heap) ou
+ * "tdb2" (dataset Jena TDB2 em disco, com arquivos mapeados em memória, para volumes maiores
+ * que o heap). Nos dois modos as consultas rodam em transações de leitura, que não bloqueiam
+ * umas às outras.
+ * <p>
+ * O dataset e os índices (séries temporais e pregões) formam um estado imutável publicado por troca
+ * atômica de referência. Uma recarga ou um acréscimo monta o novo estado à parte e só então o
+ * publica; cada consulta usa o estado que adquiriu no início, e o estado substituído é liberado
+ * quando o último leitor termina.
  */
 @Component
 public class Ontology {
 
     private static final Logger logger = LoggerFactory.getLogger(Ontology.class);
-    private Model model; // Modelo em memória que será carregado do arquivo
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Estado atual (dataset + índice); trocado inteiro a cada recarga ou acréscimo.
+    private final AtomicReference<Estado> estado = new AtomicReference<>();
+    private final ApplicationEventPublisher eventPublisher;
 
     // O nome do arquivo pré-calculado que deve estar em src/main/resources/
     private static final String PRECOMPUTED_ONTOLOGY_FILE = "ontology_inferred_final.ttl";
+    // Marcador gravado no diretório do TDB2 com o SHA-256 do Turtle que gerou o dataset.
+    private static final String MARCADOR_TDB2 = "source.sha256";
+
+    private static final String STORAGE_MEMORY = "memory";
+    private static final String STORAGE_TDB2 = "tdb2";
+
+    private final boolean snapshotEnabled;
+    private final Path snapshotPath;
+    private final String storage;
+    private final Path tdb2Location;
+    private final Path dataDir;
+    private final boolean compactionEnabled;
+
+    public Ontology(ApplicationEventPublisher eventPublisher,
+                    @Value("${ontology.snapshot.enabled:true}") boolean snapshotEnabled,
+                    @Value("${ontology.snapshot.path:data/ontology_inferred_final.rt}") String snapshotPath,
+                    @Value("${ontology.storage:memory}") String storage,
+                    @Value("${ontology.tdb2.location:data/tdb2}") String tdb2Location,
+                    @Value("${ontology.data-dir:}") String dataDir,
+                    @Value("${ontology.compaction.enabled:false}") boolean compactionEnabled) {
+        this.eventPublisher = eventPublisher;
+        this.snapshotEnabled = snapshotEnabled;
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.storage = storage.trim().toLowerCase();
+        this.tdb2Location = Paths.get(tdb2Location);
+        this.dataDir = dataDir == null || dataDir.isBlank() ? null : Paths.get(dataDir.trim());
+        this.compactionEnabled = compactionEnabled;
+        if (!STORAGE_MEMORY.equals(this.storage) && !STORAGE_TDB2.equals(this.storage)) {
+            throw new IllegalArgumentException("Valor inválido para ontology.storage: '" + storage + "' (use 'memory' ou 'tdb2').");
+        }
+    }
 
     /**
      * Método de inicialização executado pelo Spring Boot ao iniciar a aplicação.
-     * Carrega o modelo de ontologia pré-calculado.
+     * No modo "memory" carrega o modelo pré-calculado, preferindo o snapshot binário quando
+     * ele corresponde ao Turtle atual. No modo "tdb2" abre o dataset em disco e só o
+     * (re)constrói a partir do Turtle quando ele ainda não foi carregado ou está desatualizado.
      */
     @PostConstruct
     public void init() {
-        logger.info(">>> INICIANDO Inicialização do Componente Ontology (@PostConstruct)...");
-        lock.writeLock().lock();
+        logger.info(">>> INICIANDO Inicialização do Componente Ontology (@PostConstruct, armazenamento '{}')...", storage);
+        Estado inicial;
         try {
-            logger.info("--- Carregando modelo pré-inferido de '{}' para a memória...", PRECOMPUTED_ONTOLOGY_FILE);
-            
-            this.model = ModelFactory.createDefaultModel();
-            ClassPathResource resource = new ClassPathResource(PRECOMPUTED_ONTOLOGY_FILE);
-
-            // Tenta carregar o arquivo do classpath
-            try (InputStream in = resource.getInputStream()) {
-                if (in == null) {
-                    throw new IllegalStateException("Arquivo de ontologia '" + PRECOMPUTED_ONTOLOGY_FILE + "' não encontrado no classpath. Verifique se o arquivo está em 'src/main/resources/'.");
-                }
-                // Carrega o grafo completo diretamente para a memória.
-                // O RDFDataMgr é eficiente para esta tarefa.
-                RDFDataMgr.read(this.model, in, Lang.TURTLE);
-            }
-
-            if (this.model.isEmpty()) {
-                throw new IllegalStateException("FALHA CRÍTICA: O modelo pré-calculado foi carregado, mas está vazio.");
-            }
-            logger.info("<<< SUCESSO! Ontology inicializada com o modelo pré-calculado. Total de triplas: {} >>>", this.model.size());
-        
+            inicial = carregar(1);
+            estado.set(inicial);
+            logger.info("<<< SUCESSO! Ontology inicializada com o modelo pré-calculado. Total de triplas: {} >>>", inicial.triplas);
         } catch (Exception e) {
             logger.error("!!!!!!!! FALHA GRAVE E IRRECUPERÁVEL NA INICIALIZAÇÃO DA ONTOLOGY !!!!!!!!", e);
             throw new RuntimeException("Falha crítica ao carregar a ontologia pré-inferida.", e);
+        }
+        eventPublisher.publishEvent(new OntologyReloadedEvent(this, inicial.triplas));
+    }
+
+    /** Resultado de uma recarga. */
+    public record Recarga(long geracao, long triplas, long millis) {
+    }
+
+    /**
+     * Recarrega o modelo a partir do Turtle sem bloquear as consultas em andamento: o novo estado
+     * é montado à parte (no modo "tdb2", em uma transação de escrita que os leitores não enxergam
+     * até o commit) e publicado com uma única troca de referência. Os caches dependentes são
+     * invalidados pelo OntologyReloadedEvent. Se a carga falhar, o estado atual é mantido.
+     */
+    public synchronized Recarga recarregar() throws Exception {
+        long inicio = System.nanoTime();
+        Estado anterior = estado.get();
+        logger.info(">>> Recarregando a ontologia (geração atual: {})...", anterior != null ? anterior.geracao : 0);
+        Estado novo = carregar(anterior != null ? anterior.geracao + 1 : 1);
+        trocar(anterior, novo);
+        Recarga recarga = new Recarga(novo.geracao, novo.triplas, (System.nanoTime() - inicio) / 1_000_000);
+        logger.info("<<< Ontologia recarregada em {} ms: geração {}, {} triplas.", recarga.millis(), recarga.geracao(), recarga.triplas());
+        eventPublisher.publishEvent(new OntologyReloadedEvent(this, novo.triplas));
+        return recarga;
+    }
+
+    /** Monta um estado completo (dataset + índices) a partir do Turtle, sem publicá-lo. */
+    private Estado carregar(long geracao) throws Exception {
+        byte[] turtle = lerTurtle();
+        String checksum = OntologySnapshot.sha256(turtle);
+
+        Dataset carregado;
+        if (STORAGE_TDB2.equals(storage)) {
+            if (compactionEnabled) {
+                logger.info("ontology.compaction.enabled ignorado no modo tdb2 (o TDB2 já codifica os termos em dicionário).");
+            }
+            carregado = carregarTdb2(turtle, checksum);
+        } else if (compactionEnabled) {
+            carregado = DatasetFactory.wrap(carregarCompactado(turtle, checksum));
+        } else {
+            carregado = DatasetFactory.wrap(carregarMemoria(turtle, checksum));
+        }
+
+        long triplas = Txn.calculateRead(carregado, () -> carregado.getDefaultModel().size());
+        if (triplas == 0) {
+            throw new IllegalStateException("FALHA CRÍTICA: O modelo pré-calculado foi carregado, mas está vazio.");
+        }
+        TimeSeriesIndex index = Txn.calculateRead(carregado, () -> TimeSeriesIndex.build(carregado.getDefaultModel()));
+        PregaoIndex pregoes = Txn.calculateRead(carregado, () -> PregaoIndex.build(carregado.getDefaultModel()));
+        // No modo "memory" o grafo carregado é a base dos acréscimos (ver acrescentar).
+        Graph base = STORAGE_TDB2.equals(storage) ? null : carregado.getDefaultModel().getGraph();
+        return new Estado(carregado, base, null, index, pregoes, triplas, geracao);
+    }
+
+    /**
+     * Turtle de origem: o arquivo em 'ontology.data-dir', se existir, ou o do classpath.
+     */
+    private byte[] lerTurtle() throws IOException {
+        Path externo = getArquivoTurtleExterno();
+        if (externo != null && Files.isRegularFile(externo)) {
+            logger.info("--- Usando o Turtle de '{}'.", externo);
+            return Files.readAllBytes(externo);
+        }
+        ClassPathResource resource = new ClassPathResource(PRECOMPUTED_ONTOLOGY_FILE);
+        if (!resource.exists()) {
+            throw new IllegalStateException("Arquivo de ontologia '" + PRECOMPUTED_ONTOLOGY_FILE + "' não encontrado no classpath. Verifique se o arquivo está em 'src/main/resources/'.");
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /** Caminho do Turtle no diretório de dados (observado para recarga), ou null se não configurado. */
+    public Path getArquivoTurtleExterno() {
+        return dataDir != null ? dataDir.resolve(PRECOMPUTED_ONTOLOGY_FILE) : null;
+    }
+
+    /**
+     * Publica o novo estado e aposenta o anterior; o dataset anterior é fechado quando seus leitores
+     * terminam, a não ser que o novo o reaproveite (TDB2) ou compartilhe o grafo base (acréscimo em
+     * memória: fechar a união fecharia a base).
+     */
+    private void trocar(Estado anterior, Estado novo) {
+        estado.set(novo);
+        if (anterior == null) {
+            return;
+        }
+        if (anterior.dataset == novo.dataset || (anterior.base != null && anterior.base == novo.base)) {
+            anterior.aposentar(() -> { });
+        } else {
+            anterior.aposentar(() -> {
+                anterior.dataset.close();
+                logger.info("Estado da ontologia (geração {}) liberado após o término das consultas.", anterior.geracao);
+            });
+        }
+    }
+
+    /**
+     * Carrega o modelo completo e o substitui pela versão compactada (OntologyCompaction),
+     * registrando triplas e heap retido antes e depois. O snapshot continua sendo o do modelo completo.
+     */
+    private Model carregarCompactado(byte[] turtle, String checksum) throws IOException {
+        Set<Node> predicados = OntologyCompaction.predicadosDosPlaceholders();
+        long base = OntologyCompaction.heapRetido();
+        Model completo = carregarMemoria(turtle, checksum);
+        long heapCompleto = OntologyCompaction.heapRetido() - base;
+
+        OntologyCompaction.Resultado resultado = OntologyCompaction.compactar(completo, predicados);
+        // Libera as tabelas do grafo completo já aqui, sem esperar a referência sair de escopo.
+        completo.close();
+        long heapCompacto = OntologyCompaction.heapRetido() - base;
+
+        logger.info("--- Compactação: {} -> {} triplas, {} termos distintos no dicionário; heap retido {} KB -> {} KB.",
+                resultado.triplasAntes(), resultado.triplasDepois(), resultado.termosDistintos(),
+                heapCompleto / 1024, heapCompacto / 1024);
+        return resultado.model();
+    }
+
+    private Model carregarMemoria(byte[] turtle, String checksum) {
+        long inicio = System.nanoTime();
+        Model carregado = snapshotEnabled ? OntologySnapshot.load(snapshotPath, checksum) : null;
+        if (carregado != null) {
+            logger.info("--- Modelo carregado do snapshot binário '{}' em {} ms ({} triplas).",
+                    snapshotPath, (System.nanoTime() - inicio) / 1_000_000, carregado.size());
+            return carregado;
+        }
+        logger.info("--- Carregando modelo pré-inferido de '{}' para a memória...", PRECOMPUTED_ONTOLOGY_FILE);
+        inicio = System.nanoTime();
+        carregado = ModelFactory.createDefaultModel();
+        // Carrega o grafo completo diretamente para a memória.
+        // O RDFDataMgr é eficiente para esta tarefa.
+        RDFDataMgr.read(carregado, new ByteArrayInputStream(turtle), Lang.TURTLE);
+        logger.info("--- Turtle analisado em {} ms ({} triplas).", (System.nanoTime() - inicio) / 1_000_000, carregado.size());
+        if (snapshotEnabled && !carregado.isEmpty()) {
+            gravarSnapshot(carregado, checksum);
+        }
+        return carregado;
+    }
+
+    /**
+     * Abre o dataset TDB2. A carga a partir do Turtle acontece uma única vez: o marcador com o
+     * checksum do Turtle é gravado depois do commit, então uma carga interrompida é refeita no
+     * próximo boot.
+     */
+    private Dataset carregarTdb2(byte[] turtle, String checksum) throws IOException {
+        Files.createDirectories(tdb2Location);
+        Dataset tdb = TDB2Factory.connectDataset(tdb2Location.toString());
+        Path marcador = tdb2Location.resolve(MARCADOR_TDB2);
+        String checksumCarregado = Files.isRegularFile(marcador)
+                ? Files.readString(marcador, StandardCharsets.UTF_8).trim() : null;
+        if (checksum.equals(checksumCarregado)) {
+            logger.info("--- Dataset TDB2 em '{}' já contém o Turtle atual; carga ignorada.", tdb2Location);
+            return tdb;
+        }
+        logger.info("--- Construindo dataset TDB2 em '{}' a partir de '{}'...", tdb2Location, PRECOMPUTED_ONTOLOGY_FILE);
+        long inicio = System.nanoTime();
+        Files.deleteIfExists(marcador);
+        Txn.executeWrite(tdb, () -> {
+            tdb.getDefaultModel().removeAll();
+            RDFDataMgr.read(tdb, new ByteArrayInputStream(turtle), Lang.TURTLE);
+        });
+        Files.writeString(marcador, checksum, StandardCharsets.UTF_8);
+        logger.info("--- Dataset TDB2 carregado em {} ms.", (System.nanoTime() - inicio) / 1_000_000);
+        return tdb;
+    }
+
+    /**
+     * Resultado de um acréscimo incremental. 'triplasNovas' são as recebidas e inferidas que o
+     * modelo ainda não tinha (as únicas que entram nele); zero quando o acréscimo repete dados já
+     * carregados, caso em que nenhuma geração nova é publicada.
+     */
+    public record Acrescimo(long triplasRecebidas, long triplasInferidas, long triplasNovas, long totalTriplas, long millis) {
+    }
+
+    /**
+     * Acrescenta ao modelo carregado as triplas de novos pregões (ex: as linhas Negociado_Em_Pregao
+     * de um dia), sem refazer a inferência sobre os dados existentes: só as regras de
+     * {@link TargetedInference} são aplicadas, e só sobre o delta. Como na recarga, o novo estado é
+     * montado à parte e publicado com trocar.
+     * <p>
+     * O custo é proporcional ao delta, não ao modelo: as triplas recebidas e inferidas que o modelo
+     * já tem são descartadas, o total de triplas é o anterior mais as novas, os índices (séries
+     * temporais e pregões) só leem as novas, e o OntologyAppendedEvent (no lugar do
+     * OntologyReloadedEvent) permite aos derivados atualizar só os pregões e setores afetados.
+     * <p>
+     * No modo "tdb2" as triplas novas entram em uma transação de escrita, que não bloqueia os
+     * leitores (eles seguem na versão anterior até o commit), e o acréscimo é persistido. No modo
+     * "memory" o grafo publicado não é alterado — a escrita esperaria as consultas em andamento e
+     * bloquearia as novas —: o novo estado é um {@link GrafoAcrescido}, o grafo carregado mais as
+     * partes acrescentadas, sem cópia do grafo carregado. Os acréscimos valem até o próximo
+     * reinício ou recarga (o snapshot continua refletindo o Turtle).
+     */
+    public synchronized Acrescimo acrescentar(Model delta) {
+        Estado anterior = estado.get();
+        if (anterior == null) {
+            throw new IllegalStateException("A ontologia ainda não foi carregada.");
+        }
+        Dataset atual = anterior.dataset;
+        long inicio = System.nanoTime();
+        Graph novas = GraphFactory.createDefaultGraph();
+        Model inferidas = Txn.calculateRead(atual, () -> {
+            Graph grafo = atual.getDefaultModel().getGraph();
+            Model inferido = TargetedInference.inferir(delta, grafo);
+            acrescentarAusentes(novas, delta.getGraph(), grafo);
+            acrescentarAusentes(novas, inferido.getGraph(), grafo);
+            return inferido;
+        });
+        if (novas.isEmpty()) {
+            Acrescimo acrescimo = new Acrescimo(delta.size(), inferidas.size(), 0, anterior.triplas, (System.nanoTime() - inicio) / 1_000_000);
+            logger.info("Acréscimo incremental sem triplas novas ({} recebidas + {} inferidas já estavam no modelo).",
+                    acrescimo.triplasRecebidas(), acrescimo.triplasInferidas());
+            return acrescimo;
+        }
+
+        GrafoAcrescido acrescimos = anterior.base != null
+                ? GrafoAcrescido.acrescentar(anterior.base, anterior.triplas, anterior.acrescimos, novas) : null;
+        Dataset acrescido;
+        if (acrescimos == null) {
+            Txn.executeWrite(atual, () -> GraphUtil.addInto(atual.getDefaultModel().getGraph(), novas));
+            acrescido = atual;
+        } else {
+            acrescido = DatasetFactory.wrap(ModelFactory.createModelForGraph(acrescimos));
+        }
+        Model deltaNovo = ModelFactory.createModelForGraph(novas);
+        long total = anterior.triplas + novas.size();
+        Estado novo = Txn.calculateRead(acrescido, () -> new Estado(acrescido, anterior.base, acrescimos,
+                anterior.index.comAcrescimo(deltaNovo, acrescido.getDefaultModel()), anterior.pregoes.comAcrescimo(deltaNovo),
+                total, anterior.geracao + 1));
+        trocar(anterior, novo);
+        Acrescimo acrescimo = new Acrescimo(delta.size(), inferidas.size(), novas.size(), total, (System.nanoTime() - inicio) / 1_000_000);
+        logger.info("Acréscimo incremental: {} triplas recebidas + {} inferidas, {} novas, em {} ms (total: {} triplas{}).",
+                acrescimo.triplasRecebidas(), acrescimo.triplasInferidas(), acrescimo.triplasNovas(), acrescimo.millis(), total,
+                acrescimos != null ? ", " + acrescimos.numeroDePartes() + " parte(s) acrescentada(s)" : "");
+        eventPublisher.publishEvent(new OntologyAppendedEvent(this, novo.geracao, total, novas, anterior.index, novo.index));
+        return acrescimo;
+    }
+
+    /** Copia para 'destino' as triplas de 'origem' que 'modelo' não contém. */
+    private static void acrescentarAusentes(Graph destino, Graph origem, Graph modelo) {
+        ExtendedIterator<Triple> it = origem.find();
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                if (!modelo.contains(t)) {
+                    destino.add(t);
+                }
+            }
         } finally {
-            lock.writeLock().unlock();
+            it.close();
         }
     }
 
+    /** Lê uma planilha de cotações (ver ExcelIngestion) e acrescenta os seus pregões ao modelo. */
+    public Acrescimo acrescentarPlanilha(Path xlsx) throws Exception {
+        Model delta = ModelFactory.createDefaultModel();
+        new ExcelIngestion(ExcelIngestion.TAMANHO_LOTE_PADRAO, ExcelIngestion.paraGrafo(delta.getGraph())).ingerirCotacoes(xlsx);
+        return acrescentar(delta);
+    }
+
     /**
-     * Executa uma consulta SPARQL contra o modelo em memória.
+     * Lê triplas em Turtle (ex: as de um pregão) e as acrescenta ao modelo.
+     *
+     * @throws org.apache.jena.riot.RiotException se o Turtle for inválido
+     */
+    public Acrescimo acrescentarTurtle(InputStream turtle) {
+        Model delta = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(delta, turtle, Lang.TURTLE);
+        return acrescentar(delta);
+    }
+
+    // Falhar ao gravar o snapshot não impede a inicialização; o próximo boot tenta de novo.
+    private void gravarSnapshot(Model carregado, String checksum) {
+        long inicio = System.nanoTime();
+        try {
+            OntologySnapshot.write(carregado, snapshotPath, checksum);
+            logger.info("--- Snapshot binário gravado em '{}' em {} ms.", snapshotPath, (System.nanoTime() - inicio) / 1_000_000);
+        } catch (Exception e) {
+            logger.warn("Não foi possível gravar o snapshot binário em '{}': {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        Estado atual = estado.get();
+        if (atual != null) {
+            atual.dataset.close();
+        }
+    }
+
+    /**
+     * Executa uma consulta SPARQL contra o modelo carregado.
      * @param sparqlQuery A consulta a ser executada.
      * @return Uma lista de mapas representando as linhas de resultado.
      */
     public List<Map<String, String>> executeQuery(String sparqlQuery) {
-        lock.readLock().lock();
         try {
-            if (this.model == null) {
-                logger.error("Tentativa de executar consulta em um modelo nulo.");
-                return Collections.emptyList();
-            }
-            
-            List<Map<String, String>> resultsList = new ArrayList<>();
-            Query query = QueryFactory.create(sparqlQuery);
-
-            try (QueryExecution qexec = QueryExecutionFactory.create(query, this.model)) {
-                ResultSet rs = qexec.execSelect();
-                List<String> resultVars = rs.getResultVars();
-                
-                while (rs.hasNext()) {
-                    QuerySolution soln = rs.nextSolution();
-                    Map<String, String> rowMap = new LinkedHashMap<>();
-                    for (String varName : resultVars) {
-                        RDFNode node = soln.get(varName);
-                        String value = "N/A";
-                        if (node != null) {
-                            if (node.isLiteral()) {
-                                value = node.asLiteral().getLexicalForm();
-                            } else {
-                                value = node.toString();
-                            }
-                        }
-                        rowMap.put(varName, value);
-                    }
-                    resultsList.add(rowMap);
-                }
-            }
-            logger.info("Consulta retornou {} resultados.", resultsList.size());
-            return resultsList;
+            return executeQuery(QueryFactory.create(sparqlQuery), Collections.emptyMap());
         } catch (Exception e) {
-            logger.error("Erro durante a execução da consulta SPARQL.", e);
+            logger.error("Erro durante a análise da consulta SPARQL.", e);
             return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Executa uma consulta já analisada, substituindo as variáveis de 'parametros' pelos nós
+     * informados antes da avaliação. O objeto Query não é alterado e pode ser reutilizado.
+     * A avaliação roda dentro de uma transação de leitura.
+     * @param query A consulta preparada.
+     * @param parametros Valores das variáveis ?param_* (nome da variável sem '?').
+     * @return Uma lista de mapas representando as linhas de resultado.
+     */
+    public List<Map<String, String>> executeQuery(Query query, Map<String, Node> parametros) {
+        return executeTable(query, parametros).comoMapas();
+    }
+
+    /**
+     * Como executeQuery, mas com o resultado tipado: literais numéricos chegam como double, sem
+     * passar pela forma léxica (ver ResultTable). Falhas são registradas e resultam em tabela vazia.
+     */
+    public ResultTable executeTable(Query query, Map<String, Node> parametros) {
+        try {
+            return executeTable(query, parametros, 0, 0);
+        } catch (QueryCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Erro durante a execução da consulta SPARQL.", e);
+            return ResultTable.vazia();
+        }
+    }
+
+    /**
+     * Como acima, com limites: 'timeoutMillis' > 0 é o tempo máximo da execução, depois do qual o
+     * Jena cancela a avaliação e a QueryCancelledException é propagada; 'maxLinhas' > 0 para a
+     * leitura nessa quantidade de linhas (ver ResultTable.isTruncada). Aqui nenhuma falha vira
+     * tabela vazia: quem chama (e o cache de resultados) não confunde erro com resultado.
+     *
+     * @throws IllegalStateException se a ontologia ainda não foi carregada
+     */
+    public ResultTable executeTable(Query query, Map<String, Node> parametros, long timeoutMillis, long maxLinhas) {
+        ResultTable tabela = executeQuery(query, parametros, timeoutMillis, rs -> ResultTable.ler(rs, maxLinhas));
+        logger.debug("Consulta retornou {} resultados.", tabela.linhas());
+        return tabela;
+    }
+
+    /**
+     * Executa uma consulta já analisada e entrega o ResultSet a 'leitura', dentro da transação de
+     * leitura, sem materializar as linhas: quem lê decide o que guardar (ex: escrever cada linha
+     * direto na resposta). O ResultSet não deve escapar da função. Erros são propagados.
+     *
+     * @throws IllegalStateException se a ontologia ainda não foi carregada
+     */
+    public <T> T executeQuery(Query query, Map<String, Node> parametros, Function<ResultSet, T> leitura) {
+        return executeQuery(query, parametros, 0, leitura);
+    }
+
+    /**
+     * Como acima, com tempo máximo: passados 'timeoutMillis' (> 0) desde o início, o Jena cancela a
+     * avaliação e a leitura recebe QueryCancelledException; a transação e o estado são liberados.
+     */
+    public <T> T executeQuery(Query query, Map<String, Node> parametros, long timeoutMillis, Function<ResultSet, T> leitura) {
+        Estado adquirido = adquirir();
+        if (adquirido == null) {
+            throw new IllegalStateException("A ontologia ainda não foi carregada.");
+        }
+        Dataset atual = adquirido.dataset;
+        try {
+            BindingBuilder substituicoes = Binding.builder();
+            parametros.forEach((nome, valor) -> substituicoes.add(Var.alloc(nome), valor));
+            Binding substituicao = substituicoes.build();
+
+            return Txn.calculateRead(atual, () -> {
+                QueryExecutionBuilder builder = QueryExecution.create().query(query).dataset(atual)
+                        .substitution(substituicao);
+                if (timeoutMillis > 0) {
+                    builder.timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                try (QueryExecution qexec = builder.build()) {
+                    return leitura.apply(qexec.execSelect());
+                }
+            });
+        } finally {
+            adquirido.liberar();
+        }
+    }
+
+    /**
+     * true quando o armazenamento devolve literais numéricos na forma canônica em vez da forma
+     * léxica do Turtle. O TDB2 guarda xsd:double/xsd:integer embutidos no NodeId, então
+     * "13.91"^^xsd:double volta como "13.91e0".
+     */
+    public boolean isLiteraisCanonicos() {
+        return STORAGE_TDB2.equals(storage);
+    }
+
+    /**
+     * Índice colunar das cotações diárias do modelo atual (consultas pontuais e varreduras por pregão
+     * sem passar pelo Jena).
+     */
+    public TimeSeriesIndex getTimeSeriesIndex() {
+        Estado atual = estado.get();
+        return atual != null ? atual.index : null;
+    }
+
+    /** Pregões do modelo atual ordenados por data (consultas de período). */
+    public PregaoIndex getPregaoIndex() {
+        Estado atual = estado.get();
+        return atual != null ? atual.pregoes : null;
+    }
+
+    /**
+     * Executa 'leitura' sobre o modelo carregado dentro de uma transação de leitura. O modelo
+     * não deve ser usado fora da função (no modo TDB2 ele só é válido dentro da transação).
+     * Útil para o endpoint de debug.
+     */
+    public <T> T readModel(Function<Model, T> leitura) {
+        Estado adquirido = adquirir();
+        if (adquirido == null) {
+            throw new IllegalStateException("A ontologia ainda não foi carregada.");
+        }
+        try {
+            Dataset atual = adquirido.dataset;
+            return Txn.calculateRead(atual, () -> leitura.apply(atual.getDefaultModel()));
         } finally {
-            lock.readLock().unlock();
+            adquirido.liberar();
         }
     }
 
     /**
-     * Retorna o modelo carregado. Útil para o endpoint de debug.
-     * @return O modelo Jena carregado.
+     * Como {@link #readModel(Function)}, passando também a geração do estado lido: quem guarda o
+     * resultado da leitura sabe exatamente a que versão do modelo ele corresponde.
      */
-    public Model getInferredModel() {
-        return this.model;
+    public <T> T readModelComGeracao(BiFunction<Model, Long, T> leitura) {
+        Estado adquirido = adquirir();
+        if (adquirido == null) {
+            throw new IllegalStateException("A ontologia ainda não foi carregada.");
+        }
+        try {
+            Dataset atual = adquirido.dataset;
+            return Txn.calculateRead(atual, () -> leitura.apply(atual.getDefaultModel(), adquirido.geracao));
+        } finally {
+            adquirido.liberar();
+        }
+    }
+
+    /** Geração do estado atual (incrementada a cada recarga ou acréscimo). */
+    public long getGeracao() {
+        Estado atual = estado.get();
+        return atual != null ? atual.geracao : 0;
+    }
+
+    /**
+     * Adquire o estado atual para uma leitura. O contador de leitores é incrementado antes de
+     * confirmar que o estado ainda é o publicado; se houve troca no meio, tenta de novo.
+     */
+    private Estado adquirir() {
+        while (true) {
+            Estado atual = estado.get();
+            if (atual == null) {
+                return null;
+            }
+            atual.leitores.incrementAndGet();
+            if (estado.get() == atual) {
+                return atual;
+            }
+            atual.liberar();
+        }
+    }
+
+    /**
+     * Estado imutável publicado: dataset, índices e contagem de triplas. Depois de aposentado,
+     * a ação de liberação roda uma única vez, quando o último leitor terminar.
+     */
+    private static final class Estado {
+        final Dataset dataset;
+        // Modo "memory": grafo carregado do Turtle e acréscimos feitos sobre ele (null sem acréscimos).
+        final Graph base;
+        final GrafoAcrescido acrescimos;
+        final TimeSeriesIndex index;
+        final PregaoIndex pregoes;
+        final long triplas;
+        final long geracao;
+        final AtomicInteger leitores = new AtomicInteger();
+        private final AtomicBoolean liberado = new AtomicBoolean();
+        private volatile Runnable aoLiberar;
+        private volatile boolean aposentado;
+
+        Estado(Dataset dataset, Graph base, GrafoAcrescido acrescimos, TimeSeriesIndex index, PregaoIndex pregoes, long triplas, long geracao) {
+            this.dataset = dataset;
+            this.base = base;
+            this.acrescimos = acrescimos;
+            this.index = index;
+            this.pregoes = pregoes;
+            this.triplas = triplas;
+            this.geracao = geracao;
+        }
+
+        void liberar() {
+            if (leitores.decrementAndGet() == 0 && aposentado) {
+                finalizar();
+            }
+        }
+
+        void aposentar(Runnable acao) {
+            this.aoLiberar = acao;
+            this.aposentado = true;
+            if (leitores.get() == 0) {
+                finalizar();
+            }
+        }
+
+        private void finalizar() {
+            if (liberado.compareAndSet(false, true)) {
+                aoLiberar.run();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.graph.Graph;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Publicado a cada acréscimo incremental (Ontology.acrescentar), no lugar do OntologyReloadedEvent:
+ * o modelo anterior continua valendo e só 'novas' entrou nele. Quem deriva estruturas do modelo
+ * pode atualizá-las só com o delta em vez de reconstruí-las.
+ * <p>
+ * 'novas' traz só as triplas que o modelo ainda não tinha (recebidas e inferidas) e não é alterado
+ * depois da publicação. Os índices de antes e depois do acréscimo permitem reaproveitar o que foi
+ * calculado sobre o anterior: os primeiros {@link TimeSeriesIndex#datasPreservadas()} pregões do
+ * novo são os do anterior, com as mesmas linhas.
+ */
+public class OntologyAppendedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long geracao;
+    private final long tripleCount;
+    private final transient Graph novas;
+    private final transient TimeSeriesIndex indexAnterior;
+    private final transient TimeSeriesIndex index;
+
+    public OntologyAppendedEvent(Object source, long geracao, long tripleCount, Graph novas,
+                                 TimeSeriesIndex indexAnterior, TimeSeriesIndex index) {
+        super(source);
+        this.geracao = geracao;
+        this.tripleCount = tripleCount;
+        this.novas = novas;
+        this.indexAnterior = indexAnterior;
+        this.index = index;
+    }
+
+    /** Geração publicada pelo acréscimo (a anterior é geracao - 1). */
+    public long getGeracao() {
+        return geracao;
+    }
+
+    public long getTripleCount() {
+        return tripleCount;
+    }
+
+    public Graph getNovas() {
+        return novas;
+    }
+
+    public TimeSeriesIndex getIndexAnterior() {
+        return indexAnterior;
+    }
+
+    public TimeSeriesIndex getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Compactação do modelo carregado em memória (modo "memory" com 'ontology.compaction.enabled'):
+ * <ul>
+ *   <li>mantém só as triplas dos predicados declarados em placeholders.properties (P* e D*) e
+ *       os rdf:type dos recursos alcançados por eles, quando a classe é do domínio (não do
+ *       vocabulário RDF/RDFS). O restante é entailment RDFS de esquema (ex: rdf:first rdf:type
+ *       rdf:Property) que nenhum template consulta;</li>
+ *   <li>interna IRIs e literais em um dicionário: cada termo distinto passa a ser um único Node
+ *       compartilhado por todas as triplas em que aparece.</li>
+ * </ul>
+ */
+public final class OntologyCompaction {
+
+    private static final String PLACEHOLDERS = "placeholders.properties";
+    private static final Pattern CHAVE_PREDICADO = Pattern.compile("^[PD]\\d+$");
+    private static final Node TIPO = RDF.type.asNode();
+
+    /** Resultado da compactação, para o log de inicialização. */
+    public record Resultado(Model model, long triplasAntes, long triplasDepois, int termosDistintos) {
+    }
+
+    private OntologyCompaction() {
+    }
+
+    /**
+     * IRIs dos predicados P* e D* de placeholders.properties, com os prefixos expandidos.
+     */
+    public static Set<Node> predicadosDosPlaceholders() throws IOException {
+        Properties placeholders = new Properties();
+        try (InputStream in = new ClassPathResource(PLACEHOLDERS).getInputStream()) {
+            placeholders.load(in);
+        }
+        Set<Node> predicados = new HashSet<>();
+        for (String chave : placeholders.stringPropertyNames()) {
+            if (!CHAVE_PREDICADO.matcher(chave).matches()) {
+                continue;
+            }
+            String valor = placeholders.getProperty(chave).trim();
+            int doisPontos = valor.indexOf(':');
+            String namespace = doisPontos > 0 ? placeholders.getProperty("prefix." + valor.substring(0, doisPontos)) : null;
+            if (namespace == null) {
+                throw new IllegalStateException("Prefixo não declarado em " + PLACEHOLDERS + " para " + chave + " = " + valor);
+            }
+            predicados.add(NodeFactory.createURI(namespace.trim() + valor.substring(doisPontos + 1)));
+        }
+        return predicados;
+    }
+
+    /**
+     * Novo modelo com as triplas relevantes de 'origem' e os termos internados. 'origem' não é alterado.
+     */
+    public static Resultado compactar(Model origem, Set<Node> predicados) {
+        Graph fonte = origem.getGraph();
+        Set<Node> alcancados = recursosAlcancados(fonte, predicados);
+        Map<Node, Node> dicionario = new HashMap<>();
+        Graph destino = GraphFactory.createGraphMem();
+
+        ExtendedIterator<Triple> it = fonte.find();
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                Node p = t.getPredicate();
+                boolean manter = predicados.contains(p)
+                        || (p.equals(TIPO) && alcancados.contains(t.getSubject()) && classeDoDominio(t.getObject()));
+                if (manter) {
+                    destino.add(Triple.create(internar(dicionario, t.getSubject()), internar(dicionario, p),
+                            internar(dicionario, t.getObject())));
+                }
+            }
+        } finally {
+            it.close();
+        }
+        Model compacto = ModelFactory.createModelForGraph(destino);
+        compacto.setNsPrefixes(origem.getNsPrefixMap());
+        return new Resultado(compacto, fonte.size(), destino.size(), dicionario.size());
+    }
+
+    /** Sujeitos e objetos (IRIs) das triplas dos predicados mantidos. */
+    private static Set<Node> recursosAlcancados(Graph fonte, Set<Node> predicados) {
+        Set<Node> recursos = new HashSet<>();
+        for (Node predicado : predicados) {
+            ExtendedIterator<Triple> it = fonte.find(Node.ANY, predicado, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    recursos.add(t.getSubject());
+                    if (t.getObject().isURI()) {
+                        recursos.add(t.getObject());
+                    }
+                }
+            } finally {
+                it.close();
+            }
+        }
+        return recursos;
+    }
+
+    // rdfs:Resource, rdf:Property etc. são entailments genéricos, não classes usadas pelas consultas.
+    private static boolean classeDoDominio(Node classe) {
+        if (!classe.isURI()) {
+            return false;
+        }
+        String iri = classe.getURI();
+        return !iri.startsWith(RDF.getURI()) && !iri.startsWith(RDFS.getURI());
+    }
+
+    private static Node internar(Map<Node, Node> dicionario, Node termo) {
+        Node existente = dicionario.putIfAbsent(termo, termo);
+        return existente != null ? existente : termo;
+    }
+
+    /**
+     * Heap em uso depois de uma coleta completa, em bytes. Aproximado (System.gc é uma sugestão),
+     * usado só para o relatório de antes/depois da compactação.
+     */
+    public static long heapRetido() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
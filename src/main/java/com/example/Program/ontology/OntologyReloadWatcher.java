@@ -0,0 +1,126 @@
+package com.example.Program.ontology;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Observa o diretório 'ontology.data-dir' e recarrega a ontologia quando o Turtle
+ * (ontology_inferred_final.ttl) é criado ou alterado. Os eventos são agrupados por um intervalo
+ * de espera ('ontology.reload.debounce'), já que copiar um arquivo grande gera várias
+ * notificações. Sem diretório configurado, o observador fica desligado.
+ */
+@Component
+public class OntologyReloadWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OntologyReloadWatcher.class);
+
+    private final Ontology ontology;
+    private final boolean enabled;
+    private final Duration debounce;
+    private WatchService watchService;
+    private ScheduledExecutorService agendador;
+    private ScheduledFuture<?> recargaPendente;
+
+    public OntologyReloadWatcher(Ontology ontology,
+                                 @Value("${ontology.reload.watch:true}") boolean enabled,
+                                 @Value("${ontology.reload.debounce:2s}") Duration debounce) {
+        this.ontology = ontology;
+        this.enabled = enabled;
+        this.debounce = debounce;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path arquivo = ontology.getArquivoTurtleExterno();
+        if (!enabled || arquivo == null) {
+            logger.info("Observador de recarga da ontologia desligado (ontology.data-dir não configurado).");
+            return;
+        }
+        Path dir = arquivo.toAbsolutePath().getParent();
+        if (dir == null || !dir.toFile().isDirectory()) {
+            logger.warn("Diretório de dados '{}' não existe; a recarga automática fica desligada.", dir);
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ontology-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        Thread observador = new Thread(() -> observar(arquivo.getFileName()), "ontology-watch");
+        observador.setDaemon(true);
+        observador.start();
+        logger.info("Observando '{}' para recarga da ontologia (espera de {} ms).", arquivo, debounce.toMillis());
+    }
+
+    private void observar(Path nomeArquivo) {
+        try {
+            while (true) {
+                WatchKey chave = watchService.take();
+                boolean alterado = false;
+                for (WatchEvent<?> evento : chave.pollEvents()) {
+                    if (evento.context() instanceof Path nome && nome.equals(nomeArquivo)) {
+                        alterado = true;
+                    } else if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        alterado = true;
+                    }
+                }
+                if (alterado) {
+                    agendarRecarga();
+                }
+                if (!chave.reset()) {
+                    logger.warn("Diretório de dados deixou de ser acessível; a recarga automática foi interrompida.");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Encerramento da aplicação.
+        }
+    }
+
+    /** Reinicia a espera a cada notificação; a recarga só roda depois de 'debounce' sem alterações. */
+    private synchronized void agendarRecarga() {
+        if (recargaPendente != null) {
+            recargaPendente.cancel(false);
+        }
+        recargaPendente = agendador.schedule(this::recarregar, debounce.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void recarregar() {
+        try {
+            ontology.recarregar();
+        } catch (Exception e) {
+            // O estado anterior continua publicado; a próxima alteração do arquivo tenta de novo.
+            logger.error("Falha ao recarregar a ontologia após alteração do arquivo; o modelo atual foi mantido.", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.Program.ontology;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Publicado sempre que o modelo da Ontology é (re)carregado. Caches que dependem do
+ * conteúdo do modelo devem ser invalidados ao recebê-lo. Os acréscimos incrementais publicam
+ * OntologyAppendedEvent.
+ */
+public class OntologyReloadedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long tripleCount;
+
+    public OntologyReloadedEvent(Object source, long tripleCount) {
+        super(source);
+        this.tripleCount = tripleCount;
+    }
+
+    public long getTripleCount() {
+        return tripleCount;
+    }
+}
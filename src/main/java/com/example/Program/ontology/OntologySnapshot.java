@@ -0,0 +1,185 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * Snapshot binário (RDF Thrift) do modelo pré-inferido, para evitar o parse do Turtle a cada
+ * inicialização. Ao lado do snapshot fica um arquivo ".checksum" com o SHA-256 do Turtle de
+ * origem (detecta snapshot desatualizado) e o SHA-256 do próprio snapshot (detecta arquivo
+ * corrompido ou truncado).
+ * <p>
+ * Pode ser gerado na inicialização (pela Ontology) ou no build, pelo main desta classe:
+ * {@code OntologySnapshot <arquivo.ttl> <snapshot.rt>}.
+ */
+public final class OntologySnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(OntologySnapshot.class);
+
+    private static final String FORMATO = "RDF_THRIFT";
+    private static final String SUFIXO_CHECKSUM = ".checksum";
+
+    private OntologySnapshot() {
+    }
+
+    /** SHA-256 em hexadecimal. */
+    public static String sha256(byte[] dados) {
+        MessageDigest digest = novoDigest();
+        digest.update(dados);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível na JVM.", e);
+        }
+    }
+
+    /**
+     * Carrega o snapshot se ele existir, for do Turtle com o checksum informado e estiver íntegro.
+     * O arquivo é lido por memória mapeada. Retorna null quando o snapshot não pode ser usado.
+     */
+    public static Model load(Path snapshot, String checksumOrigem) {
+        Path arquivoChecksum = checksumPath(snapshot);
+        if (!Files.isRegularFile(snapshot) || !Files.isRegularFile(arquivoChecksum)) {
+            logger.info("Snapshot binário '{}' não encontrado.", snapshot);
+            return null;
+        }
+        try {
+            Properties meta = new Properties();
+            try (Reader in = Files.newBufferedReader(arquivoChecksum, StandardCharsets.UTF_8)) {
+                meta.load(in);
+            }
+            if (!FORMATO.equals(meta.getProperty("format")) || !checksumOrigem.equals(meta.getProperty("source.sha256"))) {
+                logger.info("Snapshot binário '{}' desatualizado em relação ao Turtle; será regenerado.", snapshot);
+                return null;
+            }
+            try (FileChannel canal = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                MappedByteBuffer mapeado = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                MessageDigest digest = novoDigest();
+                digest.update(mapeado.duplicate());
+                if (!HexFormat.of().formatHex(digest.digest()).equals(meta.getProperty("snapshot.sha256"))) {
+                    logger.warn("Checksum do snapshot binário '{}' não confere; o arquivo será ignorado.", snapshot);
+                    return null;
+                }
+                Model model = ModelFactory.createDefaultModel();
+                RDFDataMgr.read(model, new ByteBufferInputStream(mapeado), Lang.RDFTHRIFT);
+                return model;
+            }
+        } catch (Exception e) {
+            logger.warn("Falha ao ler o snapshot binário '{}': {}", snapshot, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Grava o modelo em RDF Thrift e o arquivo de checksum. A escrita é feita em arquivos
+     * temporários e movida no final, para que um processo interrompido não deixe um snapshot parcial.
+     */
+    public static void write(Model model, Path snapshot, String checksumOrigem) throws IOException {
+        Path dir = snapshot.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path temporario = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporario))) {
+                RDFDataMgr.write(out, model, Lang.RDFTHRIFT);
+            }
+            Properties meta = new Properties();
+            meta.setProperty("format", FORMATO);
+            meta.setProperty("source.sha256", checksumOrigem);
+            meta.setProperty("snapshot.sha256", sha256(Files.readAllBytes(temporario)));
+            meta.setProperty("triples", Long.toString(model.size()));
+            Path checksumTemporario = Files.createTempFile(dir, snapshot.getFileName().toString(), ".checksum.tmp");
+            try (Writer w = Files.newBufferedWriter(checksumTemporario, StandardCharsets.UTF_8)) {
+                meta.store(w, "Snapshot do modelo pre-inferido");
+            }
+            // O checksum é movido por último: sem ele, o snapshot não é considerado válido.
+            Files.deleteIfExists(checksumPath(snapshot));
+            Files.move(temporario, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(checksumTemporario, checksumPath(snapshot), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    private static Path checksumPath(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + SUFIXO_CHECKSUM);
+    }
+
+    /**
+     * Gera o snapshot no build: {@code OntologySnapshot <arquivo.ttl> <snapshot.rt>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: OntologySnapshot <arquivo.ttl> <snapshot.rt>");
+            System.exit(2);
+        }
+        byte[] turtle = Files.readAllBytes(Paths.get(args[0]));
+        long inicio = System.nanoTime();
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(turtle), Lang.TURTLE);
+        write(model, Paths.get(args[1]), sha256(turtle));
+        System.out.printf("Snapshot '%s' gerado com %d triplas em %d ms.%n", args[1], model.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /** InputStream sobre um ByteBuffer (usado com o arquivo mapeado em memória). */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Índice ordenado dos pregões do modelo carregado: ?S2 b3:ocorreEmData ?data, em ordem de data.
+ * <p>
+ * Um intervalo de datas vira, por busca binária, um intervalo contíguo de posições; as consultas
+ * de período listam só os pregões desse intervalo (VALUES ?S2 { ... }) em vez de filtrar a data
+ * de todos os pregões, e o IndexedQueryExecutor percorre só os dias correspondentes no
+ * TimeSeriesIndex. Também resolve os períodos relativos extraídos pelo PLN ("semana", "mes",
+ * "mes-06", "pregoes-5"), tomando como referência o último pregão carregado.
+ */
+public final class PregaoIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PregaoIndex.class);
+
+    /** Período resolvido, com as datas ISO de início e fim (inclusivas). */
+    public record Periodo(String inicio, String fim) {}
+
+    private final String[] datas;   // ISO-8601 (lexical de xsd:date), em ordem
+    private final Node[] pregoes;   // IRI do pregão de cada data
+
+    private PregaoIndex(TreeMap<String, Node> porData) {
+        this(porData.keySet().toArray(new String[0]), porData.values().toArray(new Node[0]));
+    }
+
+    private PregaoIndex(String[] datas, Node[] pregoes) {
+        this.datas = datas;
+        this.pregoes = pregoes;
+    }
+
+    public static PregaoIndex build(Model model) {
+        PregaoIndex index = new PregaoIndex(coletar(model, new TreeMap<>()));
+        logger.info("Índice de pregões construído: {} pregões ({} a {}).", index.tamanho(),
+                index.tamanho() > 0 ? index.datas[0] : "-", index.tamanho() > 0 ? index.ultimaData() : "-");
+        return index;
+    }
+
+    /**
+     * Novo índice com os pregões de 'delta' acrescentados aos deste. No caso comum (pregões
+     * posteriores ao último) só os do delta são ordenados e os arrays atuais são estendidos;
+     * se algum cair antes do último, o índice é refeito com todas as datas.
+     */
+    public PregaoIndex comAcrescimo(Model delta) {
+        TreeMap<String, Node> novos = coletar(delta, new TreeMap<>());
+        if (novos.isEmpty()) {
+            return this;
+        }
+        if (datas.length == 0 || novos.firstKey().compareTo(ultimaData()) > 0) {
+            String[] novasDatas = Arrays.copyOf(datas, datas.length + novos.size());
+            Node[] novosPregoes = Arrays.copyOf(pregoes, pregoes.length + novos.size());
+            int i = datas.length;
+            for (Map.Entry<String, Node> e : novos.entrySet()) {
+                novasDatas[i] = e.getKey();
+                novosPregoes[i++] = e.getValue();
+            }
+            return new PregaoIndex(novasDatas, novosPregoes);
+        }
+        TreeMap<String, Node> porData = new TreeMap<>();
+        for (int i = 0; i < datas.length; i++) {
+            porData.put(datas[i], pregoes[i]);
+        }
+        return new PregaoIndex(coletar(delta, porData));
+    }
+
+    private static TreeMap<String, Node> coletar(Model model, TreeMap<String, Node> porData) {
+        StmtIterator it = model.listStatements(null, B3.ocorreEmData, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                Statement st = it.next();
+                if (st.getSubject().isURIResource() && st.getObject().isLiteral()) {
+                    // Datas repetidas (dois pregões no mesmo dia) ficam com o primeiro IRI em ordem.
+                    porData.merge(st.getLiteral().getLexicalForm(), st.getSubject().asNode(),
+                            (atual, novo) -> atual.getURI().compareTo(novo.getURI()) <= 0 ? atual : novo);
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return porData;
+    }
+
+    public int tamanho() {
+        return datas.length;
+    }
+
+    public String data(int posicao) {
+        return datas[posicao];
+    }
+
+    public Node pregao(int posicao) {
+        return pregoes[posicao];
+    }
+
+    /** Data do último pregão carregado, ou null se não houver pregões. */
+    public String ultimaData() {
+        return datas.length > 0 ? datas[datas.length - 1] : null;
+    }
+
+    /** Primeira posição com data >= 'iso' (tamanho() se não houver). */
+    public int inicio(String iso) {
+        int pos = Arrays.binarySearch(datas, iso);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    /** Posição seguinte à última com data <= 'iso' (0 se não houver). */
+    public int fim(String iso) {
+        int pos = Arrays.binarySearch(datas, iso);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /** IRIs dos pregões entre 'inicio' e 'fim' (datas ISO, inclusivas), em ordem de data. */
+    public List<Node> pregoes(String inicio, String fim) {
+        int de = inicio(inicio);
+        int ate = fim(fim);
+        return de < ate ? List.of(Arrays.copyOfRange(pregoes, de, ate)) : List.of();
+    }
+
+    /**
+     * Datas de um período relativo ao último pregão: "semana" (segunda a domingo da semana do
+     * último pregão), "mes" (o mês do último pregão), "mes-MM" (o mês MM do ano mais recente que
+     * tem pregões nesse mês) ou "pregoes-N" (os N últimos pregões). Null para descritores
+     * desconhecidos ou sem pregões carregados.
+     */
+    public Periodo periodo(String descritor) {
+        if (descritor == null || datas.length == 0) {
+            return null;
+        }
+        try {
+            LocalDate ultima = LocalDate.parse(ultimaData());
+            if (descritor.equals("semana")) {
+                LocalDate segunda = ultima.with(DayOfWeek.MONDAY);
+                return new Periodo(segunda.toString(), segunda.plusDays(6).toString());
+            } else if (descritor.equals("mes")) {
+                return mes(YearMonth.from(ultima));
+            } else if (descritor.startsWith("mes-")) {
+                int mes = Integer.parseInt(descritor.substring(4));
+                YearMonth alvo = YearMonth.of(ultima.getYear(), mes);
+                // Sem ano na pergunta: o mês mais recente com pregões (ex: "junho" em julho de outro ano).
+                for (int ano = ultima.getYear(); ano >= LocalDate.parse(datas[0]).getYear(); ano--) {
+                    YearMonth candidato = YearMonth.of(ano, mes);
+                    if (inicio(candidato.atDay(1).toString()) < fim(candidato.atEndOfMonth().toString())) {
+                        alvo = candidato;
+                        break;
+                    }
+                }
+                return mes(alvo);
+            } else if (descritor.startsWith("pregoes-")) {
+                int n = Integer.parseInt(descritor.substring(8));
+                if (n <= 0) {
+                    return null;
+                }
+                return new Periodo(datas[Math.max(0, datas.length - n)], ultimaData());
+            }
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static Periodo mes(YearMonth mes) {
+        return new Periodo(mes.atDay(1).toString(), mes.atEndOfMonth().toString());
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado tipado de uma consulta: as células ficam em arrays por linha (row-major) e os
+ * literais numéricos guardam o double já convertido, de modo que a formatação não precisa
+ * reanalisar a forma léxica de cada célula. A forma léxica continua disponível (lexico) para
+ * quem precisa do valor exatamente como o Jena o devolveria; nos números vindos do índice
+ * colunar ela só é montada quando alguém a pede.
+ * <p>
+ * Não é thread-safe: é montada e lida pela mesma thread.
+ */
+public final class ResultTable {
+
+    public static final byte NAO_VINCULADO = 0;
+    public static final byte TEXTO = 1;
+    public static final byte NUMERO = 2;
+    /** Número cuja forma léxica é a canônica do Jena para xsd:double ("0.56e0"); só interno. */
+    private static final byte NUMERO_CANONICO = 3;
+
+    private final List<String> vars;
+    private final int colunas;
+    private byte[] tipos;
+    private double[] numeros;
+    private String[] lexicos;
+    private int celulas;
+    private boolean truncada;
+
+    public ResultTable(List<String> vars) {
+        this(vars, 16);
+    }
+
+    public ResultTable(List<String> vars, int linhasPrevistas) {
+        this.vars = Collections.unmodifiableList(new ArrayList<>(vars));
+        this.colunas = vars.size();
+        int capacidade = Math.max(1, colunas * Math.max(1, linhasPrevistas));
+        this.tipos = new byte[capacidade];
+        this.numeros = new double[capacidade];
+        this.lexicos = new String[capacidade];
+    }
+
+    /** Tabela sem variáveis nem linhas (ex: consulta que falhou). */
+    public static ResultTable vazia() {
+        return new ResultTable(Collections.emptyList(), 0);
+    }
+
+    /** Converte linhas no formato antigo; todas as células ficam como texto. */
+    public static ResultTable deMapas(List<Map<String, String>> linhas) {
+        List<String> vars = linhas.isEmpty() ? Collections.emptyList() : new ArrayList<>(linhas.get(0).keySet());
+        ResultTable tabela = new ResultTable(vars, linhas.size());
+        for (Map<String, String> linha : linhas) {
+            for (String var : vars) {
+                String valor = linha.get(var);
+                if (valor == null) {
+                    tabela.naoVinculado();
+                } else {
+                    tabela.texto(valor);
+                }
+            }
+        }
+        return tabela;
+    }
+
+    /**
+     * Lê o ResultSet inteiro ou, com 'maxLinhas' > 0, até maxLinhas linhas; se houver mais, a
+     * leitura para (o restante nem chega a ser avaliado) e a tabela fica marcada como truncada.
+     */
+    public static ResultTable ler(ResultSet rs, long maxLinhas) {
+        ResultTable tabela = new ResultTable(rs.getResultVars());
+        int colunas = tabela.colunas;
+        long linhas = 0;
+        while (rs.hasNext()) {
+            if (maxLinhas > 0 && linhas == maxLinhas) {
+                tabela.truncada = true;
+                break;
+            }
+            QuerySolution soln = rs.nextSolution();
+            for (int c = 0; c < colunas; c++) {
+                tabela.adicionar(soln.get(tabela.vars.get(c)));
+            }
+            linhas++;
+        }
+        return tabela;
+    }
+
+    public List<String> getVars() {
+        return vars;
+    }
+
+    public int linhas() {
+        return colunas == 0 ? 0 : celulas / colunas;
+    }
+
+    /** true se a leitura parou no máximo de linhas e o resultado tinha mais. */
+    public boolean isTruncada() {
+        return truncada;
+    }
+
+    /** Descarta as linhas, mantendo os arrays (para reaproveitar a tabela linha a linha). */
+    public void limpar() {
+        Arrays.fill(lexicos, 0, celulas, null);
+        celulas = 0;
+    }
+
+    // ---- Escrita: as células são acrescentadas em ordem, linha a linha, coluna a coluna. ----
+
+    public void naoVinculado() {
+        int i = proxima();
+        tipos[i] = NAO_VINCULADO;
+        lexicos[i] = null;
+    }
+
+    public void texto(String lexico) {
+        int i = proxima();
+        tipos[i] = TEXTO;
+        lexicos[i] = lexico;
+    }
+
+    /** Número com a forma léxica original (ex: a do literal no grafo). */
+    public void numero(double valor, String lexico) {
+        if (!Double.isFinite(valor)) {
+            // NaN e infinitos seguem como texto: "INF" não é um double para quem formata.
+            texto(lexico);
+            return;
+        }
+        int i = proxima();
+        tipos[i] = NUMERO;
+        numeros[i] = valor;
+        lexicos[i] = lexico;
+    }
+
+    /**
+     * Número calculado fora do Jena, com a forma léxica que o Jena lhe daria: a de Double.toString
+     * ou, com 'formaCanonica', a de um xsd:double resultante de uma expressão (ver lexicoCanonico).
+     */
+    public void numero(double valor, boolean formaCanonica) {
+        if (!Double.isFinite(valor)) {
+            texto(formaCanonica ? lexicoCanonico(valor) : lexico(valor));
+            return;
+        }
+        int i = proxima();
+        tipos[i] = formaCanonica ? NUMERO_CANONICO : NUMERO;
+        numeros[i] = valor;
+        lexicos[i] = null;
+    }
+
+    /**
+     * Célula a partir de um nó do ResultSet. Literais numéricos (xsd:integer, xsd:decimal,
+     * xsd:double e derivados) viram NUMERO; xsd:float fica como texto, porque o valor float não
+     * coincide com o double da forma léxica.
+     */
+    public void adicionar(RDFNode node) {
+        if (node == null) {
+            naoVinculado();
+        } else if (!node.isLiteral()) {
+            texto(node.toString());
+        } else {
+            Literal literal = node.asLiteral();
+            Object valor;
+            try {
+                valor = literal.getValue();
+            } catch (DatatypeFormatException e) {
+                valor = null; // literal mal formado: fica com a forma léxica
+            }
+            if (valor instanceof Double || valor instanceof Integer || valor instanceof Long
+                    || valor instanceof Short || valor instanceof Byte
+                    || valor instanceof BigInteger || valor instanceof BigDecimal) {
+                numero(((Number) valor).doubleValue(), literal.getLexicalForm());
+            } else {
+                texto(literal.getLexicalForm());
+            }
+        }
+    }
+
+    private int proxima() {
+        if (celulas == tipos.length) {
+            int capacidade = tipos.length * 2;
+            tipos = Arrays.copyOf(tipos, capacidade);
+            numeros = Arrays.copyOf(numeros, capacidade);
+            lexicos = Arrays.copyOf(lexicos, capacidade);
+        }
+        return celulas++;
+    }
+
+    // ---- Leitura ----
+
+    /** NAO_VINCULADO, TEXTO ou NUMERO. */
+    public byte tipo(int linha, int coluna) {
+        byte tipo = tipos[indice(linha, coluna)];
+        return tipo == NUMERO_CANONICO ? NUMERO : tipo;
+    }
+
+    /** Valor de uma célula NUMERO. */
+    public double numero(int linha, int coluna) {
+        return numeros[indice(linha, coluna)];
+    }
+
+    /** Forma léxica dos literais, IRI dos recursos, "N/A" para células não vinculadas. */
+    public String lexico(int linha, int coluna) {
+        int i = indice(linha, coluna);
+        String lexico = lexicos[i];
+        if (lexico == null) {
+            lexico = switch (tipos[i]) {
+                case NAO_VINCULADO -> "N/A";
+                case NUMERO_CANONICO -> lexicoCanonico(numeros[i]);
+                default -> lexico(numeros[i]);
+            };
+        }
+        return lexico;
+    }
+
+    private int indice(int linha, int coluna) {
+        return linha * colunas + coluna;
+    }
+
+    /** Linhas no formato antigo (variável -> forma léxica), na ordem das variáveis. */
+    public List<Map<String, String>> comoMapas() {
+        int total = linhas();
+        List<Map<String, String>> mapas = new ArrayList<>(total);
+        for (int l = 0; l < total; l++) {
+            Map<String, String> linha = new LinkedHashMap<>();
+            for (int c = 0; c < colunas; c++) {
+                linha.put(vars.get(c), lexico(l, c));
+            }
+            mapas.add(linha);
+        }
+        return mapas;
+    }
+
+    /** Forma léxica de um xsd:double lido do grafo (o Turtle carregado usa a forma de Double.toString). */
+    public static String lexico(double valor) {
+        return Double.toString(valor);
+    }
+
+    /** Forma léxica que o Jena dá a um xsd:double resultante de uma expressão (ex: "0.56e0", "3.5E7"). */
+    public static String lexicoCanonico(double valor) {
+        if (Double.isNaN(valor)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(valor)) {
+            return valor > 0 ? "INF" : "-INF";
+        }
+        String texto = Double.toString(valor);
+        return texto.indexOf('E') >= 0 ? texto : texto + "e0";
+    }
+}
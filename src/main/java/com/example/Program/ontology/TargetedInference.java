@@ -0,0 +1,157 @@
+package com.example.Program.ontology;
+
+import com.example.Program.ontology.TimeSeriesIndex.Coluna;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inferência restrita às regras de que os templates dependem, aplicada só às triplas novas
+ * (o delta de um acréscimo), sem refazer o fecho RDFS do modelo inteiro:
+ * <ul>
+ *   <li>tipos pelo domínio/contradomínio das propriedades usadas (Valor_Mobiliario,
+ *       Negociado_Em_Pregao, Pregao, Empresa_Capital_Aberto, Setor_Atuacao);</li>
+ *   <li>b3:temValorMobiliarioNegociado e b3:ticker (P1/P8) para um ticker novo, quando outro
+ *       ticker com a mesma raiz (ex: PETR3 para PETR4) já pertence a uma única empresa — o
+ *       ticker passa a aparecer nos setores (b3:atuaEm, P9) dessa empresa;</li>
+ *   <li>b3:atuaEm: o setor recebe o tipo Setor_Atuacao.</li>
+ * </ul>
+ * O custo é proporcional ao tamanho do delta: cada regra faz buscas pontuais no grafo existente.
+ */
+public final class TargetedInference {
+
+    // Raiz (4 letras) e sufixo numérico de um código de negociação (ex: PETR4, TAEE11, MRSA3B).
+    private static final Pattern CODIGO = Pattern.compile("^([A-Z0-9]{4})(\\d{1,2})([A-Z]?)$");
+    private static final List<String> SUFIXOS = List.of("3", "4", "5", "6", "7", "8", "11");
+
+    private static final Node TIPO = RDF.type.asNode();
+    private static final Node NEGOCIADO = B3.negociado.asNode();
+    private static final Node NEGOCIADO_DURANTE = B3.negociadoDurante.asNode();
+    private static final Node OCORRE_EM_DATA = B3.ocorreEmData.asNode();
+    private static final Node TEM_VALOR = B3.temValorMobiliarioNegociado.asNode();
+    private static final Node ATUA_EM = B3.atuaEm.asNode();
+    private static final Node TICKER = B3.ticker.asNode();
+    private static final Set<Node> VALORES_NEGOCIACAO = new HashSet<>();
+
+    static {
+        for (Coluna coluna : Coluna.values()) {
+            VALORES_NEGOCIACAO.add(NodeFactory.createURI(coluna.getPredicado()));
+        }
+    }
+
+    private TargetedInference() {
+    }
+
+    /**
+     * Triplas inferidas para o delta. 'existente' é o grafo atual (sem o delta) e só é consultado,
+     * nunca alterado. O resultado não repete triplas já presentes no delta ou no grafo existente.
+     */
+    public static Model inferir(Model delta, Graph existente) {
+        Graph grafoDelta = delta.getGraph();
+        Model inferidas = ModelFactory.createDefaultModel();
+        Graph saida = inferidas.getGraph();
+        Set<Node> valoresMobiliarios = new HashSet<>();
+
+        ExtendedIterator<Triple> it = grafoDelta.find();
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                Node p = t.getPredicate();
+                if (p.equals(NEGOCIADO)) {
+                    tipo(saida, grafoDelta, existente, t.getSubject(), B3.Valor_Mobiliario.asNode());
+                    tipo(saida, grafoDelta, existente, t.getObject(), B3.Negociado_Em_Pregao.asNode());
+                    valoresMobiliarios.add(t.getSubject());
+                } else if (p.equals(NEGOCIADO_DURANTE)) {
+                    tipo(saida, grafoDelta, existente, t.getSubject(), B3.Negociado_Em_Pregao.asNode());
+                    tipo(saida, grafoDelta, existente, t.getObject(), B3.Pregao.asNode());
+                } else if (p.equals(OCORRE_EM_DATA)) {
+                    tipo(saida, grafoDelta, existente, t.getSubject(), B3.Pregao.asNode());
+                } else if (VALORES_NEGOCIACAO.contains(p)) {
+                    tipo(saida, grafoDelta, existente, t.getSubject(), B3.Negociado_Em_Pregao.asNode());
+                } else if (p.equals(TEM_VALOR)) {
+                    tipo(saida, grafoDelta, existente, t.getSubject(), B3.Empresa_Capital_Aberto.asNode());
+                    tipo(saida, grafoDelta, existente, t.getObject(), B3.Valor_Mobiliario.asNode());
+                } else if (p.equals(ATUA_EM)) {
+                    tipo(saida, grafoDelta, existente, t.getSubject(), B3.Empresa_Capital_Aberto.asNode());
+                    tipo(saida, grafoDelta, existente, t.getObject(), B3.Setor_Atuacao.asNode());
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        Map<String, Node> empresasPorRaiz = new HashMap<>();
+        for (Node valorMobiliario : valoresMobiliarios) {
+            vincularEmpresa(valorMobiliario, grafoDelta, existente, saida, empresasPorRaiz);
+        }
+        return inferidas;
+    }
+
+    private static void tipo(Graph saida, Graph delta, Graph existente, Node recurso, Node classe) {
+        if (recurso.isURI() && !delta.contains(recurso, TIPO, classe) && !existente.contains(recurso, TIPO, classe)) {
+            saida.add(Triple.create(recurso, TIPO, classe));
+        }
+    }
+
+    /** P1/P8 para um valor mobiliário sem empresa, pela empresa dos tickers com a mesma raiz. */
+    private static void vincularEmpresa(Node valorMobiliario, Graph delta, Graph existente, Graph saida,
+                                        Map<String, Node> empresasPorRaiz) {
+        if (!valorMobiliario.isURI() || !valorMobiliario.getURI().startsWith(B3.NS)) {
+            return;
+        }
+        if (delta.contains(Node.ANY, TEM_VALOR, valorMobiliario) || existente.contains(Node.ANY, TEM_VALOR, valorMobiliario)) {
+            return;
+        }
+        String codigo = valorMobiliario.getURI().substring(B3.NS.length());
+        Matcher m = CODIGO.matcher(codigo);
+        if (!m.matches()) {
+            return;
+        }
+        String raiz = m.group(1);
+        Node empresa = empresasPorRaiz.computeIfAbsent(raiz, r -> empresaDaRaiz(r, codigo, existente));
+        if (empresa == null || empresa == Node.ANY) {
+            return;
+        }
+        saida.add(Triple.create(empresa, TEM_VALOR, valorMobiliario));
+        if (!delta.contains(valorMobiliario, TICKER, Node.ANY) && !existente.contains(valorMobiliario, TICKER, Node.ANY)) {
+            saida.add(Triple.create(valorMobiliario, TICKER, NodeFactory.createLiteral(codigo)));
+        }
+    }
+
+    // Node.ANY marca raiz ambígua (tickers da raiz em mais de uma empresa), para não repetir a busca.
+    private static Node empresaDaRaiz(String raiz, String codigo, Graph existente) {
+        Node encontrada = null;
+        for (String sufixo : SUFIXOS) {
+            String irmao = raiz + sufixo;
+            if (irmao.equals(codigo)) {
+                continue;
+            }
+            ExtendedIterator<Triple> donos = existente.find(Node.ANY, TEM_VALOR, NodeFactory.createURI(B3.NS + irmao));
+            try {
+                while (donos.hasNext()) {
+                    Node empresa = donos.next().getSubject();
+                    if (encontrada != null && !encontrada.equals(empresa)) {
+                        return Node.ANY;
+                    }
+                    encontrada = empresa;
+                }
+            } finally {
+                donos.close();
+            }
+        }
+        return encontrada;
+    }
+}
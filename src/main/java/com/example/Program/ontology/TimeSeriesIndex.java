@@ -0,0 +1,613 @@
+package com.example.Program.ontology;
+
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice colunar, somente leitura, das cotações diárias (OHLCV) do modelo carregado.
+ * <p>
+ * Tickers e datas recebem ids inteiros (em ordem alfabética / cronológica). As linhas ficam
+ * ordenadas por (data, ticker), de modo que as linhas de um pregão formam um intervalo contíguo
+ * [dateStart(d), dateEnd(d)) e cada métrica é um array primitivo indexado pela linha.
+ * Valores ausentes no grafo são NaN (double) ou {@link #MISSING} (long).
+ * <p>
+ * Também guarda máscaras (BitSet por id de ticker) para os filtros dos templates: tickers com
+ * empresa, tickers por setor e tickers cujo código casa com um padrão de sufixo.
+ */
+public final class TimeSeriesIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesIndex.class);
+
+    public static final long MISSING = Long.MIN_VALUE;
+    private static final int MAX_MASCARAS_REGEX = 64;
+
+    /** Colunas do índice, com o predicado correspondente da ontologia. */
+    public enum Coluna {
+        ABERTURA("precoAbertura"),
+        FECHAMENTO("precoFechamento"),
+        MAXIMO("precoMaximo"),
+        MINIMO("precoMinimo"),
+        MEDIO("precoMedio"),
+        VOLUME("volumeNegociacao"),
+        NEGOCIOS("totalNegocios");
+
+        private final String predicado;
+        private final Property propriedade;
+
+        Coluna(String localName) {
+            this.predicado = B3.NS + localName;
+            this.propriedade = ResourceFactory.createProperty(predicado);
+        }
+
+        public String getPredicado() {
+            return predicado;
+        }
+
+        /** Coluna para um predicado no formato "b3:precoFechamento" ou IRI completo; null se não houver. */
+        public static Coluna fromPredicado(String predicado) {
+            if (predicado == null) {
+                return null;
+            }
+            String iri = predicado.startsWith("b3:") ? B3.NS + predicado.substring(3) : predicado;
+            for (Coluna c : values()) {
+                if (c.predicado.equals(iri)) {
+                    return c;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final String[] tickers;        // nome local do recurso Valor_Mobiliario (ex: PETR4)
+    private final String[] tickerLabels;   // valor de b3:ticker (null se o valor mobiliário não tiver)
+    private final Map<String, Integer> tickerIds;
+    private final String[] dates;          // ISO-8601 (lexical de xsd:date)
+    private final Map<String, Integer> dateIds;
+    private final int[] dateOffsets;       // dateOffsets[d]..dateOffsets[d+1]
+    private final int[] rowTicker;
+    private final int[] rowByDateTicker;   // [d * tickers.length + t] -> linha, ou -1
+    private final double[][] doubleColumns;
+    private final long[] negocios;
+    // Máscaras por ticker id: tickers com empresa (?S1 P1 ?SO1) e tickers de empresas de cada setor (rótulo @pt).
+    private final BitSet comEmpresa;
+    private final Map<String, BitSet> setores;
+    private final BitSet comTicker;
+    // Linhas com b3:ticker, as sete colunas presentes e abertura > 0 (padrões P8, D1..D7 + FILTER dos templates de ranking).
+    private final BitSet linhasCompletas;
+    // Métricas derivadas materializadas por linha (variação e intervalo, absolutos e percentuais).
+    private final double[][] derivadas;
+    // Máscaras de REGEX(STR(?ticker), padrão), calculadas uma vez por padrão.
+    private final Map<String, BitSet> mascarasRegex = new ConcurrentHashMap<>();
+    // Pregões iniciais herdados sem alteração do índice do qual este foi acrescido (0 se construído do zero).
+    private final int datasPreservadas;
+
+    /**
+     * @param anterior índice do qual este foi acrescido, cujas linhas são as primeiras deste, com os
+     *                 mesmos valores e rótulos: as métricas derivadas delas são copiadas, não recalculadas.
+     *                 Null para calcular tudo.
+     */
+    private TimeSeriesIndex(String[] tickers, String[] tickerLabels, String[] dates, int[] dateOffsets, int[] rowTicker,
+                            double[][] doubleColumns, long[] negocios, BitSet comEmpresa, Map<String, BitSet> setores,
+                            TimeSeriesIndex anterior) {
+        this.tickers = tickers;
+        this.tickerLabels = tickerLabels;
+        this.dates = dates;
+        this.dateOffsets = dateOffsets;
+        this.rowTicker = rowTicker;
+        this.doubleColumns = doubleColumns;
+        this.negocios = negocios;
+        this.comEmpresa = comEmpresa;
+        this.setores = setores;
+        this.tickerIds = indexar(tickers);
+        this.dateIds = indexar(dates);
+        this.comTicker = new BitSet(tickers.length);
+        for (int t = 0; t < tickers.length; t++) {
+            comTicker.set(t, tickerLabels[t] != null);
+        }
+        int herdadas = anterior != null ? anterior.rowTicker.length : 0;
+        this.datasPreservadas = anterior != null ? anterior.dates.length : 0;
+        this.linhasCompletas = anterior != null ? (BitSet) anterior.linhasCompletas.clone() : new BitSet(rowTicker.length);
+        for (int r = herdadas; r < rowTicker.length; r++) {
+            boolean completa = comTicker.get(rowTicker[r]) && negocios[r] != MISSING && doubleColumns[Coluna.ABERTURA.ordinal()][r] > 0;
+            for (int c = 0; c < doubleColumns.length && completa; c++) {
+                completa = doubleColumns[c] == null || !Double.isNaN(doubleColumns[c][r]);
+            }
+            linhasCompletas.set(r, completa);
+        }
+        this.derivadas = new double[MetricaDiaria.values().length][];
+        for (MetricaDiaria m : MetricaDiaria.values()) {
+            if (m.isCalculada()) {
+                double[] valores = anterior != null ? Arrays.copyOf(anterior.derivadas[m.ordinal()], rowTicker.length)
+                        : new double[rowTicker.length];
+                for (int r = herdadas; r < valores.length; r++) {
+                    valores[r] = m.calcular(this, r);
+                }
+                derivadas[m.ordinal()] = valores;
+            }
+        }
+        // Com os mesmos tickers, os ids (e o passo da matriz) não mudam: só os pregões novos são preenchidos.
+        int datasHerdadas = anterior != null && anterior.tickers.length == tickers.length ? anterior.dates.length : 0;
+        this.rowByDateTicker = datasHerdadas > 0 ? Arrays.copyOf(anterior.rowByDateTicker, dates.length * tickers.length)
+                : new int[dates.length * tickers.length];
+        Arrays.fill(rowByDateTicker, datasHerdadas * tickers.length, rowByDateTicker.length, -1);
+        for (int d = datasHerdadas; d < dates.length; d++) {
+            for (int r = dateOffsets[d]; r < dateOffsets[d + 1]; r++) {
+                rowByDateTicker[d * tickers.length + rowTicker[r]] = r;
+            }
+        }
+    }
+
+    private static Map<String, Integer> indexar(String[] valores) {
+        Map<String, Integer> ids = new HashMap<>(valores.length * 2);
+        for (int i = 0; i < valores.length; i++) {
+            ids.put(valores[i], i);
+        }
+        return Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Constrói o índice percorrendo ?SO1 b3:negociado ?SO2 . ?SO2 b3:negociadoDurante ?S2 . ?S2 b3:ocorreEmData ?data.
+     * Valores mobiliários sem b3:ticker também entram (somam nos totais do Template_4), mas ficam
+     * fora de {@link #comTickerMask()} e de {@link #linhasCompletas()}.
+     */
+    public static TimeSeriesIndex build(Model model) {
+        long inicio = System.nanoTime();
+        Coleta coleta = coletar(model, model);
+
+        String[] tickers = coleta.nomesTickers().toArray(new String[0]);
+        Map<String, Integer> tickerIds = indexar(tickers);
+        String[] tickerLabels = new String[tickers.length];
+        for (int t = 0; t < tickers.length; t++) {
+            tickerLabels[t] = coleta.labels().get(tickers[t]);
+        }
+        String[] dates = coleta.porData().keySet().toArray(new String[0]);
+        int total = coleta.linhas();
+
+        int[] dateOffsets = new int[dates.length + 1];
+        int[] rowTicker = new int[total];
+        double[][] doubleColumns = new double[Coluna.values().length][total];
+        long[] negocios = new long[total];
+        int r = preencher(coleta, tickerIds, dateOffsets, 0, rowTicker, doubleColumns, negocios, 0);
+        dateOffsets[dates.length] = r;
+        // A contagem de negócios é guardada apenas como long.
+        doubleColumns[Coluna.NEGOCIOS.ordinal()] = null;
+
+        BitSet comEmpresa = new BitSet(tickers.length);
+        Map<String, BitSet> setores = new HashMap<>();
+        lerEmpresas(model, model, tickerIds, comEmpresa, setores);
+
+        TimeSeriesIndex index = new TimeSeriesIndex(tickers, tickerLabels, dates, dateOffsets, rowTicker, doubleColumns, negocios,
+                comEmpresa, Collections.unmodifiableMap(setores), null);
+        if (coleta.duplicadas() > 0) {
+            logger.warn("Índice de séries temporais: {} negociações repetidas para o mesmo (ticker, data) foram ignoradas.", coleta.duplicadas());
+        }
+        logger.info("Índice de séries temporais construído em {} ms: {} linhas, {} tickers, {} pregões.",
+                (System.nanoTime() - inicio) / 1_000_000, total, tickers.length, dates.length);
+        return index;
+    }
+
+    /**
+     * Novo índice com as negociações de 'delta' acrescentadas a este. Só as triplas do delta são
+     * lidas do Jena (os valores vêm de 'completo', que já deve conter o delta); as linhas atuais
+     * são copiadas como arrays, com as métricas derivadas já calculadas, e só as linhas novas são
+     * calculadas. As máscaras de empresa/setor são as deste mais os vínculos que o delta traz; só
+     * são relidas de 'completo' inteiras se o delta mudar setores (b3:atuaEm ou rótulo de setor).
+     * Quando algum pregão do delta não é posterior ao último do índice, reconstrói o índice inteiro.
+     * <p>
+     * 'delta' deve trazer só triplas que o modelo ainda não tinha (ver Ontology.acrescentar).
+     */
+    public TimeSeriesIndex comAcrescimo(Model delta, Model completo) {
+        long inicio = System.nanoTime();
+        Coleta coleta = coletar(delta, completo);
+        if (!coleta.porData().isEmpty() && dates.length > 0
+                && coleta.porData().firstKey().compareTo(dates[dates.length - 1]) <= 0) {
+            logger.info("Acréscimo com pregões que não são posteriores a {}; reconstruindo o índice completo.", dates[dates.length - 1]);
+            return build(completo);
+        }
+
+        TreeSet<String> nomes = new TreeSet<>(Arrays.asList(tickers));
+        nomes.addAll(coleta.nomesTickers());
+        String[] novosTickers = nomes.toArray(new String[0]);
+        Map<String, Integer> novosIds = indexar(novosTickers);
+        String[] novosLabels = new String[novosTickers.length];
+        for (int t = 0; t < tickers.length; t++) {
+            novosLabels[novosIds.get(tickers[t])] = tickerLabels[t];
+        }
+        // Um ticker antigo que ganhou b3:ticker muda linhasCompletas das suas linhas antigas: recalcula tudo.
+        boolean rotulosAntigosMudaram = false;
+        for (int t = 0; t < novosTickers.length; t++) {
+            if (novosLabels[t] == null) {
+                Statement st = completo.getResource(B3.NS + novosTickers[t]).getProperty(B3.ticker);
+                novosLabels[t] = st != null && st.getObject().isLiteral() ? st.getLiteral().getLexicalForm() : null;
+                rotulosAntigosMudaram |= novosLabels[t] != null && tickerIds.containsKey(novosTickers[t]);
+            }
+        }
+
+        String[] novasDatas = Arrays.copyOf(dates, dates.length + coleta.porData().size());
+        int d = dates.length;
+        for (String data : coleta.porData().keySet()) {
+            novasDatas[d++] = data;
+        }
+        int atuais = rowTicker.length;
+        int total = atuais + coleta.linhas();
+        int[] novosOffsets = Arrays.copyOf(dateOffsets, novasDatas.length + 1);
+        int[] novosRowTicker = new int[total];
+        for (int r = 0; r < atuais; r++) {
+            novosRowTicker[r] = novosIds.get(tickers[rowTicker[r]]);
+        }
+        double[][] novasColunas = new double[doubleColumns.length][];
+        for (int c = 0; c < doubleColumns.length; c++) {
+            novasColunas[c] = c == Coluna.NEGOCIOS.ordinal() ? new double[total] : Arrays.copyOf(doubleColumns[c], total);
+        }
+        long[] novosNegocios = Arrays.copyOf(negocios, total);
+        int r = preencher(coleta, novosIds, novosOffsets, dates.length, novosRowTicker, novasColunas, novosNegocios, atuais);
+        novosOffsets[novasDatas.length] = r;
+        novasColunas[Coluna.NEGOCIOS.ordinal()] = null;
+
+        BitSet novoComEmpresa = new BitSet(novosTickers.length);
+        Map<String, BitSet> novosSetores = new HashMap<>();
+        if (mudaSetores(delta, completo)) {
+            lerEmpresas(completo, completo, novosIds, novoComEmpresa, novosSetores);
+        } else {
+            novoComEmpresa.or(remapear(comEmpresa, novosIds));
+            setores.forEach((setor, mascara) -> novosSetores.put(setor, remapear(mascara, novosIds)));
+            lerEmpresas(delta, completo, novosIds, novoComEmpresa, novosSetores);
+        }
+
+        TimeSeriesIndex index = new TimeSeriesIndex(novosTickers, novosLabels, novasDatas, novosOffsets, novosRowTicker,
+                novasColunas, novosNegocios, novoComEmpresa, Collections.unmodifiableMap(novosSetores),
+                rotulosAntigosMudaram ? null : this);
+        logger.info("Índice de séries temporais acrescido em {} ms: +{} linhas, +{} pregões ({} linhas, {} tickers).",
+                (System.nanoTime() - inicio) / 1_000_000, coleta.linhas(), coleta.porData().size(), total, novosTickers.length);
+        return index;
+    }
+
+    /** Negociações lidas do grafo: data -> (ticker -> negociação), em ordem. */
+    private record Coleta(TreeMap<String, TreeMap<String, Resource>> porData, TreeSet<String> nomesTickers,
+                          Map<String, String> labels, int duplicadas) {
+
+        int linhas() {
+            return porData.values().stream().mapToInt(Map::size).sum();
+        }
+    }
+
+    /** Percorre as triplas b3:negociado de 'fonte', resolvendo negociação, pregão e rótulo em 'completo'. */
+    private static Coleta coletar(Model fonte, Model completo) {
+        TreeMap<String, TreeMap<String, Resource>> porData = new TreeMap<>();
+        TreeSet<String> nomesTickers = new TreeSet<>();
+        Map<String, String> labels = new HashMap<>();
+        int duplicadas = 0;
+
+        StmtIterator it = fonte.listStatements(null, B3.negociado, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                Statement st = it.next();
+                if (!st.getObject().isResource() || st.getSubject().getLocalName() == null) {
+                    continue;
+                }
+                Resource valorMobiliario = st.getSubject().inModel(completo);
+                Statement tickerSt = valorMobiliario.getProperty(B3.ticker);
+                Resource negociacao = st.getObject().asResource().inModel(completo);
+                Statement pregaoSt = negociacao.getProperty(B3.negociadoDurante);
+                if (pregaoSt == null || !pregaoSt.getObject().isResource()) {
+                    continue;
+                }
+                Statement dataSt = pregaoSt.getObject().asResource().getProperty(B3.ocorreEmData);
+                if (dataSt == null || !dataSt.getObject().isLiteral()) {
+                    continue;
+                }
+                String nome = valorMobiliario.getLocalName();
+                String data = dataSt.getLiteral().getLexicalForm();
+                nomesTickers.add(nome);
+                if (tickerSt != null && tickerSt.getObject().isLiteral()) {
+                    labels.putIfAbsent(nome, tickerSt.getLiteral().getLexicalForm());
+                }
+                if (porData.computeIfAbsent(data, k -> new TreeMap<>()).putIfAbsent(nome, negociacao) != null) {
+                    duplicadas++;
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return new Coleta(porData, nomesTickers, labels, duplicadas);
+    }
+
+    /**
+     * Grava as linhas da coleta nos arrays a partir de 'primeiraLinha', registrando o início de cada
+     * pregão em dateOffsets a partir de 'primeiraData'. Devolve a linha seguinte à última gravada.
+     */
+    private static int preencher(Coleta coleta, Map<String, Integer> tickerIds, int[] dateOffsets, int primeiraData,
+                                 int[] rowTicker, double[][] doubleColumns, long[] negocios, int primeiraLinha) {
+        Coluna[] colunas = Coluna.values();
+        int r = primeiraLinha;
+        int d = primeiraData;
+        for (TreeMap<String, Resource> linhas : coleta.porData().values()) {
+            dateOffsets[d++] = r;
+            for (Map.Entry<String, Resource> e : linhas.entrySet()) {
+                rowTicker[r] = tickerIds.get(e.getKey());
+                for (Coluna c : colunas) {
+                    doubleColumns[c.ordinal()][r] = lerDouble(e.getValue(), c);
+                }
+                double n = doubleColumns[Coluna.NEGOCIOS.ordinal()][r];
+                negocios[r] = Double.isNaN(n) ? MISSING : (long) n;
+                r++;
+            }
+        }
+        return r;
+    }
+
+    /** Máscara com os ids de 'mascara' (deste índice) traduzidos para 'novosIds' pelo nome do ticker. */
+    private BitSet remapear(BitSet mascara, Map<String, Integer> novosIds) {
+        if (novosIds.size() == tickers.length) {
+            return (BitSet) mascara.clone();
+        }
+        BitSet remapeada = new BitSet(novosIds.size());
+        for (int t = mascara.nextSetBit(0); t >= 0; t = mascara.nextSetBit(t + 1)) {
+            remapeada.set(novosIds.get(tickers[t]));
+        }
+        return remapeada;
+    }
+
+    /** true se o delta muda a que setor uma empresa pertence ou o rótulo de um setor. */
+    private static boolean mudaSetores(Model delta, Model completo) {
+        if (delta.contains(null, B3.atuaEm, (RDFNode) null)) {
+            return true;
+        }
+        StmtIterator it = delta.listStatements(null, RDFS.label, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                if (completo.contains(null, B3.atuaEm, it.next().getSubject())) {
+                    return true;
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return false;
+    }
+
+    /**
+     * ?S1 b3:temValorMobiliarioNegociado ?SO1 e ?S1 b3:atuaEm ?S4 . ?S4 rdfs:label "setor"@pt, para os
+     * vínculos empresa -> valor mobiliário de 'fonte', com setores e rótulos lidos de 'completo'.
+     */
+    private static void lerEmpresas(Model fonte, Model completo, Map<String, Integer> tickerIds, BitSet comEmpresa,
+                                    Map<String, BitSet> setores) {
+        StmtIterator it = fonte.listStatements(null, B3.temValorMobiliarioNegociado, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                Statement st = it.next();
+                if (!st.getObject().isResource()) {
+                    continue;
+                }
+                Integer t = tickerIds.get(st.getObject().asResource().getLocalName());
+                if (t == null) {
+                    continue;
+                }
+                comEmpresa.set(t);
+                StmtIterator atuacoes = st.getSubject().inModel(completo).listProperties(B3.atuaEm);
+                try {
+                    while (atuacoes.hasNext()) {
+                        RDFNode setor = atuacoes.next().getObject();
+                        if (!setor.isResource()) {
+                            continue;
+                        }
+                        StmtIterator rotulos = setor.asResource().listProperties(RDFS.label);
+                        try {
+                            while (rotulos.hasNext()) {
+                                RDFNode rotulo = rotulos.next().getObject();
+                                if (rotulo.isLiteral() && "pt".equalsIgnoreCase(rotulo.asLiteral().getLanguage())) {
+                                    setores.computeIfAbsent(rotulo.asLiteral().getLexicalForm(), k -> new BitSet()).set(t);
+                                }
+                            }
+                        } finally {
+                            rotulos.close();
+                        }
+                    }
+                } finally {
+                    atuacoes.close();
+                }
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    private static double lerDouble(Resource negociacao, Coluna coluna) {
+        Statement st = negociacao.getProperty(coluna.propriedade);
+        if (st == null || !st.getObject().isLiteral()) {
+            return Double.NaN;
+        }
+        Literal literal = st.getLiteral();
+        try {
+            return literal.getDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    // --- Dimensões ---
+
+    public int rowCount() {
+        return rowTicker.length;
+    }
+
+    public int tickerCount() {
+        return tickers.length;
+    }
+
+    public int dateCount() {
+        return dates.length;
+    }
+
+    /**
+     * Quantos pregões iniciais este índice herdou sem alteração do índice do qual foi acrescido
+     * (comAcrescimo): as linhas até dateStart(datasPreservadas()) são as mesmas, com os mesmos valores.
+     * 0 quando o índice foi construído (ou reconstruído) do zero.
+     */
+    public int datasPreservadas() {
+        return datasPreservadas;
+    }
+
+    /** Id do ticker pelo nome local do recurso (ex: "PETR4"), ou -1. */
+    public int tickerId(String ticker) {
+        Integer id = tickerIds.get(ticker);
+        return id != null ? id : -1;
+    }
+
+    /** Id da data no formato ISO (ex: "2025-06-12"), ou -1. */
+    public int dateId(String isoDate) {
+        Integer id = dateIds.get(isoDate);
+        return id != null ? id : -1;
+    }
+
+    public String ticker(int tickerId) {
+        return tickers[tickerId];
+    }
+
+    /** Valor de b3:ticker do valor mobiliário (o que os templates devolvem em ?ticker), ou null. */
+    public String tickerLabel(int tickerId) {
+        return tickerLabels[tickerId];
+    }
+
+    public String date(int dateId) {
+        return dates[dateId];
+    }
+
+    public List<String> dates() {
+        return List.of(dates);
+    }
+
+    // --- Acesso às linhas ---
+
+    /** Primeira linha do pregão. */
+    public int dateStart(int dateId) {
+        return dateOffsets[dateId];
+    }
+
+    /** Fim (exclusivo) das linhas do pregão. */
+    public int dateEnd(int dateId) {
+        return dateOffsets[dateId + 1];
+    }
+
+    /** Linha de (data, ticker) em O(1), ou -1 se o ticker não foi negociado na data. */
+    public int row(int dateId, int tickerId) {
+        if (dateId < 0 || tickerId < 0) {
+            return -1;
+        }
+        return rowByDateTicker[dateId * tickers.length + tickerId];
+    }
+
+    public int rowTicker(int row) {
+        return rowTicker[row];
+    }
+
+    /** Tickers que pertencem a alguma empresa (cópia). */
+    public BitSet comEmpresaMask() {
+        return (BitSet) comEmpresa.clone();
+    }
+
+    /** Tickers das empresas que atuam no setor com o rótulo @pt informado (cópia); vazio se o setor não existe. */
+    public BitSet setorMask(String rotuloSetor) {
+        BitSet mask = setores.get(rotuloSetor);
+        return mask != null ? (BitSet) mask.clone() : new BitSet(tickers.length);
+    }
+
+    public Set<String> setores() {
+        return setores.keySet();
+    }
+
+    /** Máscara com os tickers informados (nomes locais); nomes desconhecidos são ignorados. */
+    public BitSet tickersMask(Iterable<String> nomes) {
+        BitSet mask = new BitSet(tickers.length);
+        for (String nome : nomes) {
+            int t = tickerId(nome);
+            if (t >= 0) {
+                mask.set(t);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Tickers cujo valor de b3:ticker casa com a expressão regular (semântica de REGEX(STR(?ticker), padrão)).
+     * O resultado é guardado por padrão; não deve ser alterado.
+     * @throws java.util.regex.PatternSyntaxException se o padrão for inválido
+     */
+    public BitSet tickerRegexMask(String regex) {
+        BitSet mask = mascarasRegex.get(regex);
+        if (mask != null) {
+            return mask;
+        }
+        Pattern pattern = Pattern.compile(regex);
+        mask = new BitSet(tickers.length);
+        for (int t = 0; t < tickers.length; t++) {
+            mask.set(t, tickerLabels[t] != null && pattern.matcher(tickerLabels[t]).find());
+        }
+        if (mascarasRegex.size() < MAX_MASCARAS_REGEX) {
+            mascarasRegex.putIfAbsent(regex, mask);
+        }
+        return mask;
+    }
+
+    /** Tickers que têm b3:ticker (cópia). */
+    public BitSet comTickerMask() {
+        return (BitSet) comTicker.clone();
+    }
+
+    /** Linhas com b3:ticker, todas as colunas presentes e abertura > 0; não deve ser alterada. */
+    public BitSet linhasCompletas() {
+        return linhasCompletas;
+    }
+
+    /** Coluna double para varreduras; não deve ser alterada. Não disponível para NEGOCIOS. */
+    public double[] column(Coluna coluna) {
+        if (coluna == Coluna.NEGOCIOS) {
+            throw new IllegalArgumentException("A coluna NEGOCIOS é armazenada como long; use negocios().");
+        }
+        return doubleColumns[coluna.ordinal()];
+    }
+
+    /** Contagem de negócios por linha ({@link #MISSING} se ausente); não deve ser alterada. */
+    public long[] negocios() {
+        return negocios;
+    }
+
+    /** Valores materializados de uma métrica calculada, por linha; não deve ser alterado. */
+    public double[] derivada(MetricaDiaria metrica) {
+        double[] valores = derivadas[metrica.ordinal()];
+        if (valores == null) {
+            throw new IllegalArgumentException("Métrica não materializada: " + metrica);
+        }
+        return valores;
+    }
+
+    /** Valor de uma coluna como double (NaN se ausente). */
+    public double value(Coluna coluna, int row) {
+        if (coluna == Coluna.NEGOCIOS) {
+            long n = negocios[row];
+            return n == MISSING ? Double.NaN : n;
+        }
+        return doubleColumns[coluna.ordinal()][row];
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.Program.ontology;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Leitura de planilhas .xlsx pela API de eventos (SAX) do POI: a primeira aba é percorrida
+ * linha a linha sem montar o XSSFWorkbook, então o consumo de memória não depende do tamanho
+ * da planilha (só a tabela de strings compartilhadas fica em memória).
+ * <p>
+ * Os valores são entregues crus, como estão no XML: números sem a formatação de exibição
+ * (ex: "9.1", "16638800"), strings compartilhadas já resolvidas e, para fórmulas, o último
+ * valor calculado.
+ */
+public final class XlsxStreamReader {
+
+    /** Recebe cada linha não vazia da aba; 'celulas' é indexado pela coluna (A = 0) e pode ter nulls. */
+    @FunctionalInterface
+    public interface RowHandler {
+        void linha(int numeroLinha, List<String> celulas);
+    }
+
+    private XlsxStreamReader() {
+    }
+
+    /** Percorre a primeira aba da planilha, chamando o handler para cada linha (numeradas a partir de 0). */
+    public static void read(Path xlsx, RowHandler handler) throws Exception {
+        try (OPCPackage pacote = OPCPackage.open(xlsx.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pacote);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pacote, false);
+            Iterator<InputStream> abas = reader.getSheetsData();
+            if (!abas.hasNext()) {
+                return;
+            }
+            try (InputStream aba = abas.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(strings, handler));
+                parser.parse(new InputSource(aba));
+            }
+        }
+    }
+
+    /** Índice da coluna (A = 0) a partir de uma referência de célula como "AB12". */
+    static int coluna(String referencia) {
+        int coluna = 0;
+        for (int i = 0; i < referencia.length(); i++) {
+            char c = referencia.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            coluna = coluna * 26 + (c - 'A' + 1);
+        }
+        return coluna - 1;
+    }
+
+    private static final class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final RowHandler handler;
+        // A lista da linha é reaproveitada entre as linhas; o handler não deve guardá-la.
+        private final List<String> celulas = new ArrayList<>();
+        private final StringBuilder texto = new StringBuilder();
+        private int linha = -1;
+        private int colunaAtual = -1;
+        private String tipoAtual;
+        private boolean lendoValor;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, RowHandler handler) {
+            this.strings = strings;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atributos) {
+            switch (localName) {
+                case "row" -> {
+                    String r = atributos.getValue("r");
+                    linha = r != null ? Integer.parseInt(r) - 1 : linha + 1;
+                    celulas.clear();
+                }
+                case "c" -> {
+                    String r = atributos.getValue("r");
+                    colunaAtual = r != null ? coluna(r) : colunaAtual + 1;
+                    tipoAtual = atributos.getValue("t");
+                    texto.setLength(0);
+                }
+                // "v" é o valor (ou o resultado da fórmula); "t" é o texto de uma inlineStr.
+                case "v", "t" -> {
+                    lendoValor = true;
+                    texto.setLength(0);
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (lendoValor) {
+                texto.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> lendoValor = false;
+                case "c" -> definir(colunaAtual, valor());
+                case "row" -> {
+                    if (!celulas.isEmpty()) {
+                        handler.linha(linha, Collections.unmodifiableList(celulas));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private String valor() {
+            if (texto.length() == 0) {
+                return null;
+            }
+            String bruto = texto.toString();
+            if ("s".equals(tipoAtual)) {
+                return strings.getItemAt(Integer.parseInt(bruto.trim())).getString();
+            }
+            if ("b".equals(tipoAtual)) {
+                return "1".equals(bruto) ? "TRUE" : "FALSE";
+            }
+            return bruto;
+        }
+
+        private void definir(int coluna, String valor) {
+            if (valor == null || coluna < 0) {
+                return;
+            }
+            while (celulas.size() <= coluna) {
+                celulas.add(null);
+            }
+            celulas.set(coluna, valor);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.Program.service;
+
+import com.example.Program.model.PerguntaResposta;
+import com.example.Program.model.ProcessamentoDetalhadoResposta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * Fluxo de /api/perguntar: pergunta -> resultado formatado em uma requisição. A consulta
+ * parametrizada renderizada para a pergunta é analisada (ou obtida do PreparedQueryCache) e o
+ * objeto Query vai direto para a execução, sem passar pelo texto final e sem nova análise. O
+ * texto final só é renderizado quando pedido, fora das etapas medidas.
+ * <p>
+ * Etapas medidas: nlp (PLN, ou nível 1 do QuestionCache), render (texto parametrizado),
+ * parse (QueryFactory/PreparedQueryCache), execute (índice colunar ou Jena) e format (SPARQL-JSON).
+ */
+@Service
+public class AskService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AskService.class);
+
+    private final SPARQLProcessor sparqlProcessor;
+    private final QueryExecutionService queryExecutionService;
+
+    public AskService(SPARQLProcessor sparqlProcessor, QueryExecutionService queryExecutionService) {
+        this.sparqlProcessor = sparqlProcessor;
+        this.queryExecutionService = queryExecutionService;
+    }
+
+    /**
+     * Gera e executa a consulta da pergunta. Erros de qualquer etapa voltam em 'erro', com os
+     * tempos medidos até ali.
+     */
+    public PerguntaResposta perguntar(String pergunta, boolean incluirSparql) {
+        StageTimings tempos = new StageTimings();
+        PerguntaResposta resposta = new PerguntaResposta();
+        resposta.setPergunta(pergunta);
+        try {
+            ProcessamentoDetalhadoResposta interpretacao = tempos.medir("nlp", () -> sparqlProcessor.interpretar(pergunta));
+            if (interpretacao.getErro() != null) {
+                resposta.setErro(interpretacao.getErro());
+                return resposta;
+            }
+            String templateId = interpretacao.getTemplateId();
+            resposta.setTemplateId(templateId);
+            resposta.setTipoMetrica(interpretacao.getTipoMetrica());
+
+            ParametrosConsulta parametros = new ParametrosConsulta();
+            String parametrica = tempos.medir("render",
+                    () -> sparqlProcessor.renderParametrizada(templateId, interpretacao.getEntidades(), parametros));
+            PreparedQuery preparedQuery = new PreparedQuery(templateId, parametrica,
+                    tempos.medir("parse", () -> sparqlProcessor.analisar(templateId, interpretacao.getEntidades(), parametrica)), parametros);
+
+            resposta.setResultado(queryExecutionService.executarPreparada(preparedQuery, interpretacao.getEntidades(),
+                    interpretacao.getTipoMetrica(), tempos));
+            resposta.setCache(!tempos.contem("execute"));
+            if (incluirSparql) {
+                resposta.setSparqlQuery(sparqlProcessor.renderQuery(templateId, interpretacao.getEntidades()));
+            }
+        } catch (ConsultaRecusadaException e) {
+            // Fila cheia, prazo esgotado...: vira a resposta de erro do endpoint, com o status da recusa.
+            throw e;
+        } catch (Exception e) {
+            logger.error("Erro ao responder '{}': {}", pergunta, e.getMessage(), e);
+            resposta.setErro("Erro ao processar a pergunta: " + e.getMessage());
+        } finally {
+            resposta.setTempos(tempos.emMillis());
+        }
+        return resposta;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.Program.service;
+
+import com.example.Program.model.LoteItemResposta;
+import com.example.Program.model.LoteResposta;
+import com.example.Program.model.ProcessamentoDetalhadoResposta;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Processamento de /api/lote: gera e executa várias perguntas de uma vez.
+ * <ul>
+ *   <li>perguntas iguais (mesma forma canônica do QuestionCache) são geradas uma única vez;</li>
+ *   <li>consultas geradas iguais (mesma chave do QueryResultCache) são executadas uma única vez,
+ *       mesmo com o cache de resultados desligado;</li>
+ *   <li>o trabalho roda em um pool próprio de 'batch.parallelism' threads, compartilhado por todos
+ *       os lotes: um lote grande espera na fila desse pool e não ocupa as threads do Tomcat que
+ *       atendem /processar e /executar;</li>
+ *   <li>a fila do pool tem 'batch.queue-capacity' posições: sem vaga para as gerações, o lote é
+ *       recusado (503 com Retry-After);</li>
+ *   <li>no fim do prazo do lote as tarefas dele que ainda estão na fila ou rodando são canceladas,
+ *       e a execução no Jena recebe só o que resta do prazo.</li>
+ * </ul>
+ * O erro de um item (PLN, template, execução ou tempo esgotado) vai só para aquele item.
+ */
+@Service
+public class BatchQueryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchQueryService.class);
+
+    /** Retry-After de um lote recusado com a fila cheia. */
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final SPARQLProcessor sparqlProcessor;
+    private final QueryExecutionService queryExecutionService;
+    private final int maxItens;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+
+    public BatchQueryService(SPARQLProcessor sparqlProcessor, QueryExecutionService queryExecutionService,
+                             @Value("${batch.parallelism:4}") int parallelism,
+                             @Value("${batch.queue-capacity:400}") int capacidadeFila,
+                             @Value("${batch.max-items:200}") int maxItens,
+                             @Value("${batch.timeout:60s}") Duration timeout) {
+        this.sparqlProcessor = sparqlProcessor;
+        this.queryExecutionService = queryExecutionService;
+        this.maxItens = maxItens;
+        this.timeout = timeout;
+        AtomicInteger contador = new AtomicInteger();
+        int threads = Math.max(1, parallelism);
+        // AbortPolicy: fila cheia -> RejectedExecutionException.
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadeFila)), r -> {
+            Thread t = new Thread(r, "lote-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        logger.info("Processamento em lote: {} threads, fila de {}, até {} perguntas por lote, tempo limite de {} ms.",
+                threads, Math.max(1, capacidadeFila), maxItens, timeout.toMillis());
+    }
+
+    /**
+     * Processa as perguntas e devolve um item por pergunta, na ordem recebida.
+     *
+     * @throws IllegalArgumentException se a lista estiver vazia ou passar de 'batch.max-items'
+     */
+    public LoteResposta processar(List<String> perguntas) {
+        if (perguntas == null || perguntas.isEmpty()) {
+            throw new IllegalArgumentException("A lista de perguntas não pode estar vazia.");
+        }
+        if (perguntas.size() > maxItens) {
+            throw new IllegalArgumentException("O lote tem " + perguntas.size() + " perguntas; o máximo é " + maxItens + ".");
+        }
+        long inicio = System.nanoTime();
+        Tarefas tarefas = new Tarefas(inicio + timeout.toNanos());
+        Map<String, CompletableFuture<ProcessamentoDetalhadoResposta>> geracoes = new HashMap<>();
+        Map<String, CompletableFuture<String>> execucoes = new ConcurrentHashMap<>();
+        List<CompletableFuture<LoteItemResposta>> futuros = new ArrayList<>(perguntas.size());
+        List<LoteItemResposta> itens = new ArrayList<>(perguntas.size());
+        try {
+            for (String pergunta : perguntas) {
+                if (pergunta == null || pergunta.trim().isEmpty()) {
+                    futuros.add(CompletableFuture.completedFuture(erro(pergunta, "A pergunta não pode estar vazia.")));
+                    continue;
+                }
+                CompletableFuture<ProcessamentoDetalhadoResposta> geracao;
+                try {
+                    geracao = geracoes.computeIfAbsent(QuestionCache.canonicalize(pergunta),
+                            c -> tarefas.enviar(() -> sparqlProcessor.generateSparqlQuery(pergunta)));
+                } catch (RejectedExecutionException e) {
+                    throw ConsultaRecusadaException.sobrecarga(RETRY_AFTER, "Servidor sobrecarregado: fila do lote cheia ("
+                            + executor.getQueue().size() + " tarefas). Tente novamente em " + RETRY_AFTER.toSeconds() + " s.");
+                }
+                futuros.add(geracao.thenCompose(resposta -> executar(pergunta, resposta, execucoes, tarefas)));
+            }
+
+            for (int i = 0; i < futuros.size(); i++) {
+                itens.add(aguardar(perguntas.get(i), futuros.get(i), tarefas.prazo));
+            }
+        } finally {
+            // Itens com tempo esgotado (ou lote recusado): libera a fila e as threads do pool.
+            tarefas.cancelar();
+        }
+
+        LoteResposta lote = new LoteResposta();
+        lote.setItens(itens);
+        lote.setConsultasExecutadas(execucoes.size());
+        lote.setMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        logger.info("Lote de {} perguntas: {} gerações, {} execuções distintas, {} ms.",
+                perguntas.size(), geracoes.size(), execucoes.size(), lote.getMillis());
+        return lote;
+    }
+
+    private CompletableFuture<LoteItemResposta> executar(String pergunta, ProcessamentoDetalhadoResposta resposta,
+                                                         Map<String, CompletableFuture<String>> execucoes, Tarefas tarefas) {
+        if (resposta.getErro() != null) {
+            return CompletableFuture.completedFuture(erro(pergunta, resposta.getErro()));
+        }
+        String tipoMetrica = resposta.getTipoMetrica();
+        PreparedQuery preparedQuery = sparqlProcessor.prepareQuery(resposta.getTemplateId(), resposta.getEntidades());
+        CompletableFuture<String> execucao;
+        try {
+            execucao = execucoes.computeIfAbsent(QueryResultCache.key(preparedQuery, tipoMetrica),
+                    k -> tarefas.enviar(() -> queryExecutionService.executarPreparada(preparedQuery, resposta.getEntidades(),
+                            tipoMetrica, Duration.ofNanos(tarefas.prazo - System.nanoTime()))));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(erro(pergunta, "Servidor sobrecarregado: fila do lote cheia."));
+        }
+        return execucao.handle((resultado, falha) -> {
+            LoteItemResposta item = new LoteItemResposta();
+            item.setPergunta(pergunta);
+            item.setTemplateId(resposta.getTemplateId());
+            item.setTipoMetrica(tipoMetrica);
+            item.setSparqlQuery(resposta.getSparqlQuery());
+            if (falha != null) {
+                Throwable causa = falha instanceof CompletionException && falha.getCause() != null ? falha.getCause() : falha;
+                item.setErro("Erro ao executar a consulta: " + causa.getMessage());
+            } else {
+                item.setResultado(resultado);
+            }
+            return item;
+        });
+    }
+
+    private LoteItemResposta aguardar(String pergunta, CompletableFuture<LoteItemResposta> futuro, long prazo) {
+        try {
+            return futuro.get(Math.max(0, prazo - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return erro(pergunta, "Tempo limite do lote esgotado antes de processar esta pergunta.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return erro(pergunta, "Processamento do lote interrompido.");
+        } catch (Exception e) {
+            // Falha na geração (ex: template desconhecido em prepareQuery).
+            Throwable causa = e.getCause() != null ? e.getCause() : e;
+            logger.warn("Erro no item '{}' do lote: {}", pergunta, causa.getMessage());
+            return erro(pergunta, "Erro ao processar a pergunta: " + causa.getMessage());
+        }
+    }
+
+    /**
+     * Tarefas de um lote no pool, para cancelá-las no fim do prazo: as da fila saem dela e as que
+     * estão rodando são interrompidas (a execução no Jena já tem o prazo do lote).
+     */
+    private final class Tarefas {
+
+        final long prazo;
+        private final List<Future<?>> enviadas = new ArrayList<>();
+        private boolean canceladas;
+
+        Tarefas(long prazo) {
+            this.prazo = prazo;
+        }
+
+        /**
+         * @throws RejectedExecutionException com a fila do pool cheia
+         */
+        synchronized <T> CompletableFuture<T> enviar(Supplier<T> trabalho) {
+            CompletableFuture<T> resultado = new CompletableFuture<>();
+            if (canceladas) {
+                resultado.cancel(false);
+                return resultado;
+            }
+            enviadas.add(executor.submit(() -> {
+                try {
+                    resultado.complete(trabalho.get());
+                } catch (Throwable t) {
+                    resultado.completeExceptionally(t);
+                }
+            }));
+            return resultado;
+        }
+
+        synchronized void cancelar() {
+            canceladas = true;
+            boolean alguma = false;
+            for (Future<?> tarefa : enviadas) {
+                alguma |= tarefa.cancel(true);
+            }
+            if (alguma) {
+                executor.purge();
+            }
+        }
+    }
+
+    private static LoteItemResposta erro(String pergunta, String mensagem) {
+        LoteItemResposta item = new LoteItemResposta();
+        item.setPergunta(pergunta);
+        item.setErro(mensagem);
+        return item;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
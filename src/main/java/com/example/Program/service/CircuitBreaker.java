@@ -0,0 +1,124 @@
+package com.example.Program.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disjuntor para uma dependência remota:
+ * <ul>
+ *   <li>FECHADO: as chamadas passam; 'limiarFalhas' falhas seguidas abrem o circuito;</li>
+ *   <li>ABERTO: as chamadas são recusadas (quem chama usa o fallback) durante 'tempoAberto';</li>
+ *   <li>MEIO_ABERTO: passado esse tempo, até 'sondas' chamadas simultâneas testam a dependência.
+ *       Um sucesso fecha o circuito; uma falha o abre de novo por mais 'tempoAberto'.</li>
+ * </ul>
+ * Quem recebe permissão deve informar exatamente um resultado: sucesso, falha ou liberar (quando
+ * a chamada nem chegou a ser feita, ex: sem vaga no bulkhead).
+ */
+public final class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum Estado { FECHADO, ABERTO, MEIO_ABERTO }
+
+    private final String nome;
+    private final int limiarFalhas;
+    private final long tempoAbertoNanos;
+    private final int sondas;
+
+    private Estado estado = Estado.FECHADO;
+    private int falhasSeguidas;
+    private long abertoAte;
+    private int sondasEmAndamento;
+    private long aberturas;
+    private long fechamentos;
+    private long recusadas;
+
+    public CircuitBreaker(String nome, int limiarFalhas, Duration tempoAberto, int sondas) {
+        this.nome = nome;
+        this.limiarFalhas = Math.max(1, limiarFalhas);
+        this.tempoAbertoNanos = tempoAberto.toNanos();
+        this.sondas = Math.max(1, sondas);
+    }
+
+    /** true se a chamada pode ser feita agora. */
+    public synchronized boolean permitir() {
+        if (estado == Estado.ABERTO) {
+            if (System.nanoTime() - abertoAte < 0) {
+                recusadas++;
+                return false;
+            }
+            estado = Estado.MEIO_ABERTO;
+            sondasEmAndamento = 0;
+            logger.info("Circuito '{}' meio aberto: testando a dependência.", nome);
+        }
+        if (estado == Estado.MEIO_ABERTO) {
+            if (sondasEmAndamento >= sondas) {
+                recusadas++;
+                return false;
+            }
+            sondasEmAndamento++;
+        }
+        return true;
+    }
+
+    public synchronized void sucesso() {
+        falhasSeguidas = 0;
+        if (estado == Estado.MEIO_ABERTO) {
+            estado = Estado.FECHADO;
+            fechamentos++;
+            logger.info("Circuito '{}' fechado: a dependência voltou a responder.", nome);
+        }
+    }
+
+    public synchronized void falha() {
+        if (estado == Estado.MEIO_ABERTO) {
+            abrir();
+        } else if (estado == Estado.FECHADO && ++falhasSeguidas >= limiarFalhas) {
+            abrir();
+        }
+    }
+
+    /** Devolve a permissão de uma chamada que não foi feita, sem contar sucesso nem falha. */
+    public synchronized void liberar() {
+        if (estado == Estado.MEIO_ABERTO && sondasEmAndamento > 0) {
+            sondasEmAndamento--;
+        }
+    }
+
+    private void abrir() {
+        estado = Estado.ABERTO;
+        abertoAte = System.nanoTime() + tempoAbertoNanos;
+        falhasSeguidas = 0;
+        aberturas++;
+        logger.warn("Circuito '{}' aberto por {} ms.", nome, tempoAbertoNanos / 1_000_000);
+    }
+
+    public synchronized Estado getEstado() {
+        // Reflete a expiração do tempo aberto mesmo sem chamadas desde então.
+        return estado == Estado.ABERTO && System.nanoTime() - abertoAte >= 0 ? Estado.MEIO_ABERTO : estado;
+    }
+
+    /** Transições para ABERTO desde o início (para o Micrometer). */
+    public synchronized long getAberturas() {
+        return aberturas;
+    }
+
+    /** Transições de MEIO_ABERTO para FECHADO desde o início. */
+    public synchronized long getFechamentos() {
+        return fechamentos;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("estado", getEstado());
+        m.put("falhasSeguidas", falhasSeguidas);
+        m.put("aberturas", aberturas);
+        m.put("fechamentos", fechamentos);
+        m.put("recusadas", recusadas);
+        return m;
+    }
+}
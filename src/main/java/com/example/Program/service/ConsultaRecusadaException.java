@@ -0,0 +1,62 @@
+package com.example.Program.service;
+
+import java.time.Duration;
+
+/**
+ * Consulta que a governança da execução não deixou rodar ou interrompeu. Traz o status HTTP da
+ * resposta e, na sobrecarga, o tempo sugerido para o cliente tentar de novo (Retry-After).
+ */
+public class ConsultaRecusadaException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Motivos, usados também como tag da métrica nl2sparql.rejected. */
+    public static final String SOBRECARGA = "sobrecarga";
+    public static final String TEMPO = "tempo";
+    public static final String CUSTO = "custo";
+    public static final String LINHAS = "linhas";
+
+    private final String motivo;
+    private final int status;
+    private final Duration retryAfter;
+
+    private ConsultaRecusadaException(String motivo, int status, Duration retryAfter, String mensagem) {
+        super(mensagem);
+        this.motivo = motivo;
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    /** Fila de execução cheia: 503 com Retry-After. */
+    static ConsultaRecusadaException sobrecarga(Duration retryAfter, String mensagem) {
+        return new ConsultaRecusadaException(SOBRECARGA, 503, retryAfter, mensagem);
+    }
+
+    /** Prazo esgotado na fila ou na execução: 504. */
+    static ConsultaRecusadaException tempo(String mensagem) {
+        return new ConsultaRecusadaException(TEMPO, 504, null, mensagem);
+    }
+
+    /** Estimativa de custo acima do limite: 422. */
+    static ConsultaRecusadaException custo(String mensagem) {
+        return new ConsultaRecusadaException(CUSTO, 422, null, mensagem);
+    }
+
+    /** Resultado acima do máximo de linhas: 422. */
+    static ConsultaRecusadaException linhas(String mensagem) {
+        return new ConsultaRecusadaException(LINHAS, 422, null, mensagem);
+    }
+
+    public String getMotivo() {
+        return motivo;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /** Tempo sugerido antes de tentar de novo; null quando repetir não adianta. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,601 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.GroupAggregates;
+import com.example.Program.ontology.MetricaDiaria;
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.PregaoIndex;
+import com.example.Program.ontology.ResultTable;
+import com.example.Program.ontology.TimeSeriesIndex;
+import com.example.Program.ontology.TimeSeriesIndex.Coluna;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Responde templates diretamente a partir do TimeSeriesIndex, sem passar pelo Jena, quando a
+ * combinação (templateId, entidades) é suportada. O resultado tem as mesmas variáveis e as mesmas
+ * formas léxicas que a consulta SPARQL equivalente, com os valores já tipados (ResultTable); para
+ * o resto, devolve Optional.empty() e a consulta segue pelo caminho SPARQL.
+ */
+@Service
+public class IndexedQueryExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedQueryExecutor.class);
+    private static final Pattern TICKER_PATTERN = Pattern.compile("^[A-Z]{4}[0-9]{1,2}$");
+
+    private final Ontology ontology;
+    private final PlaceholderService placeholderService;
+    private final MaterializedAggregates materializedAggregates;
+    private final LabelIndex labelIndex;
+    private final boolean enabled;
+
+    public IndexedQueryExecutor(Ontology ontology, PlaceholderService placeholderService,
+                                MaterializedAggregates materializedAggregates, LabelIndex labelIndex,
+                                @Value("${sparql.indexed-execution.enabled:true}") boolean enabled) {
+        this.ontology = ontology;
+        this.placeholderService = placeholderService;
+        this.materializedAggregates = materializedAggregates;
+        this.labelIndex = labelIndex;
+        this.enabled = enabled;
+    }
+
+    public Optional<ResultTable> execute(String templateId, JsonNode entidades) {
+        TimeSeriesIndex index = ontology.getTimeSeriesIndex();
+        if (!enabled || index == null || templateId == null || entidades == null || !entidades.isObject()) {
+            return Optional.empty();
+        }
+        ResultTable resultado = switch (templateId) {
+            case "Template_1B" -> valorPontual(index, entidades);
+            case "Template_1D" -> calculoPontual(index, entidades);
+            case "Template_4" -> agregadoGrupo(index, entidades);
+            case "Template_5A", "Template_5B" -> ranking(index, templateId, entidades);
+            case "Template_6A", "Template_6B" -> rankingComMetricaFinal(index, templateId, entidades);
+            case "Template_7A" -> agregadoPeriodo(index, entidades);
+            case "Template_7B" -> agregadoGrupoPeriodo(index, entidades);
+            case "Template_7C" -> retornoAcumulado(index, entidades);
+            case "Template_7D" -> drawdownMaximo(index, entidades);
+            default -> null;
+        };
+        if (resultado != null) {
+            logger.debug("Consulta {} respondida pelo índice de séries temporais ({} resultados).", templateId, resultado.linhas());
+        }
+        return Optional.ofNullable(resultado);
+    }
+
+    /** Template_1B: ?SO2 #VALOR_DESEJADO# ?valor para um ticker em uma data. */
+    private ResultTable valorPontual(TimeSeriesIndex index, JsonNode entidades) {
+        String ticker = tickerDaEntidade(entidades);
+        Coluna coluna = Coluna.fromPredicado(placeholderService.getPlaceholderValue(entidades.path("VALOR_DESEJADO").asText()));
+        if (ticker == null || coluna == null || !entidades.hasNonNull("DATA")) {
+            return null;
+        }
+        int t = index.tickerId(ticker);
+        int row = index.row(index.dateId(entidades.get("DATA").asText()), t);
+        ResultTable tabela = new ResultTable(List.of("ticker", "valor"), 1);
+        if (row < 0 || index.tickerLabel(t) == null || Double.isNaN(index.value(coluna, row))) {
+            return tabela;
+        }
+        tabela.texto(index.tickerLabel(t));
+        armazenado(tabela, index.value(coluna, row));
+        return tabela;
+    }
+
+    /** Template_1D: métrica derivada de abertura/fechamento/máximo/mínimo para um ticker em uma data. */
+    private ResultTable calculoPontual(TimeSeriesIndex index, JsonNode entidades) {
+        String ticker = tickerDaEntidade(entidades);
+        MetricaDiaria metrica = MetricaDiaria.fromCalculo(calculoKey(entidades));
+        if (ticker == null || !entidades.hasNonNull("DATA") || !calculoOhlcSuportado(metrica)) {
+            return null;
+        }
+        int t = index.tickerId(ticker);
+        int row = index.row(index.dateId(entidades.get("DATA").asText()), t);
+        ResultTable tabela = new ResultTable(List.of("ticker", "resultadoCalculado"), 1);
+        if (row < 0 || index.tickerLabel(t) == null) {
+            return tabela;
+        }
+        // Os quatro padrões do template são obrigatórios e FILTER(?abertura > 0).
+        if (Double.isNaN(index.value(Coluna.FECHAMENTO, row)) || Double.isNaN(index.value(Coluna.MAXIMO, row))
+                || Double.isNaN(index.value(Coluna.MINIMO, row)) || !(index.value(Coluna.ABERTURA, row) > 0)) {
+            return tabela;
+        }
+        tabela.texto(index.tickerLabel(t));
+        metrica(tabela, metrica, index, row);
+        return tabela;
+    }
+
+    /**
+     * Template_4: valores individuais do grupo (setor ou lista de tickers) em uma data, seguidos
+     * da linha TOTAL. Volume e quantidade de negócios usam os agregados materializados.
+     */
+    private ResultTable agregadoGrupo(TimeSeriesIndex index, JsonNode entidades) {
+        Coluna coluna = Coluna.fromPredicado(placeholderService.getPlaceholderValue(entidades.path("VALOR_DESEJADO").asText()));
+        if (coluna == null || !entidades.hasNonNull("DATA")) {
+            return null;
+        }
+        BitSet mascara;
+        GroupAggregates.Agregado agregado;
+        JsonNode listaTickers = entidades.get("LISTA_TICKERS");
+        if (listaTickers != null && listaTickers.isArray() && listaTickers.size() > 0) {
+            Set<String> nomes = new LinkedHashSet<>();
+            listaTickers.forEach(t -> nomes.add(t.asText()));
+            if (nomes.size() != listaTickers.size()) {
+                return null; // VALUES com tickers repetidos duplica linhas no SPARQL
+            }
+            mascara = index.tickersMask(nomes);
+            agregado = materializedAggregates.tickers(index, nomes);
+        } else if (entidades.has("NOME_SETOR")) {
+            String setor = rotuloSetor(entidades);
+            mascara = index.setorMask(setor);
+            agregado = materializedAggregates.setor(index, setor);
+        } else {
+            return null;
+        }
+
+        ResultTable linhas = new ResultTable(List.of("ticker", "resultado"));
+        int d = index.dateId(entidades.get("DATA").asText());
+        boolean materializado = agregado != null && (coluna == Coluna.VOLUME || coluna == Coluna.NEGOCIOS);
+        double soma = 0;
+        int somadas = 0;
+        if (d >= 0) {
+            List<Integer> individuais = new ArrayList<>();
+            for (int r = index.dateStart(d), fim = index.dateEnd(d); r < fim; r++) {
+                int t = index.rowTicker(r);
+                double valor = index.value(coluna, r);
+                if (!mascara.get(t) || Double.isNaN(valor)) {
+                    continue;
+                }
+                if (!materializado) {
+                    soma += valor;
+                    somadas++;
+                }
+                if (index.tickerLabel(t) != null) {
+                    individuais.add(r);
+                }
+            }
+            individuais.sort(Comparator.comparing((Integer r) -> index.tickerLabel(index.rowTicker(r))));
+            for (int r : individuais) {
+                linhas.texto(index.tickerLabel(index.rowTicker(r)));
+                armazenado(linhas, index.value(coluna, r));
+            }
+            if (materializado) {
+                Number total = coluna == Coluna.VOLUME ? agregado.volume(d) : agregado.negocios(d);
+                if (total != null) {
+                    soma = total.doubleValue();
+                    somadas = 1;
+                }
+            }
+        }
+        // SUM sem linhas resulta no inteiro 0.
+        linhas.texto("TOTAL");
+        if (somadas > 0) {
+            linhas.numero(soma, true);
+        } else {
+            linhas.numero(0, "0");
+        }
+        return linhas;
+    }
+
+    /**
+     * Template_5A/5B: TOP N de #CALCULO# no pregão, já com os filtros de setor, lista de tickers
+     * e sufixo (REGEX_PATTERN) aplicados como máscaras.
+     */
+    private ResultTable ranking(TimeSeriesIndex index, String templateId, JsonNode entidades) {
+        MetricaDiaria metrica = MetricaDiaria.fromCalculo(calculoKey(entidades));
+        RankingParams params = rankingParams(index, templateId, entidades);
+        if (metrica == null || params == null) {
+            return null;
+        }
+        int[] vencedores = RankingEngine.topN(index, params.dateId, metrica, params.ascendente, params.limite,
+                params.mascara, index.linhasCompletas());
+        ResultTable linhas = new ResultTable(List.of("ticker", "resultadoCalculado"), vencedores.length);
+        for (int row : vencedores) {
+            linhas.texto(index.tickerLabel(index.rowTicker(row)));
+            metrica(linhas, metrica, index, row);
+        }
+        return linhas;
+    }
+
+    /**
+     * Template_6A/6B: TOP N por #RANKING_CALCULATION# e, apenas para os vencedores, a métrica #CALCULO#.
+     */
+    private ResultTable rankingComMetricaFinal(TimeSeriesIndex index, String templateId, JsonNode entidades) {
+        MetricaDiaria metricaRanking = MetricaDiaria.fromCalculo(entidades.path("RANKING_CALCULATION").asText(null));
+        MetricaDiaria metricaFinal = MetricaDiaria.fromCalculo(calculoKey(entidades));
+        RankingParams params = rankingParams(index, templateId, entidades);
+        if (metricaRanking == null || metricaFinal == null || params == null) {
+            return null;
+        }
+        int[] vencedores = RankingEngine.topN(index, params.dateId, metricaRanking, params.ascendente, params.limite,
+                params.mascara, index.linhasCompletas());
+        ResultTable linhas = new ResultTable(List.of("ticker", "resultadoFinal"), vencedores.length);
+        for (int row : vencedores) {
+            linhas.texto(index.tickerLabel(index.rowTicker(row)));
+            metrica(linhas, metricaFinal, index, row);
+        }
+        return linhas;
+    }
+
+    private record RankingParams(int dateId, boolean ascendente, int limite, BitSet mascara) {}
+
+    /**
+     * Lê DATA, ORDEM, LIMITE e monta a máscara de tickers com as mesmas regras de
+     * SPARQLProcessor.buildQuery para #FILTER_BLOCK_SETOR# / #FILTER_BLOCK# e #REGEX_FILTER#.
+     * Retorna null para combinações que ficam com o SPARQL (ex: ranking filtrado por empresa).
+     */
+    private RankingParams rankingParams(TimeSeriesIndex index, String templateId, JsonNode entidades) {
+        if (!entidades.hasNonNull("DATA") || !entidades.hasNonNull("ORDEM") || !entidades.hasNonNull("LIMITE")) {
+            return null;
+        }
+        String ordem = entidades.get("ORDEM").asText();
+        if (!ordem.equals("ASC") && !ordem.equals("DESC")) {
+            return null;
+        }
+        int limite;
+        try {
+            limite = Integer.parseInt(entidades.get("LIMITE").asText().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (limite < 0) {
+            return null;
+        }
+
+        BitSet tickers = null;
+        JsonNode listaTickers = entidades.get("LISTA_TICKERS");
+        if (listaTickers != null && listaTickers.isArray() && listaTickers.size() > 0) {
+            List<String> nomes = new ArrayList<>();
+            listaTickers.forEach(t -> nomes.add(t.asText()));
+            tickers = index.tickersMask(nomes);
+        } else if (entidades.has("NOME_SETOR")) {
+            tickers = index.setorMask(rotuloSetor(entidades));
+        } else if (templateId.equals("Template_6A") && entidades.has("ENTIDADE_NOME")) {
+            return null;
+        }
+        if (templateId.equals("Template_5B")) {
+            // O Template_5B exige ?S1 P1 ?SO1 mesmo quando o filtro é uma lista de tickers.
+            BitSet comEmpresa = index.comEmpresaMask();
+            if (tickers != null) {
+                comEmpresa.and(tickers);
+            }
+            tickers = comEmpresa;
+        }
+        if (entidades.has("REGEX_PATTERN")) {
+            BitSet sufixo;
+            try {
+                sufixo = index.tickerRegexMask(entidades.get("REGEX_PATTERN").asText());
+            } catch (PatternSyntaxException e) {
+                return null;
+            }
+            if (tickers == null) {
+                tickers = (BitSet) sufixo.clone();
+            } else {
+                tickers.and(sufixo);
+            }
+        }
+        return new RankingParams(index.dateId(entidades.get("DATA").asText()), ordem.equals("ASC"), limite, tickers);
+    }
+
+    /**
+     * Template_7A: SUM/AVG da métrica por ação nos pregões do período, ordenado e limitado como
+     * no ranking. Cada pregão do período é percorrido uma vez, acumulando soma e contagem por ticker.
+     */
+    private ResultTable agregadoPeriodo(TimeSeriesIndex index, JsonNode entidades) {
+        Coluna coluna = Coluna.fromPredicado(placeholderService.getPlaceholderValue(entidades.path("VALOR_DESEJADO").asText()));
+        PeriodoParams params = periodoParams(index, entidades, true);
+        if (coluna == null || params == null) {
+            return null;
+        }
+        boolean media = "media".equals(entidades.path("AGREGACAO").asText());
+        double[] soma = new double[index.tickerCount()];
+        int[] quantidade = new int[index.tickerCount()];
+        for (int d : params.dias) {
+            for (int r = index.dateStart(d), fim = index.dateEnd(d); r < fim; r++) {
+                int t = index.rowTicker(r);
+                double valor = index.value(coluna, r);
+                if (params.aceita(index, t) && !Double.isNaN(valor)) {
+                    soma[t] += valor;
+                    quantidade[t]++;
+                }
+            }
+        }
+        double[] resultado = new double[soma.length];
+        for (int t = 0; t < soma.length; t++) {
+            resultado[t] = quantidade[t] == 0 ? Double.NaN : media ? soma[t] / quantidade[t] : soma[t];
+        }
+        return ordenarPorTicker(index, List.of("ticker", "resultado"), resultado, params);
+    }
+
+    /**
+     * Template_7B: SUM/AVG da métrica por ação do grupo no período (em ordem de ticker), seguido
+     * da linha TOTAL com o agregado de todas as negociações do grupo (também as sem b3:ticker).
+     */
+    private ResultTable agregadoGrupoPeriodo(TimeSeriesIndex index, JsonNode entidades) {
+        Coluna coluna = Coluna.fromPredicado(placeholderService.getPlaceholderValue(entidades.path("VALOR_DESEJADO").asText()));
+        int[] dias = diasDoPeriodo(index, entidades);
+        if (coluna == null || dias == null) {
+            return null;
+        }
+        BitSet mascara = null;
+        JsonNode listaTickers = entidades.get("LISTA_TICKERS");
+        if (listaTickers != null && listaTickers.isArray() && listaTickers.size() > 0) {
+            mascara = mascaraLista(index, listaTickers);
+            if (mascara == null) {
+                return null;
+            }
+        } else if (entidades.has("NOME_SETOR")) {
+            mascara = index.setorMask(rotuloSetor(entidades));
+        }
+        boolean media = "media".equals(entidades.path("AGREGACAO").asText());
+        double[] soma = new double[index.tickerCount()];
+        int[] quantidade = new int[index.tickerCount()];
+        double total = 0;
+        int somadas = 0;
+        for (int d : dias) {
+            for (int r = index.dateStart(d), fim = index.dateEnd(d); r < fim; r++) {
+                int t = index.rowTicker(r);
+                double valor = index.value(coluna, r);
+                if ((mascara == null || mascara.get(t)) && !Double.isNaN(valor)) {
+                    soma[t] += valor;
+                    quantidade[t]++;
+                    total += valor;
+                    somadas++;
+                }
+            }
+        }
+        List<Integer> individuais = new ArrayList<>();
+        for (int t = 0; t < soma.length; t++) {
+            if (quantidade[t] > 0 && index.tickerLabel(t) != null) {
+                individuais.add(t);
+            }
+        }
+        individuais.sort(Comparator.comparing(index::tickerLabel));
+        ResultTable linhas = new ResultTable(List.of("ticker", "resultado"), individuais.size() + 1);
+        for (int t : individuais) {
+            linhas.texto(index.tickerLabel(t));
+            linhas.numero(media ? soma[t] / quantidade[t] : soma[t], true);
+        }
+        // SUM e AVG sem linhas resultam no inteiro 0.
+        linhas.texto("TOTAL");
+        if (somadas > 0) {
+            linhas.numero(media ? total / somadas : total, true);
+        } else {
+            linhas.numero(0, "0");
+        }
+        return linhas;
+    }
+
+    /**
+     * Template_7C: retorno acumulado, da abertura do primeiro pregão do período ao fechamento do
+     * último (considerando só os pregões com abertura e fechamento), com FILTER(?abertura > 0).
+     */
+    private ResultTable retornoAcumulado(TimeSeriesIndex index, JsonNode entidades) {
+        PeriodoParams params = periodoParams(index, entidades, true);
+        if (params == null) {
+            return null;
+        }
+        int[] primeira = new int[index.tickerCount()];
+        int[] ultima = new int[index.tickerCount()];
+        Arrays.fill(primeira, -1);
+        for (int d : params.dias) {
+            for (int r = index.dateStart(d), fim = index.dateEnd(d); r < fim; r++) {
+                int t = index.rowTicker(r);
+                if (params.aceita(index, t) && !Double.isNaN(index.value(Coluna.ABERTURA, r))
+                        && !Double.isNaN(index.value(Coluna.FECHAMENTO, r))) {
+                    if (primeira[t] < 0) {
+                        primeira[t] = r;
+                    }
+                    ultima[t] = r;
+                }
+            }
+        }
+        double[] resultado = new double[primeira.length];
+        for (int t = 0; t < primeira.length; t++) {
+            double abertura = primeira[t] < 0 ? Double.NaN : index.value(Coluna.ABERTURA, primeira[t]);
+            resultado[t] = abertura > 0
+                    ? ((index.value(Coluna.FECHAMENTO, ultima[t]) - abertura) / abertura) * 100
+                    : Double.NaN;
+        }
+        return ordenarPorTicker(index, List.of("ticker", "resultadoCalculado"), resultado, params);
+    }
+
+    /**
+     * Template_7D: drawdown máximo do fechamento no período. O pico é acumulado pregão a pregão,
+     * então cada ação é resolvida em uma passada em vez de comparar todos os pares de pregões.
+     */
+    private ResultTable drawdownMaximo(TimeSeriesIndex index, JsonNode entidades) {
+        PeriodoParams params = periodoParams(index, entidades, true);
+        if (params == null) {
+            return null;
+        }
+        double[] pico = new double[index.tickerCount()];
+        double[] resultado = new double[index.tickerCount()];
+        Arrays.fill(pico, Double.NEGATIVE_INFINITY);
+        Arrays.fill(resultado, Double.NaN);
+        for (int d : params.dias) {
+            for (int r = index.dateStart(d), fim = index.dateEnd(d); r < fim; r++) {
+                int t = index.rowTicker(r);
+                double fechamento = index.value(Coluna.FECHAMENTO, r);
+                if (!params.aceita(index, t) || Double.isNaN(fechamento)) {
+                    continue;
+                }
+                pico[t] = Math.max(pico[t], fechamento);
+                if (pico[t] > 0) {
+                    double queda = ((pico[t] - fechamento) / pico[t]) * 100;
+                    resultado[t] = Double.isNaN(resultado[t]) ? queda : Math.max(resultado[t], queda);
+                }
+            }
+        }
+        return ordenarPorTicker(index, List.of("ticker", "resultadoCalculado"), resultado, params);
+    }
+
+    /** Tickers com resultado (não NaN), em ORDER BY #ORDEM#(resultado) ?ticker, até o LIMIT. */
+    private static ResultTable ordenarPorTicker(TimeSeriesIndex index, List<String> vars, double[] resultado,
+                                                PeriodoParams params) {
+        List<Integer> tickers = new ArrayList<>();
+        for (int t = 0; t < resultado.length; t++) {
+            if (!Double.isNaN(resultado[t])) {
+                tickers.add(t);
+            }
+        }
+        Comparator<Integer> porValor = Comparator.comparingDouble(t -> resultado[t]);
+        tickers.sort((params.ascendente ? porValor : porValor.reversed()).thenComparing(index::tickerLabel));
+        int total = Math.min(tickers.size(), params.limite);
+        ResultTable linhas = new ResultTable(vars, total);
+        for (int i = 0; i < total; i++) {
+            int t = tickers.get(i);
+            linhas.texto(index.tickerLabel(t));
+            linhas.numero(resultado[t], true);
+        }
+        return linhas;
+    }
+
+    /** Dias do período (ids do TimeSeriesIndex) e filtros do #FILTER_BLOCK# / #REGEX_FILTER# dos templates 7A, 7C e 7D. */
+    private record PeriodoParams(int[] dias, BitSet mascara, boolean ascendente, int limite) {
+
+        /** Ticker com b3:ticker (?SO1 P8 ?ticker) e dentro dos filtros. */
+        boolean aceita(TimeSeriesIndex index, int t) {
+            return index.tickerLabel(t) != null && (mascara == null || mascara.get(t));
+        }
+    }
+
+    /**
+     * Pregões do período, ORDEM, LIMITE e a máscara de tickers com a precedência de
+     * #FILTER_BLOCK# (lista de tickers, setor, ticker da entidade). Null para as combinações que
+     * ficam com o SPARQL (ex: empresa pelo nome).
+     */
+    private PeriodoParams periodoParams(TimeSeriesIndex index, JsonNode entidades, boolean ranking) {
+        int[] dias = diasDoPeriodo(index, entidades);
+        if (dias == null || !entidades.hasNonNull("ORDEM") || !entidades.hasNonNull("LIMITE")) {
+            return null;
+        }
+        String ordem = entidades.get("ORDEM").asText();
+        if (!ordem.equals("ASC") && !ordem.equals("DESC")) {
+            return null;
+        }
+        int limite;
+        try {
+            limite = Integer.parseInt(entidades.get("LIMITE").asText().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (limite < 0) {
+            return null;
+        }
+
+        BitSet mascara = null;
+        JsonNode listaTickers = entidades.get("LISTA_TICKERS");
+        if (listaTickers != null && listaTickers.isArray() && listaTickers.size() > 0) {
+            mascara = mascaraLista(index, listaTickers);
+            if (mascara == null) {
+                return null;
+            }
+        } else if (entidades.has("NOME_SETOR")) {
+            mascara = index.setorMask(rotuloSetor(entidades));
+        } else if (entidades.has("ENTIDADE_NOME")) {
+            String ticker = tickerDaEntidade(entidades);
+            if (ticker == null) {
+                return null;
+            }
+            mascara = index.tickersMask(List.of(ticker));
+        }
+        if (entidades.has("REGEX_PATTERN")) {
+            BitSet sufixo;
+            try {
+                sufixo = index.tickerRegexMask(entidades.get("REGEX_PATTERN").asText());
+            } catch (PatternSyntaxException e) {
+                return null;
+            }
+            if (mascara == null) {
+                mascara = (BitSet) sufixo.clone();
+            } else {
+                mascara.and(sufixo);
+            }
+        }
+        return new PeriodoParams(dias, mascara, ordem.equals("ASC"), limite);
+    }
+
+    /**
+     * Ids, no TimeSeriesIndex, dos pregões entre DATA_INICIO e DATA_FIM, em ordem de data: a busca
+     * binária no índice de pregões dá o intervalo e só esses dias são visitados. Null sem as datas.
+     */
+    private int[] diasDoPeriodo(TimeSeriesIndex index, JsonNode entidades) {
+        PregaoIndex pregoes = ontology.getPregaoIndex();
+        if (pregoes == null || !entidades.hasNonNull("DATA_INICIO") || !entidades.hasNonNull("DATA_FIM")) {
+            return null;
+        }
+        int de = pregoes.inicio(entidades.get("DATA_INICIO").asText());
+        int ate = pregoes.fim(entidades.get("DATA_FIM").asText());
+        int[] dias = new int[Math.max(0, ate - de)];
+        int n = 0;
+        for (int p = de; p < ate; p++) {
+            int d = index.dateId(pregoes.data(p));
+            if (d >= 0) {
+                dias[n++] = d;
+            }
+        }
+        return Arrays.copyOf(dias, n);
+    }
+
+    /** Máscara de um VALUES ?SO1 { ... }; null com tickers repetidos (o SPARQL duplicaria as linhas). */
+    private static BitSet mascaraLista(TimeSeriesIndex index, JsonNode listaTickers) {
+        Set<String> nomes = new LinkedHashSet<>();
+        listaTickers.forEach(t -> nomes.add(t.asText()));
+        return nomes.size() == listaTickers.size() ? index.tickersMask(nomes) : null;
+    }
+
+    /** Rótulo do setor na ontologia, resolvido como em SPARQLProcessor (o índice é indexado pelo rótulo exato). */
+    private String rotuloSetor(JsonNode entidades) {
+        String nome = entidades.get("NOME_SETOR").asText();
+        return labelIndex.rotuloSetor(nome).orElse(nome);
+    }
+
+    private static String calculoKey(JsonNode entidades) {
+        return entidades.has("CALCULO")
+                ? entidades.get("CALCULO").asText()
+                : entidades.path("VALOR_DESEJADO").asText().replace("metrica.", "");
+    }
+
+    /** Valor da métrica na linha; as calculadas têm a forma léxica de uma expressão do Jena. */
+    private void metrica(ResultTable tabela, MetricaDiaria metrica, TimeSeriesIndex index, int row) {
+        double valor = metrica.valor(index, row);
+        if (metrica.isCalculada()) {
+            tabela.numero(valor, true);
+        } else {
+            armazenado(tabela, valor);
+        }
+    }
+
+    /** Valor lido do grafo, com a forma léxica conforme o armazenamento da ontologia. */
+    private void armazenado(ResultTable tabela, double valor) {
+        tabela.numero(valor, ontology.isLiteraisCanonicos());
+    }
+
+    /** Fórmulas que só usam variáveis ligadas no Template_1D (D1..D4). */
+    private static boolean calculoOhlcSuportado(MetricaDiaria metrica) {
+        return metrica != null && metrica != MetricaDiaria.VOLUME && metrica != MetricaDiaria.NEGOCIOS
+                && metrica != MetricaDiaria.PRECO_MEDIO;
+    }
+
+    /** Ticker quando ENTIDADE_NOME é um código de negociação (mesma regra de SPARQLProcessor); null para nomes. */
+    private static String tickerDaEntidade(JsonNode entidades) {
+        if (!entidades.hasNonNull("ENTIDADE_NOME")) {
+            return null;
+        }
+        String entidade = entidades.get("ENTIDADE_NOME").asText();
+        return TICKER_PATTERN.matcher(entidade).matches() ? entidade.toUpperCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,443 @@
+package com.example.Program.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Motor de PLN executado dentro da JVM. Porta as regras de extrair_todas_entidades e de
+ * process_question do nlp_controller.py (inclusive o fallback por similaridade com as
+ * perguntas de referência), eliminando a chamada HTTP ao serviço Python.
+ * Todas as expressões regulares são compiladas uma única vez na inicialização; setores e
+ * empresas são encontrados pelo LabelIndex em uma única passada sobre a pergunta.
+ */
+@Service
+public class JavaNlpEngine implements NlpEngine {
+
+    public static final String NAME = "java";
+
+    private static final Logger logger = LoggerFactory.getLogger(JavaNlpEngine.class);
+
+    // UNICODE_CHARACTER_CLASS reproduz o \b do Python 3, que considera letras acentuadas como parte da palavra.
+    private static final int FLAGS = Pattern.UNICODE_CHARACTER_CLASS;
+
+    private static final Pattern DATA_PATTERN = Pattern.compile("(\\d{1,2})/(\\d{1,2})/(\\d{4})");
+    private static final Pattern INTERVALO_PATTERN = Pattern.compile(
+            "\\b(entre|de|desde)\\s+(o dia\\s+)?(\\d{1,2})/(\\d{1,2})/(\\d{4})\\s+(e|a|até|ate)\\s+(o dia\\s+)?(\\d{1,2})/(\\d{1,2})/(\\d{4})", FLAGS);
+    private static final List<String> MESES = List.of("janeiro", "fevereiro", "marco", "abril", "maio", "junho", "julho",
+            "agosto", "setembro", "outubro", "novembro", "dezembro");
+    private static final Pattern MES_PATTERN = Pattern.compile(
+            "\\b(" + String.join("|", MESES) + ")\\b(\\s*(de|/)\\s*(\\d{4}))?", FLAGS);
+    private static final Pattern SEMANA_PATTERN = Pattern.compile("\\bsemana\\b", FLAGS);
+    private static final Pattern MES_RELATIVO_PATTERN = Pattern.compile("\\bmes\\b", FLAGS);
+    private static final Pattern ULTIMOS_PREGOES_PATTERN = Pattern.compile(
+            "\\bultimos\\s+(\\d+|cinco|quatro|tres|dois|dez|sete|seis)\\s+(pregoes|sessoes|dias uteis)\\b", FLAGS);
+    // Indicadores de período (só valem com um período na pergunta).
+    private static final Pattern DRAWDOWN_PATTERN = Pattern.compile("\\b(drawdown|rebaixamento maximo|perda maxima|queda maxima)\\b", FLAGS);
+    private static final Pattern RETORNO_PATTERN = Pattern.compile(
+            "\\b(retorno|rentabilidade|valorizacao|desvalorizacao|variacao acumulada|alta acumulada|queda acumulada)\\b", FLAGS);
+    private static final Pattern MEDIA_PATTERN = Pattern.compile("\\b(media|medio|em media)\\b", FLAGS);
+    private static final Pattern SOMA_PATTERN = Pattern.compile("\\b(total|soma|somado|acumulado)\\b", FLAGS);
+    private static final Pattern TICKER_PATTERN = Pattern.compile("\\b([A-Z]{4}[0-9]{1,2})\\b", FLAGS);
+
+    private static final Map<String, String> NUM_MAP = new LinkedHashMap<>();
+    static {
+        NUM_MAP.put("cinco", "5"); NUM_MAP.put("quatro", "4"); NUM_MAP.put("tres", "3"); NUM_MAP.put("três", "3");
+        NUM_MAP.put("duas", "2"); NUM_MAP.put("dois", "2"); NUM_MAP.put("dez", "10"); NUM_MAP.put("sete", "7");
+        NUM_MAP.put("seis", "6");
+    }
+    private static final Pattern LIMITE_PATTERN = Pattern.compile(
+            "\\b(as|os|top)?\\s*(\\d+|" + String.join("|", NUM_MAP.keySet()) + ")\\s+(acoes|ações|papeis|papéis)\\b",
+            FLAGS | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+    private static final Map<String, List<String>> MAPA_RANKING = new LinkedHashMap<>();
+    private static final Map<String, List<String>> MAPA_METRICAS = new LinkedHashMap<>();
+    static {
+        MAPA_RANKING.put("variacao_perc", List.of("maior alta percentual", "maior percentual de alta", "maior baixa percentual", "menor baixa percentual", "menor variacao percentual", "maior variacao percentual", "maior recuo percentual", "maiores altas percentuais"));
+        MAPA_RANKING.put("variacao_abs", List.of("menor variacao absoluta", "maior baixa absoluta", "maior variacao absoluta"));
+        MAPA_RANKING.put("volume_financeiro", List.of("maior volume", "menor volume", "maior volume negociado", "menor volume negociado"));
+        MAPA_RANKING.put("quantidade_negocios", List.of("maior quantidade de negocios", "menor quantidade de negocios"));
+        MAPA_RANKING.put("preco_maximo", List.of("maior preco maximo", "maior alta"));
+        MAPA_RANKING.put("preco_minimo", List.of("menor preco minimo"));
+        MAPA_RANKING.put("preco_fechamento", List.of("menor preco de fechamento"));
+        MAPA_RANKING.put("preco_abertura", List.of("menor preco de abertura"));
+
+        MAPA_METRICAS.put("variacao_perc", List.of("variacao percentual", "variacao intradiaria percentual"));
+        MAPA_METRICAS.put("variacao_abs", List.of("variacao absoluta", "variacao intradiaria absoluta"));
+        MAPA_METRICAS.put("intervalo_perc", List.of("intervalo intradiario percentual"));
+        MAPA_METRICAS.put("intervalo_abs", List.of("intervalo intradiario absoluto"));
+        MAPA_METRICAS.put("preco_fechamento", List.of("preco de fechamento", "fechamento", "cotação"));
+        MAPA_METRICAS.put("preco_abertura", List.of("preco de abertura", "abertura"));
+        MAPA_METRICAS.put("preco_maximo", List.of("preco maximo"));
+        MAPA_METRICAS.put("preco_minimo", List.of("preco minimo"));
+        MAPA_METRICAS.put("preco_medio", List.of("preco medio"));
+        MAPA_METRICAS.put("ticker", List.of("ticker", "codigo de negociacao", "simbolo", "papel"));
+        MAPA_METRICAS.put("volume_financeiro", List.of("volume financeiro", "volume negociado", "volume"));
+        MAPA_METRICAS.put("quantidade_negocios", List.of("quantidade de negocios", "quantidade de acoes", "volume de titulos", "volume de acoes", "quantidade"));
+    }
+
+    private final NlpDictionaryService dictionaryService;
+    private final LabelIndex labelIndex;
+    private final ReferenceQuestionMatcher referenceMatcher;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<Sinonimo> sinonimosRanking;
+    private List<Sinonimo> sinonimosMetricas;
+    private List<Chave<List<String>>> indices;
+
+    public JavaNlpEngine(NlpDictionaryService dictionaryService, LabelIndex labelIndex,
+                         ReferenceQuestionMatcher referenceMatcher) {
+        this.dictionaryService = dictionaryService;
+        this.labelIndex = labelIndex;
+        this.referenceMatcher = referenceMatcher;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.sinonimosRanking = compilarSinonimos(MAPA_RANKING);
+        this.sinonimosMetricas = compilarSinonimos(MAPA_METRICAS);
+
+        this.indices = new ArrayList<>();
+        for (Map.Entry<String, List<String>> e : dictionaryService.getIndexMap().entrySet()) {
+            Pattern p = Pattern.compile("\\b(no|do|da|de|entre as|do indice|acoes do)?\\s*" + Pattern.quote(e.getKey().toLowerCase(Locale.ROOT)) + "\\b", FLAGS);
+            indices.add(new Chave<>(e.getKey(), p, e.getValue()));
+        }
+        logger.info("Motor de PLN em Java inicializado: {} índices, {} setores, {} empresas.", indices.size(),
+                dictionaryService.getSetorMap().size(), dictionaryService.getEmpresaMap().size());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public JsonNode processQuestion(String question) throws IOException {
+        if (question == null || question.trim().isEmpty()) {
+            throw new IOException("A pergunta não pode ser vazia.");
+        }
+        String perguntaLower = question.toLowerCase(Locale.ROOT);
+        ObjectNode entidades = extrairTodasEntidades(perguntaLower);
+
+        String templateId = selecionarTemplate(perguntaLower, entidades);
+        if (templateId == null) {
+            // Nenhuma regra se aplica: similaridade com as perguntas de referência, como no Python.
+            templateId = referenceMatcher.melhorTemplate(perguntaLower).orElse(null);
+        }
+        if (templateId == null) {
+            throw new IOException("Não foi possível identificar um template para a pergunta.");
+        }
+
+        if ((templateId.equals("Template_5A") || templateId.equals("Template_5B")) && !entidades.has("calculo")) {
+            if (entidades.has("ranking_calculation")) {
+                entidades.put("calculo", entidades.get("ranking_calculation").asText());
+            } else if (entidades.has("valor_desejado")) {
+                entidades.put("calculo", entidades.get("valor_desejado").asText().replace("metrica.", ""));
+            }
+        }
+
+        ObjectNode resposta = objectMapper.createObjectNode();
+        resposta.put("templateId", templateId);
+        ObjectNode entities = resposta.putObject("entities");
+        entidades.fields().forEachRemaining(e -> entities.set(e.getKey().toUpperCase(Locale.ROOT), e.getValue()));
+        return resposta;
+    }
+
+    ObjectNode extrairTodasEntidades(String perguntaLower) {
+        ObjectNode entidades = objectMapper.createObjectNode();
+        String textoProcessavel = " " + perguntaLower + " ";
+
+        // 1. Datas: intervalo explícito, data única (ou a semana dela), mês ou período relativo
+        Matcher matchIntervalo = INTERVALO_PATTERN.matcher(textoProcessavel);
+        if (matchIntervalo.find()) {
+            String inicio = iso(matchIntervalo.group(3), matchIntervalo.group(4), matchIntervalo.group(5));
+            String fim = iso(matchIntervalo.group(8), matchIntervalo.group(9), matchIntervalo.group(10));
+            boolean invertido = inicio.compareTo(fim) > 0;
+            entidades.put("data_inicio", invertido ? fim : inicio);
+            entidades.put("data_fim", invertido ? inicio : fim);
+            textoProcessavel = textoProcessavel.replace(matchIntervalo.group(0), " ");
+        }
+        Matcher matchData = DATA_PATTERN.matcher(textoProcessavel);
+        if (!entidades.has("data_inicio") && matchData.find()) {
+            String data = iso(matchData.group(1), matchData.group(2), matchData.group(3));
+            LocalDate segunda = SEMANA_PATTERN.matcher(textoProcessavel).find() ? segundaDaSemana(data) : null;
+            if (segunda != null) {
+                entidades.put("data_inicio", segunda.toString());
+                entidades.put("data_fim", segunda.plusDays(6).toString());
+            } else {
+                entidades.put("data", data);
+            }
+            textoProcessavel = textoProcessavel.replace(matchData.group(0), " ");
+        }
+        if (!entidades.has("data") && !entidades.has("data_inicio")) {
+            textoProcessavel = extrairPeriodo(textoProcessavel, entidades);
+        }
+        boolean temPeriodo = entidades.has("data_inicio") || entidades.has("periodo");
+
+        // 2. Limites numéricos
+        Matcher limitMatch = LIMITE_PATTERN.matcher(textoProcessavel);
+        if (limitMatch.find()) {
+            String numStr = limitMatch.group(2).toLowerCase(Locale.ROOT);
+            entidades.put("limite", NUM_MAP.getOrDefault(numStr, numStr));
+            textoProcessavel = textoProcessavel.replace(limitMatch.group(0), " ");
+        }
+
+        String textoSemAcento = TextNormalizer.removerAcentos(textoProcessavel);
+
+        // 3. Métricas
+        Sinonimo melhorRanking = melhorSinonimo(sinonimosRanking, textoSemAcento);
+        String textoParaResultado = textoSemAcento;
+        if (melhorRanking != null) {
+            entidades.put("ranking_calculation", melhorRanking.chave);
+            textoParaResultado = textoSemAcento.replace(melhorRanking.semAcento, " ");
+        }
+        Sinonimo melhorMetrica = melhorSinonimo(sinonimosMetricas, textoParaResultado);
+        if (melhorMetrica != null) {
+            if (melhorMetrica.chave.startsWith("variacao") || melhorMetrica.chave.startsWith("intervalo")) {
+                entidades.put("calculo", melhorMetrica.chave);
+            } else {
+                entidades.put("valor_desejado", "metrica." + melhorMetrica.chave);
+            }
+        }
+        if (melhorRanking != null && melhorMetrica == null) {
+            entidades.put("valor_desejado", "metrica." + melhorRanking.chave);
+        }
+        if (temPeriodo) {
+            String semMetrica = melhorMetrica != null ? textoParaResultado.replace(melhorMetrica.semAcento, " ") : textoParaResultado;
+            indicadorDoPeriodo(textoSemAcento, semMetrica, entidades);
+        }
+
+        // 4. Entidades principais
+        String textoProcessavelSemAcento = TextNormalizer.removerAcentos(textoProcessavel);
+        for (Chave<List<String>> indice : indices) {
+            if (indice.pattern.matcher(textoProcessavelSemAcento).find()) {
+                ArrayNode tickers = entidades.putArray("lista_tickers");
+                indice.valor.forEach(tickers::add);
+                break;
+            }
+        }
+        List<LabelIndex.Ocorrencia> ocorrencias = labelIndex.buscar(textoProcessavelSemAcento);
+        if (!entidades.has("lista_tickers")) {
+            // Primeira chave do sector_map (na ordem do arquivo) presente na pergunta.
+            ocorrencias.stream()
+                    .map(LabelIndex.Ocorrencia::entrada)
+                    .filter(e -> e.tipo() == LabelIndex.Tipo.SETOR)
+                    .min(Comparator.comparingInt(LabelIndex.Entrada::ordem))
+                    .ifPresent(e -> entidades.put("nome_setor", e.valor()));
+        }
+        if (!entidades.has("lista_tickers") && !entidades.has("nome_setor")) {
+            Matcher tickerMatch = TICKER_PATTERN.matcher(textoProcessavel.toUpperCase(Locale.ROOT));
+            if (tickerMatch.find()) {
+                entidades.put("entidade_nome", tickerMatch.group(1));
+                entidades.put("tipo_entidade", "ticker");
+            } else {
+                // Chave mais longa presente na pergunta; empates ficam com a primeira do dicionário.
+                ocorrencias.stream()
+                        .map(LabelIndex.Ocorrencia::entrada)
+                        .filter(e -> e.tipo() == LabelIndex.Tipo.EMPRESA)
+                        .min(Comparator.comparingInt((LabelIndex.Entrada e) -> -e.chave().length())
+                                .thenComparingInt(LabelIndex.Entrada::ordem))
+                        .ifPresent(e -> {
+                            // Como no nlp_controller.py, a entidade é a própria chave (resolvida depois pelo LabelIndex).
+                            entidades.put("entidade_nome", e.chave());
+                            entidades.put("tipo_entidade", "nome");
+                        });
+            }
+        }
+
+        // 5. Filtros e defaults
+        String perguntaSemAcento = TextNormalizer.removerAcentos(perguntaLower);
+        if (perguntaSemAcento.contains("ordinaria")) entidades.put("regex_pattern", "3$");
+        else if (perguntaSemAcento.contains("preferencial")) entidades.put("regex_pattern", "[456]$");
+        else if (perguntaSemAcento.contains("unit")) entidades.put("regex_pattern", "11$");
+        entidades.put("ordem", !perguntaLower.contains("baixa") && !perguntaLower.contains("menor") ? "DESC" : "ASC");
+        if (!entidades.has("limite")) {
+            entidades.put("limite", "1");
+        }
+        return entidades;
+    }
+
+    /**
+     * Mês (com ou sem ano), "últimos N pregões", "semana" ou "mês": datas quando a pergunta as
+     * define sozinha, ou um período relativo (entidade "periodo") que o SPARQLProcessor resolve
+     * com o índice de pregões. Devolve o texto sem o trecho reconhecido.
+     */
+    private static String extrairPeriodo(String textoProcessavel, ObjectNode entidades) {
+        String semAcento = TextNormalizer.removerAcentos(textoProcessavel);
+        Matcher matchMes = MES_PATTERN.matcher(semAcento);
+        Matcher matchUltimos = ULTIMOS_PREGOES_PATTERN.matcher(semAcento);
+        if (matchMes.find()) {
+            int mes = MESES.indexOf(matchMes.group(1)) + 1;
+            if (matchMes.group(4) != null) {
+                YearMonth anoMes = YearMonth.of(Integer.parseInt(matchMes.group(4)), mes);
+                entidades.put("data_inicio", anoMes.atDay(1).toString());
+                entidades.put("data_fim", anoMes.atEndOfMonth().toString());
+            } else {
+                entidades.put("periodo", "mes-" + zfill2(Integer.toString(mes)));
+            }
+            return remover(textoProcessavel, semAcento, matchMes);
+        } else if (matchUltimos.find()) {
+            String numStr = matchUltimos.group(1);
+            entidades.put("periodo", "pregoes-" + NUM_MAP.getOrDefault(numStr, numStr));
+            return remover(textoProcessavel, semAcento, matchUltimos);
+        } else if (SEMANA_PATTERN.matcher(semAcento).find()) {
+            entidades.put("periodo", "semana");
+        } else if (MES_RELATIVO_PATTERN.matcher(semAcento).find()) {
+            entidades.put("periodo", "mes");
+        }
+        return textoProcessavel;
+    }
+
+    /** Remove de 'texto' o trecho casado em sua versão sem acentos (que tem o mesmo comprimento). */
+    private static String remover(String texto, String semAcento, Matcher match) {
+        return semAcento.length() == texto.length()
+                ? texto.substring(0, match.start()) + " " + texto.substring(match.end())
+                : texto;
+    }
+
+    /**
+     * Com um período na pergunta: drawdown máximo, retorno acumulado (também para "alta/baixa
+     * percentual") ou, para as métricas do grafo, a agregação no período: média quando pedida ou
+     * para preços, soma nos demais casos.
+     */
+    private static void indicadorDoPeriodo(String textoSemAcento, String textoSemMetrica, ObjectNode entidades) {
+        if (DRAWDOWN_PATTERN.matcher(textoSemAcento).find()) {
+            entidades.put("calculo", "drawdown_maximo_perc");
+        } else if (RETORNO_PATTERN.matcher(textoSemAcento).find()
+                || "variacao_perc".equals(entidades.path("ranking_calculation").asText())
+                || "variacao_perc".equals(entidades.path("calculo").asText())) {
+            entidades.put("calculo", "retorno_acumulado_perc");
+        } else if (entidades.has("valor_desejado")) {
+            boolean media = MEDIA_PATTERN.matcher(textoSemMetrica).find()
+                    || (entidades.get("valor_desejado").asText().startsWith("metrica.preco")
+                        && !SOMA_PATTERN.matcher(textoSemMetrica).find());
+            entidades.put("agregacao", media ? "media" : "soma");
+        }
+    }
+
+    private String selecionarTemplate(String perguntaLower, ObjectNode entidades) {
+        if (entidades.has("data_inicio") || entidades.has("periodo")) {
+            return selecionarTemplatePeriodo(entidades);
+        }
+        boolean hasRanking = entidades.has("ranking_calculation");
+        boolean hasCalculo = entidades.has("calculo");
+        boolean hasEntidadeNome = entidades.has("entidade_nome");
+        boolean hasFiltroGrupo = entidades.has("nome_setor") || entidades.has("lista_tickers");
+        boolean hasValorDesejado = entidades.has("valor_desejado");
+        boolean isComplexRanking = hasRanking && hasValorDesejado
+                && !("metrica." + entidades.path("ranking_calculation").asText()).equals(entidades.path("valor_desejado").asText());
+
+        if (isComplexRanking) {
+            return hasFiltroGrupo ? "Template_6B" : "Template_6A";
+        } else if (hasRanking) {
+            return hasFiltroGrupo ? "Template_5B" : "Template_5A";
+        } else if (hasEntidadeNome && hasCalculo) {
+            return "Template_1D";
+        } else if (hasFiltroGrupo) {
+            if (hasCalculo) {
+                return "Template_6B";
+            } else if (perguntaLower.contains("empresas")) {
+                return "Template_3B";
+            } else if (hasValorDesejado) {
+                return "Template_4";
+            }
+            return "Template_3A";
+        } else if (hasEntidadeNome) {
+            String perguntaSemAcento = TextNormalizer.removerAcentos(perguntaLower);
+            if (perguntaSemAcento.contains("setor de atuacao") || perguntaSemAcento.contains("a qual setor pertence")) {
+                return "Template_2B";
+            } else if (perguntaSemAcento.contains("ticker") || perguntaSemAcento.contains("codigo de negociacao") || perguntaSemAcento.contains("simbolo")) {
+                return "Template_2A";
+            } else if (entidades.has("regex_pattern")) {
+                return "Template_1C";
+            } else if (hasValorDesejado) {
+                return "ticker".equals(entidades.path("tipo_entidade").asText()) ? "Template_1B" : "Template_1A";
+            }
+            return "Template_2A";
+        }
+        return null;
+    }
+
+    /**
+     * Templates de período (7A a 7D). Eles ficam fora das perguntas de referência: só são
+     * escolhidos por estas regras, com o período já extraído; null segue para a similaridade.
+     */
+    private static String selecionarTemplatePeriodo(ObjectNode entidades) {
+        String calculo = entidades.path("calculo").asText();
+        if (calculo.equals("drawdown_maximo_perc")) {
+            return "Template_7D";
+        } else if (calculo.equals("retorno_acumulado_perc")) {
+            return "Template_7C";
+        } else if (entidades.has("agregacao") && !entidades.has("calculo")) {
+            boolean hasFiltroGrupo = entidades.has("nome_setor") || entidades.has("lista_tickers");
+            return hasFiltroGrupo && !entidades.has("ranking_calculation") ? "Template_7B" : "Template_7A";
+        }
+        return null;
+    }
+
+    private static Sinonimo melhorSinonimo(List<Sinonimo> sinonimos, String texto) {
+        Sinonimo melhor = null;
+        for (Sinonimo s : sinonimos) {
+            // Critério do Python: o sinônimo original mais longo vence; empates ficam com o primeiro.
+            if ((melhor == null || s.original.length() > melhor.original.length()) && s.pattern.matcher(texto).find()) {
+                melhor = s;
+            }
+        }
+        return melhor;
+    }
+
+    private static List<Sinonimo> compilarSinonimos(Map<String, List<String>> mapa) {
+        List<Sinonimo> lista = new ArrayList<>();
+        mapa.forEach((chave, sinonimos) -> {
+            for (String s : sinonimos) {
+                String semAcento = TextNormalizer.removerAcentos(s);
+                lista.add(new Sinonimo(chave, s, semAcento, palavraInteira(semAcento)));
+            }
+        });
+        return lista;
+    }
+
+    private static Pattern palavraInteira(String termo) {
+        return Pattern.compile("\\b" + Pattern.quote(termo) + "\\b", FLAGS);
+    }
+
+    private static String iso(String dia, String mes, String ano) {
+        return ano + "-" + zfill2(mes) + "-" + zfill2(dia);
+    }
+
+    /** Segunda-feira da semana da data ISO, ou null se a data não existir. */
+    private static LocalDate segundaDaSemana(String iso) {
+        try {
+            return LocalDate.parse(iso).with(DayOfWeek.MONDAY);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static String zfill2(String s) {
+        return s.length() < 2 ? "0" + s : s;
+    }
+
+    private record Sinonimo(String chave, String original, String semAcento, Pattern pattern) {}
+
+    private record Chave<V>(String chave, Pattern pattern, V valor) {}
+}
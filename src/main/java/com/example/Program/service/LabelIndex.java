@@ -0,0 +1,372 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.B3;
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.OntologyAppendedEvent;
+import com.example.Program.ontology.OntologyReloadedEvent;
+import jakarta.annotation.PostConstruct;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Índice de nomes de empresas e setores, com texto normalizado (minúsculas, sem acentos,
+ * pontuação trocada por espaço). Substitui as expressões regulares por chave do PLN e o
+ * FILTER(REGEX(STR(?label), ...)) das consultas:
+ * <ul>
+ *   <li>um autômato Aho–Corasick com as chaves de Named_entity_dictionary.json, de sector_map.json
+ *       e os rótulos das empresas da ontologia encontra todas as ocorrências em uma única passada
+ *       sobre a pergunta;</li>
+ *   <li>os rótulos de empresas e setores da ontologia resolvem um nome para os IRIs dos recursos,
+ *       que são vinculados diretamente na consulta.</li>
+ * </ul>
+ * Os rótulos de setor da ontologia só entram na resolução: vários são genéricos demais
+ * ("Outros", "Serviços", "Diversos") para disparar o filtro de setor a partir da pergunta.
+ * O índice é reconstruído a cada OntologyReloadedEvent; num OntologyAppendedEvent, só se as
+ * triplas acrescentadas trouxerem um rótulo de empresa ou setor que ele ainda não tem.
+ */
+@Service
+public class LabelIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LabelIndex.class);
+
+    public enum Tipo { EMPRESA, SETOR }
+
+    /** Padrão do autômato: chave como está no dicionário, valor devolvido ao PLN e ordem de cadastro. */
+    public record Entrada(String chave, Tipo tipo, String valor, int ordem) {}
+
+    /** Ocorrência de uma entrada no texto normalizado, entre as posições [inicio, fim). */
+    public record Ocorrencia(Entrada entrada, int inicio, int fim) {}
+
+    private final NlpDictionaryService dictionaryService;
+    private final Ontology ontology;
+    private final QuestionCache questionCache;
+    private volatile Estado estado;
+
+    public LabelIndex(NlpDictionaryService dictionaryService, Ontology ontology, QuestionCache questionCache) {
+        this.dictionaryService = dictionaryService;
+        this.ontology = ontology;
+        this.questionCache = questionCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        construir();
+    }
+
+    @EventListener
+    public void onOntologyReloaded(OntologyReloadedEvent event) {
+        construir();
+        // Entidades e consultas em cache dependem dos rótulos do índice anterior.
+        questionCache.invalidateAll();
+    }
+
+    /**
+     * Acréscimo: só as empresas e setores citados nas triplas novas são conferidos; o índice é
+     * reconstruído apenas se algum deles tiver rótulo ainda não indexado (ex: empresa nova).
+     */
+    @EventListener
+    public void onOntologyAppended(OntologyAppendedEvent event) {
+        if (trazRotulosNovos(ModelFactory.createModelForGraph(event.getNovas()))) {
+            construir();
+        }
+        // As consultas em cache resolvem períodos relativos ao último pregão, que pode ter mudado.
+        questionCache.invalidateAll();
+    }
+
+    private boolean trazRotulosNovos(Model novas) {
+        Set<Resource> tocados = new LinkedHashSet<>();
+        novas.listSubjectsWithProperty(B3.temValorMobiliarioNegociado).forEachRemaining(tocados::add);
+        novas.listSubjectsWithProperty(B3.atuaEm).forEachRemaining(tocados::add);
+        for (RDFNode setor : novas.listObjectsOfProperty(B3.atuaEm).toList()) {
+            if (setor.isURIResource()) {
+                tocados.add(setor.asResource());
+            }
+        }
+        novas.listSubjectsWithProperty(RDFS.label).forEachRemaining(tocados::add);
+        if (tocados.isEmpty()) {
+            return false;
+        }
+        Estado atual = estado;
+        return ontology.readModel(model -> {
+            for (Resource tocado : tocados) {
+                Resource recurso = tocado.inModel(model);
+                boolean empresa = recurso.hasProperty(B3.temValorMobiliarioNegociado) || recurso.hasProperty(B3.atuaEm);
+                boolean setor = model.contains(null, B3.atuaEm, recurso);
+                for (String rotulo : empresa || setor ? rotulos(recurso) : List.<String>of()) {
+                    String chave = dobrar(rotulo);
+                    if ((empresa && !atual.empresas.getOrDefault(chave, List.of()).contains(recurso.asNode()))
+                            || (setor && !atual.setores.getOrDefault(chave, List.of()).contains(recurso.asNode()))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+    }
+
+    private void construir() {
+        long inicio = System.nanoTime();
+        List<Entrada> entradas = new ArrayList<>();
+        dictionaryService.getEmpresaMap().forEach((chave, valor) -> entradas.add(new Entrada(chave, Tipo.EMPRESA, valor, entradas.size())));
+        dictionaryService.getSetorMap().forEach((chave, valor) -> entradas.add(new Entrada(chave, Tipo.SETOR, valor, entradas.size())));
+
+        Map<String, String> dicionario = new HashMap<>();
+        dictionaryService.getEmpresaMap().forEach((chave, valor) -> dicionario.putIfAbsent(dobrar(chave), valor));
+        Map<String, List<Node>> empresas = new HashMap<>();
+        Map<String, List<Node>> setores = new HashMap<>();
+        Map<String, String> rotulosSetor = new HashMap<>();
+        Set<String> rotulosEmpresa = new LinkedHashSet<>();
+        ontology.readModel(model -> {
+            lerRotulos(model, empresas, setores, rotulosSetor, rotulosEmpresa);
+            return null;
+        });
+        // Rótulos da ontologia depois das chaves do dicionário: nos empates, o dicionário vence.
+        for (String rotulo : rotulosEmpresa) {
+            entradas.add(new Entrada(rotulo, Tipo.EMPRESA, rotulo, entradas.size()));
+        }
+        this.estado = new Estado(new Automato(entradas), dicionario, imutavel(empresas), imutavel(setores), rotulosSetor);
+        logger.info("Índice de rótulos construído em {} ms: {} padrões, {} empresas e {} setores resolvíveis.",
+                (System.nanoTime() - inicio) / 1_000_000, entradas.size(), empresas.size(), setores.size());
+    }
+
+    /** ?S1 b3:temValorMobiliarioNegociado ?SO1 identifica as empresas; ?S1 b3:atuaEm ?S4, os setores. */
+    private static void lerRotulos(Model model, Map<String, List<Node>> empresas, Map<String, List<Node>> setores,
+                                   Map<String, String> rotulosSetor, Set<String> rotulosEmpresa) {
+        Set<Resource> vistasEmpresas = new LinkedHashSet<>();
+        Set<Resource> vistosSetores = new LinkedHashSet<>();
+        StmtIterator it = model.listStatements(null, B3.temValorMobiliarioNegociado, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                vistasEmpresas.add(it.next().getSubject());
+            }
+        } finally {
+            it.close();
+        }
+        it = model.listStatements(null, B3.atuaEm, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                Statement st = it.next();
+                vistasEmpresas.add(st.getSubject());
+                if (st.getObject().isURIResource()) {
+                    vistosSetores.add(st.getObject().asResource());
+                }
+            }
+        } finally {
+            it.close();
+        }
+        for (Resource empresa : vistasEmpresas) {
+            for (String rotulo : rotulos(empresa)) {
+                empresas.computeIfAbsent(dobrar(rotulo), k -> new ArrayList<>()).add(empresa.asNode());
+                rotulosEmpresa.add(rotulo);
+            }
+        }
+        for (Resource setor : vistosSetores) {
+            for (String rotulo : rotulos(setor)) {
+                String chave = dobrar(rotulo);
+                setores.computeIfAbsent(chave, k -> new ArrayList<>()).add(setor.asNode());
+                rotulosSetor.putIfAbsent(chave, rotulo);
+            }
+        }
+    }
+
+    private static List<String> rotulos(Resource recurso) {
+        List<String> rotulos = new ArrayList<>(1);
+        StmtIterator it = recurso.listProperties(RDFS.label);
+        try {
+            while (it.hasNext()) {
+                RDFNode o = it.next().getObject();
+                if (o.isLiteral()) {
+                    rotulos.add(o.asLiteral().getLexicalForm());
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return rotulos;
+    }
+
+    private static Map<String, List<Node>> imutavel(Map<String, List<Node>> mapa) {
+        Map<String, List<Node>> copia = new HashMap<>(mapa.size() * 2);
+        mapa.forEach((k, v) -> copia.put(k, List.copyOf(v)));
+        return copia;
+    }
+
+    /**
+     * Normalização usada em todo o índice: minúsculas, sem acentos, qualquer caractere que não
+     * seja letra ou dígito vira espaço, e espaços repetidos são colapsados ("M.Dias Branco" -> "m dias branco").
+     */
+    public static String dobrar(String texto) {
+        String semAcento = TextNormalizer.removerAcentos(texto.toLowerCase(Locale.ROOT));
+        StringBuilder sb = new StringBuilder(semAcento.length());
+        boolean espaco = false;
+        for (int i = 0; i < semAcento.length(); i++) {
+            char c = semAcento.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (espaco && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                espaco = false;
+                sb.append(c);
+            } else {
+                espaco = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Todas as ocorrências de palavras inteiras das entradas no texto (normalizado aqui), em uma
+     * única passada. Ocorrências sobrepostas são todas devolvidas; a escolha fica com quem chama.
+     */
+    public List<Ocorrencia> buscar(String texto) {
+        return estado.automato.buscar(dobrar(texto));
+    }
+
+    /**
+     * IRIs das empresas com o nome informado: o rótulo normalizado igual ao nome ou, se o nome é
+     * uma chave do Named_entity_dictionary.json (o que o PLN devolve), igual ao nome associado
+     * a ela. Vazio se nenhuma.
+     */
+    public List<Node> empresas(String nome) {
+        Estado atual = estado;
+        String chave = dobrar(nome);
+        List<Node> iris = atual.empresas.get(chave);
+        if (iris == null) {
+            String valor = atual.dicionario.get(chave);
+            iris = valor != null ? atual.empresas.get(dobrar(valor)) : null;
+        }
+        return iris != null ? iris : Collections.emptyList();
+    }
+
+    /** IRIs dos setores cujo rótulo normalizado é igual ao nome; vazio se nenhum. */
+    public List<Node> setores(String nome) {
+        return estado.setores.getOrDefault(dobrar(nome), Collections.emptyList());
+    }
+
+    /**
+     * Rótulo do setor como está na ontologia (ex: "Petróleo, Gás e Biocombustíveis" do sector_map
+     * para "Petróleo. Gás e Biocombustíveis"), para as estruturas indexadas pelo rótulo exato.
+     */
+    public Optional<String> rotuloSetor(String nome) {
+        return Optional.ofNullable(estado.rotulosSetor.get(dobrar(nome)));
+    }
+
+    private record Estado(Automato automato, Map<String, String> dicionario, Map<String, List<Node>> empresas, Map<String, List<Node>> setores,
+                          Map<String, String> rotulosSetor) {}
+
+    /**
+     * Aho–Corasick sobre as chaves normalizadas. Transições em um único mapa (estado, caractere),
+     * ligações de falha e, por estado, as entradas que terminam nele (incluindo as herdadas pela falha).
+     */
+    static final class Automato {
+        private final Map<Long, Integer> transicoes = new HashMap<>();
+        private final int[] falha;
+        private final Saida[][] saidas;
+
+        Automato(List<Entrada> entradas) {
+            List<List<Saida>> terminais = new ArrayList<>();
+            terminais.add(new ArrayList<>());
+            for (Entrada entrada : entradas) {
+                String chave = dobrar(entrada.chave());
+                if (chave.isEmpty()) {
+                    continue;
+                }
+                int s = 0;
+                for (int i = 0; i < chave.length(); i++) {
+                    Integer proximo = transicoes.get(chave(s, chave.charAt(i)));
+                    if (proximo == null) {
+                        proximo = terminais.size();
+                        terminais.add(new ArrayList<>());
+                        transicoes.put(chave(s, chave.charAt(i)), proximo);
+                    }
+                    s = proximo;
+                }
+                terminais.get(s).add(new Saida(entrada, chave.length()));
+            }
+
+            int n = terminais.size();
+            this.falha = new int[n];
+            this.saidas = new Saida[n][];
+            saidas[0] = new Saida[0];
+            // Filhos por estado, para a busca em largura que calcula as falhas.
+            Map<Integer, List<long[]>> filhos = new LinkedHashMap<>();
+            transicoes.forEach((k, destino) -> filhos.computeIfAbsent((int) (k >>> 16), x -> new ArrayList<>())
+                    .add(new long[]{k & 0xFFFF, destino}));
+            ArrayDeque<Integer> fila = new ArrayDeque<>();
+            fila.add(0);
+            while (!fila.isEmpty()) {
+                int s = fila.poll();
+                for (long[] filho : filhos.getOrDefault(s, List.of())) {
+                    char c = (char) filho[0];
+                    int t = (int) filho[1];
+                    if (s != 0) {
+                        int f = falha[s];
+                        while (f != 0 && !transicoes.containsKey(chave(f, c))) {
+                            f = falha[f];
+                        }
+                        Integer destino = transicoes.get(chave(f, c));
+                        falha[t] = destino != null ? destino : 0;
+                    }
+                    List<Saida> todas = new ArrayList<>(terminais.get(t));
+                    Collections.addAll(todas, saidas[falha[t]]);
+                    saidas[t] = todas.toArray(new Saida[0]);
+                    fila.add(t);
+                }
+            }
+        }
+
+        private static long chave(int estado, char c) {
+            return ((long) estado << 16) | c;
+        }
+
+        List<Ocorrencia> buscar(String texto) {
+            List<Ocorrencia> ocorrencias = new ArrayList<>();
+            int s = 0;
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                Integer proximo;
+                while ((proximo = transicoes.get(chave(s, c))) == null && s != 0) {
+                    s = falha[s];
+                }
+                s = proximo != null ? proximo : 0;
+                int fim = i + 1;
+                // Só palavras inteiras: no texto normalizado as palavras são separadas por um espaço.
+                if (saidas[s].length == 0 || (fim < texto.length() && texto.charAt(fim) != ' ')) {
+                    continue;
+                }
+                for (Saida saida : saidas[s]) {
+                    int inicio = fim - saida.tamanho();
+                    if (inicio == 0 || texto.charAt(inicio - 1) == ' ') {
+                        ocorrencias.add(new Ocorrencia(saida.entrada(), inicio, fim));
+                    }
+                }
+            }
+            return ocorrencias;
+        }
+
+        /** Entrada que termina em um estado, com o tamanho da chave normalizada. */
+        private record Saida(Entrada entrada, int tamanho) {}
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.GroupAggregates;
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.OntologyAppendedEvent;
+import com.example.Program.ontology.OntologyReloadedEvent;
+import com.example.Program.ontology.TimeSeriesIndex;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Etapa de materialização executada após cada carga da ontologia: agregados de volume e
+ * quantidade de negócios por (setor, pregão) e por (índice, pregão), usados pelo Template_4.
+ * Os setores vêm da ontologia e as listas de tickers dos índices de nlp/index_map.json.
+ */
+@Service
+public class MaterializedAggregates {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaterializedAggregates.class);
+    private static final String PREFIXO_SETOR = "setor:";
+    private static final String PREFIXO_TICKERS = "tickers:";
+
+    private final Ontology ontology;
+    private final NlpDictionaryService nlpDictionaryService;
+    private volatile GroupAggregates agregados;
+
+    public MaterializedAggregates(Ontology ontology, NlpDictionaryService nlpDictionaryService) {
+        this.ontology = ontology;
+        this.nlpDictionaryService = nlpDictionaryService;
+    }
+
+    @PostConstruct
+    public void init() {
+        materializar(ontology.getTimeSeriesIndex());
+    }
+
+    @EventListener
+    public void onOntologyReloaded(OntologyReloadedEvent event) {
+        materializar(ontology.getTimeSeriesIndex());
+    }
+
+    /** Acréscimo: estende os agregados atuais com os pregões novos em vez de refazê-los. */
+    @EventListener
+    public void onOntologyAppended(OntologyAppendedEvent event) {
+        materializar(event.getIndex(), event.getIndexAnterior());
+    }
+
+    private GroupAggregates materializar(TimeSeriesIndex index) {
+        return materializar(index, null);
+    }
+
+    /**
+     * Agregados para 'index'. Se os atuais são de 'acrescidoDe', o índice do qual ele foi acrescido,
+     * só os pregões novos (e os grupos que ganharam tickers já existentes) são somados; senão tudo
+     * é recalculado.
+     */
+    private synchronized GroupAggregates materializar(TimeSeriesIndex index, TimeSeriesIndex acrescidoDe) {
+        GroupAggregates atual = this.agregados;
+        if (index == null || (atual != null && atual.getIndex() == index)) {
+            return atual;
+        }
+        long inicio = System.nanoTime();
+        Map<String, BitSet> grupos = new HashMap<>();
+        for (String setor : index.setores()) {
+            grupos.put(PREFIXO_SETOR + setor, index.setorMask(setor));
+        }
+        for (List<String> tickers : nlpDictionaryService.getIndexMap().values()) {
+            grupos.putIfAbsent(chaveTickers(tickers), index.tickersMask(tickers));
+        }
+        boolean incremental = atual != null && acrescidoDe != null && atual.getIndex() == acrescidoDe
+                && index.datasPreservadas() > 0;
+        GroupAggregates novos = incremental ? atual.comAcrescimo(index, grupos) : GroupAggregates.build(index, grupos);
+        this.agregados = novos;
+        logger.info("Agregados materializados em {} ms: {} grupos x {} pregões{}.",
+                (System.nanoTime() - inicio) / 1_000_000, novos.size(), index.dateCount(),
+                incremental ? " (" + (index.dateCount() - index.datasPreservadas()) + " pregão(ões) novo(s))" : "");
+        return novos;
+    }
+
+    /** Agregado do setor (rótulo @pt) para o índice informado, ou null se não materializado. */
+    public GroupAggregates.Agregado setor(TimeSeriesIndex index, String rotuloSetor) {
+        return get(index, PREFIXO_SETOR + rotuloSetor);
+    }
+
+    /** Agregado de uma lista de tickers (ex: composição do IBOV), ou null se não materializado. */
+    public GroupAggregates.Agregado tickers(TimeSeriesIndex index, Collection<String> tickers) {
+        return get(index, chaveTickers(tickers));
+    }
+
+    private GroupAggregates.Agregado get(TimeSeriesIndex index, String grupo) {
+        GroupAggregates atual = this.agregados;
+        if (atual == null || atual.getIndex() != index) {
+            // O índice foi trocado e a materialização ainda não rodou para ele.
+            atual = materializar(index);
+        }
+        return atual != null ? atual.get(grupo) : null;
+    }
+
+    private static String chaveTickers(Collection<String> tickers) {
+        return PREFIXO_TICKERS + String.join(",", new TreeSet<>(tickers));
+    }
+}
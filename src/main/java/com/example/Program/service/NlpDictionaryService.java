@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,15 +17,37 @@ public class NlpDictionaryService {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     private Map<String, String> empresaMap;
+    private Map<String, String> setorMap;
+    private Map<String, List<String>> indexMap;
 
     @PostConstruct
     public void init() throws IOException {
-        try (InputStream in = new ClassPathResource("nlp/Named_entity_dictionary.json").getInputStream()) {
-            this.empresaMap = objectMapper.readValue(in, new TypeReference<Map<String, String>>() {});
+        // O Jackson devolve LinkedHashMap, preservando a ordem dos arquivos (a mesma usada pelo nlp_controller.py).
+        this.empresaMap = load("nlp/Named_entity_dictionary.json", new TypeReference<Map<String, String>>() {});
+        this.setorMap = load("nlp/sector_map.json", new TypeReference<Map<String, String>>() {});
+        this.indexMap = load("nlp/index_map.json", new TypeReference<Map<String, List<String>>>() {});
+    }
+
+    private <T> T load(String path, TypeReference<T> type) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return objectMapper.readValue(in, type);
         }
     }
 
     public Set<String> getEmpresaKeys() {
         return empresaMap != null ? empresaMap.keySet() : Collections.emptySet();
     }
-}
\ No newline at end of file
+
+    /** Chave (como aparece na pergunta) -> nome da empresa ou ticker, na ordem do arquivo. */
+    public Map<String, String> getEmpresaMap() {
+        return empresaMap != null ? empresaMap : Collections.emptyMap();
+    }
+
+    public Map<String, String> getSetorMap() {
+        return setorMap != null ? setorMap : Collections.emptyMap();
+    }
+
+    public Map<String, List<String>> getIndexMap() {
+        return indexMap != null ? indexMap : Collections.emptyMap();
+    }
+}
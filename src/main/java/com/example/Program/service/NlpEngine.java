@@ -0,0 +1,33 @@
+package com.example.Program.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Motor de PLN responsável por selecionar o template e extrair as entidades de uma pergunta.
+ * A resposta segue o contrato do endpoint /process_question do nlp_controller.py:
+ * {"templateId": "...", "entities": {"DATA": "...", ...}}.
+ */
+public interface NlpEngine {
+
+    /**
+     * Nome usado na propriedade nlp.engine para selecionar esta implementação.
+     */
+    String getName();
+
+    JsonNode processQuestion(String question) throws Exception;
+
+    /**
+     * Versão assíncrona, usada por /processar para liberar a thread da requisição enquanto o PLN
+     * responde. O padrão roda processQuestion na thread de quem chama (motores locais, sem espera
+     * por E/S); RemoteNlpEngine completa o futuro com a resposta HTTP, sem thread bloqueada.
+     */
+    default CompletableFuture<JsonNode> processQuestionAsync(String question) {
+        try {
+            return CompletableFuture.completedFuture(processQuestion(question));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.Program.service;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformCopyBase;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Valores de uma requisição para a consulta preparada, mantidos fora do texto parametrizado:
+ * <ul>
+ *   <li>nós: substituídos nas variáveis ?param_* na execução (um valor por variável);</li>
+ *   <li>listas: as linhas de um VALUES cujo valor no texto é o marcador &lt;urn:x-param:NOME&gt;
+ *       (tickers de um índice, por exemplo); o VALUES é expandido numa cópia da consulta;</li>
+ *   <li>LIMITE/ORDEM do ranking: o texto leva LIMIT {@value #LIMITE_VINCULADO} e ASC, e a
+ *       cópia recebe o limite e a direção desta requisição.</li>
+ * </ul>
+ * Assim o texto parametrizado depende só da forma da consulta e a Query analisada pode ser
+ * compartilhada entre requisições sem ser alterada.
+ */
+public final class ParametrosConsulta {
+
+    private static final String MARCADOR_NS = "urn:x-param:";
+
+    /**
+     * LIMIT do texto parametrizado quando LIMITE/ORDEM são vinculados; maior que o
+     * sparql.template.max-limit, marca a (sub)consulta do ranking.
+     */
+    public static final long LIMITE_VINCULADO = Integer.MAX_VALUE;
+
+    private final Map<String, Node> nos = new HashMap<>();
+    private final Map<String, List<Node>> listas = new TreeMap<>();
+    private long limite = -1;
+    private boolean descendente;
+
+    /** Marcador de uma lista no texto parametrizado (único valor do VALUES a expandir). */
+    public static String marcador(String nome) {
+        return "<" + MARCADOR_NS + nome + ">";
+    }
+
+    /** Valores das variáveis ?param_* (nome da variável sem '?'); preenchido na renderização. */
+    public Map<String, Node> nos() {
+        return nos;
+    }
+
+    public void lista(String nome, List<Node> valores) {
+        listas.put(nome, List.copyOf(valores));
+    }
+
+    public Map<String, List<Node>> listas() {
+        return Collections.unmodifiableMap(listas);
+    }
+
+    /** LIMIT e direção da primeira condição do ORDER BY da (sub)consulta com LIMIT {@value #LIMITE_VINCULADO}. */
+    public void ranking(long limite, boolean descendente) {
+        this.limite = limite;
+        this.descendente = descendente;
+    }
+
+    /**
+     * Consulta pronta para execução: 'preparada' sem listas nem ranking, ou uma cópia com os
+     * VALUES expandidos e o LIMIT/ORDER BY desta requisição. A consulta recebida (compartilhada
+     * pelo PreparedQueryCache) não é alterada.
+     */
+    public Query aplicar(Query preparada) {
+        if (listas.isEmpty() && limite < 0) {
+            return preparada;
+        }
+        // O transform copia a consulta inteira, inclusive subconsultas e ORDER BY.
+        Query copia = QueryTransformOps.transform(preparada, new ExpandirListas());
+        if (limite >= 0) {
+            aplicarRanking(copia);
+            ElementWalker.walk(copia.getQueryPattern(), new ElementVisitorBase() {
+                @Override
+                public void visit(ElementSubQuery el) {
+                    aplicarRanking(el.getQuery());
+                }
+            });
+        }
+        return copia;
+    }
+
+    private void aplicarRanking(Query query) {
+        if (!query.hasLimit() || query.getLimit() != LIMITE_VINCULADO) {
+            return;
+        }
+        query.setLimit(limite);
+        if (descendente && query.hasOrderBy()) {
+            SortCondition primeira = query.getOrderBy().get(0);
+            query.getOrderBy().set(0, new SortCondition(primeira.getExpression(), Query.ORDER_DESCENDING));
+        }
+    }
+
+    /** Parte da chave do QueryResultCache: os valores em ordem de nome. */
+    public String chave() {
+        String chave = new TreeMap<>(nos).toString();
+        if (!listas.isEmpty()) {
+            chave += listas;
+        }
+        return limite < 0 ? chave : chave + " LIMIT " + limite + (descendente ? " DESC" : " ASC");
+    }
+
+    /** Troca cada linha de VALUES com um marcador por uma linha para cada valor da lista. */
+    private final class ExpandirListas extends ElementTransformCopyBase {
+
+        @Override
+        public Element transform(ElementData el) {
+            ElementData expandido = new ElementData();
+            el.getVars().forEach(expandido::add);
+            for (Binding linha : el.getRows()) {
+                Var marcada = null;
+                List<Node> valores = null;
+                for (Var var : el.getVars()) {
+                    Node valor = linha.get(var);
+                    if (valor != null && valor.isURI() && valor.getURI().startsWith(MARCADOR_NS)) {
+                        marcada = var;
+                        // Lista ausente: nenhuma linha (o mesmo que um VALUES vazio).
+                        valores = listas.getOrDefault(valor.getURI().substring(MARCADOR_NS.length()), List.of());
+                        break;
+                    }
+                }
+                if (marcada == null) {
+                    expandido.add(linha);
+                    continue;
+                }
+                for (Node valor : valores) {
+                    BindingBuilder nova = Binding.builder();
+                    for (Var var : el.getVars()) {
+                        Node atual = var.equals(marcada) ? valor : linha.get(var);
+                        if (atual != null) {
+                            nova.add(var, atual);
+                        }
+                    }
+                    expandido.add(nova.build());
+                }
+            }
+            return expandido;
+        }
+    }
+}
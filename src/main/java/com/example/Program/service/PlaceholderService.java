@@ -7,11 +7,13 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,6 +22,12 @@ public class PlaceholderService {
     private static final String PROPERTIES_PATH = "placeholders.properties";
     private final Properties placeholders = new Properties();
 
+    // Resolvidos uma única vez na carga: símbolo como aparece no texto (ex: "?SO1", "P1") -> valor final.
+    private String[] simbolos = new String[0];
+    private String[] valoresSimbolos = new String[0];
+    private String prefixes = "";
+    private Map<String, String> prefixMap = Map.of();
+
     @PostConstruct
     public void loadProperties() {
         ClassPathResource resource = new ClassPathResource(PROPERTIES_PATH);
@@ -30,41 +38,90 @@ public class PlaceholderService {
         } catch (IOException ex) {
             throw new RuntimeException("Falha ao carregar placeholders.", ex);
         }
+        buildSymbolTable();
+        this.prefixes = buildPrefixes();
+        Map<String, String> mapa = new LinkedHashMap<>();
+        placeholders.stringPropertyNames().stream()
+            .filter(key -> key.startsWith("prefix."))
+            .forEach(key -> mapa.put(key.substring("prefix.".length()), placeholders.getProperty(key).trim()));
+        this.prefixMap = Collections.unmodifiableMap(mapa);
     }
 
-    public String getPlaceholderValue(String key) {
-        return placeholders.getProperty(key);
-    }
-    
-    public String replaceGenericPlaceholders(String query) {
-        String result = query;
+    private void buildSymbolTable() {
         // Ordena as chaves pelo comprimento, da maior para a menor, para evitar substituições parciais (ex: S1 antes de S10)
         List<String> sortedKeys = placeholders.stringPropertyNames().stream()
                 .filter(k -> !k.startsWith("metrica.") && !k.startsWith("prefix."))
-                .sorted(Comparator.comparingInt(String::length).reversed())
+                .sorted(Comparator.comparingInt(String::length).reversed().thenComparing(Comparator.naturalOrder()))
                 .collect(Collectors.toList());
 
+        Map<String, String> tabela = new LinkedHashMap<>();
         for (String key : sortedKeys) {
             String value = placeholders.getProperty(key);
-            String placeholderToReplace;
-            String finalValue;
-
             // Placeholders de variáveis (S*, O*, ANS) são prefixados com '?'
-            if (key.matches("^(S|O|ANS).*")) {
-                placeholderToReplace = "?" + key;
-                finalValue = "?" + value;
+            if (key.startsWith("S") || key.startsWith("O") || key.startsWith("ANS")) {
+                tabela.put("?" + key, "?" + value);
             } else { // Placeholders de predicados (P*) não têm '?'
-                placeholderToReplace = key;
-                finalValue = value;
+                tabela.put(key, value);
             }
-            
-            // Usar replaceAll com Pattern.quote para tratar os placeholders como texto literal
-            result = result.replaceAll(Pattern.quote(placeholderToReplace), Matcher.quoteReplacement(finalValue));
         }
-        return result;
+        this.simbolos = tabela.keySet().toArray(new String[0]);
+        this.valoresSimbolos = tabela.values().toArray(new String[0]);
+    }
+
+    public String getPlaceholderValue(String key) {
+        return placeholders.getProperty(key);
+    }
+
+    /**
+     * Substitui os símbolos P*, D*, S*, O* em uma única passada sobre o texto,
+     * escolhendo sempre o símbolo mais longo que casa em cada posição.
+     */
+    public String replaceGenericPlaceholders(String query) {
+        StringBuilder result = new StringBuilder(query.length() + query.length() / 2);
+        int i = 0;
+        int n = query.length();
+        while (i < n) {
+            int simbolo = matchSymbol(query, i);
+            if (simbolo >= 0) {
+                result.append(valoresSimbolos[simbolo]);
+                i += simbolos[simbolo].length();
+            } else {
+                result.append(query.charAt(i++));
+            }
+        }
+        return result.toString();
+    }
+
+    private int matchSymbol(String text, int offset) {
+        char c = text.charAt(offset);
+        for (int k = 0; k < simbolos.length; k++) {
+            String s = simbolos[k];
+            if (s.charAt(0) == c && text.startsWith(s, offset)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Chaves das métricas (metrica.*), como chegam em VALOR_DESEJADO. */
+    public Set<String> getMetricas() {
+        return placeholders.stringPropertyNames().stream()
+                .filter(key -> key.startsWith("metrica."))
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     public String getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * Mapa prefixo -> namespace (ex: "b3" -> "https://dcm.ffclrp.usp.br/lssb/stock-market-ontology#").
+     */
+    public Map<String, String> getPrefixMap() {
+        return prefixMap;
+    }
+
+    private String buildPrefixes() {
         StringBuilder prefixHeader = new StringBuilder();
         placeholders.stringPropertyNames().stream()
             .filter(key -> key.startsWith("prefix."))
@@ -76,4 +133,4 @@ public class PlaceholderService {
             });
         return prefixHeader.toString();
     }
-}
\ No newline at end of file
+}
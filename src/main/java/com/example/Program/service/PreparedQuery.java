@@ -0,0 +1,61 @@
+package com.example.Program.service;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Consulta já analisada (compartilhada entre requisições com a mesma forma) mais os
+ * valores desta requisição, que são vinculados às variáveis ?param_* e às listas dos
+ * VALUES na execução.
+ */
+public final class PreparedQuery {
+
+    private final String templateId;
+    private final String textoParametrizado;
+    private final Query preparada;
+    private final ParametrosConsulta parametros;
+    // Consulta com as listas aplicadas, montada só se o Jena for executar.
+    private volatile Query query;
+
+    public PreparedQuery(String templateId, String textoParametrizado, Query preparada, ParametrosConsulta parametros) {
+        this.templateId = templateId;
+        this.textoParametrizado = textoParametrizado;
+        this.preparada = preparada;
+        this.parametros = parametros;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Texto da consulta com as variáveis ?param_*; identifica a forma da consulta.
+     */
+    public String getTextoParametrizado() {
+        return textoParametrizado;
+    }
+
+    /**
+     * Consulta pronta para execução: a analisada, com as listas desta requisição aplicadas
+     * (ver ParametrosConsulta.aplicar). As variáveis ?param_* são substituídas pelo Jena.
+     */
+    public Query getQuery() {
+        Query atual = query;
+        if (atual == null) {
+            atual = parametros.aplicar(preparada);
+            query = atual;
+        }
+        return atual;
+    }
+
+    public Map<String, Node> getParametros() {
+        return Collections.unmodifiableMap(parametros.nos());
+    }
+
+    public ParametrosConsulta getParametrosConsulta() {
+        return parametros;
+    }
+}
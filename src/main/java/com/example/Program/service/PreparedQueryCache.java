@@ -0,0 +1,34 @@
+package com.example.Program.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Guarda as consultas parametrizadas já analisadas pelo QueryFactory, com no máximo
+ * sparql.prepared.max-entries formas (as menos usadas saem primeiro). A chave é o texto
+ * parametrizado, que codifica o template e a forma da consulta (cálculo, métrica, tipo de
+ * filtro); datas, tickers, setores, padrões, listas e o LIMIT/ORDEM do ranking são valores da
+ * requisição (ParametrosConsulta) e não fazem parte da chave. Os objetos Query são tratados
+ * como imutáveis após a análise.
+ */
+@Service
+public class PreparedQueryCache {
+
+    private final Cache<String, Query> queries;
+
+    public PreparedQueryCache(@Value("${sparql.prepared.max-entries:512}") int maxEntries) {
+        this.queries = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    public Query get(String parametricQuery) {
+        return queries.get(parametricQuery, QueryFactory::create);
+    }
+
+    public long size() {
+        return queries.estimatedSize();
+    }
+}
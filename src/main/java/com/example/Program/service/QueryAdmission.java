@@ -0,0 +1,286 @@
+package com.example.Program.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.jena.query.QueryCancelledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controle de admissão das execuções no Jena (/api/executar, /api/perguntar, /api/lote):
+ * <ul>
+ *   <li>pool limitado: 'sparql.execution.pool-size' threads com uma fila de
+ *       'sparql.execution.queue-capacity' posições; com a fila cheia a consulta é recusada na hora
+ *       (503 com Retry-After) em vez de aumentar a latência de todas as outras;</li>
+ *   <li>baixa prioridade: consultas marcadas pelo QueryCostEstimator rodam num segundo pool, menor
+ *       e com threads de prioridade mínima, e não disputam as vagas das consultas interativas;</li>
+ *   <li>prazo: 'sparql.execution.timeout' conta desde a chegada (fila + execução); o restante vai
+ *       para o timeout do QueryExecution do Jena, que cancela a avaliação e libera a ontologia.</li>
+ * </ul>
+ * Quem precisa executar na própria thread (o streaming, que escreve na resposta da requisição)
+ * usa executarNestaThread: a vaga no pool fica ocupada enquanto a tarefa roda, com a mesma fila,
+ * recusa e prazo das execuções no pool.
+ * O Retry-After é estimado pela fila atual e pelo tempo médio das execuções recentes.
+ * O índice colunar e o cache de resultados não passam por aqui.
+ */
+@Service
+public class QueryAdmission {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryAdmission.class);
+
+    /** Espera além do prazo antes de desistir de uma execução que o Jena ainda não cancelou. */
+    private static final long FOLGA_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    public enum Prioridade { NORMAL, BAIXA }
+
+    /** Execução admitida; recebe o prazo restante em milissegundos (0 = sem prazo). */
+    @FunctionalInterface
+    public interface Tarefa<T> {
+        T executar(long prazoMillis) throws IOException;
+    }
+
+    private final ThreadPoolExecutor normal;
+    private final ThreadPoolExecutor baixa;
+    private final long timeoutNanos;
+    private final QueryMetrics queryMetrics;
+    /** Média móvel (exponencial) do tempo de execução, para o Retry-After. */
+    private final AtomicLong mediaNanos = new AtomicLong();
+
+    public QueryAdmission(@Value("${sparql.execution.timeout:10s}") Duration timeout,
+                          @Value("${sparql.execution.pool-size:0}") int poolSize,
+                          @Value("${sparql.execution.queue-capacity:32}") int capacidadeFila,
+                          @Value("${sparql.execution.low-priority.pool-size:1}") int poolSizeBaixa,
+                          @Value("${sparql.execution.low-priority.queue-capacity:4}") int capacidadeFilaBaixa,
+                          QueryMetrics queryMetrics, MeterRegistry registry) {
+        this.timeoutNanos = timeout.isZero() || timeout.isNegative() ? 0 : timeout.toNanos();
+        this.queryMetrics = queryMetrics;
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.normal = pool("sparql-exec-", threads, capacidadeFila, Thread.NORM_PRIORITY);
+        this.baixa = pool("sparql-baixa-", Math.max(1, poolSizeBaixa), capacidadeFilaBaixa, Thread.MIN_PRIORITY);
+        for (Prioridade p : Prioridade.values()) {
+            ThreadPoolExecutor executor = executor(p);
+            String nome = p.name().toLowerCase();
+            Gauge.builder("nl2sparql.execution.queue", executor, e -> e.getQueue().size())
+                    .description("Consultas esperando vaga no pool de execução")
+                    .tag("pool", nome).register(registry);
+            Gauge.builder("nl2sparql.execution.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .description("Consultas em execução no Jena")
+                    .tag("pool", nome).register(registry);
+        }
+        logger.info("Execução SPARQL: {} threads e fila de {} (baixa prioridade: {} e {}), prazo de {} ms.",
+                threads, Math.max(1, capacidadeFila), Math.max(1, poolSizeBaixa), Math.max(1, capacidadeFilaBaixa),
+                TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+    }
+
+    private static ThreadPoolExecutor pool(String prefixo, int threads, int capacidadeFila, int prioridade) {
+        AtomicInteger contador = new AtomicInteger();
+        // AbortPolicy: fila cheia -> RejectedExecutionException -> 503.
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadeFila)), r -> {
+            Thread t = new Thread(r, prefixo + contador.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(prioridade);
+            return t;
+        });
+    }
+
+    private ThreadPoolExecutor executor(Prioridade prioridade) {
+        return prioridade == Prioridade.BAIXA ? baixa : normal;
+    }
+
+    /**
+     * Executa 'tarefa' no pool da prioridade e espera o resultado na thread de quem chamou.
+     *
+     * @throws ConsultaRecusadaException com a fila cheia (503) ou o prazo esgotado (504)
+     */
+    public <T> T executar(Prioridade prioridade, Tarefa<T> tarefa) throws IOException {
+        return executar(prioridade, 0, tarefa);
+    }
+
+    /**
+     * Como acima, com um prazo menor que 'sparql.execution.timeout' quando quem chama já tem o
+     * seu (ex: o que resta do prazo de um lote).
+     *
+     * @param limiteNanos prazo a partir de agora; 0 para só o 'sparql.execution.timeout'
+     */
+    public <T> T executar(Prioridade prioridade, long limiteNanos, Tarefa<T> tarefa) throws IOException {
+        long chegada = System.nanoTime();
+        long prazoNanos = limiteNanos > 0 && (timeoutNanos == 0 || limiteNanos < timeoutNanos) ? limiteNanos : timeoutNanos;
+        ThreadPoolExecutor executor = executor(prioridade);
+        Future<T> futuro;
+        try {
+            futuro = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                long restante = prazoNanos == 0 ? 0 : prazoNanos - (inicio - chegada);
+                if (prazoNanos != 0 && restante <= 0) {
+                    throw tempoEsgotado(prazoNanos, " esperando vaga para executar");
+                }
+                try {
+                    return tarefa.executar(restante == 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(restante)));
+                } finally {
+                    registrarDuracao(System.nanoTime() - inicio);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw sobrecarga(executor, prioridade);
+        }
+        try {
+            return prazoNanos == 0 ? futuro.get()
+                    : futuro.get(Math.max(0, chegada + prazoNanos + FOLGA_NANOS - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            throw tempoEsgotado(prazoNanos, "");
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Execução da consulta interrompida.", e);
+        } catch (ExecutionException e) {
+            throw desembrulhar(e.getCause(), prazoNanos);
+        }
+    }
+
+    /**
+     * Executa 'tarefa' na thread de quem chamou, depois de conseguir uma vaga no pool da prioridade:
+     * uma tarefa do pool segura a vaga até a execução terminar, de modo que fila, recusa (503),
+     * Retry-After e gauges são os mesmos de {@link #executar}. Serve para quem não pode entregar o
+     * trabalho a outra thread, como o streaming, que escreve na resposta da requisição.
+     *
+     * @throws ConsultaRecusadaException com a fila cheia (503) ou o prazo esgotado na fila ou na execução (504)
+     */
+    public <T> T executarNestaThread(Prioridade prioridade, Tarefa<T> tarefa) throws IOException {
+        long chegada = System.nanoTime();
+        long prazoNanos = timeoutNanos;
+        ThreadPoolExecutor executor = executor(prioridade);
+        CompletableFuture<Long> admitida = new CompletableFuture<>();
+        CountDownLatch liberada = new CountDownLatch(1);
+        Future<?> vaga;
+        try {
+            vaga = executor.submit(() -> {
+                // Se quem pediu já desistiu (prazo), a vaga é devolvida na hora.
+                if (admitida.complete(System.nanoTime())) {
+                    liberada.await();
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            throw sobrecarga(executor, prioridade);
+        }
+        long inicio;
+        try {
+            inicio = prazoNanos == 0 ? admitida.get()
+                    : admitida.get(Math.max(0, chegada + prazoNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            desistir(admitida, liberada, vaga);
+            throw tempoEsgotado(prazoNanos, " esperando vaga para executar");
+        } catch (InterruptedException e) {
+            desistir(admitida, liberada, vaga);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Execução da consulta interrompida.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        try {
+            long restante = prazoNanos == 0 ? 0 : prazoNanos - (inicio - chegada);
+            if (prazoNanos != 0 && restante <= 0) {
+                throw tempoEsgotado(prazoNanos, " esperando vaga para executar");
+            }
+            return tarefa.executar(restante == 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(restante)));
+        } catch (QueryCancelledException | UncheckedIOException e) {
+            throw desembrulhar(e, prazoNanos);
+        } finally {
+            registrarDuracao(System.nanoTime() - inicio);
+            liberada.countDown();
+        }
+    }
+
+    /** Desiste de uma vaga pedida por executarNestaThread, tenha ela sido concedida ou não. */
+    private static void desistir(CompletableFuture<Long> admitida, CountDownLatch liberada, Future<?> vaga) {
+        admitida.cancel(false);
+        liberada.countDown();
+        vaga.cancel(false);
+    }
+
+    private ConsultaRecusadaException sobrecarga(ThreadPoolExecutor executor, Prioridade prioridade) {
+        Duration retryAfter = retryAfter(executor);
+        queryMetrics.recusa(ConsultaRecusadaException.SOBRECARGA);
+        return ConsultaRecusadaException.sobrecarga(retryAfter, "Servidor sobrecarregado: " + executor.getQueue().size()
+                + " consultas na fila de prioridade " + prioridade.name().toLowerCase() + ". Tente novamente em "
+                + retryAfter.toSeconds() + " s.");
+    }
+
+    /** Falha de uma tarefa como quem chamou a veria: o cancelamento do Jena vira 504; IOException é relançada. */
+    private RuntimeException desembrulhar(Throwable causa, long prazoNanos) throws IOException {
+        if (causa instanceof QueryCancelledException) {
+            return tempoEsgotado(prazoNanos, "");
+        } else if (causa instanceof IOException io) {
+            throw io;
+        } else if (causa instanceof UncheckedIOException io) {
+            throw io.getCause();
+        } else if (causa instanceof RuntimeException re) {
+            return re;
+        } else if (causa instanceof Error erro) {
+            throw erro;
+        }
+        return new IllegalStateException(causa);
+    }
+
+    private ConsultaRecusadaException tempoEsgotado(long prazoNanos, String onde) {
+        queryMetrics.recusa(ConsultaRecusadaException.TEMPO);
+        return ConsultaRecusadaException.tempo("A consulta excedeu o tempo limite de "
+                + TimeUnit.NANOSECONDS.toMillis(prazoNanos) + " ms" + onde + ".");
+    }
+
+    private void registrarDuracao(long nanos) {
+        mediaNanos.updateAndGet(media -> media == 0 ? nanos : media + (nanos - media) / 5);
+    }
+
+    /** Tempo para esvaziar a fila atual no ritmo médio das execuções, com no mínimo 1 s. */
+    private Duration retryAfter(ThreadPoolExecutor executor) {
+        double rodadas = (double) (executor.getQueue().size() + executor.getActiveCount()) / executor.getMaximumPoolSize();
+        long segundos = (long) Math.ceil(rodadas * mediaNanos.get() / 1e9);
+        return Duration.ofSeconds(Math.max(1, segundos));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("timeoutMillis", TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        stats.put("mediaExecucaoMillis", mediaNanos.get() / 1_000_000.0);
+        for (Prioridade p : Prioridade.values()) {
+            ThreadPoolExecutor executor = executor(p);
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("threads", executor.getMaximumPoolSize());
+            pool.put("ativas", executor.getActiveCount());
+            pool.put("fila", executor.getQueue().size());
+            pool.put("capacidadeFila", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+            pool.put("concluidas", executor.getCompletedTaskCount());
+            stats.put(p.name().toLowerCase(), pool);
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() {
+        normal.shutdownNow();
+        baixa.shutdownNow();
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.OntologyAppendedEvent;
+import com.example.Program.ontology.OntologyReloadedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.op.Op1;
+import org.apache.jena.sparql.algebra.op.Op2;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpLeftJoin;
+import org.apache.jena.sparql.algebra.op.OpN;
+import org.apache.jena.sparql.algebra.op.OpPath;
+import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.op.OpTriple;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.util.FmtUtils;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estimativa de custo, antes da execução, das consultas em texto de /api/executar: quantas
+ * linhas intermediárias a álgebra da consulta pode gerar, a partir do número de triplas de cada
+ * predicado (e de cada classe, para rdf:type) no modelo carregado.
+ * <p>
+ * A estimativa é grosseira de propósito e não substitui o otimizador do ARQ: padrões ligados por
+ * variáveis compartilhadas valem o padrão mais seletivo do grupo; grupos sem variável em comum
+ * (produto cartesiano) multiplicam. Acima de 'sparql.cost.low-priority-above' a consulta vai para
+ * a fila de baixa prioridade do QueryAdmission; acima de 'sparql.cost.reject-above', é recusada.
+ * As contagens são refeitas a cada OntologyReloadedEvent (num OntologyAppendedEvent, só as triplas
+ * acrescentadas são somadas às atuais), em uma thread própria (nunca na
+ * thread da requisição), e marcadas com a geração da Ontology que foi lida: uma contagem só
+ * substitui a publicada se for de uma geração mais nova. Enquanto a nova não fica pronta, vale a
+ * anterior; antes da primeira, as consultas não são classificadas (seguem com prioridade normal).
+ */
+@Service
+public class QueryCostEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCostEstimator.class);
+
+    /** Linhas supostas para um padrão com sujeito ou objeto fixo (sem índice por valor). */
+    private static final double SELETIVO = 100;
+
+    public enum Decisao { NORMAL, BAIXA_PRIORIDADE, RECUSAR }
+
+    /** Linhas intermediárias estimadas e os produtos cartesianos encontrados (em texto, para a mensagem de erro). */
+    public record Estimativa(double linhas, List<String> produtosCartesianos, Decisao decisao) {}
+
+    private record Contagens(long geracao, long triplas, Map<Node, Long> porPredicado, Map<Node, Long> porClasse) {}
+
+    private final Ontology ontology;
+    private final double limiarBaixaPrioridade;
+    private final double limiarRecusa;
+    private final AtomicReference<Contagens> contagens = new AtomicReference<>();
+    private final ExecutorService contador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "cost-count");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public QueryCostEstimator(Ontology ontology,
+                              @Value("${sparql.cost.low-priority-above:1e6}") double limiarBaixaPrioridade,
+                              @Value("${sparql.cost.reject-above:1e9}") double limiarRecusa) {
+        this.ontology = ontology;
+        this.limiarBaixaPrioridade = limiarBaixaPrioridade;
+        this.limiarRecusa = limiarRecusa;
+    }
+
+    @PostConstruct
+    public void init() {
+        // O evento da carga inicial é publicado antes de os listeners serem registrados.
+        contador.execute(this::recontar);
+    }
+
+    @EventListener
+    public void onOntologyReloaded(OntologyReloadedEvent event) {
+        contador.execute(this::recontar);
+    }
+
+    @EventListener
+    public void onOntologyAppended(OntologyAppendedEvent event) {
+        contador.execute(() -> somar(event));
+    }
+
+    @PreDestroy
+    public void close() {
+        contador.shutdownNow();
+    }
+
+    public Estimativa estimar(Query query) {
+        Contagens atuais = contagens.get();
+        if (atuais == null) {
+            return new Estimativa(0, List.of(), Decisao.NORMAL);
+        }
+        List<String> produtos = new ArrayList<>();
+        double linhas = linhas(Algebra.compile(query), atuais, query, produtos);
+        Decisao decisao = linhas > limiarRecusa ? Decisao.RECUSAR
+                : linhas > limiarBaixaPrioridade ? Decisao.BAIXA_PRIORIDADE : Decisao.NORMAL;
+        return new Estimativa(linhas, produtos, decisao);
+    }
+
+    private double linhas(Op op, Contagens c, Query query, List<String> produtos) {
+        if (op instanceof OpBGP bgp) {
+            return padroes(bgp.getPattern().getList(), c, query, produtos);
+        } else if (op instanceof OpTriple triple) {
+            return cardinalidade(triple.getTriple(), c);
+        } else if (op instanceof OpPath) {
+            return c.triplas(); // caminhos de propriedade podem percorrer o grafo inteiro
+        } else if (op instanceof OpTable table) {
+            return table.isJoinIdentity() ? 1 : table.getTable().size();
+        } else if (op instanceof OpJoin join) {
+            return juntar(join.getLeft(), join.getRight(), c, query, produtos);
+        } else if (op instanceof OpLeftJoin leftJoin) {
+            double esquerda = linhas(leftJoin.getLeft(), c, query, produtos);
+            double direita = linhas(leftJoin.getRight(), c, query, produtos);
+            return compartilham(leftJoin.getLeft(), leftJoin.getRight()) ? esquerda : esquerda * Math.max(1, direita);
+        } else if (op instanceof OpUnion union) {
+            return linhas(union.getLeft(), c, query, produtos) + linhas(union.getRight(), c, query, produtos);
+        } else if (op instanceof Op2 op2) {
+            // MINUS e afins: no máximo as linhas da esquerda.
+            return linhas(op2.getLeft(), c, query, produtos);
+        } else if (op instanceof OpSequence sequence) {
+            // Junções em sequência (forma produzida pelo otimizador).
+            double total = 1;
+            Op anteriores = null;
+            for (Op elemento : sequence.getElements()) {
+                double n = linhas(elemento, c, query, produtos);
+                total = anteriores == null ? n : combinar(total, anteriores, elemento, n, query, produtos);
+                anteriores = anteriores == null ? elemento : OpJoin.create(anteriores, elemento);
+            }
+            return total;
+        } else if (op instanceof OpN opN) {
+            double total = 0;
+            for (Op elemento : opN.getElements()) {
+                total += linhas(elemento, c, query, produtos);
+            }
+            return total;
+        } else if (op instanceof Op1 op1) {
+            // FILTER, ORDER BY, DISTINCT, LIMIT, projeções, GROUP BY...: o custo é o da entrada.
+            return linhas(op1.getSubOp(), c, query, produtos);
+        }
+        return 1;
+    }
+
+    private double juntar(Op esquerda, Op direita, Contagens c, Query query, List<String> produtos) {
+        double l = linhas(esquerda, c, query, produtos);
+        double r = linhas(direita, c, query, produtos);
+        return combinar(l, esquerda, direita, r, query, produtos);
+    }
+
+    private double combinar(double l, Op esquerda, Op direita, double r, Query query, List<String> produtos) {
+        if (compartilham(esquerda, direita)) {
+            return Math.min(l, r);
+        }
+        if (l > 1 && r > 1) {
+            produtos.add(descrever(esquerda, query) + " × " + descrever(direita, query));
+        }
+        return l * r;
+    }
+
+    private static boolean compartilham(Op esquerda, Op direita) {
+        Set<Var> vars = new HashSet<>(OpVars.visibleVars(esquerda));
+        vars.retainAll(OpVars.visibleVars(direita));
+        return !vars.isEmpty();
+    }
+
+    /** Padrões de um BGP: grupos conectados por variáveis valem o padrão mais seletivo; grupos disjuntos multiplicam. */
+    private double padroes(List<Triple> triplas, Contagens c, Query query, List<String> produtos) {
+        if (triplas.isEmpty()) {
+            return 1;
+        }
+        int[] grupo = new int[triplas.size()];
+        for (int i = 0; i < grupo.length; i++) {
+            grupo[i] = i;
+        }
+        Map<Node, Integer> primeiraOcorrencia = new HashMap<>();
+        for (int i = 0; i < triplas.size(); i++) {
+            for (Node node : nos(triplas.get(i))) {
+                if (Var.isVar(node)) {
+                    Integer j = primeiraOcorrencia.putIfAbsent(node, i);
+                    if (j != null) {
+                        grupo[raiz(grupo, i)] = raiz(grupo, j);
+                    }
+                }
+            }
+        }
+        Map<Integer, Double> porGrupo = new HashMap<>();
+        Map<Integer, Triple> exemplo = new HashMap<>();
+        for (int i = 0; i < triplas.size(); i++) {
+            int g = raiz(grupo, i);
+            porGrupo.merge(g, cardinalidade(triplas.get(i), c), Math::min);
+            exemplo.putIfAbsent(g, triplas.get(i));
+        }
+        double total = 1;
+        List<String> grandes = new ArrayList<>();
+        for (Map.Entry<Integer, Double> g : porGrupo.entrySet()) {
+            total *= g.getValue();
+            if (g.getValue() > 1) {
+                grandes.add("{ " + FmtUtils.stringForTriple(exemplo.get(g.getKey()), query.getPrefixMapping()) + " ... }");
+            }
+        }
+        if (grandes.size() > 1) {
+            produtos.add(String.join(" × ", grandes));
+        }
+        return total;
+    }
+
+    private static int raiz(int[] grupo, int i) {
+        while (grupo[i] != i) {
+            grupo[i] = grupo[grupo[i]];
+            i = grupo[i];
+        }
+        return i;
+    }
+
+    private static Node[] nos(Triple t) {
+        return new Node[]{t.getSubject(), t.getPredicate(), t.getObject()};
+    }
+
+    private static double cardinalidade(Triple t, Contagens c) {
+        boolean fixo = !Var.isVar(t.getSubject()) || !Var.isVar(t.getObject());
+        if (Var.isVar(t.getPredicate())) {
+            return fixo ? Math.min(c.triplas(), SELETIVO * 10) : c.triplas();
+        }
+        if (RDF.type.asNode().equals(t.getPredicate()) && !Var.isVar(t.getObject())) {
+            return c.porClasse().getOrDefault(t.getObject(), 0L);
+        }
+        long n = c.porPredicado().getOrDefault(t.getPredicate(), 0L);
+        return fixo ? Math.min(n, SELETIVO) : n;
+    }
+
+    private static String descrever(Op op, Query query) {
+        List<String> padroes = new ArrayList<>();
+        for (Var var : OpVars.visibleVars(op)) {
+            padroes.add(FmtUtils.stringForNode(var, query.getPrefixMapping()));
+        }
+        Collections.sort(padroes);
+        return "{ " + String.join(" ", padroes) + " }";
+    }
+
+    /**
+     * Conta a geração atual, se ainda não foi contada (eventos seguidos acumulam tarefas na fila; só
+     * a primeira de cada geração lê o grafo), e publica o resultado se nada mais novo foi publicado.
+     */
+    private void recontar() {
+        Contagens publicadas = contagens.get();
+        if (publicadas != null && publicadas.geracao() >= ontology.getGeracao()) {
+            return;
+        }
+        try {
+            Contagens novas = ontology.readModelComGeracao((model, geracao) -> contar(model.getGraph(), geracao));
+            contagens.accumulateAndGet(novas, (atuais, recebidas) ->
+                    atuais == null || recebidas.geracao() > atuais.geracao() ? recebidas : atuais);
+        } catch (RuntimeException e) {
+            logger.warn("Estimador de custo: falha ao contar as triplas; mantidas as contagens anteriores.", e);
+        }
+    }
+
+    /**
+     * Acréscimo: se as contagens publicadas são da geração anterior a ele, somam-se só as das
+     * triplas novas (que o modelo ainda não tinha, então nada é contado duas vezes); senão, por
+     * exemplo se uma contagem ainda não terminou, o modelo é recontado.
+     */
+    private void somar(OntologyAppendedEvent event) {
+        Contagens publicadas = contagens.get();
+        if (publicadas == null || publicadas.geracao() != event.getGeracao() - 1) {
+            recontar();
+            return;
+        }
+        long inicio = System.nanoTime();
+        Map<Node, Long> porPredicado = new HashMap<>(publicadas.porPredicado());
+        Map<Node, Long> porClasse = new HashMap<>(publicadas.porClasse());
+        long novas = contar(event.getNovas(), porPredicado, porClasse);
+        contagens.accumulateAndGet(new Contagens(event.getGeracao(), publicadas.triplas() + novas, porPredicado, porClasse),
+                (atuais, recebidas) -> atuais == null || recebidas.geracao() > atuais.geracao() ? recebidas : atuais);
+        logger.info("Estimador de custo: {} triplas acrescentadas às contagens em {} ms (geração {}).",
+                novas, (System.nanoTime() - inicio) / 1_000_000, event.getGeracao());
+    }
+
+    private static Contagens contar(Graph graph, long geracao) {
+        long inicio = System.nanoTime();
+        Map<Node, Long> porPredicado = new HashMap<>();
+        Map<Node, Long> porClasse = new HashMap<>();
+        long triplas = contar(graph, porPredicado, porClasse);
+        logger.info("Estimador de custo: {} triplas, {} predicados e {} classes contados em {} ms (geração {}).",
+                triplas, porPredicado.size(), porClasse.size(), (System.nanoTime() - inicio) / 1_000_000, geracao);
+        return new Contagens(geracao, triplas, porPredicado, porClasse);
+    }
+
+    /** Soma às contagens as triplas de 'graph' por predicado e, para rdf:type, por classe; devolve quantas eram. */
+    private static long contar(Graph graph, Map<Node, Long> porPredicado, Map<Node, Long> porClasse) {
+        Node tipo = RDF.type.asNode();
+        long triplas = 0;
+        ExtendedIterator<Triple> it = graph.find();
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                triplas++;
+                porPredicado.merge(t.getPredicate(), 1L, Long::sum);
+                if (tipo.equals(t.getPredicate())) {
+                    porClasse.merge(t.getObject(), 1L, Long::sum);
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return triplas;
+    }
+}
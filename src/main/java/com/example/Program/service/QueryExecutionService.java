@@ -0,0 +1,382 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.ResultTable;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.QuerySolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Execução das consultas e formatação do resultado em SPARQL-JSON, compartilhada por
+ * /api/executar, /api/lote e /api/perguntar. Consultas preparadas passam antes pelo índice
+ * colunar; as demais vão para o Jena. Em ambos os casos o JSON final fica no QueryResultCache.
+ * <p>
+ * Para resultados grandes (setores inteiros, intervalos de vários dias) há também o caminho em
+ * streaming (streamPreparada/streamTexto): as linhas são escritas na resposta à medida que o
+ * ResultSet é lido, sem lista intermediária nem cache, com paginação opcional por offset/limit.
+ * O ResultSet é lido e escrito na própria thread da requisição, que só ocupa a vaga no pool
+ * (QueryAdmission.executarNestaThread): a resposta do servlet nunca passa para outra thread.
+ * <p>
+ * Execução e formatação são medidas no QueryMetrics (só em falta no cache, quando há trabalho).
+ * <p>
+ * O resultado circula tipado (ResultTable): os números chegam do Jena ou do índice como double e
+ * são formatados sem voltar à forma léxica.
+ * <p>
+ * Tudo que vai para o Jena passa pelo QueryAdmission (pool limitado, prazo por consulta, 503 com
+ * a fila cheia); o resultado materializado tem no máximo 'sparql.execution.max-rows' linhas
+ * (acima disso, 422: o caminho em streaming com offset/limit continua disponível). Consultas em
+ * texto passam antes pelo QueryCostEstimator, que recusa as caras demais e manda as caras para
+ * a fila de baixa prioridade.
+ */
+@Service
+public class QueryExecutionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryExecutionService.class);
+
+    private final SPARQLProcessor sparqlProcessor;
+    private final Ontology ontology;
+    private final ObjectMapper objectMapper;
+    private final QueryResultCache queryResultCache;
+    private final IndexedQueryExecutor indexedQueryExecutor;
+    private final QueryMetrics queryMetrics;
+    private final QueryAdmission queryAdmission;
+    private final QueryCostEstimator queryCostEstimator;
+    private final long maxLinhas;
+
+    public QueryExecutionService(SPARQLProcessor sparqlProcessor, Ontology ontology, ObjectMapper objectMapper,
+                                 QueryResultCache queryResultCache, IndexedQueryExecutor indexedQueryExecutor,
+                                 QueryMetrics queryMetrics, QueryAdmission queryAdmission, QueryCostEstimator queryCostEstimator,
+                                 @Value("${sparql.execution.max-rows:50000}") long maxLinhas) {
+        this.sparqlProcessor = sparqlProcessor;
+        this.ontology = ontology;
+        this.objectMapper = objectMapper;
+        this.queryResultCache = queryResultCache;
+        this.indexedQueryExecutor = indexedQueryExecutor;
+        this.queryMetrics = queryMetrics;
+        this.queryAdmission = queryAdmission;
+        this.queryCostEstimator = queryCostEstimator;
+        this.maxLinhas = maxLinhas;
+    }
+
+    /**
+     * Consulta preparada do template com as entidades vinculadas.
+     */
+    public String executarPreparada(String templateId, JsonNode entidades, String tipoMetrica) {
+        return executarPreparada(sparqlProcessor.prepareQuery(templateId, entidades), entidades, tipoMetrica);
+    }
+
+    /**
+     * Variante para quem já preparou a consulta (ex: para deduplicar pela chave do cache).
+     */
+    public String executarPreparada(PreparedQuery preparedQuery, JsonNode entidades, String tipoMetrica) {
+        return executarPreparada(preparedQuery, entidades, tipoMetrica, new StageTimings());
+    }
+
+    /**
+     * Como acima, medindo as etapas "execute" e "format" em 'tempos'. Em acerto do cache nenhuma
+     * das duas é registrada.
+     */
+    public String executarPreparada(PreparedQuery preparedQuery, JsonNode entidades, String tipoMetrica, StageTimings tempos) {
+        return executarPreparada(preparedQuery, entidades, tipoMetrica, tempos, 0);
+    }
+
+    /**
+     * Variante com prazo: a execução no Jena termina (504) em 'limite' a partir de agora, se antes
+     * do 'sparql.execution.timeout' (ex: o que resta do prazo de um lote).
+     */
+    public String executarPreparada(PreparedQuery preparedQuery, JsonNode entidades, String tipoMetrica, Duration limite) {
+        return executarPreparada(preparedQuery, entidades, tipoMetrica, new StageTimings(), Math.max(1, limite.toNanos()));
+    }
+
+    private String executarPreparada(PreparedQuery preparedQuery, JsonNode entidades, String tipoMetrica, StageTimings tempos,
+                                     long limiteNanos) {
+        String templateId = preparedQuery.getTemplateId();
+        return queryResultCache.get(QueryResultCache.key(preparedQuery, tipoMetrica), () -> {
+            // Templates suportados pelo índice colunar não passam pelo Jena.
+            ResultTable linhas = tempos.medir(QueryMetrics.EXECUTE, () -> executar(templateId, tipoMetrica,
+                    preparedQuery.getQuery(), preparedQuery.getParametros(), QueryAdmission.Prioridade.NORMAL, limiteNanos,
+                    () -> indexedQueryExecutor.execute(templateId, entidades)));
+            return tempos.medir(QueryMetrics.FORMAT, () -> formatar(linhas, templateId, tipoMetrica));
+        });
+    }
+
+    /**
+     * Consulta em texto, analisada pelo Jena a cada execução que não estiver em cache.
+     *
+     * @throws QueryParseException       se o texto não for SPARQL válido (400, como no streaming)
+     * @throws IllegalArgumentException  se não for um SELECT (400, como no streaming)
+     * @throws ConsultaRecusadaException se o custo estimado passar do limite, a fila estiver cheia,
+     *                                   o prazo se esgotar ou o resultado passar do máximo de linhas
+     */
+    public String executarTexto(String sparqlQuery, String tipoMetrica) {
+        return queryResultCache.get(QueryResultCache.key(sparqlQuery, tipoMetrica), () -> {
+            Query query = queryMetrics.medir(QueryMetrics.PARSE, QueryMetrics.TEXTO, tipoMetrica, () -> QueryFactory.create(sparqlQuery));
+            if (!query.isSelectType()) {
+                throw new IllegalArgumentException("Só consultas SELECT podem ser executadas.");
+            }
+            ResultTable linhas = executar(QueryMetrics.TEXTO, tipoMetrica, query, Collections.emptyMap(),
+                    prioridade(query), 0, Optional::empty);
+            return formatar(linhas, QueryMetrics.TEXTO, tipoMetrica);
+        });
+    }
+
+    /**
+     * Etapa "execute": índice colunar, se responder, senão o Jena; registra tempo, linhas e,
+     * acima do limiar, a entrada no log de consultas lentas.
+     */
+    private ResultTable executar(String templateId, String tipoMetrica, Query query, Map<String, Node> parametros,
+                                 QueryAdmission.Prioridade prioridade, long limiteNanos,
+                                 Supplier<Optional<ResultTable>> indice) {
+        long inicio = System.nanoTime();
+        ResultTable linhas;
+        boolean indexado;
+        try {
+            Optional<ResultTable> resultado = indice.get();
+            indexado = resultado.isPresent();
+            linhas = indexado ? resultado.get() : executarJena(query, parametros, prioridade, limiteNanos);
+        } catch (RuntimeException e) {
+            queryMetrics.erro(QueryMetrics.EXECUTE, templateId, tipoMetrica);
+            throw e;
+        }
+        queryMetrics.execucao(templateId, tipoMetrica, System.nanoTime() - inicio, linhas.linhas(), indexado ? null : query, parametros);
+        return linhas;
+    }
+
+    /** Execução no Jena, admitida pelo QueryAdmission e com o máximo de linhas do resultado materializado. */
+    private ResultTable executarJena(Query query, Map<String, Node> parametros, QueryAdmission.Prioridade prioridade,
+                                     long limiteNanos) {
+        ResultTable linhas;
+        try {
+            linhas = queryAdmission.executar(prioridade, limiteNanos,
+                    prazo -> ontology.executeTable(query, parametros, prazo, maxLinhas));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (linhas.isTruncada()) {
+            queryMetrics.recusa(ConsultaRecusadaException.LINHAS);
+            throw ConsultaRecusadaException.linhas("O resultado passa de " + maxLinhas
+                    + " linhas. Use ?limit e ?offset (streaming) para ler em páginas.");
+        }
+        return linhas;
+    }
+
+    /**
+     * Estimativa de custo de uma consulta em texto: recusa (422) as que passam do limite e manda
+     * para a fila de baixa prioridade as caras.
+     */
+    private QueryAdmission.Prioridade prioridade(Query query) {
+        QueryCostEstimator.Estimativa estimativa = queryCostEstimator.estimar(query);
+        String produtos = estimativa.produtosCartesianos().isEmpty() ? ""
+                : "; produto cartesiano entre " + String.join(", ", estimativa.produtosCartesianos());
+        switch (estimativa.decisao()) {
+            case RECUSAR -> {
+                queryMetrics.recusa(ConsultaRecusadaException.CUSTO);
+                throw ConsultaRecusadaException.custo(String.format(Locale.ROOT,
+                        "Consulta recusada pelo estimador de custo: cerca de %.3g linhas intermediárias%s. "
+                                + "Ligue os padrões por variáveis em comum ou restrinja-os.", estimativa.linhas(), produtos));
+            }
+            case BAIXA_PRIORIDADE -> {
+                logger.info("Consulta em texto com custo estimado de {} linhas vai para a fila de baixa prioridade{}.",
+                        String.format(Locale.ROOT, "%.3g", estimativa.linhas()), produtos);
+                return QueryAdmission.Prioridade.BAIXA;
+            }
+            default -> {
+                return QueryAdmission.Prioridade.NORMAL;
+            }
+        }
+    }
+
+    private String formatar(ResultTable linhas, String templateId, String tipoMetrica) {
+        return queryMetrics.medir(QueryMetrics.FORMAT, templateId, tipoMetrica, () -> formatResults(linhas, tipoMetrica));
+    }
+
+    /**
+     * Escrita do resultado na resposta, na thread de quem chama. A admissão no pool acontece antes
+     * do primeiro byte: uma ConsultaRecusadaException lançada por escrever() com a resposta ainda
+     * não confirmada pode virar a resposta de erro. Se o prazo se esgota depois de alguma linha
+     * escrita, o documento é fechado com um bloco "erro" (ver SparqlJsonStreamWriter.interromper).
+     */
+    @FunctionalInterface
+    public interface Escrita {
+        void escrever(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Streaming da consulta preparada. A preparação acontece aqui, de modo que erros do template
+     * ou das entidades aparecem antes de a resposta começar; a execução, só na escrita.
+     *
+     * @param offset linhas a pular (0 para nenhuma)
+     * @param limit  máximo de linhas (0 para todas)
+     */
+    public Escrita streamPreparada(String templateId, JsonNode entidades, String tipoMetrica, long offset, long limit) {
+        validarPaginacao(offset, limit);
+        PreparedQuery preparedQuery = sparqlProcessor.prepareQuery(templateId, entidades);
+        return out -> {
+            // Execução e escrita acontecem juntas: o tempo todo conta como etapa "execute".
+            long inicio = System.nanoTime();
+            Optional<ResultTable> indexado = indexedQueryExecutor.execute(templateId, entidades);
+            long linhas = indexado.isPresent()
+                    ? escreverLinhas(indexado.get(), tipoMetrica, offset, limit, out)
+                    : queryAdmission.executarNestaThread(QueryAdmission.Prioridade.NORMAL, prazo -> escreverConsulta(
+                            preparedQuery.getQuery(), preparedQuery.getParametros(), tipoMetrica, offset, limit, prazo, out));
+            queryMetrics.execucao(templateId, tipoMetrica, System.nanoTime() - inicio, linhas,
+                    indexado.isPresent() ? null : preparedQuery.getQuery(), preparedQuery.getParametros());
+        };
+    }
+
+    /** Streaming de uma consulta em texto; erros de análise e a recusa por custo são lançados aqui, antes da resposta. */
+    public Escrita streamTexto(String sparqlQuery, String tipoMetrica, long offset, long limit) {
+        validarPaginacao(offset, limit);
+        Query query = QueryFactory.create(sparqlQuery);
+        if (!query.isSelectType()) {
+            throw new IllegalArgumentException("Só consultas SELECT podem ser executadas.");
+        }
+        QueryAdmission.Prioridade prioridade = prioridade(query);
+        return out -> {
+            long inicio = System.nanoTime();
+            long linhas = queryAdmission.executarNestaThread(prioridade,
+                    prazo -> escreverConsulta(query, Collections.emptyMap(), tipoMetrica, offset, limit, prazo, out));
+            queryMetrics.execucao(QueryMetrics.TEXTO, tipoMetrica, System.nanoTime() - inicio, linhas, query, Collections.emptyMap());
+        };
+    }
+
+    private static void validarPaginacao(long offset, long limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset e limit não podem ser negativos.");
+        }
+    }
+
+    /** Escreve o resultado da consulta e devolve o número de linhas escritas. */
+    private long escreverConsulta(Query query, Map<String, Node> parametros, String tipoMetrica,
+                                  long offset, long limit, long prazoMillis, OutputStream out) throws IOException {
+        try {
+            return ontology.executeQuery(paginar(query, offset, limit), parametros, prazoMillis, rs -> {
+                List<String> vars = rs.getResultVars();
+                // Uma linha por vez, reaproveitando a mesma tabela.
+                ResultTable linha = new ResultTable(vars, 1);
+                try (SparqlJsonStreamWriter escritor = new SparqlJsonStreamWriter(gerador(out), vars, tipoMetrica)) {
+                    boolean haMais = false;
+                    try {
+                        while (rs.hasNext()) {
+                            QuerySolution soln = rs.nextSolution();
+                            // A consulta paginada pede uma linha a mais só para saber se há próxima página.
+                            if (limit > 0 && escritor.getLinhas() == limit) {
+                                haMais = true;
+                                break;
+                            }
+                            linha.limpar();
+                            for (String var : vars) {
+                                linha.adicionar(soln.get(var));
+                            }
+                            escritor.linha(linha, 0);
+                        }
+                    } catch (QueryCancelledException e) {
+                        // Sem linhas, nada saiu do buffer do gerador e a resposta ainda pode ser um 504.
+                        if (escritor.getLinhas() == 0) {
+                            throw e;
+                        }
+                        queryMetrics.recusa(ConsultaRecusadaException.TEMPO);
+                        escritor.interromper(offset, limit, ConsultaRecusadaException.TEMPO, "A consulta excedeu o tempo limite de "
+                                + prazoMillis + " ms depois de " + escritor.getLinhas() + " linhas; o resultado está incompleto.");
+                        return escritor.getLinhas();
+                    }
+                    escritor.fechar(offset, limit, haMais);
+                    return escritor.getLinhas();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long escreverLinhas(ResultTable linhas, String tipoMetrica,
+                                long offset, long limit, OutputStream out) throws IOException {
+        int total = linhas.linhas();
+        int inicio = (int) Math.min(offset, total);
+        int fim = limit > 0 ? (int) Math.min(offset + limit, total) : total;
+        try (SparqlJsonStreamWriter escritor = new SparqlJsonStreamWriter(gerador(out), vars(linhas), tipoMetrica)) {
+            for (int l = inicio; l < fim; l++) {
+                escritor.linha(linhas, l);
+            }
+            escritor.fechar(offset, limit, fim < total);
+            return escritor.getLinhas();
+        }
+    }
+
+    private JsonGenerator gerador(OutputStream out) throws IOException {
+        // Quem fecha e descarrega a resposta é o contêiner: sem flush ao fechar o gerador, uma
+        // falha antes da primeira linha deixa a resposta sem confirmar, e ela ainda vira o erro.
+        return objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    }
+
+    /**
+     * Aplica offset/limit sobre o OFFSET/LIMIT da própria consulta (a página é uma janela dentro
+     * do resultado original), pedindo uma linha a mais para detectar a próxima página. O Jena
+     * leva o corte para a álgebra (slice/top-N), então as linhas fora da página nem são geradas.
+     * A consulta original, compartilhada pelo PreparedQueryCache, não é alterada.
+     */
+    static Query paginar(Query query, long offset, long limit) {
+        if (offset == 0 && limit == 0) {
+            return query;
+        }
+        Query paginada = query.cloneQuery();
+        long inicio = query.hasOffset() ? query.getOffset() : 0;
+        long disponiveis = query.hasLimit() ? Math.max(0, query.getLimit() - offset) : Long.MAX_VALUE;
+        long pedir = limit > 0 ? Math.min(limit + 1, disponiveis) : disponiveis;
+        paginada.setOffset(inicio + offset);
+        if (pedir != Long.MAX_VALUE) {
+            paginada.setLimit(pedir);
+        }
+        return paginada;
+    }
+
+    /** Variáveis do cabeçalho: como sempre, vazias quando não há linhas. */
+    private static List<String> vars(ResultTable linhas) {
+        return linhas.linhas() == 0 ? Collections.emptyList() : linhas.getVars();
+    }
+
+    /**
+     * Converte as linhas do resultado no JSON de resposta (formato SPARQL-JSON), formatando
+     * os valores numéricos de acordo com o tipo de métrica.
+     */
+    String formatResults(ResultTable linhas, String tipoMetrica) {
+        StringWriter json = new StringWriter(64 + 64 * linhas.linhas());
+        try (SparqlJsonStreamWriter escritor = new SparqlJsonStreamWriter(
+                objectMapper.getFactory().createGenerator(json), vars(linhas), tipoMetrica)) {
+            for (int l = 0, total = linhas.linhas(); l < total; l++) {
+                escritor.linha(linhas, l);
+            }
+            escritor.fechar(0, 0, false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao serializar o resultado da consulta.", e);
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.Program.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.Substitute;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Métricas do caminho pergunta -> resposta, publicadas no Micrometer (expostas em
+ * /actuator/prometheus):
+ * <ul>
+ *   <li>nl2sparql.stage: tempo por etapa (nlp, render, parse, execute, format), com as tags
+ *       stage, templateId e tipoMetrica; os buckets do histograma vêm de
+ *       management.metrics.distribution.* no application.properties;</li>
+ *   <li>nl2sparql.result.rows: linhas por execução;</li>
+ *   <li>nl2sparql.errors: falhas por etapa;</li>
+ *   <li>nl2sparql.rejected: consultas recusadas ou interrompidas pela governança da execução
+ *       (sobrecarga, tempo, custo, linhas).</li>
+ * </ul>
+ * Execuções acima de 'sparql.slow-query.threshold' vão para o log de consultas lentas
+ * (logger "com.example.Program.SlowQueries"), com a consulta e o plano do ARQ.
+ * <p>
+ * As tags têm um conjunto fechado de valores, porque tipoMetrica chega do corpo de /api/executar:
+ * templateId só se for um template registrado (ou "texto") e tipoMetrica só se for uma chave
+ * metrica.* ou um cálculo conhecido; o resto vira "outro". Sem isso, cada valor novo criaria
+ * séries novas no registro e no Prometheus.
+ */
+@Component
+public class QueryMetrics {
+
+    private static final Logger slowQueries = LoggerFactory.getLogger("com.example.Program.SlowQueries");
+
+    public static final String NLP = "nlp";
+    public static final String RENDER = "render";
+    public static final String PARSE = "parse";
+    public static final String EXECUTE = "execute";
+    public static final String FORMAT = "format";
+
+    /** templateId das consultas enviadas em texto para /api/executar. */
+    public static final String TEXTO = "texto";
+
+    private static final String NENHUM = "nenhum";
+    private static final String OUTRO = "outro";
+
+    private final MeterRegistry registry;
+    private final TemplateRegistry templateRegistry;
+    private final Set<String> tiposMetrica;
+    private final long limiarLentaNanos;
+
+    public QueryMetrics(MeterRegistry registry, TemplateRegistry templateRegistry, PlaceholderService placeholderService,
+                        @Value("${sparql.slow-query.threshold:500ms}") Duration limiarLenta) {
+        this.registry = registry;
+        this.templateRegistry = templateRegistry;
+        Set<String> tipos = new HashSet<>(placeholderService.getMetricas());
+        tipos.addAll(SPARQLProcessor.CALCULOS);
+        this.tiposMetrica = Set.copyOf(tipos);
+        this.limiarLentaNanos = limiarLenta.isZero() || limiarLenta.isNegative() ? Long.MAX_VALUE : limiarLenta.toNanos();
+    }
+
+    /**
+     * Mede 'acao' na etapa; exceções são contadas em nl2sparql.errors e propagadas.
+     */
+    public <T> T medir(String etapa, String templateId, String tipoMetrica, Supplier<T> acao) {
+        long inicio = System.nanoTime();
+        try {
+            return acao.get();
+        } catch (RuntimeException e) {
+            erro(etapa, templateId, tipoMetrica);
+            throw e;
+        } finally {
+            registrar(etapa, templateId, tipoMetrica, System.nanoTime() - inicio);
+        }
+    }
+
+    public void registrar(String etapa, String templateId, String tipoMetrica, long nanos) {
+        Timer.builder("nl2sparql.stage")
+                .description("Tempo de cada etapa do caminho pergunta -> resposta")
+                .tags("stage", etapa, "templateId", tagTemplate(templateId), "tipoMetrica", tagTipoMetrica(tipoMetrica))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void erro(String etapa, String templateId, String tipoMetrica) {
+        Counter.builder("nl2sparql.errors")
+                .description("Falhas por etapa do caminho pergunta -> resposta")
+                .tags("stage", etapa, "templateId", tagTemplate(templateId), "tipoMetrica", tagTipoMetrica(tipoMetrica))
+                .register(registry)
+                .increment();
+    }
+
+    public void recusa(String motivo) {
+        Counter.builder("nl2sparql.rejected")
+                .description("Consultas recusadas ou interrompidas pela governança da execução")
+                .tag("reason", motivo)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Registra uma execução: tempo da etapa execute, linhas do resultado e, se passou do limiar,
+     * uma entrada no log de consultas lentas. 'query' é nulo quando a resposta veio do índice colunar.
+     */
+    public void execucao(String templateId, String tipoMetrica, long nanos, long linhas,
+                         Query query, Map<String, Node> parametros) {
+        registrar(EXECUTE, templateId, tipoMetrica, nanos);
+        DistributionSummary.builder("nl2sparql.result.rows")
+                .description("Linhas do resultado por execução")
+                .baseUnit("rows")
+                .tags("templateId", tagTemplate(templateId), "tipoMetrica", tagTipoMetrica(tipoMetrica))
+                .register(registry)
+                .record(linhas);
+        if (nanos >= limiarLentaNanos && slowQueries.isWarnEnabled()) {
+            slowQueries.warn("Consulta lenta: {} ms, {} linhas (templateId={}, tipoMetrica={}).\nConsulta:\n{}\nParâmetros: {}\nPlano:\n{}",
+                    nanos / 1_000_000, linhas, tagTemplate(templateId), tagTipoMetrica(tipoMetrica),
+                    query != null ? query : "(índice colunar)", parametros, query != null ? plano(query, parametros) : "-");
+        }
+    }
+
+    /** Álgebra otimizada pelo ARQ para a consulta, com os parâmetros já substituídos. */
+    static String plano(Query query, Map<String, Node> parametros) {
+        try {
+            Op op = Algebra.compile(query);
+            if (!parametros.isEmpty()) {
+                BindingBuilder substituicoes = Binding.builder();
+                parametros.forEach((nome, valor) -> substituicoes.add(Var.alloc(nome), valor));
+                op = Substitute.substitute(op, substituicoes.build());
+            }
+            return Algebra.optimize(op).toString();
+        } catch (RuntimeException e) {
+            return "(plano indisponível: " + e.getMessage() + ")";
+        }
+    }
+
+    private String tagTemplate(String templateId) {
+        if (templateId == null || templateId.isEmpty()) {
+            return NENHUM;
+        }
+        return templateId.equals(TEXTO) || templateRegistry.contains(templateId) ? templateId : OUTRO;
+    }
+
+    private String tagTipoMetrica(String tipoMetrica) {
+        if (tipoMetrica == null || tipoMetrica.isEmpty()) {
+            return NENHUM;
+        }
+        return tiposMetrica.contains(tipoMetrica) ? tipoMetrica : OUTRO;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.OntologyAppendedEvent;
+import com.example.Program.ontology.OntologyReloadedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache dos resultados de /api/executar, já serializados em JSON. O modelo é somente leitura
+ * entre recargas, então a mesma consulta com o mesmo tipo de métrica sempre produz a mesma
+ * resposta; o cache inteiro é descartado quando a Ontology publica OntologyReloadedEvent ou
+ * OntologyAppendedEvent.
+ * As chaves incluem a geração do modelo, para que uma consulta iniciada antes da troca e
+ * concluída depois da invalidação não deixe no cache um resultado do modelo anterior.
+ * <p>
+ * O limite é duplo: memória aproximada (bytes das chaves e valores) e número de entradas.
+ * O Caffeine não combina maximumSize com maximumWeight, então cada entrada pesa no mínimo
+ * maxBytes / maxEntries, o que também limita a quantidade de entradas.
+ */
+@Service
+public class QueryResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+
+    private final Ontology ontology;
+    private final boolean enabled;
+    private final Cache<String, String> cache;
+
+    public QueryResultCache(Ontology ontology,
+                            @Value("${sparql.result-cache.enabled:true}") boolean enabled,
+                            @Value("${sparql.result-cache.max-entries:1000}") int maxEntries,
+                            @Value("${sparql.result-cache.max-bytes:33554432}") long maxBytes) {
+        this.ontology = ontology;
+        this.enabled = enabled;
+        long pesoMinimo = Math.max(1, maxBytes / Math.max(1, maxEntries));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String chave, String valor) -> (int) Math.min(Integer.MAX_VALUE,
+                        Math.max(pesoMinimo, 2L * (chave.length() + valor.length()))))
+                .recordStats()
+                .build();
+        logger.info("Cache de resultados SPARQL {} (máx. {} entradas, {} bytes).", enabled ? "ativo" : "desativado", maxEntries, maxBytes);
+    }
+
+    /**
+     * Chave para consultas em texto: espaços em branco colapsados + tipo de métrica.
+     */
+    public static String key(String sparqlQuery, String tipoMetrica) {
+        return normalizeWhitespace(sparqlQuery) + "\u0000" + tipoMetrica;
+    }
+
+    /**
+     * Chave para consultas preparadas: texto parametrizado + valores vinculados (nós e listas) + tipo de métrica.
+     */
+    public static String key(PreparedQuery preparedQuery, String tipoMetrica) {
+        return normalizeWhitespace(preparedQuery.getTextoParametrizado()) + "\u0000"
+                + preparedQuery.getParametrosConsulta().chave() + "\u0000" + tipoMetrica;
+    }
+
+    static String normalizeWhitespace(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length());
+        boolean espaco = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isWhitespace(c)) {
+                espaco = sb.length() > 0;
+            } else {
+                if (espaco) {
+                    sb.append(' ');
+                    espaco = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Retorna o JSON em cache ou calcula, armazena e retorna. Exceções do cálculo são
+     * propagadas e nada é armazenado.
+     */
+    public String get(String key, Supplier<String> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        // Lida antes da execução: o resultado nunca é de um modelo mais antigo que a geração da chave.
+        return cache.get(ontology.getGeracao() + "\u0000" + key, k -> loader.get());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onOntologyReloaded(OntologyReloadedEvent event) {
+        logger.info("Modelo recarregado ({} triplas); invalidando cache de resultados.", event.getTripleCount());
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onOntologyAppended(OntologyAppendedEvent event) {
+        logger.info("Acréscimo na ontologia (geração {}, {} triplas); invalidando cache de resultados.",
+                event.getGeracao(), event.getTripleCount());
+        invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("entries", cache.estimatedSize());
+        m.put("hits", stats.hitCount());
+        m.put("misses", stats.missCount());
+        m.put("hitRate", stats.hitRate());
+        m.put("evictions", stats.evictionCount());
+        m.put("evictedBytes", stats.evictionWeight());
+        cache.policy().eviction().ifPresent(e -> m.put("weightedSize", e.weightedSize().orElse(0L)));
+        return m;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.Program.service;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template SPARQL pré-compilado: uma sequência alternada de trechos literais (com os símbolos
+ * P*, D*, S* e os prefixos já resolvidos) e de slots #ENTIDADE# a preencher por requisição.
+ * É imutável e pode ser compartilhado entre threads.
+ * <p>
+ * Slots escritos como termos RDF ("#DATA#"^^xsd:date, "#NOME_SETOR#"@pt ou b3:#ENTIDADE_NOME#)
+ * também podem ser renderizados como variáveis ?param_*, para que a consulta seja preparada
+ * uma única vez e o valor entre como nó já tipado no momento da execução. No texto final, os
+ * valores desses slots literais são escapados.
+ */
+public final class QueryTemplate {
+
+    public static final String PARAM_PREFIX = "param_";
+
+    private static final Pattern SUFIXO_LITERAL = Pattern.compile("^\"(\\^\\^([A-Za-z][\\w-]*):([\\w-]+)|@([A-Za-z]+(-[A-Za-z0-9]+)*))?");
+    private static final Pattern PREFIXO_IRI = Pattern.compile("([A-Za-z][\\w-]*):$");
+
+    private final String id;
+    // literais.length == slots.length + 1; o texto é literais[0] slots[0] literais[1] ... literais[n]
+    private final String[] literais;
+    private final String[] slots;
+    // Como cada slot vira um nó RDF no modo parametrizado (null = valor sempre inserido como texto).
+    private final TermoRdf[] termos;
+    // Trechos de literais[k] usados no modo parametrizado (sem aspas, sufixos e prefixos dos slots vinculáveis).
+    private final int[] inicioParametrico;
+    private final int[] fimParametrico;
+    private final Set<String> nomesSlots;
+    private final int tamanhoLiterais;
+
+    private QueryTemplate(String id, List<String> literais, List<String> slots, Map<String, String> prefixos) {
+        this.id = id;
+        this.literais = literais.toArray(new String[0]);
+        this.slots = slots.toArray(new String[0]);
+        this.nomesSlots = Collections.unmodifiableSet(new LinkedHashSet<>(slots));
+        int total = 0;
+        for (String l : this.literais) { total += l.length(); }
+        this.tamanhoLiterais = total;
+
+        this.termos = new TermoRdf[this.slots.length];
+        this.inicioParametrico = new int[this.literais.length];
+        this.fimParametrico = new int[this.literais.length];
+        for (int k = 0; k < this.literais.length; k++) {
+            fimParametrico[k] = this.literais[k].length();
+        }
+        for (int k = 0; k < this.slots.length; k++) {
+            classificarSlot(k, prefixos);
+        }
+    }
+
+    private void classificarSlot(int k, Map<String, String> prefixos) {
+        String antes = literais[k];
+        String depois = literais[k + 1];
+        if (antes.endsWith("\"") && depois.startsWith("\"")) {
+            Matcher m = SUFIXO_LITERAL.matcher(depois);
+            if (!m.find()) {
+                return;
+            }
+            String datatype = null;
+            if (m.group(2) != null) {
+                String ns = prefixos.get(m.group(2));
+                if (ns == null) {
+                    return;
+                }
+                datatype = ns + m.group(3);
+            }
+            termos[k] = new TermoRdf(TipoTermo.LITERAL, datatype, m.group(4));
+            fimParametrico[k] = antes.length() - 1;
+            inicioParametrico[k + 1] = m.end();
+            return;
+        }
+        Matcher m = PREFIXO_IRI.matcher(antes);
+        if (m.find() && prefixos.containsKey(m.group(1))) {
+            termos[k] = new TermoRdf(TipoTermo.IRI, prefixos.get(m.group(1)), null);
+            fimParametrico[k] = m.start();
+        }
+    }
+
+    /**
+     * Divide o texto em literais e slots #NOME# (NOME em maiúsculas, dígitos e '_').
+     * Os literais passam pelo PlaceholderService para resolver P*, D*, S* uma única vez.
+     */
+    static QueryTemplate compile(String id, String header, String texto, PlaceholderService placeholderService) {
+        List<String> literais = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int inicioLiteral = 0;
+        int i = 0;
+        while (i < texto.length()) {
+            int fim = slotEnd(texto, i);
+            if (fim > 0) {
+                literais.add(placeholderService.replaceGenericPlaceholders(texto.substring(inicioLiteral, i)));
+                slots.add(texto.substring(i + 1, fim));
+                i = fim + 1;
+                inicioLiteral = i;
+            } else {
+                i++;
+            }
+        }
+        literais.add(placeholderService.replaceGenericPlaceholders(texto.substring(inicioLiteral)));
+        // O cabeçalho (prefixos) não contém símbolos e é incorporado ao primeiro literal.
+        literais.set(0, header + literais.get(0));
+        return new QueryTemplate(id, literais, slots, placeholderService.getPrefixMap());
+    }
+
+    /** Retorna o índice do '#' de fechamento se houver um slot começando em 'inicio', ou -1. */
+    private static int slotEnd(String texto, int inicio) {
+        if (texto.charAt(inicio) != '#' || inicio + 1 >= texto.length()) {
+            return -1;
+        }
+        char primeiro = texto.charAt(inicio + 1);
+        if (primeiro < 'A' || primeiro > 'Z') {
+            return -1;
+        }
+        for (int j = inicio + 2; j < texto.length(); j++) {
+            char c = texto.charAt(j);
+            if (c == '#') {
+                return j;
+            }
+            if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Renderiza o template em uma única passada. Slots sem valor no mapa permanecem
+     * como #NOME#, o mesmo comportamento da antiga cadeia de String.replace.
+     */
+    public String render(Map<String, String> valores) {
+        return render(valores, null);
+    }
+
+    /**
+     * Renderiza o template. Se 'parametros' não for nulo, os slots que são termos RDF viram
+     * variáveis ?param_* e seus valores são adicionados a 'parametros' como nós tipados;
+     * o texto resultante depende apenas da "forma" da consulta e pode ser preparado uma vez.
+     */
+    public String render(Map<String, String> valores, Map<String, Node> parametros) {
+        int capacidade = tamanhoLiterais;
+        for (String slot : slots) {
+            String v = valores.get(slot);
+            capacidade += v != null ? v.length() : slot.length() + 2;
+        }
+        StringBuilder sb = new StringBuilder(capacidade);
+        boolean parametrizado = parametros != null;
+        // Se o slot anterior virou variável, o literal seguinte começa após as aspas/sufixo.
+        boolean anteriorVinculado = false;
+        for (int k = 0; k < slots.length; k++) {
+            String v = valores.get(slots[k]);
+            boolean vincular = parametrizado && v != null && termos[k] != null;
+            int inicio = anteriorVinculado ? inicioParametrico[k] : 0;
+            int fim = vincular ? fimParametrico[k] : literais[k].length();
+            sb.append(literais[k], inicio, fim);
+            if (vincular) {
+                String variavel = PARAM_PREFIX + slots[k] + (termos[k].tipo() == TipoTermo.IRI ? "_IRI" : "");
+                parametros.put(variavel, termos[k].toNode(v));
+                sb.append('?').append(variavel);
+            } else if (v != null && termos[k] != null && termos[k].tipo() == TipoTermo.LITERAL) {
+                // No texto final o valor fica entre aspas: escapado para não fechar o literal.
+                sb.append(FmtUtils.stringEsc(v, true));
+            } else if (v != null) {
+                sb.append(v);
+            } else {
+                sb.append('#').append(slots[k]).append('#');
+            }
+            anteriorVinculado = vincular;
+        }
+        String ultimo = literais[slots.length];
+        sb.append(ultimo, anteriorVinculado ? inicioParametrico[slots.length] : 0, ultimo.length());
+        return sb.toString();
+    }
+
+    public boolean hasSlot(String nome) {
+        return nomesSlots.contains(nome);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    private enum TipoTermo { LITERAL, IRI }
+
+    private record TermoRdf(TipoTermo tipo, String datatypeOuNamespace, String lang) {
+        Node toNode(String valor) {
+            if (tipo == TipoTermo.IRI) {
+                return NodeFactory.createURI(datatypeOuNamespace + valor);
+            }
+            if (lang != null) {
+                return NodeFactory.createLiteral(valor, lang);
+            }
+            if (datatypeOuNamespace != null) {
+                return NodeFactory.createLiteral(valor, TypeMapper.getInstance().getSafeTypeByName(datatypeOuNamespace));
+            }
+            return NodeFactory.createLiteral(valor);
+        }
+    }
+}
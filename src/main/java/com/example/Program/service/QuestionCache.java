@@ -0,0 +1,149 @@
+package com.example.Program.service;
+
+import com.example.Program.model.ProcessamentoDetalhadoResposta;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Cache em frente a SPARQLProcessor.generateSparqlQuery, em dois níveis:
+ * <ol>
+ *   <li>pergunta canônica -> interpretação do PLN (templateId, entidades, tipo de métrica),
+ *       sem o texto da consulta (evita a chamada ao PLN);</li>
+ *   <li>(templateId, entidades) -> consulta renderizada, compartilhada por perguntas
+ *       escritas de formas diferentes que o PLN resolve para as mesmas entidades.</li>
+ * </ol>
+ * Apenas respostas sem erro são armazenadas. Ambos os níveis têm TTL e tamanho máximo.
+ */
+@Service
+public class QuestionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuestionCache.class);
+
+    // Pontuação que não está entre letras/dígitos (mantém datas 12/06/2025, decimais e hífens internos).
+    private static final Pattern PONTUACAO_SOLTA = Pattern.compile("(?<![\\p{L}\\p{N}])\\p{P}+|\\p{P}+(?![\\p{L}\\p{N}])");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
+    private final boolean enabled;
+    private final Cache<String, ProcessamentoDetalhadoResposta> perguntas;
+    private final Cache<String, String> consultas;
+    // Serializa as entidades com chaves ordenadas para que a ordem dos campos não altere a chave.
+    private final ObjectMapper chaveMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    public QuestionCache(@Value("${nlp.question-cache.enabled:true}") boolean enabled,
+                         @Value("${nlp.question-cache.max-entries:10000}") long maxEntries,
+                         @Value("${nlp.question-cache.ttl:30m}") Duration ttl) {
+        this.enabled = enabled;
+        this.perguntas = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).recordStats().build();
+        this.consultas = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).recordStats().build();
+        logger.info("Cache de perguntas {} (máx. {} entradas, TTL {}).", enabled ? "ativo" : "desativado", maxEntries, ttl);
+    }
+
+    /**
+     * Forma canônica da pergunta: minúsculas, sem acentos (como remover_acentos do nlp_controller.py),
+     * sem pontuação solta e com espaços colapsados.
+     */
+    public static String canonicalize(String pergunta) {
+        String texto = TextNormalizer.removerAcentos(pergunta.toLowerCase(Locale.ROOT));
+        texto = PONTUACAO_SOLTA.matcher(texto).replaceAll(" ");
+        return ESPACOS.matcher(texto).replaceAll(" ").trim();
+    }
+
+    /**
+     * Nível 1. O loader é chamado apenas em caso de falta; respostas com erro não são guardadas.
+     * Devolve sempre uma cópia, para que quem chama possa alterar o objeto sem afetar o cache.
+     */
+    public ProcessamentoDetalhadoResposta getResposta(String pergunta, Supplier<ProcessamentoDetalhadoResposta> loader) {
+        return getRespostaAsync(pergunta, () -> CompletableFuture.completedFuture(loader.get())).join();
+    }
+
+    /**
+     * Como getResposta, com o loader assíncrono (a chamada ao PLN remoto); o acerto volta completo.
+     */
+    public CompletableFuture<ProcessamentoDetalhadoResposta> getRespostaAsync(
+            String pergunta, Supplier<CompletableFuture<ProcessamentoDetalhadoResposta>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String chave = canonicalize(pergunta);
+        ProcessamentoDetalhadoResposta cached = perguntas.getIfPresent(chave);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(copiar(cached));
+        }
+        return loader.get().thenApply(resposta -> {
+            if (resposta.getErro() == null) {
+                perguntas.put(chave, copiar(resposta));
+            }
+            return resposta;
+        });
+    }
+
+    /**
+     * Nível 2: consulta renderizada para (templateId, entidades).
+     */
+    public String getConsulta(String templateId, JsonNode entidades, Supplier<String> renderer) {
+        if (!enabled) {
+            return renderer.get();
+        }
+        String chave = templateId + "\u0000" + chaveEntidades(entidades);
+        return consultas.get(chave, k -> renderer.get());
+    }
+
+    private String chaveEntidades(JsonNode entidades) {
+        try {
+            return chaveMapper.writeValueAsString(chaveMapper.treeToValue(entidades, Object.class));
+        } catch (Exception e) {
+            return entidades.toString();
+        }
+    }
+
+    public void invalidateAll() {
+        perguntas.invalidateAll();
+        consultas.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("perguntas", stats(perguntas.stats(), perguntas.estimatedSize()));
+        m.put("consultas", stats(consultas.stats(), consultas.estimatedSize()));
+        return m;
+    }
+
+    private static Map<String, Object> stats(CacheStats stats, long entries) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", entries);
+        m.put("hits", stats.hitCount());
+        m.put("misses", stats.missCount());
+        m.put("hitRate", stats.hitRate());
+        m.put("evictions", stats.evictionCount());
+        return m;
+    }
+
+    private static ProcessamentoDetalhadoResposta copiar(ProcessamentoDetalhadoResposta origem) {
+        ProcessamentoDetalhadoResposta copia = new ProcessamentoDetalhadoResposta();
+        copia.setSparqlQuery(origem.getSparqlQuery());
+        copia.setResposta(origem.getResposta());
+        copia.setErro(origem.getErro());
+        copia.setTemplateId(origem.getTemplateId());
+        copia.setTipoMetrica(origem.getTipoMetrica());
+        copia.setQueryType(origem.getQueryType());
+        copia.setEntidades(origem.getEntidades() != null ? origem.getEntidades().deepCopy() : null);
+        return copia;
+    }
+}
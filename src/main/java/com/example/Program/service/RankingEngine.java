@@ -0,0 +1,132 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.MetricaDiaria;
+import com.example.Program.ontology.TimeSeriesIndex;
+
+import java.util.BitSet;
+
+/**
+ * Operador TOP N sobre um pregão do TimeSeriesIndex: calcula a métrica com aritmética primitiva
+ * apenas para as linhas aceitas pela máscara e seleciona as N melhores com um heap limitado,
+ * em O(n log N), sem materializar nem ordenar todas as linhas.
+ */
+public final class RankingEngine {
+
+    private RankingEngine() {
+    }
+
+    /**
+     * Retorna as linhas vencedoras, já ordenadas (a melhor primeiro). Empates são desfeitos pelo
+     * valor de b3:ticker, para que o resultado seja determinístico.
+     *
+     * @param mascaraTickers tickers admitidos (por id); null admite todos
+     * @param elegiveis linhas admitidas (por número de linha); null admite todas
+     */
+    public static int[] topN(TimeSeriesIndex index, int dateId, MetricaDiaria metrica, boolean ascendente, int limite,
+                             BitSet mascaraTickers, BitSet elegiveis) {
+        if (dateId < 0 || limite <= 0) {
+            return new int[0];
+        }
+        Heap heap = new Heap(index, ascendente, limite);
+        for (int r = index.dateStart(dateId), fim = index.dateEnd(dateId); r < fim; r++) {
+            if ((mascaraTickers != null && !mascaraTickers.get(index.rowTicker(r))) || (elegiveis != null && !elegiveis.get(r))) {
+                continue;
+            }
+            double valor = metrica.valor(index, r);
+            if (!Double.isNaN(valor)) {
+                heap.offer(r, valor);
+            }
+        }
+        return heap.ordenado();
+    }
+
+    /**
+     * Heap de tamanho fixo em arrays primitivos. A raiz é a pior linha mantida; uma nova linha
+     * só entra se for melhor que ela.
+     */
+    private static final class Heap {
+        private final TimeSeriesIndex index;
+        private final boolean ascendente;
+        private final int[] linhas;
+        private final double[] valores;
+        private int tamanho;
+
+        Heap(TimeSeriesIndex index, boolean ascendente, int capacidade) {
+            this.index = index;
+            this.ascendente = ascendente;
+            int limite = Math.min(capacidade, Math.max(1, index.rowCount()));
+            this.linhas = new int[limite];
+            this.valores = new double[limite];
+        }
+
+        /** true se (ra, va) vem antes de (rb, vb) no ranking. */
+        private boolean melhor(int ra, double va, int rb, double vb) {
+            if (va != vb) {
+                return ascendente ? va < vb : va > vb;
+            }
+            return index.tickerLabel(index.rowTicker(ra)).compareTo(index.tickerLabel(index.rowTicker(rb))) < 0;
+        }
+
+        void offer(int linha, double valor) {
+            if (tamanho < linhas.length) {
+                linhas[tamanho] = linha;
+                valores[tamanho] = valor;
+                subir(tamanho++);
+            } else if (melhor(linha, valor, linhas[0], valores[0])) {
+                linhas[0] = linha;
+                valores[0] = valor;
+                descer(0, tamanho);
+            }
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int pai = (i - 1) >>> 1;
+                if (!melhor(linhas[pai], valores[pai], linhas[i], valores[i])) {
+                    break;
+                }
+                trocar(i, pai);
+                i = pai;
+            }
+        }
+
+        private void descer(int i, int n) {
+            while (true) {
+                int pior = i;
+                int esq = 2 * i + 1;
+                int dir = esq + 1;
+                if (esq < n && melhor(linhas[pior], valores[pior], linhas[esq], valores[esq])) {
+                    pior = esq;
+                }
+                if (dir < n && melhor(linhas[pior], valores[pior], linhas[dir], valores[dir])) {
+                    pior = dir;
+                }
+                if (pior == i) {
+                    return;
+                }
+                trocar(i, pior);
+                i = pior;
+            }
+        }
+
+        private void trocar(int a, int b) {
+            int l = linhas[a];
+            linhas[a] = linhas[b];
+            linhas[b] = l;
+            double v = valores[a];
+            valores[a] = valores[b];
+            valores[b] = v;
+        }
+
+        /** Esvazia o heap retirando sempre a pior linha, do fim para o começo. */
+        int[] ordenado() {
+            int[] resultado = new int[tamanho];
+            for (int n = tamanho; n > 0; n--) {
+                resultado[n - 1] = linhas[0];
+                trocar(0, n - 1);
+                descer(0, n - 1);
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.Program.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Seleção de template por similaridade com nlp/Reference_questions.txt, a mesma do fallback do
+ * nlp_controller.py: TF-IDF com os padrões do TfidfVectorizer do scikit-learn (minúsculas,
+ * tokens de 2+ caracteres de palavra, idf suavizado ln((1+n)/(1+df)) + 1, norma L2) e
+ * similaridade do cosseno; vence a pergunta de referência mais parecida, se passar de 0,3.
+ */
+@Service
+public class ReferenceQuestionMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceQuestionMatcher.class);
+
+    private static final String ARQUIVO = "nlp/Reference_questions.txt";
+    private static final double LIMIAR = 0.3;
+    // token_pattern padrão do scikit-learn: (?u)\b\w\w+\b
+    private static final Pattern TOKEN = Pattern.compile("\\b\\w\\w+\\b", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private Map<String, Double> idf;
+    private List<String> templates;
+    private List<Map<String, Double>> vetores;
+
+    @PostConstruct
+    public void init() throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<String> perguntas = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(ARQUIVO).getInputStream(), StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                linha = linha.strip();
+                int separador = linha.indexOf(';');
+                if (!linha.isEmpty() && separador > 0 && !linha.startsWith("#")) {
+                    ids.add(linha.substring(0, separador).strip());
+                    perguntas.add(linha.substring(separador + 1).strip());
+                }
+            }
+        }
+
+        List<Map<String, Integer>> frequencias = new ArrayList<>();
+        Map<String, Integer> documentos = new HashMap<>();
+        for (String pergunta : perguntas) {
+            Map<String, Integer> tf = contar(pergunta);
+            frequencias.add(tf);
+            tf.keySet().forEach(termo -> documentos.merge(termo, 1, Integer::sum));
+        }
+        int n = perguntas.size();
+        Map<String, Double> idf = new HashMap<>();
+        documentos.forEach((termo, df) -> idf.put(termo, Math.log((1.0 + n) / (1.0 + df)) + 1.0));
+
+        List<Map<String, Double>> vetores = new ArrayList<>();
+        for (Map<String, Integer> tf : frequencias) {
+            vetores.add(vetor(tf, idf));
+        }
+        this.idf = idf;
+        this.templates = ids;
+        this.vetores = vetores;
+        logger.info("Perguntas de referência carregadas: {} perguntas, {} termos.", n, idf.size());
+    }
+
+    /**
+     * Template da pergunta de referência mais similar, se a similaridade passar do limiar.
+     */
+    public Optional<String> melhorTemplate(String pergunta) {
+        Map<String, Double> consulta = vetor(contar(pergunta), idf);
+        if (consulta.isEmpty()) {
+            return Optional.empty();
+        }
+        int melhor = -1;
+        double maior = 0;
+        for (int i = 0; i < vetores.size(); i++) {
+            double similaridade = produtoEscalar(consulta, vetores.get(i));
+            // Maior estrito: empates ficam com a primeira pergunta, como o argmax do numpy.
+            if (similaridade > maior) {
+                maior = similaridade;
+                melhor = i;
+            }
+        }
+        return melhor >= 0 && maior > LIMIAR ? Optional.of(templates.get(melhor)) : Optional.empty();
+    }
+
+    private static Map<String, Integer> contar(String texto) {
+        Map<String, Integer> tf = new HashMap<>();
+        Matcher m = TOKEN.matcher(texto.toLowerCase(Locale.ROOT));
+        while (m.find()) {
+            tf.merge(m.group(), 1, Integer::sum);
+        }
+        return tf;
+    }
+
+    // Termos fora do vocabulário das referências são ignorados, como no transform do scikit-learn.
+    private static Map<String, Double> vetor(Map<String, Integer> tf, Map<String, Double> idf) {
+        Map<String, Double> pesos = new HashMap<>();
+        double norma = 0;
+        for (Map.Entry<String, Integer> e : tf.entrySet()) {
+            Double peso = idf.get(e.getKey());
+            if (peso != null) {
+                double valor = e.getValue() * peso;
+                pesos.put(e.getKey(), valor);
+                norma += valor * valor;
+            }
+        }
+        double raiz = Math.sqrt(norma);
+        if (raiz > 0) {
+            pesos.replaceAll((termo, valor) -> valor / raiz);
+        }
+        return pesos;
+    }
+
+    private static double produtoEscalar(Map<String, Double> a, Map<String, Double> b) {
+        double soma = 0;
+        for (Map.Entry<String, Double> e : a.entrySet()) {
+            Double outro = b.get(e.getKey());
+            if (outro != null) {
+                soma += e.getValue() * outro;
+            }
+        }
+        return soma;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.Program.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Motor de PLN remoto: delega a pergunta ao serviço Python/Flask (nlp_controller.py).
+ * <p>
+ * A chamada é assíncrona (HttpClient.sendAsync) sobre um cliente próprio: HTTP/1.1 (o Gunicorn
+ * não fala HTTP/2), tempo limite de conexão explícito e, no modo de threads virtuais, um executor
+ * de threads virtuais para o processamento das respostas. processQuestionAsync não bloqueia
+ * thread nenhuma enquanto o serviço responde (/processar devolve o futuro ao Spring MVC);
+ * processQuestion espera por ele. Em volta da chamada:
+ * <ul>
+ *   <li>prazo por chamada ('nlp.service.request-timeout'), que cobre conexão e requisição HTTP;</li>
+ *   <li>bulkhead: no máximo 'nlp.service.max-in-flight' chamadas simultâneas ao serviço; sem vaga,
+ *       a pergunta vai na hora para o fallback;</li>
+ *   <li>disjuntor (CircuitBreaker): falhas seguidas (conexão, prazo, status 5xx) abrem o circuito
+ *       e as perguntas deixam de esperar pelo serviço; depois de 'nlp.breaker.open-duration' uma
+ *       sonda testa se ele voltou;</li>
+ *   <li>fallback local: com o circuito aberto, sem vaga ou após uma falha, a pergunta vai para o
+ *       JavaNlpEngine (mesmas regras e o mesmo fallback por TF-IDF sobre Reference_questions.txt).
+ *       Respostas 4xx do serviço (ex: nenhum template encontrado) são respostas válidas e não
+ *       usam o fallback.</li>
+ * </ul>
+ * Métricas no Micrometer (/actuator/prometheus), para alertar sobre circuito aberto ou uma onda de
+ * fallbacks: nl2sparql.nlp.breaker.state (1 no estado atual, tag state),
+ * nl2sparql.nlp.breaker.transitions (tag to), nl2sparql.nlp.calls, nl2sparql.nlp.failures,
+ * nl2sparql.nlp.rejected (circuito aberto ou bulkhead sem vaga) e nl2sparql.nlp.fallback, as três
+ * últimas com a tag reason.
+ */
+@Service
+public class RemoteNlpEngine implements NlpEngine {
+
+    public static final String NAME = "remote";
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteNlpEngine.class);
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper;
+    private final URI serviceUri;
+    private final Duration requestTimeout;
+    private final Semaphore emAndamento;
+    private final int maxInFlight;
+    private final CircuitBreaker circuitBreaker;
+    private final JavaNlpEngine fallback;
+    private final boolean fallbackEnabled;
+
+    private final MeterRegistry registry;
+    private final Counter chamadas;
+    private final Map<String, Counter> falhas = new ConcurrentHashMap<>();
+    private final Map<String, Counter> recusas = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fallbacks = new ConcurrentHashMap<>();
+
+    public RemoteNlpEngine(@Value("${nlp.service.url:http://localhost:5000/process_question}") String serviceUrl,
+                           @Value("${nlp.service.connect-timeout:2s}") Duration connectTimeout,
+                           @Value("${nlp.service.request-timeout:10s}") Duration requestTimeout,
+                           @Value("${nlp.service.max-in-flight:64}") int maxInFlight,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais,
+                           @Value("${nlp.breaker.failure-threshold:5}") int limiarFalhas,
+                           @Value("${nlp.breaker.open-duration:30s}") Duration tempoAberto,
+                           @Value("${nlp.breaker.half-open-probes:1}") int sondas,
+                           @Value("${nlp.fallback.enabled:true}") boolean fallbackEnabled,
+                           JavaNlpEngine fallback, MeterRegistry registry) {
+        this.executor = threadsVirtuais
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(Thread.ofPlatform().name("nlp-http-", 0).daemon().factory());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+        this.objectMapper = new ObjectMapper();
+        this.serviceUri = URI.create(serviceUrl);
+        this.requestTimeout = requestTimeout;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.emAndamento = new Semaphore(this.maxInFlight);
+        this.circuitBreaker = new CircuitBreaker("nlp", limiarFalhas, tempoAberto, sondas);
+        this.fallback = fallback;
+        this.fallbackEnabled = fallbackEnabled;
+        this.registry = registry;
+        this.chamadas = Counter.builder("nl2sparql.nlp.calls")
+                .description("Chamadas HTTP feitas ao serviço NLP")
+                .register(registry);
+        for (CircuitBreaker.Estado estado : CircuitBreaker.Estado.values()) {
+            Gauge.builder("nl2sparql.nlp.breaker.state", circuitBreaker, cb -> cb.getEstado() == estado ? 1 : 0)
+                    .description("Estado do disjuntor do serviço NLP (1 no estado atual)")
+                    .tag("state", estado.name().toLowerCase())
+                    .register(registry);
+        }
+        FunctionCounter.builder("nl2sparql.nlp.breaker.transitions", circuitBreaker, CircuitBreaker::getAberturas)
+                .description("Transições do disjuntor do serviço NLP")
+                .tag("to", "aberto")
+                .register(registry);
+        FunctionCounter.builder("nl2sparql.nlp.breaker.transitions", circuitBreaker, CircuitBreaker::getFechamentos)
+                .description("Transições do disjuntor do serviço NLP")
+                .tag("to", "fechado")
+                .register(registry);
+        logger.info("Cliente do serviço NLP: {} (conexão {} ms, prazo {} ms, até {} chamadas simultâneas; "
+                        + "circuito abre após {} falhas por {} ms; fallback local {}).",
+                serviceUri, connectTimeout.toMillis(), requestTimeout.toMillis(), this.maxInFlight,
+                limiarFalhas, tempoAberto.toMillis(), fallbackEnabled ? "ativo" : "desativado");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Espera o resultado de processQuestionAsync: bloqueia a thread de quem chama (lote, /perguntar).
+     */
+    @Override
+    public JsonNode processQuestion(String question) throws Exception {
+        try {
+            return processQuestionAsync(question).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Chamada sem thread bloqueada: o futuro é completado pelo HttpClient quando a resposta chega
+     * (ou no prazo), e o tratamento da resposta e o fallback rodam no executor do cliente. Sem vaga
+     * no bulkhead a pergunta vai direto para o fallback, porque esperar por vaga bloquearia a thread.
+     */
+    @Override
+    public CompletableFuture<JsonNode> processQuestionAsync(String question) {
+        if (!circuitBreaker.permitir()) {
+            contar(recusas, "nl2sparql.nlp.rejected", "circuito_aberto");
+            return usarFallback("circuito_aberto", question,
+                    new IOException("Serviço NLP indisponível (circuito aberto)."));
+        }
+        if (!emAndamento.tryAcquire()) {
+            circuitBreaker.liberar();
+            contar(recusas, "nl2sparql.nlp.rejected", "saturado");
+            return usarFallback("saturado", question, new IOException(
+                    "Serviço NLP saturado: " + maxInFlight + " chamadas simultâneas em andamento."));
+        }
+        CompletableFuture<HttpResponse<String>> futuro;
+        try {
+            chamadas.increment();
+            futuro = enviar(question);
+        } catch (RuntimeException e) {
+            emAndamento.release();
+            circuitBreaker.liberar();
+            return CompletableFuture.failedFuture(e);
+        }
+        return futuro.handleAsync((response, erro) -> {
+            emAndamento.release();
+            return erro != null ? falhou(question, erro) : respondeu(question, response);
+        }, executor).thenCompose(resultado -> resultado);
+    }
+
+    private CompletableFuture<HttpResponse<String>> enviar(String question) {
+        String jsonBody = objectMapper.createObjectNode().put("question", question).toString();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(serviceUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                .build();
+        // O timeout da requisição não cobre a conexão; o orTimeout garante o limite total.
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(requestTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private CompletableFuture<JsonNode> falhou(String question, Throwable erro) {
+        Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+        if (!(causa instanceof IOException) && !(causa instanceof TimeoutException)) {
+            circuitBreaker.liberar();
+            return CompletableFuture.failedFuture(causa);
+        }
+        circuitBreaker.falha();
+        boolean prazo = causa instanceof HttpTimeoutException || causa instanceof TimeoutException;
+        contar(falhas, "nl2sparql.nlp.failures", prazo ? "prazo" : "conexao");
+        // ConnectException e HttpTimeoutException trazem pouca ou nenhuma mensagem; o endereço ajuda no diagnóstico.
+        String detalhe = prazo ? "prazo de " + requestTimeout.toMillis() + " ms esgotado"
+                : causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+        return usarFallback("falha", question, new IOException("Falha ao chamar o serviço NLP em " + serviceUri + ": " + detalhe, causa));
+    }
+
+    private CompletableFuture<JsonNode> respondeu(String question, HttpResponse<String> response) {
+        if (response.statusCode() >= 500) {
+            circuitBreaker.falha();
+            contar(falhas, "nl2sparql.nlp.failures", "status_5xx");
+            return usarFallback("falha", question, new IOException(
+                    "Serviço NLP falhou com status " + response.statusCode() + " e corpo: " + response.body()));
+        }
+        circuitBreaker.sucesso();
+        if (response.statusCode() != 200) {
+            return CompletableFuture.failedFuture(new IOException(
+                    "Serviço NLP falhou com status " + response.statusCode() + " e corpo: " + response.body()));
+        }
+        try {
+            return CompletableFuture.completedFuture(objectMapper.readTree(response.body()));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<JsonNode> usarFallback(String motivo, String question, IOException erro) {
+        if (!fallbackEnabled) {
+            return CompletableFuture.failedFuture(erro);
+        }
+        contar(fallbacks, "nl2sparql.nlp.fallback", motivo);
+        logger.warn("PLN local usado no lugar do serviço NLP ({}): {}", motivo, erro.getMessage());
+        return fallback.processQuestionAsync(question);
+    }
+
+    /** Incrementa o contador 'nome' com reason='motivo' (os motivos são fixos, definidos aqui). */
+    private void contar(Map<String, Counter> contadores, String nome, String motivo) {
+        contadores.computeIfAbsent(motivo, k -> Counter.builder(nome).tag("reason", k).register(registry)).increment();
+    }
+
+    private static Map<String, Long> valores(Map<String, Counter> contadores) {
+        Map<String, Long> m = new LinkedHashMap<>();
+        contadores.forEach((motivo, contador) -> m.put(motivo, (long) contador.count()));
+        return m;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /** Métricas do cliente: disjuntor, chamadas, falhas por tipo, recusas e fallbacks por motivo. */
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("circuito", circuitBreaker.stats());
+        m.put("chamadas", (long) chamadas.count());
+        m.put("emAndamento", maxInFlight - emAndamento.availablePermits());
+        m.put("falhas", valores(falhas));
+        m.put("recusas", valores(recusas));
+        m.put("fallbacks", valores(fallbacks));
+        return m;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.ResultTable;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Formatação dos valores do resultado de acordo com o tipo de métrica (moeda, percentual ou
+ * quantidade, em pt-BR). O formato é escolhido uma vez por coluna, na construção.
+ * <p>
+ * Os números são escritos num buffer da instância, sem String intermediária e sem os
+ * formatadores do java.text. Quando o arredondamento depende do valor binário exato (valores
+ * a menos de 2 ulp de um empate, muito grandes, -0, NaN), o valor vai para um DecimalFormat
+ * guardado por thread, que define o resultado; o caminho rápido só cobre os casos em que os
+ * dois coincidem. Não é thread-safe: use uma instância por resposta.
+ */
+final class ResultValueFormatter {
+
+    private static final Locale PT_BR = Locale.of("pt", "BR");
+
+    /** Acima disso valor * 100 deixa de ser representado com folga num long/double. */
+    private static final double LIMITE_RAPIDO = 1e13;
+
+    /** Formato de uma coluna; cada um guarda o DecimalFormat de referência e os símbolos já extraídos dele. */
+    enum Formato {
+        NENHUM(null, false),
+        PERCENTUAL(new DecimalFormat("#,##0.00'%'", new DecimalFormatSymbols(PT_BR)), false),
+        MOEDA((DecimalFormat) NumberFormat.getCurrencyInstance(PT_BR), true),
+        INTEIRO(new DecimalFormat("#,##0", new DecimalFormatSymbols(PT_BR)), false);
+
+        /** Referência do caminho rápido (também nos testes, que comparam os dois). */
+        final ThreadLocal<NumberFormat> completo;
+        private final boolean rapido;
+        private final char[] prefixoPositivo;
+        private final char[] sufixoPositivo;
+        private final char[] prefixoNegativo;
+        private final char[] sufixoNegativo;
+        private final char separadorGrupo;
+        private final char separadorDecimal;
+        private final int tamanhoGrupo;
+        private final int casas;
+        private final double escala;
+
+        Formato(DecimalFormat prototipo, boolean moeda) {
+            if (prototipo == null) {
+                this.completo = null;
+                this.rapido = false;
+                this.prefixoPositivo = this.sufixoPositivo = this.prefixoNegativo = this.sufixoNegativo = new char[0];
+                this.separadorGrupo = this.separadorDecimal = 0;
+                this.tamanhoGrupo = this.casas = 0;
+                this.escala = 1;
+                return;
+            }
+            // DecimalFormat não é thread-safe: cada thread usa a sua cópia do protótipo.
+            this.completo = ThreadLocal.withInitial(() -> (NumberFormat) prototipo.clone());
+            DecimalFormatSymbols simbolos = prototipo.getDecimalFormatSymbols();
+            this.prefixoPositivo = prototipo.getPositivePrefix().toCharArray();
+            this.sufixoPositivo = prototipo.getPositiveSuffix().toCharArray();
+            this.prefixoNegativo = prototipo.getNegativePrefix().toCharArray();
+            this.sufixoNegativo = prototipo.getNegativeSuffix().toCharArray();
+            this.separadorGrupo = moeda ? simbolos.getMonetaryGroupingSeparator() : simbolos.getGroupingSeparator();
+            this.separadorDecimal = moeda ? simbolos.getMonetaryDecimalSeparator() : simbolos.getDecimalSeparator();
+            this.tamanhoGrupo = prototipo.getGroupingSize();
+            this.casas = prototipo.getMaximumFractionDigits();
+            this.escala = Math.pow(10, casas);
+            this.rapido = prototipo.isGroupingUsed() && tamanhoGrupo > 0
+                    && prototipo.getMinimumFractionDigits() == casas && casas <= 2
+                    && prototipo.getMinimumIntegerDigits() == 1 && prototipo.getMultiplier() == 1
+                    && prototipo.getRoundingMode() == RoundingMode.HALF_EVEN;
+        }
+
+        /** Mesma regra de sempre: ticker nunca é formatado; o tipo de métrica decide o resto. */
+        static Formato de(String tipoMetrica, String varName) {
+            if (tipoMetrica == null || varName.equalsIgnoreCase("ticker")) {
+                return NENHUM;
+            }
+            if (tipoMetrica.contains("perc")) {
+                return PERCENTUAL;
+            } else if (tipoMetrica.contains("volume") || tipoMetrica.contains("preco") || tipoMetrica.contains("abs") || tipoMetrica.contains("intervalo")) {
+                return MOEDA;
+            } else if (tipoMetrica.contains("quantidade")) {
+                return INTEIRO;
+            }
+            return NENHUM;
+        }
+    }
+
+    private final Formato[] formatos;
+    private final char[] buffer = new char[64];
+
+    ResultValueFormatter(String tipoMetrica, List<String> vars) {
+        this.formatos = new Formato[vars.size()];
+        for (int c = 0; c < formatos.length; c++) {
+            formatos[c] = Formato.de(tipoMetrica, vars.get(c));
+        }
+    }
+
+    /**
+     * Escreve o valor formatado da célula como string JSON. Células numéricas são formatadas
+     * direto do double; as de texto só são convertidas se parecerem um número (o resultado é o
+     * mesmo de Double.parseDouble seguido da formatação, como antes); "N/A" e rótulos ficam como estão.
+     */
+    void escrever(JsonGenerator gerador, ResultTable tabela, int linha, int coluna) throws IOException {
+        Formato formato = formatos[coluna];
+        byte tipo = tabela.tipo(linha, coluna);
+        if (tipo == ResultTable.NAO_VINCULADO) {
+            gerador.writeString("N/A");
+        } else if (formato == Formato.NENHUM) {
+            gerador.writeString(tabela.lexico(linha, coluna));
+        } else if (tipo == ResultTable.NUMERO) {
+            escreverNumero(gerador, formato, tabela.numero(linha, coluna));
+        } else {
+            escreverTexto(gerador, formato, tabela.lexico(linha, coluna));
+        }
+    }
+
+    private void escreverTexto(JsonGenerator gerador, Formato formato, String lexico) throws IOException {
+        if (pareceNumero(lexico)) {
+            try {
+                escreverNumero(gerador, formato, Double.parseDouble(lexico));
+                return;
+            } catch (NumberFormatException e) {
+                // Mantém o valor original se não for um número (ex: "INF", "N/A")
+            }
+        }
+        gerador.writeString(lexico);
+    }
+
+    private void escreverNumero(JsonGenerator gerador, Formato formato, double valor) throws IOException {
+        int inicio = formatarRapido(formato, valor);
+        if (inicio >= 0) {
+            gerador.writeString(buffer, inicio, buffer.length - inicio);
+        } else {
+            gerador.writeString(formato.completo.get().format(valor));
+        }
+    }
+
+    /**
+     * Formata 'valor' no fim do buffer e devolve a posição inicial, ou -1 quando o caso fica com
+     * o DecimalFormat. O arredondamento é HALF_EVEN sobre o valor exato: fora da faixa de 2 ulp
+     * em volta do empate, arredondar valor * 10^casas já calculado dá o mesmo resultado.
+     */
+    private int formatarRapido(Formato formato, double valor) {
+        double absoluto = Math.abs(valor);
+        if (!formato.rapido || !(absoluto < LIMITE_RAPIDO)) {
+            return -1;
+        }
+        double escalado = absoluto * formato.escala;
+        double piso = Math.floor(escalado);
+        double fracao = escalado - piso;
+        if (Math.abs(fracao - 0.5) <= 2 * Math.ulp(escalado)) {
+            return -1;
+        }
+        long unidades = (long) piso + (fracao > 0.5 ? 1 : 0);
+        boolean negativo = Double.doubleToRawLongBits(valor) < 0;
+        if (negativo && unidades == 0) {
+            return -1; // "-0,00": fica com o DecimalFormat
+        }
+
+        int pos = copiarAntes(negativo ? formato.sufixoNegativo : formato.sufixoPositivo, buffer.length);
+        for (int i = 0; i < formato.casas; i++) {
+            buffer[--pos] = (char) ('0' + unidades % 10);
+            unidades /= 10;
+        }
+        if (formato.casas > 0) {
+            buffer[--pos] = formato.separadorDecimal;
+        }
+        int digitos = 0;
+        do {
+            if (digitos > 0 && digitos % formato.tamanhoGrupo == 0) {
+                buffer[--pos] = formato.separadorGrupo;
+            }
+            buffer[--pos] = (char) ('0' + unidades % 10);
+            unidades /= 10;
+            digitos++;
+        } while (unidades > 0);
+        return copiarAntes(negativo ? formato.prefixoNegativo : formato.prefixoPositivo, pos);
+    }
+
+    private int copiarAntes(char[] texto, int pos) {
+        System.arraycopy(texto, 0, buffer, pos - texto.length, texto.length);
+        return pos - texto.length;
+    }
+
+    /** Primeiro caractere (depois dos espaços que Double.parseDouble ignora) compatível com um número. */
+    private static boolean pareceNumero(String texto) {
+        int i = 0;
+        while (i < texto.length() && texto.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i == texto.length()) {
+            return false;
+        }
+        char c = texto.charAt(i);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'N' || c == 'I';
+    }
+}
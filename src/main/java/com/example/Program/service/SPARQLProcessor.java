@@ -1,166 +1,443 @@
 package com.example.Program.service;
 
 import com.example.Program.model.ProcessamentoDetalhadoResposta;
+import com.example.Program.ontology.B3;
+import com.example.Program.ontology.Ontology;
+import com.example.Program.ontology.PregaoIndex;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
 @Service
 public class SPARQLProcessor {
 
     private static final Logger logger = LoggerFactory.getLogger(SPARQLProcessor.class);
-    private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private static final Pattern TICKER_PATTERN = Pattern.compile("^[A-Z]{4}[0-9]{1,2}$");
+    // Códigos aceitos em LISTA_TICKERS (viram IRIs b3:CODIGO).
+    private static final Pattern CODIGO_TICKER = Pattern.compile("^[A-Z0-9]{4,6}$");
+    private static final Pattern DATA_ISO = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
+
     private final PlaceholderService placeholderService;
-    private static final String NLP_SERVICE_URL = "http://localhost:5000/process_question";
+    private final TemplateRegistry templateRegistry;
+    private final PreparedQueryCache preparedQueryCache;
+    private final QuestionCache questionCache;
+    private final NlpEngine nlpEngine;
+    private final LabelIndex labelIndex;
+    private final QueryMetrics queryMetrics;
+    private final Ontology ontology;
+    private final int limiteMaximo;
+
+    // Fragmentos de filtro pré-compilados com as mesmas regras dos templates.
+    private final QueryTemplate entidadeTickerFragment;
+    private final QueryTemplate empresaIriFragment;
+    private final QueryTemplate empresaLabelFragment;
+    private final QueryTemplate empresaTickersFragment;
+    private final QueryTemplate setorIriFragment;
+    private final QueryTemplate setorEmpresasFragment;
+    private final QueryTemplate setorFragment;
+    private final QueryTemplate tickersFragment;
+    private final QueryTemplate regexFilterFragment;
 
     @Autowired
-    public SPARQLProcessor(PlaceholderService placeholderService) {
-        this.httpClient = HttpClient.newHttpClient();
-        this.objectMapper = new ObjectMapper();
+    public SPARQLProcessor(PlaceholderService placeholderService, TemplateRegistry templateRegistry,
+                           PreparedQueryCache preparedQueryCache, QuestionCache questionCache, List<NlpEngine> nlpEngines,
+                           LabelIndex labelIndex, QueryMetrics queryMetrics, Ontology ontology,
+                           @Value("${nlp.engine:remote}") String nlpEngineName,
+                           @Value("${sparql.template.max-limit:1000}") int limiteMaximo) {
         this.placeholderService = placeholderService;
+        this.templateRegistry = templateRegistry;
+        this.preparedQueryCache = preparedQueryCache;
+        this.questionCache = questionCache;
+        this.labelIndex = labelIndex;
+        this.queryMetrics = queryMetrics;
+        this.ontology = ontology;
+        this.limiteMaximo = limiteMaximo;
+        this.entidadeTickerFragment = templateRegistry.compileFragment("entidade_ticker", "BIND(b3:#ENTIDADE_NOME# AS ?SO1)");
+        // Empresas e setores resolvidos pelo LabelIndex entram como IRIs; o REGEX sobre os rótulos
+        // fica só para nomes que o índice não conhece.
+        this.empresaIriFragment = templateRegistry.compileFragment("empresa_iri", "BIND(b3:#EMPRESA_IRI# AS ?S1)");
+        this.empresaLabelFragment = templateRegistry.compileFragment("empresa_label",
+                "?S1 P7 ?label . \n    FILTER(REGEX(STR(?label), \"#ENTIDADE_NOME#\", \"i\"))");
+        this.empresaTickersFragment = templateRegistry.compileFragment("empresa_tickers", "?S1 P1 ?SO1 .");
+        this.setorIriFragment = templateRegistry.compileFragment("setor_iri", "BIND(b3:#SETOR_IRI# AS ?S4)");
+        this.setorEmpresasFragment = templateRegistry.compileFragment("setor_empresas", "?S1 P9 ?S4 . \n    ?S1 P1 ?SO1 .");
+        this.setorFragment = templateRegistry.compileFragment("setor", "?S1 P9 ?S4 . \n    ?S4 P7 \"#NOME_SETOR#\"@pt . \n    ?S1 P1 ?SO1 .");
+        this.tickersFragment = templateRegistry.compileFragment("tickers", "VALUES ?SO1 { #TICKERS# }");
+        this.regexFilterFragment = templateRegistry.compileFragment("regex_filter", "FILTER(REGEX(STR(?ticker), \"#REGEX_PATTERN#\"))");
+        this.nlpEngine = nlpEngines.stream()
+                .filter(engine -> engine.getName().equalsIgnoreCase(nlpEngineName.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Motor de PLN desconhecido em 'nlp.engine': " + nlpEngineName));
+        logger.info("Motor de PLN selecionado: '{}'.", this.nlpEngine.getName());
     }
 
+    /**
+     * Gera a consulta para a pergunta: interpretação pelo PLN (nível 1 do QuestionCache) e texto
+     * final renderizado (nível 2). Perguntas que diferem apenas em caixa, acentos, espaços ou
+     * pontuação não repetem a chamada ao PLN.
+     */
     public ProcessamentoDetalhadoResposta generateSparqlQuery(String naturalLanguageQuery) {
-        ProcessamentoDetalhadoResposta resposta = new ProcessamentoDetalhadoResposta();
-        try {
-            String nlpResponseJson = callNlpService(naturalLanguageQuery);
-            logger.info("Resposta do NLP: {}", nlpResponseJson);
-            JsonNode rootNode = objectMapper.readTree(nlpResponseJson);
-            String templateId = rootNode.path("templateId").asText();
-            JsonNode entitiesNode = rootNode.path("entities");
-            if (templateId == null || templateId.isEmpty()) {
-                throw new IOException("NLP não retornou um templateId.");
-            }
-            String templateContent = loadTemplate(templateId);
-            String finalQuery = buildQuery(templateContent, entitiesNode);
-            resposta.setSparqlQuery(finalQuery);
-            resposta.setTemplateId(templateId);
-            if (entitiesNode.has("CALCULO")) {
-                resposta.setTipoMetrica(entitiesNode.get("CALCULO").asText());
-            } else if (entitiesNode.has("VALOR_DESEJADO")) {
-                resposta.setTipoMetrica(entitiesNode.get("VALOR_DESEJADO").asText());
-            }
-            logger.info("Consulta SPARQL final gerada:\n{}", finalQuery);
+        return renderizar(naturalLanguageQuery, interpretar(naturalLanguageQuery));
+    }
+
+    /**
+     * Como generateSparqlQuery, sem bloquear a thread enquanto o PLN remoto responde; a
+     * renderização roda na thread que completa a interpretação. O futuro não falha: erros vêm
+     * em ProcessamentoDetalhadoResposta.getErro().
+     */
+    public CompletableFuture<ProcessamentoDetalhadoResposta> generateSparqlQueryAsync(String naturalLanguageQuery) {
+        return interpretarAsync(naturalLanguageQuery).thenApply(resposta -> renderizar(naturalLanguageQuery, resposta));
+    }
+
+    private ProcessamentoDetalhadoResposta renderizar(String naturalLanguageQuery, ProcessamentoDetalhadoResposta resposta) {
+        if (resposta.getErro() != null) {
             return resposta;
+        }
+        try {
+            resposta.setSparqlQuery(renderQuery(resposta.getTemplateId(), resposta.getEntidades()));
         } catch (Exception e) {
             logger.error("Erro fatal ao gerar query para '{}': {}", naturalLanguageQuery, e.getMessage(), e);
             resposta.setErro("Erro ao processar a pergunta: " + e.getMessage());
-            return resposta;
         }
+        return resposta;
     }
 
-    private String buildQuery(String template, JsonNode entities) {
-        String query = template;
+    /**
+     * Apenas a etapa de PLN: templateId, entidades e tipo de métrica, sem renderizar a consulta.
+     */
+    public ProcessamentoDetalhadoResposta interpretar(String naturalLanguageQuery) {
+        return interpretarAsync(naturalLanguageQuery).join();
+    }
 
-        // ETAPA 1: Substitui todos os placeholders de valor literal direto.
-        Iterator<Map.Entry<String, JsonNode>> fieldsIterator = entities.fields();
-        while (fieldsIterator.hasNext()) {
-            Map.Entry<String, JsonNode> field = fieldsIterator.next();
-            String placeholder = "#" + field.getKey().toUpperCase() + "#";
-            if (!placeholder.matches("#FILTER_.*#|#CALCULO#|#RANKING_CALCULATION#|#VALOR_DESEJADO#|#REGEX_FILTER#")) {
-                if (field.getValue().isTextual()) {
-                    query = query.replace(placeholder, field.getValue().asText());
-                }
-            }
+    /** Como interpretar, sem bloquear; o futuro não falha (erros vêm em getErro()). */
+    public CompletableFuture<ProcessamentoDetalhadoResposta> interpretarAsync(String naturalLanguageQuery) {
+        return questionCache.getRespostaAsync(naturalLanguageQuery, () -> {
+            long inicio = System.nanoTime();
+            return nlpEngine.processQuestionAsync(naturalLanguageQuery)
+                    .handle((rootNode, erro) -> erro == null
+                            ? interpretacao(naturalLanguageQuery, rootNode, inicio)
+                            : falhaNlp(naturalLanguageQuery, erro instanceof CompletionException && erro.getCause() != null
+                                    ? erro.getCause() : erro, inicio));
+        });
+    }
+
+    private ProcessamentoDetalhadoResposta interpretacao(String naturalLanguageQuery, JsonNode rootNode, long inicio) {
+        logger.debug("Resposta do NLP: {}", rootNode);
+        String templateId = rootNode.path("templateId").asText();
+        JsonNode entitiesNode = rootNode.path("entities");
+        if (templateId == null || templateId.isEmpty()) {
+            return falhaNlp(naturalLanguageQuery, new IOException("NLP não retornou um templateId."), inicio);
         }
-        
-        // ETAPA 2: Constrói e aplica blocos de filtro.
-        String entidadeFilter = entities.has("ENTIDADE_NOME") ? buildEntidadeFilter(entities.get("ENTIDADE_NOME").asText()) : "";
-        String setorFilter = entities.has("NOME_SETOR") ? buildSetorFilter(entities.get("NOME_SETOR").asText()) : "";
-        String tickersFilter = entities.has("LISTA_TICKERS") ? buildTickersFilter(entities.get("LISTA_TICKERS")) : "";
-        
-        query = query.replace("#FILTER_BLOCK_ENTIDADE#", entidadeFilter);
-        query = query.replace("#FILTER_BLOCK_SETOR#", !tickersFilter.isEmpty() ? tickersFilter : setorFilter);
-        if (query.contains("#FILTER_BLOCK#")) {
-            query = query.replace("#FILTER_BLOCK#", !tickersFilter.isEmpty() ? tickersFilter : (!setorFilter.isEmpty() ? setorFilter : entidadeFilter));
+        ProcessamentoDetalhadoResposta resposta = new ProcessamentoDetalhadoResposta();
+        try {
+            resolverPeriodo(entitiesNode);
+        } catch (RuntimeException e) {
+            return falhaNlp(naturalLanguageQuery, e, inicio);
         }
+        resposta.setTemplateId(templateId);
+        resposta.setEntidades(entitiesNode);
+        resposta.setTipoMetrica(tipoMetrica(entitiesNode));
+        queryMetrics.registrar(QueryMetrics.NLP, templateId, resposta.getTipoMetrica(), System.nanoTime() - inicio);
+        return resposta;
+    }
+
+    private ProcessamentoDetalhadoResposta falhaNlp(String naturalLanguageQuery, Throwable e, long inicio) {
+        queryMetrics.registrar(QueryMetrics.NLP, null, null, System.nanoTime() - inicio);
+        queryMetrics.erro(QueryMetrics.NLP, null, null);
+        logger.error("Erro fatal ao gerar query para '{}': {}", naturalLanguageQuery, e.getMessage(), e);
+        ProcessamentoDetalhadoResposta resposta = new ProcessamentoDetalhadoResposta();
+        resposta.setErro("Erro ao processar a pergunta: " + e.getMessage());
+        return resposta;
+    }
+
+    /**
+     * Troca um período relativo (PERIODO: "semana", "mes", "mes-06", "pregoes-5") pelas datas
+     * DATA_INICIO e DATA_FIM, resolvidas pelo índice de pregões a partir do último pregão carregado.
+     * A interpretação em cache é descartada a cada recarga (LabelIndex), junto com essa referência.
+     */
+    private void resolverPeriodo(JsonNode entities) {
+        PregaoIndex pregoes = ontology.getPregaoIndex();
+        if (!(entities instanceof ObjectNode objeto) || !entities.hasNonNull("PERIODO") || pregoes == null) {
+            return;
+        }
+        PregaoIndex.Periodo periodo = pregoes.periodo(entities.get("PERIODO").asText());
+        if (periodo != null && !entities.has("DATA_INICIO")) {
+            objeto.put("DATA_INICIO", periodo.inicio());
+            objeto.put("DATA_FIM", periodo.fim());
+            objeto.remove("PERIODO");
+        }
+    }
+
+    /** Tipo de métrica usado na formatação do resultado: o cálculo pedido ou a métrica desejada. */
+    static String tipoMetrica(JsonNode entities) {
+        if (entities.has("CALCULO")) {
+            return entities.get("CALCULO").asText();
+        }
+        return entities.has("VALOR_DESEJADO") ? entities.get("VALOR_DESEJADO").asText() : null;
+    }
+
+    /**
+     * Texto final da consulta (com os valores no texto), para exibição e para /executar sem templateId.
+     */
+    public String renderQuery(String templateId, JsonNode entities) {
+        QueryTemplate template = templateRegistry.get(templateId);
+        return questionCache.getConsulta(templateId, entities, () -> {
+            String finalQuery = buildQuery(template, entities, null);
+            logger.debug("Consulta SPARQL final gerada:\n{}", finalQuery);
+            return finalQuery;
+        });
+    }
+
+    /**
+     * Prepara a consulta para execução direta: o texto parametrizado é analisado uma única vez
+     * por forma (PreparedQueryCache) e os valores da pergunta são vinculados como nós RDF
+     * (ou linhas de VALUES), sem concatenar texto derivado do usuário na consulta.
+     *
+     * @throws IllegalArgumentException se uma entidade tiver valor inválido (ex: LIMITE, ORDEM, tickers)
+     */
+    public PreparedQuery prepareQuery(String templateId, JsonNode entities) {
+        ParametrosConsulta parametros = new ParametrosConsulta();
+        String parametrica = renderParametrizada(templateId, entities, parametros);
+        return new PreparedQuery(templateId, parametrica, analisar(templateId, entities, parametrica), parametros);
+    }
+
+    /**
+     * Análise do texto parametrizado (uma vez por forma, no PreparedQueryCache), medida na etapa "parse".
+     */
+    public Query analisar(String templateId, JsonNode entities, String parametrica) {
+        return queryMetrics.medir(QueryMetrics.PARSE, templateId, tipoMetrica(entities), () -> preparedQueryCache.get(parametrica));
+    }
+
+    /**
+     * Só a renderização de prepareQuery: texto parametrizado, com os valores em 'parametros'.
+     * A análise fica a cargo de quem chama (PreparedQueryCache), para medir as etapas separadamente.
+     */
+    public String renderParametrizada(String templateId, JsonNode entities, ParametrosConsulta parametros) {
+        return buildQuery(templateRegistry.get(templateId), entities, parametros);
+    }
+
+    /**
+     * Monta a consulta. Com 'parametros' nulo gera o texto final; caso contrário, gera o texto
+     * parametrizado e preenche 'parametros' com os valores vinculáveis.
+     */
+    private String buildQuery(QueryTemplate template, JsonNode entities, ParametrosConsulta parametros) {
+        return queryMetrics.medir(QueryMetrics.RENDER, template.getId(), tipoMetrica(entities),
+                () -> montar(template, entities, parametros));
+    }
 
-        // ETAPA 3: Substitui placeholders de lógica.
+    private String montar(QueryTemplate template, JsonNode entities, ParametrosConsulta vinculos) {
+        Map<String, String> valores = new HashMap<>();
+        Map<String, Node> parametros = vinculos != null ? vinculos.nos() : null;
+
+        // ETAPA 1: Valores diretos (#DATA#, #LIMITE#, #ORDEM#), validados: são os únicos slots dos
+        // templates preenchidos com o valor de uma entidade. No modo parametrizado, LIMITE/ORDEM
+        // do ranking ficam fora do texto (ver ParametrosConsulta.ranking).
+        if (entities.hasNonNull("DATA")) {
+            valores.put("DATA", validar("DATA", entities.get("DATA").asText(), DATA_ISO.matcher(entities.get("DATA").asText()).matches()));
+        }
+        if (entities.hasNonNull("LIMITE")) {
+            valores.put("LIMITE", Integer.toString(validarLimite(entities.get("LIMITE").asText())));
+        }
+        if (entities.hasNonNull("ORDEM")) {
+            String ordem = entities.get("ORDEM").asText();
+            valores.put("ORDEM", validar("ORDEM", ordem, ordem.equals("ASC") || ordem.equals("DESC")));
+        }
+        if (vinculos != null && valores.containsKey("LIMITE") && valores.containsKey("ORDEM")
+                && template.hasSlot("LIMITE") && template.hasSlot("ORDEM")) {
+            vinculos.ranking(Long.parseLong(valores.get("LIMITE")), valores.get("ORDEM").equals("DESC"));
+            valores.put("LIMITE", Long.toString(ParametrosConsulta.LIMITE_VINCULADO));
+            valores.put("ORDEM", "ASC");
+        }
+
+        // ETAPA 2: Blocos de filtro.
+        String empresaFilter = entities.has("ENTIDADE_NOME") ? buildEmpresaFilter(entities.get("ENTIDADE_NOME").asText(), parametros) : "";
+        String entidadeFilter = entities.has("ENTIDADE_NOME") ? buildEntidadeFilter(entities.get("ENTIDADE_NOME").asText(), empresaFilter, parametros) : "";
+        String setorFilter = entities.has("NOME_SETOR") ? buildSetorFilter(entities.get("NOME_SETOR").asText(), parametros) : "";
+        String tickersFilter = entities.has("LISTA_TICKERS") ? buildTickersFilter(entities.get("LISTA_TICKERS"), vinculos) : "";
+
+        valores.put("FILTER_BLOCK_EMPRESA", empresaFilter);
+        valores.put("FILTER_BLOCK_ENTIDADE", entidadeFilter);
+        valores.put("FILTER_BLOCK_SETOR", !tickersFilter.isEmpty() ? tickersFilter : setorFilter);
+        valores.put("FILTER_BLOCK", !tickersFilter.isEmpty() ? tickersFilter : (!setorFilter.isEmpty() ? setorFilter : entidadeFilter));
+
+        // ETAPA 3: Placeholders de lógica.
         if (entities.has("VALOR_DESEJADO")) {
-            String value = entities.get("VALOR_DESEJADO").asText();
-            String predicadoRDF = placeholderService.getPlaceholderValue(value);
+            String predicadoRDF = placeholderService.getPlaceholderValue(entities.get("VALOR_DESEJADO").asText());
             if (predicadoRDF != null) {
-                query = query.replace("#VALOR_DESEJADO#", predicadoRDF);
+                valores.put("VALOR_DESEJADO", predicadoRDF);
             }
         }
-        
-        if (query.contains("#CALCULO#")) {
-            String calculoKey = entities.has("CALCULO") 
-                ? entities.get("CALCULO").asText() 
+        if (template.hasSlot("CALCULO")) {
+            String calculoKey = entities.has("CALCULO")
+                ? entities.get("CALCULO").asText()
                 : entities.path("VALOR_DESEJADO").asText().replace("metrica.", "");
-            query = query.replace("#CALCULO#", getFormulaCalculo(calculoKey, ""));
+            valores.put("CALCULO", getFormulaCalculo(calculoKey, ""));
         }
-        if (query.contains("#RANKING_CALCULATION#") && entities.has("RANKING_CALCULATION")) {
-            String rankingKey = entities.get("RANKING_CALCULATION").asText();
-            query = query.replace("#RANKING_CALCULATION#", getFormulaCalculo(rankingKey, "_rank"));
+        if (entities.has("RANKING_CALCULATION")) {
+            valores.put("RANKING_CALCULATION", getFormulaCalculo(entities.get("RANKING_CALCULATION").asText(), "_rank"));
         }
-
-        if (query.contains("#REGEX_FILTER#")) {
-            query = query.replace("#REGEX_FILTER#", entities.has("REGEX_PATTERN") ? "FILTER(REGEX(STR(?ticker), \"" + entities.get("REGEX_PATTERN").asText() + "\"))" : "");
+        if (template.hasSlot("AGREGACAO")) {
+            valores.put("AGREGACAO", "media".equals(entities.path("AGREGACAO").asText()) ? "AVG" : "SUM");
+        }
+        if (template.hasSlot("PREGOES")) {
+            valores.put("PREGOES", buildPregoesBlock(entities, vinculos));
         }
+        valores.put("REGEX_FILTER", entities.has("REGEX_PATTERN")
+                ? regexFilterFragment.render(Map.of("REGEX_PATTERN", entities.get("REGEX_PATTERN").asText()), parametros)
+                : "");
 
-        // ETAPA 4: Limpeza e Finalização.
-        query = placeholderService.replaceGenericPlaceholders(query);
-        String prefixes = placeholderService.getPrefixes();
-        return prefixes + query;
+        // ETAPA 4: Renderização em uma única passada (prefixos e símbolos já resolvidos no registro).
+        return template.render(valores, parametros);
     }
 
     // --- MÉTODOS AUXILIARES ---
-    private String buildEntidadeFilter(String entidade) {
-        if (entidade.matches("^[A-Z]{4}[0-9]{1,2}$")) {
-            return "BIND(b3:" + entidade.toUpperCase() + " AS ?SO1)";
+    private String buildEntidadeFilter(String entidade, String empresaFilter, Map<String, Node> parametros) {
+        if (TICKER_PATTERN.matcher(entidade).matches()) {
+            return entidadeTickerFragment.render(Map.of("ENTIDADE_NOME", entidade.toUpperCase()), parametros);
         } else {
-            return "?S1 P7 ?label . \n    FILTER(REGEX(STR(?label), \"" + entidade + "\", \"i\")) \n    ?S1 P1 ?SO1 .";
+            return empresaFilter + " \n    " + empresaTickersFragment.render(Map.of());
+        }
+    }
+
+    /** Liga ?S1 à(s) empresa(s) com o nome informado (#FILTER_BLOCK_EMPRESA#). */
+    private String buildEmpresaFilter(String nome, Map<String, Node> parametros) {
+        List<Node> empresas = labelIndex.empresas(nome);
+        if (empresas.isEmpty()) {
+            return empresaLabelFragment.render(Map.of("ENTIDADE_NOME", nome), parametros);
+        }
+        return vincularIris("?S1", empresas, empresaIriFragment, "EMPRESA_IRI", parametros);
+    }
+
+    private String buildSetorFilter(String nomeSetor, Map<String, Node> parametros) {
+        List<Node> setores = labelIndex.setores(nomeSetor);
+        if (setores.isEmpty()) {
+            return setorFragment.render(Map.of("NOME_SETOR", nomeSetor), parametros);
+        }
+        return vincularIris("?S4", setores, setorIriFragment, "SETOR_IRI", parametros)
+                + " \n    " + setorEmpresasFragment.render(Map.of());
+    }
+
+    /**
+     * Um IRI do namespace b3 vira BIND (vinculável como parâmetro); vários, um VALUES com os IRIs
+     * completos. Os IRIs vêm da ontologia, nunca do texto da pergunta.
+     */
+    private static String vincularIris(String variavel, List<Node> iris, QueryTemplate fragmentoUnico, String slot,
+                                       Map<String, Node> parametros) {
+        if (iris.size() == 1 && iris.get(0).getURI().startsWith(B3.NS)) {
+            return fragmentoUnico.render(Map.of(slot, iris.get(0).getURI().substring(B3.NS.length())), parametros);
+        }
+        StringJoiner valores = new StringJoiner(" ", "VALUES " + variavel + " { ", " }");
+        for (Node iri : iris) {
+            valores.add("<" + iri.getURI() + ">");
         }
+        return valores.toString();
     }
 
-    private String buildSetorFilter(String nomeSetor) {
-        return "?S1 P9 ?S4 . \n    ?S4 P7 \"" + nomeSetor + "\"@pt . \n    ?S1 P1 ?SO1 .";
+    /**
+     * Pregões entre DATA_INICIO e DATA_FIM (VALUES ?S2 { ... }), tirados do índice ordenado: a
+     * consulta só toca os pregões do período, sem FILTER sobre a data de todos os pregões. Sem
+     * datas válidas a lista fica vazia (nenhum resultado). Na consulta preparada os IRIs entram
+     * como lista vinculada: o texto traz só o marcador e não muda com o período.
+     */
+    private String buildPregoesBlock(JsonNode entities, ParametrosConsulta vinculos) {
+        PregaoIndex pregoes = ontology.getPregaoIndex();
+        List<Node> iris = pregoes == null || !entities.hasNonNull("DATA_INICIO") || !entities.hasNonNull("DATA_FIM")
+                ? List.of()
+                : pregoes.pregoes(entities.get("DATA_INICIO").asText(), entities.get("DATA_FIM").asText());
+        if (vinculos != null) {
+            vinculos.lista("PREGOES", iris);
+            return ParametrosConsulta.marcador("PREGOES");
+        }
+        StringJoiner texto = new StringJoiner(" ");
+        for (Node pregao : iris) {
+            texto.add("<" + pregao.getURI() + ">");
+        }
+        return texto.toString();
+    }
+
+    /**
+     * VALUES ?SO1 com os tickers de LISTA_TICKERS, cada um validado como código de negociação.
+     * Na consulta preparada os IRIs entram como lista vinculada (o texto traz só o marcador).
+     */
+    private String buildTickersFilter(JsonNode tickersNode, ParametrosConsulta vinculos) {
+        if (tickersNode == null || !tickersNode.isArray() || tickersNode.size() == 0) {
+            return "";
+        }
+        List<Node> iris = new ArrayList<>(tickersNode.size());
+        StringJoiner uris = new StringJoiner(" ");
+        for (JsonNode ticker : tickersNode) {
+            String codigo = validar("LISTA_TICKERS", ticker.asText(), ticker.isTextual() && CODIGO_TICKER.matcher(ticker.asText()).matches());
+            iris.add(NodeFactory.createURI(B3.NS + codigo));
+            uris.add("b3:" + codigo);
+        }
+        if (vinculos == null) {
+            return tickersFragment.render(Map.of("TICKERS", uris.toString()));
+        }
+        vinculos.lista("TICKERS", iris);
+        return tickersFragment.render(Map.of("TICKERS", ParametrosConsulta.marcador("TICKERS")));
+    }
+
+    private int validarLimite(String limite) {
+        int valor;
+        try {
+            valor = Integer.parseInt(limite.trim());
+        } catch (NumberFormatException e) {
+            valor = -1;
+        }
+        validar("LIMITE (inteiro de 1 a " + limiteMaximo + ")", limite, valor >= 1 && valor <= limiteMaximo);
+        return valor;
     }
 
-    private String buildTickersFilter(JsonNode tickersNode) {
-        if (tickersNode != null && tickersNode.isArray() && tickersNode.size() > 0) {
-            List<String> uris = new ArrayList<>();
-            for (JsonNode ticker : tickersNode) { uris.add("b3:" + ticker.asText()); }
-            return "VALUES ?SO1 { " + String.join(" ", uris) + " }";
+    /** Devolve 'valor' se 'valido'; caso contrário a consulta é recusada (400 nos endpoints). */
+    private static String validar(String entidade, String valor, boolean valido) {
+        if (!valido) {
+            throw new IllegalArgumentException("Valor inválido para a entidade " + entidade + ": '" + valor + "'.");
         }
-        return "";
+        return valor;
     }
 
+    /**
+     * Cálculos reconhecidos (getFormulaCalculo e os de período de 7C/7D); junto com as chaves
+     * metrica.* são os valores possíveis de tipoMetrica.
+     */
+    static final Set<String> CALCULOS = Set.of("variacao_abs", "variacao_abs_abs", "variacao_perc", "intervalo_abs",
+            "intervalo_perc", "volume_financeiro", "quantidade_negocios", "volume", "quantidade", "preco_medio",
+            "preco_maximo", "preco_minimo", "preco_fechamento", "preco_abertura", "retorno_acumulado_perc",
+            "drawdown_maximo_perc");
+
     private String getFormulaCalculo(String calculoKey, String suffix) {
         switch (calculoKey) {
             case "variacao_abs": case "variacao_abs_abs": return "ABS(?fechamento" + suffix + " - ?abertura" + suffix + ")";
             case "variacao_perc": return "((?fechamento" + suffix + " - ?abertura" + suffix + ") / ?abertura" + suffix + ") * 100";
             case "intervalo_abs": return "ABS(?maximo" + suffix + " - ?minimo" + suffix + ")";
             case "intervalo_perc": return "((?maximo" + suffix + " - ?minimo" + suffix + ") / ?abertura" + suffix + ") * 100";
-            case "volume_financeiro": return "?volumeNegociacao";
-            case "quantidade_negocios": return "?totalNegocios";
-            case "volume": return "?volumeNegociacao";
-            case "quantidade": return "?totalNegocios";
-            case "preco_medio": return "?precoMedio";
-            case "preco_maximo": return "?maximo";
-            case "preco_minimo": return "?minimo";
-            case "preco_fechamento": return "?fechamento";
-            case "preco_abertura": return "?abertura";
+            case "volume_financeiro": return "?volumeNegociacao" + suffix;
+            case "quantidade_negocios": return "?totalNegocios" + suffix;
+            case "volume": return "?volumeNegociacao" + suffix;
+            case "quantidade": return "?totalNegocios" + suffix;
+            case "preco_medio": return "?precoMedio" + suffix;
+            case "preco_maximo": return "?maximo" + suffix;
+            case "preco_minimo": return "?minimo" + suffix;
+            case "preco_fechamento": return "?fechamento" + suffix;
+            case "preco_abertura": return "?abertura" + suffix;
             default: return "?undefinedCalculation";
         }
     }
@@ -184,32 +461,4 @@ public class SPARQLProcessor {
         }
         return camelCase.toString();
     }
-
-    private String callNlpService(String query) throws IOException, InterruptedException {
-        String jsonBody = objectMapper.createObjectNode().put("question", query).toString();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(NLP_SERVICE_URL))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                .build();
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new IOException("Serviço NLP falhou com status " + response.statusCode() + " e corpo: " + response.body());
-        }
-        return response.body();
-    }
-
-    private String loadTemplate(String templateName) {
-        String path = "/Templates/" + templateName + ".txt";
-        try (InputStream is = SPARQLProcessor.class.getResourceAsStream(path)) {
-            if (is == null) {
-                throw new IOException("Arquivo de template não encontrado: " + path);
-            }
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                return reader.lines().collect(Collectors.joining(System.lineSeparator()));
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Falha ao carregar template: " + path, e);
-        }
-    }
-}
\ No newline at end of file
+}
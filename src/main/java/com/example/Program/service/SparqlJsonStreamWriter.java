@@ -0,0 +1,115 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.ResultTable;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Escreve o resultado em SPARQL-JSON linha a linha no JsonGenerator, com os valores formatados
+ * pelo ResultValueFormatter, sem montar o documento em memória. É usado tanto no streaming de
+ * /api/executar quanto em QueryExecutionService.formatResults (gerador sobre um Writer).
+ * O cabeçalho é escrito na construção; cada chamada a linha() acrescenta um binding.
+ */
+final class SparqlJsonStreamWriter implements Closeable {
+
+    private final JsonGenerator gerador;
+    private final List<String> vars;
+    private final ResultValueFormatter formatter;
+    private long linhas;
+    private boolean fechado;
+
+    SparqlJsonStreamWriter(JsonGenerator gerador, List<String> vars, String tipoMetrica) throws IOException {
+        this.gerador = gerador;
+        this.vars = vars;
+        this.formatter = new ResultValueFormatter(tipoMetrica, vars);
+        gerador.writeStartObject();
+        gerador.writeObjectFieldStart("head");
+        gerador.writeArrayFieldStart("vars");
+        for (String var : vars) {
+            gerador.writeString(var);
+        }
+        gerador.writeEndArray();
+        gerador.writeEndObject();
+        gerador.writeObjectFieldStart("results");
+        gerador.writeArrayFieldStart("bindings");
+    }
+
+    /** Escreve a linha 'linha' da tabela, cujas variáveis são as deste escritor, na mesma ordem. */
+    void linha(ResultTable tabela, int linha) throws IOException {
+        gerador.writeStartObject();
+        for (int c = 0; c < vars.size(); c++) {
+            gerador.writeObjectFieldStart(vars.get(c));
+            gerador.writeStringField("type", "literal");
+            gerador.writeFieldName("value");
+            formatter.escrever(gerador, tabela, linha, c);
+            gerador.writeEndObject();
+        }
+        gerador.writeEndObject();
+        linhas++;
+    }
+
+    long getLinhas() {
+        return linhas;
+    }
+
+    /**
+     * Fecha a lista de bindings e, numa consulta paginada, acrescenta o bloco "paginacao" com o
+     * offset da próxima página (null quando esta é a última).
+     */
+    void fechar(long offset, long limit, boolean haMais) throws IOException {
+        terminarResultados(offset, limit, haMais);
+        gerador.writeEndObject();
+        fechado = true;
+    }
+
+    /**
+     * Termina o documento de uma consulta interrompida no meio (ex: prazo esgotado): as linhas já
+     * escritas ficam, seguidas de um bloco "erro" com o motivo, para o resultado não passar por
+     * completo. Numa consulta paginada, o proximoOffset permite retomar a partir da linha seguinte.
+     */
+    void interromper(long offset, long limit, String motivo, String mensagem) throws IOException {
+        terminarResultados(offset, limit, true);
+        gerador.writeObjectFieldStart("erro");
+        gerador.writeStringField("motivo", motivo);
+        gerador.writeStringField("mensagem", mensagem);
+        gerador.writeEndObject();
+        gerador.writeEndObject();
+        fechado = true;
+    }
+
+    private void terminarResultados(long offset, long limit, boolean haMais) throws IOException {
+        gerador.writeEndArray();
+        gerador.writeEndObject();
+        if (limit > 0 || offset > 0) {
+            gerador.writeObjectFieldStart("paginacao");
+            gerador.writeNumberField("offset", offset);
+            if (limit > 0) {
+                gerador.writeNumberField("limit", limit);
+            } else {
+                gerador.writeNullField("limit");
+            }
+            gerador.writeNumberField("linhas", linhas);
+            if (haMais) {
+                gerador.writeNumberField("proximoOffset", offset + linhas);
+            } else {
+                gerador.writeNullField("proximoOffset");
+            }
+            gerador.writeEndObject();
+        }
+    }
+
+    /**
+     * Sem fechar() nem interromper() antes (ex: erro ao gravar na resposta), o documento fica
+     * incompleto de propósito: completado, pareceria um resultado válido com menos linhas.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!fechado) {
+            gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        }
+        gerador.close();
+    }
+}
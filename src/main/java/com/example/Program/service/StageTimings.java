@@ -0,0 +1,39 @@
+package com.example.Program.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Tempos das etapas de uma requisição, na ordem em que foram medidas. Uso por uma única thread.
+ */
+public final class StageTimings {
+
+    private final long inicio = System.nanoTime();
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+
+    public <T> T medir(String etapa, Supplier<T> acao) {
+        long t0 = System.nanoTime();
+        try {
+            return acao.get();
+        } finally {
+            nanos.merge(etapa, System.nanoTime() - t0, Long::sum);
+        }
+    }
+
+    public boolean contem(String etapa) {
+        return nanos.containsKey(etapa);
+    }
+
+    /** Milissegundos por etapa (três casas decimais) mais o "total" desde a criação. */
+    public Map<String, Double> emMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        nanos.forEach((etapa, duracao) -> millis.put(etapa, paraMillis(duracao)));
+        millis.put("total", paraMillis(System.nanoTime() - inicio));
+        return millis;
+    }
+
+    private static double paraMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
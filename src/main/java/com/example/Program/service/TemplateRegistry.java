@@ -0,0 +1,87 @@
+package com.example.Program.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Registro dos templates SPARQL. Todos os arquivos Templates/Template_*.txt são lidos e
+ * pré-compilados uma única vez na inicialização, já com os prefixos e os símbolos de
+ * placeholders.properties resolvidos.
+ */
+@Service
+public class TemplateRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateRegistry.class);
+    private static final String TEMPLATES_PATTERN = "classpath*:Templates/Template_*.txt";
+
+    private final PlaceholderService placeholderService;
+    private final Map<String, QueryTemplate> templates = new ConcurrentHashMap<>();
+
+    public TemplateRegistry(PlaceholderService placeholderService) {
+        this.placeholderService = placeholderService;
+    }
+
+    @PostConstruct
+    public void loadTemplates() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(TEMPLATES_PATTERN);
+            String prefixes = placeholderService.getPrefixes();
+            for (Resource resource : resources) {
+                String fileName = resource.getFilename();
+                if (fileName == null) {
+                    continue;
+                }
+                String templateId = fileName.substring(0, fileName.length() - ".txt".length());
+                templates.put(templateId, QueryTemplate.compile(templateId, prefixes, read(resource), placeholderService));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Falha ao carregar os templates SPARQL.", e);
+        }
+        if (templates.isEmpty()) {
+            throw new IllegalStateException("Nenhum template encontrado em '" + TEMPLATES_PATTERN + "'.");
+        }
+        logger.info("{} templates SPARQL pré-compilados: {}", templates.size(), templates.keySet().stream().sorted().collect(Collectors.toList()));
+    }
+
+    private static String read(Resource resource) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining(System.lineSeparator()));
+        }
+    }
+
+    /**
+     * Retorna o template pré-compilado.
+     * @throws IllegalArgumentException se o templateId não existir.
+     */
+    public QueryTemplate get(String templateId) {
+        QueryTemplate template = templates.get(templateId);
+        if (template == null) {
+            throw new IllegalArgumentException("Arquivo de template não encontrado: /Templates/" + templateId + ".txt");
+        }
+        return template;
+    }
+
+    /** Se há um template com esse id (sem exceção, para valores vindos do cliente). */
+    public boolean contains(String templateId) {
+        return templateId != null && templates.containsKey(templateId);
+    }
+
+    /**
+     * Compila um fragmento de consulta (sem prefixos) usando as mesmas regras dos templates.
+     */
+    public QueryTemplate compileFragment(String id, String texto) {
+        return QueryTemplate.compile(id, "", texto, placeholderService);
+    }
+}
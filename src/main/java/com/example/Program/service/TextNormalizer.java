@@ -0,0 +1,23 @@
+package com.example.Program.service;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Funções de normalização de texto compartilhadas pelo PLN em Java.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern MARCAS_COMBINANTES = Pattern.compile("\\p{M}+");
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Equivalente a remover_acentos do nlp_controller.py: decompõe em NFKD e descarta as marcas combinantes.
+     */
+    public static String removerAcentos(String texto) {
+        String nfkd = Normalizer.normalize(texto, Normalizer.Form.NFKD);
+        return MARCAS_COMBINANTES.matcher(nfkd).replaceAll("");
+    }
+}
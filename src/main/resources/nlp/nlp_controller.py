@@ -2,6 +2,8 @@ import json
 import re
 import os
 import unicodedata
+import calendar
+from datetime import date, timedelta
 from flask import Flask, request, jsonify
 from sklearn.feature_extraction.text import TfidfVectorizer
 from sklearn.metrics.pairwise import cosine_similarity
@@ -51,19 +53,87 @@ def remover_acentos(texto):
     nfkd_form = unicodedata.normalize('NFKD', texto)
     return "".join([c for c in nfkd_form if not unicodedata.combining(c)])
 
+MESES = ['janeiro', 'fevereiro', 'marco', 'abril', 'maio', 'junho', 'julho', 'agosto', 'setembro', 'outubro', 'novembro', 'dezembro']
+NUM_MAP = {'cinco': '5', 'quatro': '4', 'tres': '3', 'três': '3', 'duas': '2', 'dois': '2', 'dez': '10', 'sete': '7', 'seis': '6'}
+
+def segunda_da_semana(iso):
+    """Segunda-feira da semana da data ISO, ou None se a data não existir."""
+    try:
+        d = date.fromisoformat(iso)
+    except ValueError:
+        return None
+    return d - timedelta(days=d.weekday())
+
+def extrair_periodo(texto_processavel, entidades):
+    """Mês (com ou sem ano), 'últimos N pregões', 'semana' ou 'mês'. Períodos relativos vão na
+    entidade 'periodo' e são resolvidos pelo SPARQLProcessor com o índice de pregões."""
+    sem_acento = remover_acentos(texto_processavel)
+    match_mes = re.search(r'\b(' + '|'.join(MESES) + r')\b(\s*(de|/)\s*(\d{4}))?', sem_acento)
+    match_ultimos = re.search(r'\bultimos\s+(\d+|cinco|quatro|tres|dois|dez|sete|seis)\s+(pregoes|sessoes|dias uteis)\b', sem_acento)
+    match = None
+    if match_mes:
+        mes = MESES.index(match_mes.group(1)) + 1
+        if match_mes.group(4):
+            ano = int(match_mes.group(4))
+            entidades['data_inicio'] = f"{ano:04d}-{mes:02d}-01"
+            entidades['data_fim'] = f"{ano:04d}-{mes:02d}-{calendar.monthrange(ano, mes)[1]:02d}"
+        else:
+            entidades['periodo'] = f"mes-{mes:02d}"
+        match = match_mes
+    elif match_ultimos:
+        entidades['periodo'] = 'pregoes-' + NUM_MAP.get(match_ultimos.group(1), match_ultimos.group(1))
+        match = match_ultimos
+    elif re.search(r'\bsemana\b', sem_acento):
+        entidades['periodo'] = 'semana'
+    elif re.search(r'\bmes\b', sem_acento):
+        entidades['periodo'] = 'mes'
+    if match and len(sem_acento) == len(texto_processavel):
+        texto_processavel = texto_processavel[:match.start()] + ' ' + texto_processavel[match.end():]
+    return texto_processavel
+
+def indicador_do_periodo(texto_sem_acento, texto_sem_metrica, entidades):
+    """Drawdown máximo, retorno acumulado (também para 'alta/baixa percentual') ou a agregação da
+    métrica no período: média quando pedida ou para preços, soma nos demais casos."""
+    if re.search(r'\b(drawdown|rebaixamento maximo|perda maxima|queda maxima)\b', texto_sem_acento):
+        entidades['calculo'] = 'drawdown_maximo_perc'
+    elif (re.search(r'\b(retorno|rentabilidade|valorizacao|desvalorizacao|variacao acumulada|alta acumulada|queda acumulada)\b', texto_sem_acento)
+          or entidades.get('ranking_calculation') == 'variacao_perc' or entidades.get('calculo') == 'variacao_perc'):
+        entidades['calculo'] = 'retorno_acumulado_perc'
+    elif 'valor_desejado' in entidades:
+        media = bool(re.search(r'\b(media|medio|em media)\b', texto_sem_metrica)) or (
+            entidades['valor_desejado'].startswith('metrica.preco')
+            and not re.search(r'\b(total|soma|somado|acumulado)\b', texto_sem_metrica))
+        entidades['agregacao'] = 'media' if media else 'soma'
+
 def extrair_todas_entidades(pergunta_lower):
     entidades = {}
     texto_processavel = ' ' + pergunta_lower + ' '
     
-    # 1. Datas
+    # 1. Datas: intervalo explícito, data única (ou a semana dela), mês ou período relativo
+    match_intervalo = re.search(r'\b(entre|de|desde)\s+(o dia\s+)?(\d{1,2})/(\d{1,2})/(\d{4})\s+(e|a|até|ate)\s+(o dia\s+)?(\d{1,2})/(\d{1,2})/(\d{4})', texto_processavel)
+    if match_intervalo:
+        g = match_intervalo.groups()
+        inicio = f"{g[4]}-{g[3].zfill(2)}-{g[2].zfill(2)}"
+        fim = f"{g[9]}-{g[8].zfill(2)}-{g[7].zfill(2)}"
+        entidades['data_inicio'], entidades['data_fim'] = sorted([inicio, fim])
+        texto_processavel = texto_processavel.replace(match_intervalo.group(0), " ")
     match_data = re.search(r'(\d{1,2})/(\d{1,2})/(\d{4})', texto_processavel)
-    if match_data:
+    if 'data_inicio' not in entidades and match_data:
         dia, mes, ano = match_data.groups()
-        entidades['data'] = f"{ano}-{mes.zfill(2)}-{dia.zfill(2)}"
+        data = f"{ano}-{mes.zfill(2)}-{dia.zfill(2)}"
+        segunda = segunda_da_semana(data) if re.search(r'\bsemana\b', texto_processavel) else None
+        if segunda:
+            entidades['data_inicio'] = segunda.isoformat()
+            entidades['data_fim'] = (segunda + timedelta(days=6)).isoformat()
+        else:
+            entidades['data'] = data
         texto_processavel = texto_processavel.replace(match_data.group(0), " ")
+    if 'data' not in entidades and 'data_inicio' not in entidades:
+        texto_processavel = extrair_periodo(texto_processavel, entidades)
+    tem_periodo = 'data_inicio' in entidades or 'periodo' in entidades
 
     # 2. Limites numéricos
-    num_map = {'cinco': '5', 'quatro': '4', 'tres': '3', 'três': '3', 'duas': '2', 'dois': '2', 'dez': '10', 'sete': '7', 'seis': '6'}
+    num_map = NUM_MAP
     limit_match = re.search(r'\b(as|os|top)?\s*(\d+|' + '|'.join(num_map.keys()) + r')\s+(acoes|ações|papeis|papéis)\b', texto_processavel, re.IGNORECASE)
     if limit_match:
         num_str = limit_match.group(2).lower()
@@ -123,6 +193,9 @@ def extrair_todas_entidades(pergunta_lower):
             
     if rank_key and not metric_key:
         entidades['valor_desejado'] = 'metrica.' + rank_key
+    if tem_periodo:
+        texto_sem_metrica = texto_sem_acento_para_resultado.replace(remover_acentos(best_metric_match), ' ') if metric_key else texto_sem_acento_para_resultado
+        indicador_do_periodo(texto_sem_acento, texto_sem_metrica, entidades)
 
     # 4. Entidades principais
     for key, tickers in index_map.items():
@@ -170,7 +243,16 @@ def process_question():
     
     template_id_final = None
 
-    if is_complex_ranking:
+    if 'data_inicio' in entidades or 'periodo' in entidades:
+        # Templates de período; sem indicador reconhecido, fica para a similaridade.
+        calculo = entidades.get('calculo')
+        if calculo == 'drawdown_maximo_perc':
+            template_id_final = 'Template_7D'
+        elif calculo == 'retorno_acumulado_perc':
+            template_id_final = 'Template_7C'
+        elif 'agregacao' in entidades and not has_calculo:
+            template_id_final = 'Template_7B' if has_filtro_grupo and not has_ranking else 'Template_7A'
+    elif is_complex_ranking:
         template_id_final = 'Template_6B' if has_filtro_grupo else 'Template_6A'
     elif has_ranking:
         template_id_final = 'Template_5B' if has_filtro_grupo else 'Template_5A'
@@ -0,0 +1,256 @@
+package com.example.Program.ontology;
+
+import com.example.Program.service.QueryExecutionService;
+import com.example.Program.service.SPARQLProcessor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Acréscimo de pregões por POST /api/admin/acrescentar: o dia acrescentado passa a responder nos
+ * templates (índice colunar e Jena) e as triplas que o delta não traz são inferidas.
+ */
+@SpringBootTest(properties = {
+        "nlp.engine=java",
+        "ontology.reload.watch=false",
+        "ontology.reload.admin-token=segredo"
+})
+@AutoConfigureMockMvc
+// Os testes alteram o modelo carregado.
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class OntologyAcrescimoTest {
+
+    private static final String PLANILHA = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private Ontology ontology;
+    @Autowired private SPARQLProcessor sparqlProcessor;
+    @Autowired private QueryExecutionService queryExecutionService;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Test
+    void planilhaDeUmPregaoRespondeNosTemplatesEInfereOVinculoComAEmpresa() throws Exception {
+        byte[] xlsx = planilha(
+                new Object[]{"2025-07-01", "PETR4", 30.0, 31.5, 32.0, 29.5, 30.8, 1.5e9, 1000},
+                new Object[]{"2025-07-01", "VALE3", 55.0, 54.0, 55.5, 53.5, 54.2, 9.0e8, 800},
+                // Ticker novo: o vínculo com a Vale vem da raiz VALE (TargetedInference).
+                new Object[]{"2025-07-01", "VALE5", 50.0, 51.0, 51.5, 49.5, 50.6, 2.0e8, 300});
+
+        mockMvc.perform(multipart("/api/admin/acrescentar").file(new MockMultipartFile("arquivo", "pregao.xlsx", PLANILHA, xlsx)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(multipart("/api/admin/acrescentar").file(new MockMultipartFile("arquivo", "pregao.xlsx", PLANILHA, xlsx))
+                        .header("X-Admin-Token", "segredo"))
+                .andExpect(status().isOk());
+
+        JsonNode fechamento = objectMapper.readTree(
+                "{\"DATA\": \"2025-07-01\", \"VALOR_DESEJADO\": \"metrica.preco_fechamento\", \"ENTIDADE_NOME\": \"PETR4\", \"TIPO_ENTIDADE\": \"ticker\"}");
+        assertThat(valores("Template_1B", fechamento, "valor")).containsExactly("31.5");
+
+        JsonNode maiorVolume = objectMapper.readTree(
+                "{\"DATA\": \"2025-07-01\", \"LIMITE\": \"3\", \"RANKING_CALCULATION\": \"volume_financeiro\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"ORDEM\": \"DESC\", \"CALCULO\": \"volume_financeiro\"}");
+        assertThat(valores("Template_5A", maiorVolume, "ticker")).containsExactly("PETR4", "VALE3", "VALE5");
+
+        Resource vale5 = recurso("VALE5");
+        Resource negociacao = recurso("VALE5_Negociado_20250701");
+        ontology.readModel(model -> {
+            assertThat(model.contains(null, B3.temValorMobiliarioNegociado, vale5)).as("empresa -> VALE5").isTrue();
+            assertThat(model.contains(vale5, B3.ticker)).as("b3:ticker de VALE5").isTrue();
+            assertThat(model.contains(vale5, RDF.type, B3.Valor_Mobiliario)).isTrue();
+            assertThat(model.contains(negociacao, RDF.type, B3.Negociado_Em_Pregao)).isTrue();
+            return null;
+        });
+    }
+
+    @Test
+    void turtleSemTiposRecebeOsTiposInferidos() throws Exception {
+        String turtle = """
+                @prefix b3: <%s> .
+                @prefix xsd: <http://www.w3.org/2001/XMLSchema#> .
+                b3:PETR4 b3:negociado b3:PETR4_Negociado_20250702 .
+                b3:PETR4_Negociado_20250702 b3:negociadoDurante b3:Pregao_20250702 ;
+                    b3:precoAbertura "31.5"^^xsd:double ;
+                    b3:precoFechamento "33.0"^^xsd:double ;
+                    b3:precoMaximo "33.5"^^xsd:double ;
+                    b3:precoMinimo "31.0"^^xsd:double ;
+                    b3:precoMedio "32.4"^^xsd:double ;
+                    b3:volumeNegociacao "1.2e9"^^xsd:double ;
+                    b3:totalNegocios "900"^^xsd:double .
+                b3:Pregao_20250702 b3:ocorreEmData "2025-07-02"^^xsd:date .
+                """.formatted(B3.NS);
+
+        mockMvc.perform(post("/api/admin/acrescentar").contentType("text/turtle").header("X-Admin-Token", "segredo")
+                        .content(turtle.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk());
+
+        ontology.readModel(model -> {
+            assertThat(model.contains(recurso("PETR4_Negociado_20250702"), RDF.type, B3.Negociado_Em_Pregao)).isTrue();
+            assertThat(model.contains(recurso("Pregao_20250702"), RDF.type, B3.Pregao)).isTrue();
+            return null;
+        });
+        JsonNode fechamento = objectMapper.readTree(
+                "{\"DATA\": \"2025-07-02\", \"VALOR_DESEJADO\": \"metrica.preco_fechamento\", \"ENTIDADE_NOME\": \"PETR4\", \"TIPO_ENTIDADE\": \"ticker\"}");
+        assertThat(valores("Template_1B", fechamento, "valor")).containsExactly("33.0");
+    }
+
+    @Test
+    void acrescimosNaoEsperamAsConsultasEmAndamento() throws Exception {
+        CountDownLatch lendo = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CompletableFuture<Long> consulta = CompletableFuture.supplyAsync(() -> ontology.readModel(model -> {
+            long antes = model.size();
+            lendo.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return model.size() - antes;
+        }));
+        assertThat(lendo.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Com a consulta ainda aberta: dois acréscimos seguidos (o segundo sobre o primeiro).
+        Ontology.Acrescimo primeiro = CompletableFuture.supplyAsync(() -> ontology.acrescentarTurtle(pregaoPetr4("20250703", "2025-07-03", "34.0")))
+                .get(10, TimeUnit.SECONDS);
+        Ontology.Acrescimo segundo = CompletableFuture.supplyAsync(() -> ontology.acrescentarTurtle(pregaoPetr4("20250704", "2025-07-04", "35.0")))
+                .get(10, TimeUnit.SECONDS);
+        liberar.countDown();
+
+        assertThat(consulta.get(10, TimeUnit.SECONDS)).as("a consulta segue no modelo que adquiriu").isZero();
+        assertThat(segundo.totalTriplas()).isGreaterThan(primeiro.totalTriplas());
+        JsonNode dia3 = objectMapper.readTree(
+                "{\"DATA\": \"2025-07-03\", \"VALOR_DESEJADO\": \"metrica.preco_fechamento\", \"ENTIDADE_NOME\": \"PETR4\", \"TIPO_ENTIDADE\": \"ticker\"}");
+        JsonNode dia4 = objectMapper.readTree(
+                "{\"DATA\": \"2025-07-04\", \"VALOR_DESEJADO\": \"metrica.preco_fechamento\", \"ENTIDADE_NOME\": \"PETR4\", \"TIPO_ENTIDADE\": \"ticker\"}");
+        assertThat(valores("Template_1B", dia3, "valor")).containsExactly("34.0");
+        assertThat(valores("Template_1B", dia4, "valor")).containsExactly("35.0");
+    }
+
+    @Test
+    void contagemEAgregadosDoSetorAcompanhamOAcrescimo() throws Exception {
+        JsonNode bancosAntes = objectMapper.readTree(
+                "{\"DATA\": \"2025-06-12\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"NOME_SETOR\": \"Bancos\"}");
+        List<String> totaisAntes = valores("Template_4", bancosAntes, "resultado");
+        String turtle = """
+                @prefix b3: <%s> .
+                @prefix xsd: <http://www.w3.org/2001/XMLSchema#> .
+                b3:ITUB4 b3:negociado b3:ITUB4_Negociado_20250707 .
+                b3:ITUB4_Negociado_20250707 b3:negociadoDurante b3:Pregao_20250707 ;
+                    b3:volumeNegociacao "4000000.0"^^xsd:double .
+                b3:BBDC4 b3:negociado b3:BBDC4_Negociado_20250707 .
+                b3:BBDC4_Negociado_20250707 b3:negociadoDurante b3:Pregao_20250707 ;
+                    b3:volumeNegociacao "1500000.0"^^xsd:double .
+                b3:Pregao_20250707 b3:ocorreEmData "2025-07-07"^^xsd:date .
+                """.formatted(B3.NS);
+
+        long geracao = ontology.getGeracao();
+        Ontology.Acrescimo primeiro = ontology.acrescentarTurtle(new ByteArrayInputStream(turtle.getBytes(StandardCharsets.UTF_8)));
+        assertThat(primeiro.triplasNovas()).isPositive();
+        assertThat(primeiro.totalTriplas()).isEqualTo(ontology.readModel(model -> model.size()));
+
+        // O mesmo pregão de novo: nada entra no modelo e nenhuma geração é publicada.
+        Ontology.Acrescimo repetido = ontology.acrescentarTurtle(new ByteArrayInputStream(turtle.getBytes(StandardCharsets.UTF_8)));
+        assertThat(repetido.triplasNovas()).isZero();
+        assertThat(repetido.totalTriplas()).isEqualTo(primeiro.totalTriplas());
+        assertThat(ontology.getGeracao()).isEqualTo(geracao + 1);
+
+        JsonNode bancos = objectMapper.readTree(
+                "{\"DATA\": \"2025-07-07\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"NOME_SETOR\": \"Bancos\"}");
+        List<String> totais = valores("Template_4", bancos, "resultado");
+        assertThat(Double.parseDouble(totais.get(totais.size() - 1))).isEqualTo(5500000.0);
+        assertThat(valores("Template_4", bancosAntes, "resultado")).as("pregão preservado").isEqualTo(totaisAntes);
+    }
+
+    @Test
+    void turtleInvalidoDevolve400() throws Exception {
+        mockMvc.perform(post("/api/admin/acrescentar").contentType("text/turtle").header("X-Admin-Token", "segredo")
+                        .content("b3:PETR4 b3:negociado".getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Valores de 'variavel' pela consulta preparada (índice colunar) e pelo texto da mesma
+     * consulta (Jena); as duas execuções precisam concordar.
+     */
+    private List<String> valores(String templateId, JsonNode entidades, String variavel) throws Exception {
+        List<String> indexados = coluna(queryExecutionService.executarPreparada(templateId, entidades, null), variavel);
+        List<String> jena = coluna(queryExecutionService.executarTexto(sparqlProcessor.renderQuery(templateId, entidades), null), variavel);
+        assertThat(indexados).as("%s pelo índice x Jena", templateId).isEqualTo(jena);
+        return indexados;
+    }
+
+    private List<String> coluna(String json, String variavel) throws Exception {
+        List<String> valores = new ArrayList<>();
+        for (JsonNode linha : objectMapper.readTree(json).path("results").path("bindings")) {
+            valores.add(linha.path(variavel).path("value").asText());
+        }
+        return valores;
+    }
+
+    private static InputStream pregaoPetr4(String dataCompacta, String data, String fechamento) {
+        String turtle = """
+                @prefix b3: <%1$s> .
+                @prefix xsd: <http://www.w3.org/2001/XMLSchema#> .
+                b3:PETR4 b3:negociado b3:PETR4_Negociado_%2$s .
+                b3:PETR4_Negociado_%2$s b3:negociadoDurante b3:Pregao_%2$s ;
+                    b3:precoFechamento "%4$s"^^xsd:double .
+                b3:Pregao_%2$s b3:ocorreEmData "%3$s"^^xsd:date .
+                """.formatted(B3.NS, dataCompacta, data, fechamento);
+        return new ByteArrayInputStream(turtle.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Resource recurso(String localName) {
+        return ResourceFactory.createResource(B3.NS + localName);
+    }
+
+    private static byte[] planilha(Object[]... linhas) throws Exception {
+        String[] cabecalho = {"data_pregao", "cod_negociacao", "preco_abertura", "preco_ultimo_negocio", "preco_maximo",
+                "preco_minimo", "preco_medio", "volume_total_negociado", "quantidade_papeis_negociados"};
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet();
+            Row titulo = sheet.createRow(0);
+            for (int c = 0; c < cabecalho.length; c++) {
+                titulo.createCell(c).setCellValue(cabecalho[c]);
+            }
+            for (int r = 0; r < linhas.length; r++) {
+                Row row = sheet.createRow(r + 1);
+                for (int c = 0; c < linhas[r].length; c++) {
+                    Object valor = linhas[r][c];
+                    if (valor instanceof Number numero) {
+                        row.createCell(c).setCellValue(numero.doubleValue());
+                    } else {
+                        row.createCell(c).setCellValue(valor.toString());
+                    }
+                }
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
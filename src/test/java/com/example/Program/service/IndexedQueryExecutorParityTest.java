@@ -0,0 +1,130 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.Ontology;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Cada template respondido pelo IndexedQueryExecutor deve devolver as mesmas linhas que a consulta
+ * preparada executada pelo Jena: mesmas variáveis, mesma ordem, mesmos termos (números com a
+ * tolerância das somas em ordem diferente).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "nlp.engine=java",
+        "ontology.reload.watch=false",
+        // Com o cache ligado, as duas execuções teriam a mesma chave.
+        "sparql.result-cache.enabled=false"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndexedQueryExecutorParityTest {
+
+    private static final String BANCOS = "\"NOME_SETOR\": \"Bancos\"";
+    private static final String TICKERS = "\"LISTA_TICKERS\": [\"PETR4\", \"VALE3\", \"ITUB4\", \"BBDC4\", \"ABEV3\", \"WEGE3\"]";
+
+    @Autowired private QueryExecutionService comIndice;
+    @Autowired private IndexedQueryExecutor indexedQueryExecutor;
+    @Autowired private SPARQLProcessor sparqlProcessor;
+    @Autowired private Ontology ontology;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private QueryResultCache queryResultCache;
+    @Autowired private PlaceholderService placeholderService;
+    @Autowired private MaterializedAggregates materializedAggregates;
+    @Autowired private LabelIndex labelIndex;
+    @Autowired private QueryMetrics queryMetrics;
+    @Autowired private QueryAdmission queryAdmission;
+    @Autowired private QueryCostEstimator queryCostEstimator;
+
+    private QueryExecutionService semIndice;
+
+    @BeforeAll
+    void montarExecucaoSemIndice() {
+        IndexedQueryExecutor desligado = new IndexedQueryExecutor(ontology, placeholderService, materializedAggregates, labelIndex, false);
+        semIndice = new QueryExecutionService(sparqlProcessor, ontology, objectMapper, queryResultCache, desligado,
+                queryMetrics, queryAdmission, queryCostEstimator, 50000);
+    }
+
+    Stream<Arguments> casos() {
+        return Stream.of(
+                arguments("Template_1B", "metrica.preco_fechamento",
+                        "{\"DATA\": \"2025-06-12\", \"VALOR_DESEJADO\": \"metrica.preco_fechamento\", \"ENTIDADE_NOME\": \"PETR4\", \"TIPO_ENTIDADE\": \"ticker\"}"),
+                arguments("Template_1D", "variacao_abs",
+                        "{\"DATA\": \"2025-06-30\", \"CALCULO\": \"variacao_abs\", \"ENTIDADE_NOME\": \"CSNA3\", \"TIPO_ENTIDADE\": \"ticker\"}"),
+                arguments("Template_4", "metrica.volume_financeiro",
+                        "{\"DATA\": \"2025-06-12\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", " + BANCOS + "}"),
+                arguments("Template_4", "metrica.preco_fechamento",
+                        "{\"DATA\": \"2025-06-12\", \"VALOR_DESEJADO\": \"metrica.preco_fechamento\", " + TICKERS + "}"),
+                arguments("Template_5A", "volume_financeiro",
+                        "{\"DATA\": \"2025-06-12\", \"LIMITE\": \"5\", \"RANKING_CALCULATION\": \"volume_financeiro\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"ORDEM\": \"DESC\", \"CALCULO\": \"volume_financeiro\"}"),
+                arguments("Template_5B", "variacao_perc",
+                        "{\"DATA\": \"2025-06-12\", \"LIMITE\": \"3\", \"RANKING_CALCULATION\": \"variacao_perc\", \"VALOR_DESEJADO\": \"metrica.variacao_perc\", \"NOME_SETOR\": \"Energia Elétrica\", \"ORDEM\": \"ASC\", \"CALCULO\": \"variacao_perc\"}"),
+                arguments("Template_6A", "metrica.volume_financeiro",
+                        "{\"DATA\": \"2025-06-30\", \"RANKING_CALCULATION\": \"variacao_perc\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"ORDEM\": \"DESC\", \"LIMITE\": \"1\"}"),
+                arguments("Template_6B", "metrica.preco_maximo",
+                        "{\"DATA\": \"2025-06-27\", \"RANKING_CALCULATION\": \"variacao_abs\", \"VALOR_DESEJADO\": \"metrica.preco_maximo\", " + BANCOS + ", \"ORDEM\": \"ASC\", \"LIMITE\": \"3\"}"),
+                arguments("Template_7A", "metrica.volume_financeiro",
+                        "{\"DATA_INICIO\": \"2025-06-01\", \"DATA_FIM\": \"2025-06-30\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"AGREGACAO\": \"media\", \"ENTIDADE_NOME\": \"VALE3\", \"TIPO_ENTIDADE\": \"ticker\", \"ORDEM\": \"DESC\", \"LIMITE\": \"1\"}"),
+                arguments("Template_7B", "metrica.volume_financeiro",
+                        "{\"DATA_INICIO\": \"2025-06-01\", \"DATA_FIM\": \"2025-06-30\", \"VALOR_DESEJADO\": \"metrica.volume_financeiro\", \"AGREGACAO\": \"soma\", \"NOME_SETOR\": \"Minerais Metálicos\"}"),
+                arguments("Template_7C", "retorno_acumulado_perc",
+                        "{\"LIMITE\": \"5\", \"CALCULO\": \"retorno_acumulado_perc\", \"ORDEM\": \"DESC\", \"DATA_INICIO\": \"2025-06-01\", \"DATA_FIM\": \"2025-06-30\"}"),
+                arguments("Template_7D", "drawdown_maximo_perc",
+                        "{\"LIMITE\": \"5\", \"CALCULO\": \"drawdown_maximo_perc\", \"ORDEM\": \"DESC\", \"DATA_INICIO\": \"2025-06-01\", \"DATA_FIM\": \"2025-06-30\"}")
+        );
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("casos")
+    void indiceDevolveAsMesmasLinhasQueOJena(String templateId, String tipoMetrica, String json) throws Exception {
+        JsonNode entidades = objectMapper.readTree(json);
+        assertThat(indexedQueryExecutor.execute(templateId, entidades))
+                .as("o índice deve responder %s", templateId)
+                .isPresent();
+
+        JsonNode indexado = objectMapper.readTree(comIndice.executarPreparada(templateId, entidades, tipoMetrica));
+        JsonNode jena = objectMapper.readTree(semIndice.executarPreparada(templateId, entidades, tipoMetrica));
+
+        assertThat(indexado.path("head")).isEqualTo(jena.path("head"));
+        JsonNode linhasIndice = indexado.path("results").path("bindings");
+        JsonNode linhasJena = jena.path("results").path("bindings");
+        assertThat(linhasJena.size()).as("linhas do Jena").isPositive();
+        assertThat(linhasIndice.size()).as("linhas").isEqualTo(linhasJena.size());
+        for (int i = 0; i < linhasJena.size(); i++) {
+            compararLinha(i, linhasIndice.get(i), linhasJena.get(i));
+        }
+    }
+
+    private static void compararLinha(int i, JsonNode indexada, JsonNode esperada) {
+        assertThat(indexada.size()).as("variáveis da linha %d", i).isEqualTo(esperada.size());
+        for (Iterator<String> it = esperada.fieldNames(); it.hasNext(); ) {
+            String var = it.next();
+            JsonNode termo = indexada.path(var);
+            JsonNode termoJena = esperada.get(var);
+            assertThat(termo.path("type")).as("%s na linha %d", var, i).isEqualTo(termoJena.path("type"));
+            assertThat(termo.path("datatype")).as("%s na linha %d", var, i).isEqualTo(termoJena.path("datatype"));
+            String valor = termo.path("value").asText();
+            String valorJena = termoJena.path("value").asText();
+            if (termoJena.has("datatype") && !valor.equals(valorJena)) {
+                // Somas em ordem diferente (índice x Jena) podem diferir no último dígito.
+                double esperado = Double.parseDouble(valorJena);
+                assertThat(Double.parseDouble(valor)).as("%s na linha %d", var, i)
+                        .isCloseTo(esperado, within(Math.abs(esperado) * 1e-9));
+            } else {
+                assertThat(valor).as("%s na linha %d", var, i).isEqualTo(valorJena);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.Program.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * O JavaNlpEngine deve responder às perguntas de referência como o nlp_controller.py: mesmo
+ * template e mesmas entidades. As respostas do Python foram gravadas uma vez em
+ * nlp/reference_questions_python.json (process_question chamado para cada linha de
+ * Reference_questions.txt); ao mudar as regras de um lado, regravar a partir do Python.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "nlp.engine=java",
+        "ontology.reload.watch=false"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class JavaNlpEngineParityTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Autowired private JavaNlpEngine javaNlpEngine;
+
+    static List<JsonNode> respostasDoPython() throws IOException {
+        try (InputStream in = new ClassPathResource("nlp/reference_questions_python.json").getInputStream()) {
+            return StreamSupport.stream(JSON.readTree(in).spliterator(), false).toList();
+        }
+    }
+
+    @Test
+    void gravacaoCobreTodasAsPerguntasDeReferencia() throws IOException {
+        List<String> perguntas = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource("nlp/Reference_questions.txt").getInputStream(), StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                linha = linha.strip();
+                int separador = linha.indexOf(';');
+                if (!linha.isEmpty() && separador > 0 && !linha.startsWith("#")) {
+                    perguntas.add(linha.substring(separador + 1).strip());
+                }
+            }
+        }
+        assertThat(respostasDoPython()).extracting(r -> r.get("pergunta").asText()).containsExactlyElementsOf(perguntas);
+    }
+
+    @ParameterizedTest
+    @MethodSource("respostasDoPython")
+    void mesmoTemplateEMesmasEntidades(JsonNode esperado) throws IOException {
+        JsonNode obtido = javaNlpEngine.processQuestion(esperado.get("pergunta").asText());
+
+        assertThat(obtido.get("templateId").asText()).isEqualTo(esperado.get("templateId").asText());
+        // Comparação de JsonNode ignora a ordem dos campos, não a dos tickers em LISTA_TICKERS.
+        assertThat(obtido.get("entities")).isEqualTo(esperado.get("entities"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.Program.service;
+
+import com.example.Program.ontology.ResultTable;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * O caminho rápido de ResultValueFormatter (HALF_EVEN escrito à mão, com a faixa de 2 ulp em volta
+ * do empate) deve produzir exatamente o texto do DecimalFormat que ele substitui, em todos os formatos.
+ */
+class ResultValueFormatterTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** Um tipo de métrica que leva a cada formato (ver Formato.de). */
+    private static String tipoMetrica(ResultValueFormatter.Formato formato) {
+        return switch (formato) {
+            case PERCENTUAL -> "variacao_perc";
+            case MOEDA -> "metrica.preco_fechamento";
+            case INTEIRO -> "quantidade_negocios";
+            case NENHUM -> throw new IllegalArgumentException();
+        };
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ResultValueFormatter.Formato.class, names = "NENHUM", mode = EnumSource.Mode.EXCLUDE)
+    void casosDeBorda(ResultValueFormatter.Formato formato) throws IOException {
+        List<Double> valores = new ArrayList<>();
+        // Empates em 2 casas (x.xx5) e em 0 casas (x.5), exatos ou não em binário.
+        for (double v : new double[] {0.005, 0.015, 0.025, 0.125, 0.375, 0.5, 1.5, 2.5, 1.005, 1.115, 2.675,
+                10.245, 1234.565, 999.995, 0.995, 12345678.125, 1e12 + 0.5, 4503599627370495.5}) {
+            valores.add(v);
+            valores.add(Math.nextUp(v));
+            valores.add(Math.nextDown(v));
+        }
+        // Em volta do LIMITE_RAPIDO (1e13) e dos limites de representação.
+        for (double v : new double[] {1e13, 9.999999999999e12, 1e13 - 0.005, 1e13 - 0.5, 1e15, 1e17, Double.MAX_VALUE}) {
+            valores.add(v);
+            valores.add(Math.nextUp(v));
+            valores.add(Math.nextDown(v));
+        }
+        // Zero, subnormais e valores que arredondam para zero.
+        valores.addAll(List.of(0.0, -0.0, Double.MIN_VALUE, Double.MIN_NORMAL, 1e-310, 0.001, 0.004, 0.0049999, 0.4999999));
+        // Grupos de milhar e valores comuns.
+        valores.addAll(List.of(1.0, 12.34, 999.0, 1000.0, 123456.789, 1234567.891, 33.0, 31.5, 7.0E9));
+
+        List<String> divergencias = new ArrayList<>();
+        ResultValueFormatter formatter = new ResultValueFormatter(tipoMetrica(formato), List.of("valor"));
+        for (double v : valores) {
+            comparar(formatter, formato, v, divergencias);
+            comparar(formatter, formato, -v, divergencias);
+        }
+        assertThat(divergencias).isEmpty();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ResultValueFormatter.Formato.class, names = "NENHUM", mode = EnumSource.Mode.EXCLUDE)
+    void varreduraAleatoria(ResultValueFormatter.Formato formato) throws IOException {
+        Random random = new Random(20250612L);
+        ResultValueFormatter formatter = new ResultValueFormatter(tipoMetrica(formato), List.of("valor"));
+        List<String> divergencias = new ArrayList<>();
+        DoubleStream valores = DoubleStream.concat(
+                // Magnitudes de 1e-4 a 1e15, dos dois lados do LIMITE_RAPIDO.
+                DoubleStream.generate(() -> (random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(20) - 4)).limit(100_000),
+                // Centavos e meio centavo exatos em decimal (o caso de preços e volumes), com vizinhos.
+                DoubleStream.generate(() -> {
+                    double v = random.nextInt(100_000_000) / 1000.0;
+                    return switch (random.nextInt(3)) {
+                        case 0 -> v;
+                        case 1 -> Math.nextUp(v);
+                        default -> Math.nextDown(v);
+                    };
+                }).limit(100_000));
+        for (double v : (Iterable<Double>) valores::iterator) {
+            comparar(formatter, formato, v, divergencias);
+        }
+        assertThat(divergencias).isEmpty();
+    }
+
+    private static void comparar(ResultValueFormatter formatter, ResultValueFormatter.Formato formato, double v,
+                                 List<String> divergencias) throws IOException {
+        String esperado = formato.completo.get().format(v);
+        String obtido = escrever(formatter, v);
+        if (!esperado.equals(obtido) && divergencias.size() < 20) {
+            divergencias.add(formato + " " + v + " (" + Long.toHexString(Double.doubleToRawLongBits(v)) + "): \""
+                    + obtido + "\" em vez de \"" + esperado + "\"");
+        }
+    }
+
+    private static String escrever(ResultValueFormatter formatter, double v) throws IOException {
+        ResultTable tabela = new ResultTable(List.of("valor"), 1);
+        tabela.numero(v, false);
+        StringWriter saida = new StringWriter();
+        try (JsonGenerator gerador = JSON.createGenerator(saida)) {
+            formatter.escrever(gerador, tabela, 0, 0);
+        }
+        return JSON.readValue(saida.toString(), String.class);
+    }
+}
@@ -0,0 +1,147 @@
+"""
+Teste de carga de /api/perguntar (ou /api/processar) com o motor de PLN "remote".
+
+Sobe um serviço NLP simulado (mesmo contrato de /process_question do nlp_controller.py) que
+responde depois de uma latência fixa, e dispara requisições concorrentes contra a aplicação.
+Cada pergunta é diferente (sufixo numérico, também entre execuções), para que o QuestionCache
+não evite a chamada ao PLN; o tempo das requisições fica dominado pela espera de I/O no
+serviço NLP.
+
+Uso (compare a vazão com e sem threads virtuais):
+
+    NLP_ENGINE=remote VIRTUAL_THREADS=false NLP_MAX_IN_FLIGHT=2000 java -jar target/*.jar
+    python3 tools/load_test.py --requests 3000 --concurrency 600 --nlp-latency-ms 2000
+
+    NLP_ENGINE=remote VIRTUAL_THREADS=true NLP_MAX_IN_FLIGHT=2000 java -jar target/*.jar
+    python3 tools/load_test.py --requests 3000 --concurrency 600 --nlp-latency-ms 2000
+
+Com 2 s de latência e 600 clientes, o pool de 200 threads de plataforma limita a vazão a ~100 req/s;
+com threads virtuais o limite passa a ser a CPU. Com latências curtas as duas configurações ficam
+limitadas pela CPU e a diferença desaparece.
+
+/api/processar é assíncrono (a thread do Tomcat volta ao pool enquanto o PLN responde) e não
+depende das threads virtuais; /api/perguntar e /api/lote esperam o PLN na thread:
+
+    python3 tools/load_test.py --endpoint /api/processar --requests 3000 --concurrency 600
+
+O simulador ocupa a porta de nlp.service.url (5000 por padrão); não rode junto com o serviço Python.
+Só usa a biblioteca padrão do Python.
+"""
+import argparse
+import asyncio
+import json
+import multiprocessing
+import statistics
+import time
+
+# Entidades de "Qual foi o preço de fechamento da ação da CSN em 18/06/2025?".
+RESPOSTA_NLP = json.dumps({
+    "templateId": "Template_1A",
+    "entities": {
+        "DATA": "2025-06-18",
+        "VALOR_DESEJADO": "metrica.preco_fechamento",
+        "ENTIDADE_NOME": "csn",
+        "TIPO_ENTIDADE": "nome",
+        "ORDEM": "DESC",
+        "LIMITE": "1",
+    },
+}).encode()
+
+
+async def ler_requisicao(reader):
+    cabecalho = await reader.readuntil(b"\r\n\r\n")
+    tamanho = 0
+    for linha in cabecalho.split(b"\r\n"):
+        if linha.lower().startswith(b"content-length:"):
+            tamanho = int(linha.split(b":", 1)[1])
+    if tamanho:
+        await reader.readexactly(tamanho)
+
+
+async def servico_nlp(latencia):
+    async def atender(reader, writer):
+        try:
+            while True:
+                await ler_requisicao(reader)
+                await asyncio.sleep(latencia)
+                writer.write(b"HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                             + str(len(RESPOSTA_NLP)).encode() + b"\r\n\r\n" + RESPOSTA_NLP)
+                await writer.drain()
+        except (asyncio.IncompleteReadError, ConnectionError):
+            pass
+        finally:
+            writer.close()
+    return atender
+
+
+def rodar_servico_nlp(porta, latencia, pronto):
+    async def principal():
+        await asyncio.start_server(await servico_nlp(latencia), "127.0.0.1", porta, backlog=4096)
+        pronto.set()
+        await asyncio.Event().wait()
+    asyncio.run(principal())
+
+
+async def requisicao(host, porta, caminho, corpo):
+    reader, writer = await asyncio.open_connection(host, porta)
+    try:
+        writer.write(f"POST {caminho} HTTP/1.1\r\nHost: {host}\r\nContent-Type: application/json\r\n"
+                     f"Content-Length: {len(corpo)}\r\nConnection: close\r\n\r\n".encode() + corpo)
+        await writer.drain()
+        resposta = await reader.read()
+        return int(resposta.split(b" ", 2)[1])
+    finally:
+        writer.close()
+
+
+async def carga(args):
+    # O simulador roda em outro processo, para não disputar o laço de eventos com o cliente.
+    pronto = multiprocessing.Event()
+    simulador = multiprocessing.Process(target=rodar_servico_nlp, daemon=True,
+                                        args=(args.nlp_port, args.nlp_latency_ms / 1000, pronto))
+    simulador.start()
+    pronto.wait()
+    rodada = int(time.time())  # Distingue as perguntas entre execuções (QuestionCache)
+    fila = asyncio.Queue()
+    for i in range(args.requests):
+        fila.put_nowait(i)
+    latencias, erros = [], []
+
+    async def cliente():
+        while not fila.empty():
+            i = fila.get_nowait()
+            corpo = json.dumps({"pergunta": f"Qual foi o preço de fechamento da ação da CSN em 18/06/2025? {rodada} {i}"}).encode()
+            t0 = time.perf_counter()
+            try:
+                status = await requisicao(args.host, args.port, args.endpoint, corpo)
+                if status != 200:
+                    erros.append(status)
+            except OSError as e:
+                erros.append(type(e).__name__)
+            latencias.append(time.perf_counter() - t0)
+
+    inicio = time.perf_counter()
+    await asyncio.gather(*(cliente() for _ in range(args.concurrency)))
+    duracao = time.perf_counter() - inicio
+    simulador.terminate()
+
+    latencias.sort()
+    def percentil(p):
+        return latencias[min(len(latencias) - 1, int(p * len(latencias)))] * 1000
+    print(f"{args.endpoint}  requisições: {args.requests}  concorrência: {args.concurrency}  latência do PLN: {args.nlp_latency_ms} ms")
+    print(f"duração: {duracao:.2f} s  vazão: {args.requests / duracao:.1f} req/s  erros: {len(erros)}"
+          + (f" {sorted(set(map(str, erros)))}" if erros else ""))
+    print(f"latência (ms): média {statistics.mean(latencias) * 1000:.0f}  p50 {percentil(0.50):.0f}"
+          f"  p95 {percentil(0.95):.0f}  p99 {percentil(0.99):.0f}")
+
+
+if __name__ == "__main__":
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--host", default="127.0.0.1")
+    parser.add_argument("--port", type=int, default=8080)
+    parser.add_argument("--nlp-port", type=int, default=5000)
+    parser.add_argument("--nlp-latency-ms", type=int, default=2000)
+    parser.add_argument("--requests", type=int, default=3000)
+    parser.add_argument("--concurrency", type=int, default=600)
+    parser.add_argument("--endpoint", default="/api/perguntar", choices=["/api/perguntar", "/api/processar"])
+    asyncio.run(carga(parser.parse_args()))